@@ -3,6 +3,8 @@ package org.team100.frc2025.CalgamesArm;
 import static edu.wpi.first.wpilibj2.command.Commands.select;
 import static edu.wpi.first.wpilibj2.command.Commands.sequence;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -609,6 +611,34 @@ public class CalgamesMech extends SubsystemBase implements Music, PositionSubsys
 
     }
 
+    /**
+     * Make all the trajectory commands, which adds their moves to the trajectory
+     * library, and plan any that weren't loaded from the deploy directory.
+     */
+    public void precomputeTrajectories() {
+        transits();
+        m_transit.precompute();
+    }
+
+    /** Write the trajectory library, for the deploy directory. */
+    public void saveTrajectories(Path path) throws IOException {
+        transits();
+        m_transit.save(path);
+    }
+
+    /** All the trajectory commands. Add new ones here. */
+    private List<Command> transits() {
+        return List.of(
+                homeToL1(), l1ToHome(),
+                homeToL2(), l2ToHome(),
+                homeToL3(), l3ToHome(),
+                homeToL4(), l4ToHome(),
+                homeToL4Back(), l4BackToHome(),
+                homeToAlgaeL2(), algaeL2ToHome(),
+                homeToAlgaeL3(), algaeL3ToHome(),
+                homeToBarge(), bargeToHome());
+    }
+
     /** Not too far extended in any direction. */
     public boolean isSafeToDrive() {
         double x = m_elevatorBack.getPositionM();
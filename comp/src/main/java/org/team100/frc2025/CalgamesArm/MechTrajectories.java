@@ -1,5 +1,7 @@
 package org.team100.frc2025.CalgamesArm;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,7 +11,8 @@ import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.subsystems.prr.AnalyticalJacobian;
 import org.team100.lib.subsystems.prr.ElevatorArmWristKinematics;
 import org.team100.lib.subsystems.se2.commands.GoToPosePosition;
-import org.team100.lib.trajectory.TrajectoryPlanner;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner;
+import org.team100.lib.trajectory.TrajectoryCache;
 import org.team100.lib.trajectory.path.PathFactory;
 import org.team100.lib.trajectory.timing.ConstantConstraint;
 import org.team100.lib.trajectory.timing.TimingConstraint;
@@ -17,14 +20,30 @@ import org.team100.lib.trajectory.timing.TorqueConstraint;
 import org.team100.lib.trajectory.timing.TrajectoryFactory;
 import org.team100.lib.trajectory.timing.YawRateConstraint;
 
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj2.command.Command;
 
-/** Make a trajectory from the start to the end and follow it. */
+/**
+ * Make a trajectory from the start to the end and follow it.
+ * 
+ * The moves between fixed positions are kept in a trajectory library, which is
+ * written into the deploy files by the mechTrajectories Gradle task (see
+ * MechTrajectoryLibrary) and loaded here, so they don't need to be planned on
+ * the robot.
+ */
 public class MechTrajectories extends Command {
+    private static final boolean DEBUG = false;
+    /** Name of the constraint set, also the library file name. */
+    private static final String NAME = "mech";
+    /** Dynamic moves to remember. */
+    private static final int CAPACITY = 16;
+    /** Starting this close to a library move uses it, meters and radians. */
+    private static final double TOLERANCE = 0.02;
 
     private final LoggerFactory m_log;
     private final CalgamesMech m_subsystem;
-    private final TrajectoryPlanner m_planner;
+    private final TrajectoryCache m_cache;
+    private final AsyncTrajectoryPlanner m_planner;
 
     public MechTrajectories(
             LoggerFactory parent,
@@ -45,16 +64,37 @@ public class MechTrajectories extends Command {
         // The parameters here used to be double these values;
         // These finer grains make smoother paths and schedules but
         // take longer to compute, so if it takes too long, make these
-        // numbers bigger!
+        // numbers bigger! Or enable the AsyncTrajectoryPlanning experiment,
+        // which plans off the main loop.
         TrajectoryFactory trajectoryFactory = new TrajectoryFactory(c);
         PathFactory pathFactory = new PathFactory(0.05, 0.01, 0.01, 0.1);
-        m_planner = new TrajectoryPlanner(pathFactory, trajectoryFactory);
+        m_cache = new TrajectoryCache(NAME, pathFactory, trajectoryFactory, CAPACITY, TOLERANCE);
+        int n = m_cache.load(libraryPath());
+        if (DEBUG)
+            System.out.printf("Loaded %d mech trajectories\n", n);
+        m_planner = new AsyncTrajectoryPlanner(m_log, m_cache);
+    }
+
+    /** Where the library lives. */
+    public static Path libraryPath() {
+        return Filesystem.getDeployDirectory().toPath().resolve("trajectories").resolve(NAME + ".bin");
+    }
+
+    /** Plan the library moves that weren't loaded. */
+    public void precompute() {
+        m_cache.precompute();
+    }
+
+    /** Write the library, planning anything missing. */
+    public void save(Path path) throws IOException {
+        m_cache.save(path);
     }
 
     /** A command that goes from the start to the end and then finishes. */
     public Command terminal(String name, WaypointSE2 start, WaypointSE2 end) {
 
-        /** Use the start course and ignore the start pose for now */
+        /** Use the start course, and the start pose for the library */
+        m_cache.add(GoToPosePosition.waypoints(start.pose(), start.course().toRotation(), end));
         MoveAndHold f = new GoToPosePosition(
                 m_log, m_subsystem, start.course().toRotation(), end, m_planner);
         return f
@@ -65,7 +105,8 @@ public class MechTrajectories extends Command {
     /** A command that goes from the start to the end and then waits forever. */
     public MoveAndHold endless(String name, WaypointSE2 start, WaypointSE2 end) {
 
-        /** Use the start course and ignore the start pose for now */
+        /** Use the start course, and the start pose for the library */
+        m_cache.add(GoToPosePosition.waypoints(start.pose(), start.course().toRotation(), end));
         GoToPosePosition c = new GoToPosePosition(
                 m_log, m_subsystem, start.course().toRotation(), end, m_planner);
         c.setName(name);
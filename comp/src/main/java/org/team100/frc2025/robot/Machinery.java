@@ -9,6 +9,7 @@ import org.team100.frc2025.Climber.ClimberIntake;
 import org.team100.frc2025.Climber.ClimberVisualization;
 import org.team100.frc2025.grip.Manipulator;
 import org.team100.frc2025.indicator.LEDIndicator;
+import org.team100.lib.coherence.Cache;
 import org.team100.lib.coherence.Takt;
 import org.team100.lib.indicator.Beeper;
 import org.team100.lib.localization.AprilTagFieldLayoutWithCorrectOrientation;
@@ -82,10 +83,12 @@ public class Machinery {
         //
         // SUBSYSTEMS
         //
-        m_mech = new CalgamesMech(logger, 0.5, 0.343);
-        m_manipulator = new Manipulator(logger);
-        m_climber = new Climber(logger, new CanId(13));
-        m_climberIntake = new ClimberIntake(logger, new CanId(14));
+        // Each subsystem has its own hardware, so its caches can be refreshed in
+        // parallel with the others; see Cache.inGroup().
+        m_mech = Cache.inGroup("Mech", () -> new CalgamesMech(logger, 0.5, 0.343));
+        m_manipulator = Cache.inGroup("Manipulator", () -> new Manipulator(logger));
+        m_climber = Cache.inGroup("Climber", () -> new Climber(logger, new CanId(13)));
+        m_climberIntake = Cache.inGroup("Climber Intake", () -> new ClimberIntake(logger, new CanId(14)));
 
         ////////////////////////////////////////////////////////////
         //
@@ -99,11 +102,11 @@ public class Machinery {
         //
         // POSE ESTIMATION
         //
-        m_modules = SwerveModuleCollection.get(
+        m_modules = Cache.inGroup("Swerve Modules", () -> SwerveModuleCollection.get(
                 driveLog,
                 DRIVE_SUPPLY_LIMIT,
                 DRIVE_STATOR_LIMIT,
-                m_swerveKinodynamics);
+                m_swerveKinodynamics));
         final Gyro gyro = GyroFactory.get(
                 driveLog,
                 m_swerveKinodynamics,
@@ -119,7 +122,7 @@ public class Machinery {
                 m_swerveKinodynamics, gyro, history, m_modules::positions);
         odometryUpdater.reset(Pose2d.kZero);
         final NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(
-                history, odometryUpdater);
+                driveLog, history, odometryUpdater);
 
         ////////////////////////////////////////////////////////////
         //
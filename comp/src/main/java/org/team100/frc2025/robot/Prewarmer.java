@@ -47,6 +47,9 @@ public class Prewarmer {
         TrajectoryPlanner planner = new TrajectoryPlanner(pathFactory, trajectoryFactory);
         planner.restToRest(waypoints);
 
+        // Plan the mechanism moves that weren't in the deploy directory.
+        machinery.m_mech.precomputeTrajectories();
+
         // Exercise the drive motors.
         machinery.m_drive.setVelocity(new VelocitySE2(0, 0, 0));
 
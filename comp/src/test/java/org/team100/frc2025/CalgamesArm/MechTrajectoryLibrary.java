@@ -0,0 +1,33 @@
+package org.team100.frc2025.CalgamesArm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.team100.frc2025.Timeless2025;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+/**
+ * Writes the mechanism trajectory library into the generated deploy files.
+ * 
+ * This isn't a test, it's run by the mechTrajectories Gradle task, which the
+ * deploy depends on, and which sets the output path. It's skipped in the
+ * normal tests. It's a test class because planning needs the WPILib
+ * natives, which the test tasks provide.
+ */
+public class MechTrajectoryLibrary implements Timeless2025 {
+    /** The output path, set by the Gradle task. */
+    private static final String PROPERTY = "mechTrajectories";
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @Test
+    @EnabledIfSystemProperty(named = PROPERTY, matches = ".+")
+    void write() throws IOException {
+        // Same dimensions as Machinery.
+        CalgamesMech mech = new CalgamesMech(log, 0.5, 0.343);
+        mech.saveTrajectories(Path.of(System.getProperty(PROPERTY)));
+    }
+}
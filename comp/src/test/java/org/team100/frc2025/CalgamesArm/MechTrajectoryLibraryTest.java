@@ -0,0 +1,41 @@
+package org.team100.frc2025.CalgamesArm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.team100.frc2025.Timeless2025;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+/**
+ * The mechanism trajectory library can be written, and it's deterministic, so
+ * the generated deploy file only changes when the moves or the constraints do.
+ */
+public class MechTrajectoryLibraryTest implements Timeless2025 {
+    private static final boolean DEBUG = false;
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWrite() throws IOException {
+        // Same dimensions as Machinery.
+        CalgamesMech mech = new CalgamesMech(log, 0.5, 0.343);
+        Path a = dir.resolve("a.bin");
+        Path b = dir.resolve("b.bin");
+        mech.saveTrajectories(a);
+        mech.saveTrajectories(b);
+        assertTrue(Files.size(a) > 0);
+        assertArrayEquals(Files.readAllBytes(a), Files.readAllBytes(b));
+        if (DEBUG)
+            System.out.printf("%s %d bytes\n", a, Files.size(a));
+    }
+}
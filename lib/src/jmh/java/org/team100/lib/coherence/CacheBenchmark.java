@@ -0,0 +1,73 @@
+package org.team100.lib.coherence;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Cost of the cache refresh, for a realistic number of trivial suppliers, so
+ * this measures the overhead of the cache itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    @Param({ "10", "100" })
+    int size;
+
+    private ObjectCache<Pose2d> m_object;
+    private DoubleCache m_double;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HAL.initialize(500, 0);
+        Cache.clear();
+        double[] x = new double[1];
+        for (int i = 0; i < size; ++i) {
+            m_object = Cache.of(() -> new Pose2d(x[0]++, 0, Rotation2d.kZero));
+            m_double = Cache.ofDouble(() -> x[0]++);
+            Cache.ofSideEffect(() -> x[0]++);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        Cache.clear();
+        HAL.shutdown();
+    }
+
+    @Benchmark
+    public void refresh() {
+        Cache.refresh();
+    }
+
+    /** This is the "synchronized adds ~20ns" claim. */
+    @Benchmark
+    public Pose2d objectGet() {
+        return m_object.get();
+    }
+
+    @Benchmark
+    public double doubleGet() {
+        return m_double.getAsDouble();
+    }
+}
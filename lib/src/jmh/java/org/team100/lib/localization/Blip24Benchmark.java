@@ -0,0 +1,78 @@
+package org.team100.lib.localization;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.util.struct.StructBuffer;
+
+/**
+ * Decoding a camera frame, as CameraReader does, from the raw bytes of an NT
+ * struct-array value. For the whole per-event path, see CameraReaderBenchmark.
+ * To see the allocation rate, run with the GC profiler:
+ * 
+ * <pre>
+ * ./gradlew jmh -Pjmh.include=Blip24 -Pjmh.prof=gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Blip24Benchmark {
+    /** A busy frame. */
+    private static final int TAGS = 4;
+
+    private StructBuffer<Blip24> m_buf;
+    private byte[] m_bytes;
+    private Blip24Reader m_reader;
+
+    @Setup
+    public void setup() {
+        m_buf = StructBuffer.create(Blip24.struct);
+        Blip24[] blips = new Blip24[TAGS];
+        for (int i = 0; i < TAGS; ++i) {
+            blips[i] = new Blip24(i + 1, new Transform3d(
+                    new Translation3d(0.1 * i, 0.2, 2.0),
+                    new Rotation3d(0.1, 0.2, 0.3)));
+        }
+        ByteBuffer bb = ByteBuffer.allocate(TAGS * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (Blip24 blip : blips) {
+            Blip24.struct.pack(bb, blip);
+        }
+        m_bytes = bb.array();
+        m_reader = new Blip24Reader();
+    }
+
+    @Benchmark
+    public Blip24[] readArray() {
+        return m_buf.readArray(m_bytes);
+    }
+
+    @Benchmark
+    public int reader() {
+        m_reader.read(m_bytes);
+        int sum = 0;
+        for (int i = 0; i < m_reader.count(); ++i) {
+            sum += m_reader.id(i);
+        }
+        return sum;
+    }
+}
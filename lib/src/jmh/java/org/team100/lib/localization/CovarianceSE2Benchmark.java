@@ -0,0 +1,46 @@
+package org.team100.lib.localization;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-entry cost of the KalmanVision experiment: one propagation for each
+ * odometry update (and each replayed entry), and one update for each vision
+ * measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CovarianceSE2Benchmark {
+    private CovarianceSE2 m_covariance;
+    private double[] m_gain;
+
+    @Setup
+    public void setup() {
+        m_covariance = CovarianceSE2.INITIAL.propagate(0.1, 0.05, 0.02);
+        m_gain = new double[4];
+    }
+
+    @Benchmark
+    public CovarianceSE2 propagate() {
+        return m_covariance.propagate(0.1, 0.05, 0.02);
+    }
+
+    @Benchmark
+    public CovarianceSE2 update() {
+        return m_covariance.update(0.0025, 0.0025, m_gain);
+    }
+}
@@ -0,0 +1,107 @@
+package org.team100.lib.localization;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.sensor.gyro.MockGyro;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModulePosition100;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModulePositions;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * One solve of the whole 0.2 s history window, at 50 Hz and 250 Hz odometry,
+ * with two tags from each of five cameras, every 20 ms, which is the worst
+ * realistic case. The budget is a few milliseconds.
+ *
+ * "graph" is just the PoseGraph solve, without reading and writing the
+ * history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedLagSmootherBenchmark {
+    private static final int CAMERAS = 5;
+    private static final int TAGS = 2;
+    private static final double DELAY = 0.075;
+
+    @Param({ "50", "250" })
+    public int hz;
+
+    private FixedLagSmoother m_smoother;
+    private PoseGraph m_graph;
+    private SwerveModulePositions m_positions;
+
+    @Setup
+    public void setup() {
+        LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forRealisticTest(log);
+        m_positions = positions(0);
+        SwerveHistory history = new SwerveHistory(
+                log, kinodynamics, Rotation2d.kZero, m_positions, Pose2d.kZero, 0);
+        OdometryUpdater ou = new OdometryUpdater(kinodynamics, new MockGyro(), history, () -> m_positions);
+        ou.reset(Pose2d.kZero, 0);
+        m_smoother = new FixedLagSmoother(history, kinodynamics.getKinematics());
+        double dt = 1.0 / hz;
+        // a second of driving at 2 m/s, odometry 5% long
+        for (double t = dt; t <= 1.0 + 1e-9; t += dt) {
+            m_positions = positions(1.05 * 2 * t);
+            ou.update(t);
+            // vision every 20 ms
+            if (Math.round(t / dt) % (hz / 50) == 0 && t > DELAY) {
+                double timestampS = t - DELAY;
+                for (int i = 0; i < CAMERAS * TAGS; ++i) {
+                    Pose2d measurement = new Pose2d(2 * timestampS + 0.01 * i, 0.01 * i, Rotation2d.kZero);
+                    m_smoother.add(timestampS, measurement, new double[] { 0.05, 0.05 });
+                }
+                m_smoother.solve();
+            }
+        }
+        // the same shape of problem, on its own
+        m_graph = new PoseGraph(256, 256);
+        int nodes = history.size();
+        for (int i = 0; i < nodes; ++i) {
+            m_graph.addNode(2.0 * i / hz, 0, 0);
+            if (i > 0)
+                m_graph.setOdometry(i - 1, 1.05 * 2.0 / hz, 0, 0);
+        }
+        for (int j = 0; j < m_smoother.size(); ++j) {
+            m_graph.addPosition((j * 7) % nodes, 2.0 * ((j * 7) % nodes) / hz, 0, 0.05);
+        }
+    }
+
+    @Benchmark
+    public int solve() {
+        return m_smoother.solve();
+    }
+
+    @Benchmark
+    public double graph() {
+        return m_graph.solve(2);
+    }
+
+    private static SwerveModulePositions positions(double distanceM) {
+        SwerveModulePosition100 p = new SwerveModulePosition100(distanceM, Optional.of(Rotation2d.kZero));
+        return new SwerveModulePositions(p, p, p, p);
+    }
+}
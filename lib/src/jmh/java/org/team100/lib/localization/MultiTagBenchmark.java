@@ -0,0 +1,134 @@
+package org.team100.lib.localization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.config.Camera;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.state.ModelSE2;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+/**
+ * One cycle of camera input, per-tag vs. multi-tag, using the frames
+ * SimulatedTagDetector would publish for the simulated cameras, with the robot
+ * in front of the blue reef.
+ * 
+ * The VisionUpdater here just counts; in the real estimator, each put() is a
+ * history replay (or, with BatchVisionReplay, at least a history write), so
+ * see the "puts" in the setup output for the other half of the savings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiTagBenchmark {
+    private static final List<Camera> CAMERAS = List.of(
+            Camera.SWERVE_LEFT,
+            Camera.SWERVE_RIGHT,
+            Camera.FUNNEL,
+            Camera.CORAL_LEFT,
+            Camera.CORAL_RIGHT);
+    private static final Pose2d ROBOT = new Pose2d(2.8, 4.0, Rotation2d.kZero);
+    private static final Optional<Alliance> ALLIANCE = Optional.of(Alliance.Blue);
+    private static final double TIMESTAMP = 1.0;
+
+    private AprilTagRobotLocalizer m_localizer;
+    private List<Transform3d> m_offsets;
+    private List<Blip24[]> m_frames;
+    private int m_puts;
+
+    @Setup
+    public void setup() throws IOException {
+        LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        m_localizer = new AprilTagRobotLocalizer(
+                log, log, layout, t -> new ModelSE2(ROBOT),
+                new VisionUpdater() {
+                    @Override
+                    public void put(double t, Pose2d p, double[] sd1, double[] sd2) {
+                        m_puts++;
+                    }
+                });
+        // the same as SimulatedTagDetector.periodic()
+        m_offsets = new ArrayList<>();
+        m_frames = new ArrayList<>();
+        int tags = 0;
+        Pose3d robotPose3d = new Pose3d(ROBOT);
+        for (Camera camera : CAMERAS) {
+            Transform3d offset = camera.getOffset();
+            Pose3d cameraPose3d = robotPose3d.plus(offset);
+            List<Blip24> blips = new ArrayList<>();
+            for (int tagId = 1; tagId <= 22; ++tagId) {
+                Pose3d tagPose = layout.getTagPose(ALLIANCE.get(), tagId).get();
+                Transform3d tagInCamera = SimulatedTagDetector.tagInCamera(cameraPose3d, tagPose);
+                if (SimulatedTagDetector.visible(tagInCamera))
+                    blips.add(Blip24.fromXForward(tagId, tagInCamera));
+            }
+            m_offsets.add(offset);
+            m_frames.add(blips.toArray(new Blip24[0]));
+            tags += blips.size();
+        }
+        m_localizer.setHeedRadiusM(10);
+        // count the puts in one cycle of each
+        perTag();
+        m_puts = 0;
+        perTag();
+        int perTagPuts = m_puts;
+        multiTag();
+        m_puts = 0;
+        multiTag();
+        System.out.printf("\ncameras %d tags %d puts per-tag %d multi-tag %d\n",
+                CAMERAS.size(), tags, perTagPuts, m_puts);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Experiments.instance.testOverride(Experiment.MultiTagVision, false);
+    }
+
+    @Benchmark
+    public int perTag() {
+        Experiments.instance.testOverride(Experiment.MultiTagVision, false);
+        return cycle();
+    }
+
+    @Benchmark
+    public int multiTag() {
+        Experiments.instance.testOverride(Experiment.MultiTagVision, true);
+        return cycle();
+    }
+
+    /** All the cameras, then the end of the update. */
+    private int cycle() {
+        for (int i = 0; i < m_frames.size(); ++i) {
+            m_localizer.estimateRobotPose(m_offsets.get(i), m_frames.get(i), TIMESTAMP, ALLIANCE);
+        }
+        m_localizer.flushFrame();
+        return m_puts;
+    }
+}
@@ -0,0 +1,82 @@
+package org.team100.lib.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.Pose2dLogger;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Overhead of the logger tree, with a primitive logger that does nothing, so
+ * this measures the level check, the supplier, and the decomposition of
+ * composite types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerFactoryBenchmark {
+    private DoubleLogger m_enabled;
+    private DoubleLogger m_disabled;
+    private Pose2dLogger m_pose;
+    private double m_value;
+    private Pose2d m_poseValue;
+
+    @Setup
+    public void setup() {
+        LoggerFactory log = new LoggerFactory(
+                () -> Level.DEBUG, "bench", new TestPrimitiveLogger());
+        m_enabled = log.doubleLogger(Level.DEBUG, "enabled");
+        m_disabled = log.doubleLogger(Level.TRACE, "disabled");
+        m_pose = log.pose2dLogger(Level.DEBUG, "pose");
+        m_value = 1.0;
+        m_poseValue = new Pose2d(1, 2, Rotation2d.kCCW_Pi_2);
+    }
+
+    @Benchmark
+    public void doubleEnabled() {
+        m_enabled.log(() -> m_value);
+    }
+
+    /** Filtered out by the level check. */
+    @Benchmark
+    public void doubleDisabled() {
+        m_disabled.log(() -> m_value);
+    }
+
+    @Benchmark
+    public void pose() {
+        m_pose.log(() -> m_poseValue);
+    }
+
+    /** The value forms don't need a supplier at all. */
+    @Benchmark
+    public void doubleValue() {
+        m_enabled.log(m_value);
+    }
+
+    @Benchmark
+    public void doubleValueDisabled() {
+        m_disabled.log(m_value);
+    }
+
+    @Benchmark
+    public void poseValue() {
+        m_pose.log(m_poseValue);
+    }
+}
@@ -0,0 +1,125 @@
+package org.team100.lib.network;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.localization.Blip24;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.util.struct.StructBuffer;
+
+/**
+ * One cycle of CameraReader.update(), with a synthetic stream of events from
+ * five cameras, fed through the same per-event path as the network input.
+ * 
+ * RawTags decodes the raw bytes with Blip24Reader; the "struct" case uses the
+ * default, which makes Blip24s with StructBuffer. To see the allocation rate,
+ * run with the GC profiler:
+ * 
+ * <pre>
+ * ./gradlew jmh -Pjmh.include=CameraReader -Pjmh.prof=gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CameraReaderBenchmark {
+    /** A busy frame. */
+    private static final int TAGS = 4;
+    /** Cameras in the synthetic event stream. */
+    private static final int CAMERAS = 5;
+
+    /** Decoded with StructBuffer. */
+    private static class StructTags extends CameraReader<Blip24> {
+        double m_sum;
+
+        StructTags(LoggerFactory log) {
+            super(log, "vision", "blips", StructBuffer.create(Blip24.struct));
+        }
+
+        @Override
+        protected void perValue(Transform3d cameraOffset, double valueTimestamp, Blip24[] value) {
+            for (Blip24 b : value) {
+                m_sum += b.blipToTransform().getX();
+            }
+        }
+    }
+
+    private RawTags m_raw;
+    private StructTags m_struct;
+    private double m_sum;
+
+    private int[] m_topics;
+    private String[] m_names;
+    private byte[][] m_values;
+    private long[] m_timesUs;
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+        m_raw = new RawTags(log, (t, s) -> m_sum += t.getX());
+        m_struct = new StructTags(log);
+
+        ByteBuffer bb = ByteBuffer.allocate(TAGS * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < TAGS; ++i) {
+            Blip24.struct.pack(bb, new Blip24(i + 1, new Transform3d(
+                    new Translation3d(0.1 * i, 0.2, 2.0),
+                    new Rotation3d(0.1, 0.2, 0.3))));
+        }
+        byte[] bytes = bb.array();
+
+        m_topics = new int[CAMERAS];
+        m_names = new String[CAMERAS];
+        m_values = new byte[CAMERAS][];
+        m_timesUs = new long[CAMERAS];
+        for (int i = 0; i < CAMERAS; ++i) {
+            // handles look like this
+            m_topics[i] = 0x01000000 + i;
+            m_names[i] = "vision/camera" + i + "/0/blips";
+            // each camera sees some of the tags
+            m_values[i] = Arrays.copyOf(bytes, (1 + i % TAGS) * Blip24.struct.getSize());
+            m_timesUs[i] = 1000000;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        HAL.shutdown();
+    }
+
+    @Benchmark
+    public double raw() {
+        m_raw.update(m_topics, m_names, m_values, m_timesUs);
+        return m_sum;
+    }
+
+    @Benchmark
+    public double struct() {
+        m_struct.update(m_topics, m_names, m_values, m_timesUs);
+        return m_struct.m_sum;
+    }
+}
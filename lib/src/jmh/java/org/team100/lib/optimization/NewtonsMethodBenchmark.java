@@ -0,0 +1,134 @@
+package org.team100.lib.optimization;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.geometry.GeometryUtil;
+import org.team100.lib.kinematics.urdf.URDFAL5D;
+import org.team100.lib.subsystems.lynxmotion_arm.LynxArmConfig;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.numbers.N2;
+import edu.wpi.first.math.numbers.N5;
+import edu.wpi.first.math.numbers.N6;
+
+/**
+ * Newton on a small nonlinear system (intersection of a circle and a
+ * parabola) and on the Lynxmotion arm IK, comparing solve2() with
+ * solveInPlace() using the numerical, analytic, and Broyden Jacobians.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NewtonsMethodBenchmark {
+    private NewtonsMethod<N2, N2> m_solver;
+    private NewtonsMethod<N2, N2> m_analytic;
+    private NewtonsMethod<N2, N2> m_broyden;
+    private Vector<N2> m_q0;
+    private Vector<N2> m_q;
+
+    private NewtonsMethod<N5, N6> m_lynx;
+    private NewtonsMethod<N5, N6> m_lynxBroyden;
+    private Vector<N5> m_lynxQ0;
+    private Vector<N5> m_lynxQ;
+
+    @Setup
+    public void setup() {
+        Function<Vector<N2>, Vector<N2>> f = q -> VecBuilder.fill(
+                q.get(0) * q.get(0) + q.get(1) * q.get(1) - 4,
+                q.get(1) - q.get(0) * q.get(0));
+        NewtonsMethod.Jacobian<N2, N2> j = (q, m) -> {
+            m.set(0, 0, 2 * q.get(0));
+            m.set(0, 1, 2 * q.get(1));
+            m.set(1, 0, -2 * q.get(0));
+            m.set(1, 1, 1);
+        };
+        Vector<N2> min = VecBuilder.fill(-10, -10);
+        Vector<N2> max = VecBuilder.fill(10, 10);
+        m_solver = new NewtonsMethod<>(Nat.N2(), Nat.N2(), f, min, max, 1e-6, 20, 1);
+        m_analytic = new NewtonsMethod<>(Nat.N2(), Nat.N2(), f, j, false, min, max, 1e-6, 20, 1);
+        m_broyden = new NewtonsMethod<>(Nat.N2(), Nat.N2(), f, null, true, min, max, 1e-6, 20, 1);
+        m_q0 = VecBuilder.fill(1, 1);
+        m_q = VecBuilder.fill(1, 1);
+
+        // same as URDFRobot.inverse()
+        URDFAL5D arm = URDFAL5D.make();
+        Pose3d goal = arm.forward(arm.qMap(
+                new LynxArmConfig(0.1, -1.5, 1.5, 1.0, 0.1).toVec())).get("center_point");
+        Function<Vector<N5>, Vector<N6>> err = q -> GeometryUtil.toVec(
+                goal.log(arm.forward(arm.qMap(q)).get("center_point")));
+        m_lynx = new NewtonsMethod<>(Nat.N5(), Nat.N6(), err,
+                arm.minQ(Nat.N5()), arm.maxQ(Nat.N5()), 2e-3, 8, 1);
+        m_lynxBroyden = new NewtonsMethod<>(Nat.N5(), Nat.N6(), err, null, true,
+                arm.minQ(Nat.N5()), arm.maxQ(Nat.N5()), 2e-3, 8, 1);
+        m_lynxQ0 = new LynxArmConfig(0, -1.4, 1.4, 1.1, 0).toVec();
+        m_lynxQ = new Vector<>(Nat.N5());
+    }
+
+    @Benchmark
+    public Vector<N2> solve2() {
+        return m_solver.solve2(m_q0, 1, true);
+    }
+
+    @Benchmark
+    public Vector<N2> solveInPlace() {
+        reset(m_q, m_q0);
+        m_solver.solveInPlace(m_q, 1, true);
+        return m_q;
+    }
+
+    @Benchmark
+    public Vector<N2> solveInPlaceAnalytic() {
+        reset(m_q, m_q0);
+        m_analytic.solveInPlace(m_q, 1, true);
+        return m_q;
+    }
+
+    @Benchmark
+    public Vector<N2> solveInPlaceBroyden() {
+        reset(m_q, m_q0);
+        m_broyden.solveInPlace(m_q, 1, true);
+        return m_q;
+    }
+
+    @Benchmark
+    public Vector<N5> lynxSolve2() {
+        return m_lynx.solve2(m_lynxQ0, 3, true);
+    }
+
+    @Benchmark
+    public Vector<N5> lynxSolveInPlace() {
+        reset(m_lynxQ, m_lynxQ0);
+        m_lynx.solveInPlace(m_lynxQ, 3, true);
+        return m_lynxQ;
+    }
+
+    @Benchmark
+    public Vector<N5> lynxSolveInPlaceBroyden() {
+        reset(m_lynxQ, m_lynxQ0);
+        m_lynxBroyden.solveInPlace(m_lynxQ, 3, true);
+        return m_lynxQ;
+    }
+
+    private static void reset(Vector<?> x, Vector<?> x0) {
+        for (int i = 0; i < x.getNumRows(); ++i) {
+            x.set(i, 0, x0.get(i));
+        }
+    }
+}
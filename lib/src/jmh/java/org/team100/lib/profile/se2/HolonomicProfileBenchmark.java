@@ -0,0 +1,121 @@
+package org.team100.lib.profile.se2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.geometry.VelocitySE2;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.profile.r1.IncrementalProfile;
+import org.team100.lib.state.Control100;
+import org.team100.lib.state.Model100;
+import org.team100.lib.state.ModelSE2;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Coordinating the axes, for a typical drive-to-pose with some initial
+ * velocity.
+ * 
+ * The "simulated" variants hide the closed-form ETA, so they show the cost of
+ * the old simulation approach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HolonomicProfileBenchmark {
+    private HolonomicProfile m_trapezoid;
+    private HolonomicProfile m_exponential;
+    private HolonomicProfile m_wpi;
+    private HolonomicProfile m_trapezoidSimulated;
+    private HolonomicProfile m_exponentialSimulated;
+    private HolonomicProfile m_wpiSimulated;
+    private ModelSE2 m_initial;
+    private ModelSE2 m_goal;
+
+    @Setup
+    public void setup() {
+        m_trapezoid = HolonomicProfileFactory.trapezoidal(
+                new TestLoggerFactory(new TestPrimitiveLogger()), 5, 10, 0.05, 10, 20, 0.1);
+        m_exponential = HolonomicProfileFactory.currentLimitedExponential(5, 10, 20, 10, 20, 40);
+        m_wpi = HolonomicProfileFactory.wpi(5, 10, 10, 20);
+        m_trapezoidSimulated = simulated(m_trapezoid);
+        m_exponentialSimulated = simulated(m_exponential);
+        m_wpiSimulated = simulated(m_wpi);
+        m_initial = new ModelSE2(new Pose2d(0, 0, Rotation2d.kZero), new VelocitySE2(1, 0, 0));
+        m_goal = new ModelSE2(new Pose2d(3, 2, Rotation2d.kCCW_Pi_2));
+    }
+
+    @Benchmark
+    public HolonomicProfile trapezoid() {
+        m_trapezoid.solve(m_initial, m_goal);
+        return m_trapezoid;
+    }
+
+    @Benchmark
+    public HolonomicProfile exponential() {
+        m_exponential.solve(m_initial, m_goal);
+        return m_exponential;
+    }
+
+    @Benchmark
+    public HolonomicProfile wpi() {
+        m_wpi.solve(m_initial, m_goal);
+        return m_wpi;
+    }
+
+    @Benchmark
+    public HolonomicProfile trapezoidSimulated() {
+        m_trapezoidSimulated.solve(m_initial, m_goal);
+        return m_trapezoidSimulated;
+    }
+
+    @Benchmark
+    public HolonomicProfile exponentialSimulated() {
+        m_exponentialSimulated.solve(m_initial, m_goal);
+        return m_exponentialSimulated;
+    }
+
+    @Benchmark
+    public HolonomicProfile wpiSimulated() {
+        m_wpiSimulated.solve(m_initial, m_goal);
+        return m_wpiSimulated;
+    }
+
+    private static HolonomicProfile simulated(HolonomicProfile p) {
+        return new HolonomicProfile(
+                new Simulated(p.ppx), new Simulated(p.ppy), new Simulated(p.pptheta));
+    }
+
+    /** Hides everything but calculate() and scale(), so ETA is simulated. */
+    private static class Simulated implements IncrementalProfile {
+        private final IncrementalProfile m_delegate;
+
+        Simulated(IncrementalProfile delegate) {
+            m_delegate = delegate;
+        }
+
+        @Override
+        public Control100 calculate(double dt, Control100 setpoint, Model100 goal) {
+            return m_delegate.calculate(dt, setpoint, goal);
+        }
+
+        @Override
+        public IncrementalProfile scale(double s) {
+            return new Simulated(m_delegate.scale(s));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.team100.lib.subsystems.swerve.kinodynamics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ejml.simple.SimpleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleState100;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStates;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStatesBuffer;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Inverse and forward kinematics for a square four-module drive: the scalar
+ * versions, the allocation-free buffer versions, and the SimpleMatrix products
+ * they replaced, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwerveDriveKinematicsBenchmark {
+    private SwerveDriveKinematics100 m_kinematics;
+    private DiscreteSpeed m_speed;
+    private SwerveModuleStates m_states;
+    private SwerveModuleStatesBuffer m_buffer;
+    private double[] m_speeds;
+
+    @Setup
+    public void setup() {
+        m_kinematics = new SwerveDriveKinematics100(
+                new Translation2d(0.25, 0.25),
+                new Translation2d(0.25, -0.25),
+                new Translation2d(-0.25, 0.25),
+                new Translation2d(-0.25, -0.25));
+        m_speed = new DiscreteSpeed(new Twist2d(0.02, 0.01, 0.005), 0.02);
+        m_states = m_kinematics.toSwerveModuleStates(m_speed);
+        m_buffer = new SwerveModuleStatesBuffer();
+        m_buffer.set(m_states);
+        m_speeds = new double[3];
+    }
+
+    @Benchmark
+    public SwerveModuleStates toSwerveModuleStates() {
+        return m_kinematics.toSwerveModuleStates(m_speed);
+    }
+
+    @Benchmark
+    public ChassisSpeeds toChassisSpeeds() {
+        return m_kinematics.toChassisSpeeds(m_states);
+    }
+
+    @Benchmark
+    public SwerveModuleStatesBuffer toSwerveModuleStatesBuffer() {
+        m_kinematics.toSwerveModuleStates(m_speed, m_buffer);
+        return m_buffer;
+    }
+
+    @Benchmark
+    public double[] toChassisSpeedsBuffer() {
+        m_kinematics.toChassisSpeeds(m_buffer, m_speeds);
+        return m_speeds;
+    }
+
+    /** The old inverse kinematics. */
+    @Benchmark
+    public SwerveModuleStates toSwerveModuleStatesMatrix() {
+        SimpleMatrix v = new SimpleMatrix(3, 1);
+        v.setColumn(0, 0,
+                m_speed.twist().dx / m_speed.dt(),
+                m_speed.twist().dy / m_speed.dt(),
+                m_speed.twist().dtheta / m_speed.dt());
+        SimpleMatrix m = m_kinematics.m_inverseKinematics.mult(v);
+        return new SwerveModuleStates(
+                SwerveModuleState100.fromSpeed(m.get(0, 0), m.get(1, 0)),
+                SwerveModuleState100.fromSpeed(m.get(2, 0), m.get(3, 0)),
+                SwerveModuleState100.fromSpeed(m.get(4, 0), m.get(5, 0)),
+                SwerveModuleState100.fromSpeed(m.get(6, 0), m.get(7, 0)));
+    }
+
+    /** The old forward kinematics. */
+    @Benchmark
+    public ChassisSpeeds toChassisSpeedsMatrix() {
+        SwerveModuleState100[] all = m_states.all();
+        SimpleMatrix v = new SimpleMatrix(8, 1);
+        for (int i = 0; i < 4; i++) {
+            SwerveModuleState100 module = all[i];
+            if (Math.abs(module.speedMetersPerSecond()) < 1e-6 || module.angle().isEmpty())
+                continue;
+            v.set(i * 2, 0, module.speedMetersPerSecond() * module.angle().get().getCos());
+            v.set(i * 2 + 1, 0, module.speedMetersPerSecond() * module.angle().get().getSin());
+        }
+        SimpleMatrix c = m_kinematics.m_forwardKinematics.mult(v);
+        return new ChassisSpeeds(c.get(0, 0), c.get(1, 0), c.get(2, 0));
+    }
+}
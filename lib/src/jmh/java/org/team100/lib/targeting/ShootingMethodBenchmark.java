@@ -0,0 +1,82 @@
+package org.team100.lib.targeting;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.geometry.GlobalVelocityR2;
+import org.team100.lib.optimization.NewtonsMethod;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.numbers.N2;
+
+/**
+ * The shooting method for a moving robot, as is, and with the shooting
+ * function solved by NewtonsMethod.solveInPlace(), with and without Broyden.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShootingMethodBenchmark {
+    private static final Translation2d ROBOT = new Translation2d();
+    private static final GlobalVelocityR2 ROBOT_V = new GlobalVelocityR2(1, 0.5);
+    private static final Translation2d TARGET = new Translation2d(2, 1);
+
+    private ShootingMethod m_method;
+    private NewtonsMethod<N2, N2> m_solver;
+    private NewtonsMethod<N2, N2> m_broyden;
+    private Vector<N2> m_x;
+
+    @Setup
+    public void setup() {
+        Range range = new Range(new Drag(0.5, 0.025, 0.1, 0.1, 0.1), 10, 0);
+        m_method = new ShootingMethod(range, 0.0001);
+        // same as ShootingMethod.solve()
+        Function<Vector<N2>, Vector<N2>> f = m_method.fn(
+                TARGET.minus(ROBOT), GlobalVelocityR2.ZERO.minus(ROBOT_V));
+        Vector<N2> xMin = VecBuilder.fill(-Math.PI, 0);
+        Vector<N2> xMax = VecBuilder.fill(Math.PI, Math.PI / 2);
+        m_solver = new NewtonsMethod<>(Nat.N2(), Nat.N2(), f, null, false,
+                xMin, xMax, 0.0001, 10, 0.1);
+        m_broyden = new NewtonsMethod<>(Nat.N2(), Nat.N2(), f, null, true,
+                xMin, xMax, 0.0001, 10, 0.1);
+        m_x = new Vector<>(Nat.N2());
+    }
+
+    @Benchmark
+    public Optional<ShootingMethod.Solution> solve() {
+        return m_method.solve(ROBOT, ROBOT_V, TARGET, GlobalVelocityR2.ZERO);
+    }
+
+    @Benchmark
+    public Vector<N2> solveInPlace() {
+        m_x.set(0, 0, 0);
+        m_x.set(1, 0, 0);
+        m_solver.solveInPlace(m_x, 3, false);
+        return m_x;
+    }
+
+    @Benchmark
+    public Vector<N2> solveInPlaceBroyden() {
+        m_x.set(0, 0, 0);
+        m_x.set(1, 0, 0);
+        m_broyden.solveInPlace(m_x, 3, false);
+        return m_x;
+    }
+}
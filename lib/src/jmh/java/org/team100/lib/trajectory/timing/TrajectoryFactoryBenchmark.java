@@ -0,0 +1,102 @@
+package org.team100.lib.trajectory.timing;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.geometry.DirectionSE2;
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.path.Path100;
+import org.team100.lib.trajectory.path.PathFactory;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Scheduling of a typical auto path, with the usual swerve constraints. The
+ * path is computed once; this measures only the scheduler.
+ *
+ * The long path is finely sampled, so its velocity constraints are evaluated
+ * in parallel, if there are enough cores.
+ *
+ * The toppra cases use ToppraTrajectoryFactory, with the same constraints.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrajectoryFactoryBenchmark {
+    private TrajectoryFactory m_factory;
+    private TrajectoryFactory m_toppra;
+    private PathPoint[] m_samples;
+    private TrajectoryFactory m_allGood;
+    private TrajectoryFactory m_allGoodToppra;
+    private Path100 m_longPath;
+
+    @Setup
+    public void setup() {
+        HAL.initialize(500, 0);
+        LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forRealisticTest(log);
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(log);
+        m_factory = new TrajectoryFactory(constraints);
+        m_toppra = new ToppraTrajectoryFactory(constraints);
+        List<WaypointSE2> waypoints = List.of(
+                new WaypointSE2(new Pose2d(0, 0, Rotation2d.kZero),
+                        new DirectionSE2(1, 0, 0), 1.2),
+                new WaypointSE2(new Pose2d(5, 3, Rotation2d.kCCW_Pi_2),
+                        new DirectionSE2(0, 1, 0), 1.2));
+        m_samples = new PathFactory().fromWaypoints(waypoints).resample();
+        List<TimingConstraint> allGood = new TimingConstraintFactory(limits).allGood(log);
+        m_allGood = new TrajectoryFactory(allGood);
+        m_allGoodToppra = new ToppraTrajectoryFactory(allGood);
+        m_longPath = new PathFactory(0.005, 0.001, 0.001, 0.01).fromWaypoints(List.of(
+                WaypointSE2.irrotational(new Pose2d(0, 0, Rotation2d.kZero), 0, 1.2),
+                WaypointSE2.irrotational(new Pose2d(8, 4, new Rotation2d(1)), Math.PI / 2, 1.2)));
+    }
+
+    @TearDown
+    public void teardown() {
+        HAL.shutdown();
+    }
+
+    @Benchmark
+    public Trajectory100 fromSamples() {
+        return m_factory.fromSamples(m_samples, 0, 0);
+    }
+
+    @Benchmark
+    public Trajectory100 toppraFromSamples() {
+        return m_toppra.fromSamples(m_samples, 0, 0);
+    }
+
+    @Benchmark
+    public Trajectory100 longPath() {
+        return m_allGood.fromPath(m_longPath, 0, 0);
+    }
+
+    @Benchmark
+    public Trajectory100 toppraLongPath() {
+        return m_allGoodToppra.fromPath(m_longPath, 0, 0);
+    }
+}
@@ -0,0 +1,115 @@
+package org.team100.lib.util;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.team100.lib.geometry.CentroidR2;
+import org.team100.lib.geometry.NearR2;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * CoalescingCollection vs CoalescingGrid, as Targets uses them, at 5000 sights
+ * per second: each cycle is 20 ms of 100 sights, of twenty objects with noise,
+ * and some clutter, in steady state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoalescingBenchmark {
+    private static final double HISTORY = 1.0;
+    private static final double THRESHOLD = 0.15;
+    private static final double DT = 0.02;
+    private static final int OBJECTS = 20;
+    private static final int SIGHTS = 100;
+    /** Enough cycles of sights that reuse doesn't matter. */
+    private static final int CYCLES = 256;
+
+    private Translation2d[][] m_sights;
+    private CoalescingCollection<Translation2d> m_brute;
+    private CoalescingGrid m_grid;
+    private double m_time;
+    private int m_cycle;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Random random = new Random(0);
+        Translation2d[] truth = new Translation2d[OBJECTS];
+        for (int i = 0; i < OBJECTS; ++i) {
+            truth[i] = new Translation2d(16 * random.nextDouble(), 8 * random.nextDouble());
+        }
+        m_sights = new Translation2d[CYCLES][SIGHTS];
+        int k = 0;
+        for (int c = 0; c < CYCLES; ++c) {
+            for (int s = 0; s < SIGHTS; ++s) {
+                if (s % 10 == 0) {
+                    m_sights[c][s] = new Translation2d(16 * random.nextDouble(), 8 * random.nextDouble());
+                } else {
+                    Translation2d t = truth[k++ % OBJECTS];
+                    m_sights[c][s] = new Translation2d(
+                            t.getX() + 0.03 * random.nextGaussian(),
+                            t.getY() + 0.03 * random.nextGaussian());
+                }
+            }
+        }
+        m_brute = new CoalescingCollection<>(
+                new TrailingHistory<>(HISTORY), new NearR2(THRESHOLD), new CentroidR2());
+        m_grid = new CoalescingGrid(HISTORY, new NearR2(THRESHOLD), new CentroidR2());
+        // fill the history
+        m_time = 0;
+        for (m_cycle = 0; m_cycle < HISTORY / DT; ++m_cycle) {
+            m_time += DT;
+            for (Translation2d t : m_sights[m_cycle]) {
+                m_brute.add(m_time, t);
+                m_grid.add(m_time, t);
+            }
+        }
+    }
+
+    /** One cycle of sights. */
+    @Benchmark
+    public int brute() {
+        m_time += DT;
+        Translation2d[] sights = m_sights[m_cycle++ % CYCLES];
+        for (Translation2d t : sights) {
+            m_brute.add(m_time, t);
+        }
+        return m_brute.size();
+    }
+
+    /** One cycle of sights. */
+    @Benchmark
+    public int grid() {
+        m_time += DT;
+        Translation2d[] sights = m_sights[m_cycle++ % CYCLES];
+        for (Translation2d t : sights) {
+            m_grid.add(m_time, t);
+        }
+        return m_grid.size();
+    }
+
+    @Benchmark
+    public List<Translation2d> bruteGetAll() {
+        return m_brute.getAll();
+    }
+
+    @Benchmark
+    public List<Translation2d> gridGetAll() {
+        return m_grid.getAll();
+    }
+}
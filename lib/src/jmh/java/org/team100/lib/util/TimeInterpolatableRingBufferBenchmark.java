@@ -0,0 +1,69 @@
+package org.team100.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Same as TimeInterpolatableBufferBenchmark, for the ring buffer, so you can
+ * compare them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeInterpolatableRingBufferBenchmark {
+    private static final double HISTORY = 0.2;
+    private static final double DT = 0.02;
+
+    private TimeInterpolatableRingBuffer100<Pose2d> m_buffer;
+    private double m_time;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        m_buffer = new TimeInterpolatableRingBuffer100<>(256, HISTORY, 0, Pose2d.kZero);
+        for (m_time = DT; m_time < HISTORY; m_time += DT) {
+            m_buffer.put(m_time, new Pose2d(m_time, 0, Rotation2d.kZero));
+        }
+    }
+
+    /** Steady state: each put also evicts one sample. */
+    @Benchmark
+    public void put() {
+        m_time += DT;
+        m_buffer.put(m_time, Pose2d.kZero);
+    }
+
+    /** Interpolated get, in the middle of the window. */
+    @Benchmark
+    public Pose2d get() {
+        return m_buffer.get(m_time - 0.5 * HISTORY + 0.001);
+    }
+
+    /** Exact get. */
+    @Benchmark
+    public Pose2d getExact() {
+        return m_buffer.get(m_time);
+    }
+
+    /** Odometry finds the previous entry. */
+    @Benchmark
+    public int lowerIndex() {
+        return m_buffer.lowerIndex(m_time - 0.001);
+    }
+}
@@ -1,12 +1,23 @@
 package org.team100.lib.coherence;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.StringLogger;
 import org.team100.lib.logging.Logging;
 
 import com.ctre.phoenix6.BaseStatusSignal;
@@ -14,10 +25,26 @@ import com.ctre.phoenix6.StatusCode;
 
 /**
  * List of caches to be managed coherently.
- * 
- * The reset() method should be called in Robot.robotPeriodic(), right
- * after Takt.update() in Robot.robotPeriodic().
- * 
+ *
+ * The refresh() method should be called in Robot.robotPeriodic(), right
+ * after Takt.update().
+ *
+ * Each cache remembers the Takt epoch of its value, so there's no need to reset
+ * anything: when the epoch changes, all the values are stale at once.
+ *
+ * Caches can depend on each other; refresh() updates dependencies first, so
+ * that the time spent in each delegate is its own.
+ *
+ * Caches can also be grouped by subsystem, using inGroup(). If the
+ * ParallelCacheRefresh experiment is enabled, the groups are refreshed on a
+ * small worker pool, and the main thread waits for them to finish before
+ * refreshing everything else serially. Within a group, the order is the same as
+ * the serial order. An entry that depends on anything outside its own group is
+ * refreshed serially, after the groups. Ungrouped values (not side effects)
+ * that don't depend on any group are refreshed on the main thread before the
+ * groups, so that grouped suppliers that read them, e.g. a Mutable, find them
+ * fresh, instead of refreshing them on a worker.
+ *
  * Note that there's little need for multiple layers of caching, if the only
  * thing in the middle of the sandwich is simple arithmetic. So if a "motor"
  * implements caching of its sensors, then the "sensor" that uses the "motor"
@@ -28,42 +55,95 @@ import com.ctre.phoenix6.StatusCode;
  */
 public class Cache {
     private static final boolean DEBUG = false;
+    private static final LoggerFactory m_log = Logging.instance().rootLogger.name("Cache");
     /** How long it takes to update the cache. */
-    private static final DoubleLogger m_log_update = Logging.instance().rootLogger.name("Cache")
-            .doubleLogger(Level.COMP, "update time (s)");
-    private static final List<ObjectCache<?>> caches = new ArrayList<>();
-    private static final List<DoubleCache> doubles = new ArrayList<>();
-    private static final List<SideEffect> sideEffects = new ArrayList<>();
+    private static final DoubleLogger m_log_update = m_log.doubleLogger(Level.COMP, "update time (s)");
+    /** The cache that took the longest to update. */
+    private static final StringLogger m_log_slowest = m_log.stringLogger(Level.DEBUG, "slowest");
+    private static final DoubleLogger m_log_slowest_time = m_log.doubleLogger(Level.DEBUG, "slowest time (s)");
+    /** How long the parallel phase takes, including the wait. */
+    private static final DoubleLogger m_log_parallel = m_log.doubleLogger(Level.DEBUG, "parallel time (s)");
+    /**
+     * The RoboRIO has two cores, and the suppliers mostly wait for I/O, so a few
+     * threads is plenty.
+     */
+    private static final int WORKERS = 2;
+
+    private static final List<CacheEntry> entries = new ArrayList<>();
     private static final List<BaseStatusSignal> signals = new ArrayList<>();
+    /** Entries in refresh order; rebuilt when the entries change. */
+    private static CacheEntry[] ordered = new CacheEntry[0];
+    /** Grouped entries, for the parallel phase. */
+    private static CacheEntry[][] groups = new CacheEntry[0][];
+    /** Ungrouped values independent of the groups, before the parallel phase. */
+    private static CacheEntry[] ungroupedFirst = new CacheEntry[0];
+    /** Everything else, after the parallel phase. */
+    private static CacheEntry[] ungrouped = new CacheEntry[0];
+    private static boolean dirty = false;
+    private static int serial = 0;
+    /** Group for new entries; see inGroup(). */
+    private static String currentGroup = null;
+    /** Created on first use. */
+    private static CacheWorkers workers = null;
+    /** Epoch of the most recent refresh. */
+    private static long refreshedEpoch = CacheEntry.INVALID;
 
     /**
-     * Adds the delegate to the set that is reset and updated synchronously by
+     * Adds the delegate to the set that is updated synchronously by
      * Robot.robotPeriodic(), so the time represented by the value is as close to
      * the hardware interrupt time as possible, all values of cached quantities are
      * consistent and constant through the whole cycle.
      */
     public static <T> ObjectCache<T> of(Supplier<T> delegate) {
-        ObjectCache<T> cache = new ObjectCache<>(delegate);
-        caches.add(cache);
+        ObjectCache<T> cache = new ObjectCache<>(delegate, serial++, currentGroup);
+        add(cache);
         return cache;
     }
 
     public static void removeObjectCache(ObjectCache<?> obj) {
-        caches.remove(obj);
+        entries.remove(obj);
+        dirty = true;
     }
 
     public static DoubleCache ofDouble(DoubleSupplier delegate) {
-        DoubleCache cache = new DoubleCache(delegate);
-        doubles.add(cache);
+        DoubleCache cache = new DoubleCache(delegate, serial++, currentGroup);
+        add(cache);
         return cache;
     }
 
     public static SideEffect ofSideEffect(Runnable delegate) {
-        SideEffect sideEffect = new SideEffect(delegate);
-        sideEffects.add(sideEffect);
+        SideEffect sideEffect = new SideEffect(delegate, serial++, currentGroup);
+        add(sideEffect);
         return sideEffect;
     }
 
+    /**
+     * Run the factory, putting every cache it creates into the group, e.g.
+     *
+     * <pre>
+     * m_climber = Cache.inGroup("Climber", () -> new Climber(logger, new CanId(13)));
+     * </pre>
+     *
+     * Groups are refreshed in parallel, if the ParallelCacheRefresh experiment is
+     * enabled, so the caches in different groups should be independent, e.g.
+     * different subsystems with their own hardware.
+     *
+     * Note that the suppliers in a group run on a worker thread, so anything
+     * they call, including side effects like change callbacks, must be safe to
+     * run there. Use a null group for caches that need the main thread: they're
+     * ungrouped even inside another inGroup(), and refreshed before the groups,
+     * e.g. Mutable does this, since its callbacks reconfigure things.
+     */
+    public static <T> T inGroup(String group, Supplier<T> factory) {
+        String previous = currentGroup;
+        currentGroup = group;
+        try {
+            return factory.get();
+        } finally {
+            currentGroup = previous;
+        }
+    }
+
     /**
      * There's a "resetter" that calls CTRE's refreshAll; add the supplied signal to
      * the list in the refresh.
@@ -73,49 +153,50 @@ public class Cache {
     }
 
     /**
-     * Reset all caches and update them with fresh values. All the resets are done
-     * before any of the updates to ensure that the updates don't include any stale
-     * data.
-     * 
+     * Update all the caches with fresh values.
+     *
+     * Usually Takt.update() has just started a new epoch; if not (e.g. in tests),
+     * this starts one, so that the updates don't include any stale data.
+     *
      * Should be run in Robot.robotPeriodic().
      */
     public static void refresh() {
         if (DEBUG)
             System.out.println("Cache refresh");
         double startUpdateS = Takt.actual();
-        reset();
+        if (Takt.epoch() == refreshedEpoch)
+            Takt.nextEpoch();
+        refreshedEpoch = Takt.epoch();
         update();
-        m_log_update.log(() -> (Takt.actual() - startUpdateS));
+        m_log_update.log(Takt.actual() - startUpdateS);
     }
 
     /** For testing only */
     public static void clear() {
-        caches.clear();
-        doubles.clear();
-        sideEffects.clear();
+        entries.clear();
+        ordered = new CacheEntry[0];
+        groups = new CacheEntry[0][];
+        ungroupedFirst = new CacheEntry[0];
+        ungrouped = new CacheEntry[0];
+        dirty = false;
     }
 
     /////////////////////////////////////////////////
 
-    /**
-     * Forgets all the stored values.
-     */
-    private static void reset() {
-        for (ObjectCache<?> r : caches) {
-            r.reset();
-        }
-        for (DoubleCache r : doubles) {
-            r.reset();
-        }
-        for (SideEffect r : sideEffects) {
-            r.reset();
-        }
+    private static void add(CacheEntry entry) {
+        entries.add(entry);
+        dirty = true;
+    }
+
+    /** Called by CacheEntry.dependsOn(). */
+    static void dependenciesChanged() {
+        dirty = true;
     }
 
-    /** Fetches fresh values for every stale cache. Should be called after reset. */
+    /** Fetches fresh values for every stale cache. */
     private static void update() {
         if (DEBUG) {
-            System.out.printf("Cache update %d\n", caches.size());
+            System.out.printf("Cache update %d\n", entries.size());
         }
         if (!signals.isEmpty()) {
             StatusCode result = BaseStatusSignal.refreshAll(signals.toArray(new BaseStatusSignal[0]));
@@ -124,20 +205,126 @@ public class Cache {
                         result.toString(), result.getDescription());
             }
         }
-        for (ObjectCache<?> r : caches) {
-            if (DEBUG) {
-                System.out.printf("update %s\n", r.get().getClass().getSimpleName());
+        if (dirty) {
+            ordered = sort(entries);
+            partition();
+            dirty = false;
+        }
+        if (Experiments.instance.enabled(Experiment.ParallelCacheRefresh)) {
+            refreshParallel();
+        } else {
+            for (CacheEntry r : ordered) {
+                r.refresh();
             }
-            r.get();
         }
-        for (DoubleCache r : doubles) {
-            if (DEBUG)
-                System.out.println("double update");
-            r.getAsDouble();
+        CacheEntry slowest = null;
+        for (CacheEntry r : ordered) {
+            if (slowest == null || r.getUpdateTimeS() > slowest.getUpdateTimeS())
+                slowest = r;
+        }
+        if (slowest != null) {
+            CacheEntry s = slowest;
+            m_log_slowest.log(s::getName);
+            m_log_slowest_time.log(s::getUpdateTimeS);
+        }
+    }
+
+    private static void refreshParallel() {
+        if (workers == null)
+            workers = new CacheWorkers(WORKERS);
+        for (CacheEntry r : ungroupedFirst) {
+            r.refresh();
         }
-        for (SideEffect r : sideEffects) {
-            r.run();
+        double startS = Takt.actual();
+        workers.run(groups);
+        m_log_parallel.log(() -> Takt.actual() - startS);
+        for (CacheEntry r : ungrouped) {
+            r.refresh();
+        }
+    }
+
+    /**
+     * Split the ordered entries into groups, keeping the order. An entry stays in
+     * its group only if all its dependencies are in the same group. The rest are
+     * split into values that depend only on each other, which go first, and
+     * everything else.
+     */
+    private static void partition() {
+        Map<String, List<CacheEntry>> byGroup = new LinkedHashMap<>();
+        Set<CacheEntry> first = new LinkedHashSet<>();
+        List<CacheEntry> rest = new ArrayList<>();
+        Set<CacheEntry> later = new HashSet<>();
+        for (CacheEntry e : ordered) {
+            String group = e.getGroup();
+            boolean parallel = group != null;
+            for (CacheEntry d : e.dependencies()) {
+                if (later.contains(d) || !Objects.equals(group, d.getGroup()))
+                    parallel = false;
+            }
+            if (parallel) {
+                byGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(e);
+                continue;
+            }
+            later.add(e);
+            boolean early = !(e instanceof SideEffect);
+            for (CacheEntry d : e.dependencies()) {
+                if (!first.contains(d))
+                    early = false;
+            }
+            if (early) {
+                first.add(e);
+            } else {
+                rest.add(e);
+            }
+        }
+        groups = new CacheEntry[byGroup.size()][];
+        int i = 0;
+        for (List<CacheEntry> g : byGroup.values()) {
+            groups[i++] = g.toArray(new CacheEntry[0]);
+        }
+        ungroupedFirst = first.toArray(new CacheEntry[0]);
+        ungrouped = rest.toArray(new CacheEntry[0]);
+        if (DEBUG)
+            System.out.printf("Cache groups %d ungrouped %d first %d\n",
+                    groups.length, ungrouped.length, ungroupedFirst.length);
+    }
+
+    /**
+     * Objects first, then doubles, then side effects, each in registration order,
+     * which is how they used to be updated, except that dependencies come first.
+     *
+     * Dependencies are refreshed even if they're not registered here, e.g. if
+     * they've been cleared in a test.
+     *
+     * @throws IllegalStateException if there's a cycle
+     */
+    static CacheEntry[] sort(List<CacheEntry> entries) {
+        List<CacheEntry> byKind = new ArrayList<>(entries);
+        byKind.sort(Comparator.comparingInt(CacheEntry::kind).thenComparingInt(CacheEntry::serial));
+        List<CacheEntry> result = new ArrayList<>(byKind.size());
+        Set<CacheEntry> done = new HashSet<>();
+        Set<CacheEntry> inProgress = new HashSet<>();
+        for (CacheEntry e : byKind) {
+            visit(e, done, inProgress, result);
+        }
+        return result.toArray(new CacheEntry[0]);
+    }
+
+    private static void visit(
+            CacheEntry e,
+            Set<CacheEntry> done,
+            Set<CacheEntry> inProgress,
+            List<CacheEntry> result) {
+        if (done.contains(e))
+            return;
+        if (!inProgress.add(e))
+            throw new IllegalStateException("cache dependency cycle at " + e.getName());
+        for (CacheEntry d : e.dependencies()) {
+            visit(d, done, inProgress, result);
         }
+        inProgress.remove(e);
+        done.add(e);
+        result.add(e);
     }
 
     private Cache() {
@@ -0,0 +1,102 @@
+package org.team100.lib.coherence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Common parts of the things Cache manages.
+ *
+ * Each entry remembers the Takt epoch of its value. If the epoch is current,
+ * the value is fresh; otherwise the entry asks its delegate. So there's no
+ * reset pass, and no lock: the epoch is volatile, and it's written after the
+ * value, so a reader that sees the current epoch also sees the value that goes
+ * with it.
+ *
+ * If two threads find the same stale entry at the same time, both of them will
+ * ask the delegate. That's rare (most reads happen on the main thread, after
+ * Cache.refresh()), and harmless if the delegate is a measurement, which they
+ * all are.
+ */
+public abstract class CacheEntry {
+    /** Never matches a real epoch. */
+    static final long INVALID = -1;
+
+    private final String m_name;
+    /** Sort key, so that refresh order is the same as it used to be. */
+    private final int m_kind;
+    /** Registration order, for the same reason. */
+    private final int m_serial;
+    /** Subsystem, for parallel refresh, or null. */
+    private final String m_group;
+    private final List<CacheEntry> m_dependencies;
+    /** Epoch of the current value; written after the value. */
+    protected volatile long m_epoch;
+    /** Duration of the most recent delegate call. */
+    private double m_updateS;
+
+    CacheEntry(Object delegate, int kind, int serial, String group) {
+        m_name = nameOf(delegate);
+        m_kind = kind;
+        m_serial = serial;
+        m_group = group;
+        m_dependencies = new ArrayList<>();
+        m_epoch = INVALID;
+    }
+
+    /** Name of the class that supplied the delegate. */
+    public String getName() {
+        return m_name;
+    }
+
+    /** The group declared with Cache.inGroup(), or null. */
+    public String getGroup() {
+        return m_group;
+    }
+
+    /** How long the delegate took, the last time it ran. */
+    public double getUpdateTimeS() {
+        return m_updateS;
+    }
+
+    /////////////////////////////////////////////
+
+    /** Make the value fresh, if it isn't already. */
+    abstract void refresh();
+
+    /** Add dependencies, which Cache.refresh() will update first. */
+    void addDependencies(CacheEntry... dependencies) {
+        for (CacheEntry d : dependencies) {
+            m_dependencies.add(d);
+        }
+        Cache.dependenciesChanged();
+    }
+
+    List<CacheEntry> dependencies() {
+        return m_dependencies;
+    }
+
+    int kind() {
+        return m_kind;
+    }
+
+    int serial() {
+        return m_serial;
+    }
+
+    /** Called by subclasses around the delegate call. */
+    void recordUpdate(long startNs) {
+        m_updateS = (System.nanoTime() - startNs) * 1e-9;
+    }
+
+    /**
+     * Lambdas and method references are named after the enclosing class, e.g.
+     * "Talon6Motor$$Lambda/0x1234", so use the part before the "$$".
+     */
+    static String nameOf(Object delegate) {
+        String name = delegate.getClass().getName();
+        int lambda = name.indexOf("$$");
+        if (lambda >= 0)
+            name = name.substring(0, lambda);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,93 @@
+package org.team100.lib.coherence;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small fixed pool of threads that refresh groups of caches in parallel.
+ *
+ * The caller (i.e. the main loop) works too, and run() returns only when all
+ * the groups are done, so everything refreshed here is coherent with everything
+ * refreshed serially afterwards.
+ *
+ * Threads take whole groups from a shared counter, so a slow group doesn't hold
+ * up the others, and the entries within each group are refreshed in order, on
+ * one thread.
+ */
+final class CacheWorkers {
+    private static final boolean DEBUG = false;
+
+    /** Everyone waits here for work. */
+    private final CyclicBarrier m_start;
+    /** Everyone waits here for everyone else to finish. */
+    private final CyclicBarrier m_finish;
+    /** Index of the next group to refresh. */
+    private final AtomicInteger m_next;
+    /** Written before the start barrier, so the workers see it. */
+    private CacheEntry[][] m_groups;
+    /** The first failure, if any, rethrown on the caller's thread. */
+    private volatile RuntimeException m_error;
+
+    /**
+     * @param threads in addition to the caller
+     */
+    CacheWorkers(int threads) {
+        m_start = new CyclicBarrier(threads + 1);
+        m_finish = new CyclicBarrier(threads + 1);
+        m_next = new AtomicInteger();
+        m_groups = new CacheEntry[0][];
+        for (int i = 0; i < threads; ++i) {
+            Thread t = new Thread(this::loop, "Cache Worker " + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /** Refresh all the groups, and wait for them to finish. */
+    void run(CacheEntry[][] groups) {
+        m_groups = groups;
+        m_next.set(0);
+        m_error = null;
+        await(m_start);
+        work();
+        await(m_finish);
+        RuntimeException error = m_error;
+        if (error != null)
+            throw error;
+    }
+
+    ///////////////////////////////////////////
+
+    private void loop() {
+        while (true) {
+            await(m_start);
+            work();
+            await(m_finish);
+        }
+    }
+
+    private void work() {
+        CacheEntry[][] groups = m_groups;
+        for (int i = m_next.getAndIncrement(); i < groups.length; i = m_next.getAndIncrement()) {
+            if (DEBUG)
+                System.out.printf("%s group %d\n", Thread.currentThread().getName(), i);
+            try {
+                for (CacheEntry e : groups[i]) {
+                    e.refresh();
+                }
+            } catch (RuntimeException e) {
+                if (m_error == null)
+                    m_error = e;
+            }
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException | BrokenBarrierException e) {
+            throw new IllegalStateException("cache worker barrier failed", e);
+        }
+    }
+}
@@ -2,33 +2,50 @@ package org.team100.lib.coherence;
 
 import java.util.function.DoubleSupplier;
 
-public class DoubleCache implements DoubleSupplier {
+public class DoubleCache extends CacheEntry implements DoubleSupplier {
     private final DoubleSupplier m_delegate;
     private double m_value;
-    private boolean m_valid;
 
     /** Do not call this directly, use Cache.ofDouble() */
-    DoubleCache(DoubleSupplier delegate) {
+    DoubleCache(DoubleSupplier delegate, int serial, String group) {
+        super(delegate, 1, serial, group);
         m_delegate = delegate;
-        m_valid = false;
     }
 
     /**
-     * Use the cached value if it exists, otherwise ask the delegate, cache, and
-     * return the value.
+     * Use the cached value if it is from the current epoch, otherwise ask the
+     * delegate, cache, and return the value.
      */
     @Override
-    public synchronized double getAsDouble() {
-        // synchronized adds ~20ns.
-        if (m_valid)
+    public double getAsDouble() {
+        long epoch = Takt.epoch();
+        if (m_epoch == epoch)
             return m_value;
-        m_value = m_delegate.getAsDouble();
-        m_valid = true;
-        return m_value;
+        long startNs = System.nanoTime();
+        double value = m_delegate.getAsDouble();
+        recordUpdate(startNs);
+        m_value = value;
+        m_epoch = epoch;
+        return value;
     }
 
     /** Erase the cache so the next get() will ask the delegate. */
-    public synchronized void reset() {
-        m_valid = false;
+    public void reset() {
+        m_epoch = INVALID;
     }
-}
\ No newline at end of file
+
+    /**
+     * Make Cache.refresh() update the dependencies before this one.
+     *
+     * @return this
+     */
+    public DoubleCache dependsOn(CacheEntry... dependencies) {
+        addDependencies(dependencies);
+        return this;
+    }
+
+    @Override
+    void refresh() {
+        getAsDouble();
+    }
+}
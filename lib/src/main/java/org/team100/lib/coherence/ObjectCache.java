@@ -3,43 +3,59 @@ package org.team100.lib.coherence;
 import java.util.function.Supplier;
 
 /** Cache an object supplier */
-public class ObjectCache<T> implements Supplier<T> {
+public class ObjectCache<T> extends CacheEntry implements Supplier<T> {
     private final Supplier<T> m_delegate;
     private T m_value;
 
     /** Do not call this directly, use Cache.of(). */
-    ObjectCache(Supplier<T> delegate) {
+    ObjectCache(Supplier<T> delegate, int serial, String group) {
+        super(delegate, 0, serial, group);
         m_delegate = delegate;
         m_value = null;
     }
 
     /**
-     * Use the cached value if it exists, otherwise ask the delegate, cache, and
-     * return the value.
+     * Use the cached value if it is from the current epoch, otherwise ask the
+     * delegate, cache, and return the value.
      */
     @Override
-    public synchronized T get() {
-        // synchronized adds ~20ns.
-        if (m_value == null)
-            m_value = m_delegate.get();
-
-        return m_value;
+    public T get() {
+        long epoch = Takt.epoch();
+        if (m_epoch == epoch)
+            return m_value;
+        long startNs = System.nanoTime();
+        T value = m_delegate.get();
+        recordUpdate(startNs);
+        m_value = value;
+        m_epoch = epoch;
+        return value;
     }
 
     /**
      * Erase the cache so the next get() will ask the delegate. You should generally
      * let robotPeriodic() do this, but it's ok to force it, e.g. in resetPose().
      */
-    public synchronized void reset() {
-        m_value = null;
+    public void reset() {
+        m_epoch = INVALID;
     }
 
     /**
      * Force the cache to contain the value, effectively overriding the delegate's
-     * previous output.
+     * previous output, until the next epoch.
      */
-    public synchronized void set(T value) {
+    public void set(T value) {
         m_value = value;
+        m_epoch = Takt.epoch();
+    }
+
+    /**
+     * Make Cache.refresh() update the dependencies before this one.
+     *
+     * @return this
+     */
+    public ObjectCache<T> dependsOn(CacheEntry... dependencies) {
+        addDependencies(dependencies);
+        return this;
     }
 
     /**
@@ -51,4 +67,9 @@ public class ObjectCache<T> implements Supplier<T> {
     public void end() {
         Cache.removeObjectCache(this);
     }
-}
\ No newline at end of file
+
+    @Override
+    void refresh() {
+        get();
+    }
+}
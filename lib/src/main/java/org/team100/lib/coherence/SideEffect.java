@@ -4,32 +4,55 @@ package org.team100.lib.coherence;
  *
  * Represents an action that should be coherent, even though its only effects
  * are side-effects, i.e. there's no direct output to cache.
- * 
+ *
  * For example, when the vision reader does its thing, there's no simple output
  * to cache, only mutations to the pose history, which can be picked up by
  * querying the history itself. Use this class to represent the action that
  * should be refreshed.
+ *
+ * Unlike the caches, a side effect must not run twice in one epoch, so run()
+ * is synchronized. It only takes the lock if the epoch is stale.
  */
-public class SideEffect implements Runnable {
+public class SideEffect extends CacheEntry implements Runnable {
     private final Runnable m_delegate;
-    private boolean m_valid;
 
     /** Do not use this, use Cache.ofSideEffect(). */
-    SideEffect(Runnable delegate) {
+    SideEffect(Runnable delegate, int serial, String group) {
+        super(delegate, 2, serial, group);
         m_delegate = delegate;
-        m_valid = false;
     }
 
     @Override
-    public synchronized void run() {
-        if (m_valid)
+    public void run() {
+        long epoch = Takt.epoch();
+        if (m_epoch == epoch)
             return;
-        m_delegate.run();
-        m_valid = true;
+        synchronized (this) {
+            if (m_epoch == epoch)
+                return;
+            long startNs = System.nanoTime();
+            m_delegate.run();
+            recordUpdate(startNs);
+            m_epoch = epoch;
+        }
+    }
+
+    public void reset() {
+        m_epoch = INVALID;
     }
 
-    public synchronized void reset() {
-        m_valid = false;
+    /**
+     * Make Cache.refresh() run the dependencies before this one.
+     *
+     * @return this
+     */
+    public SideEffect dependsOn(CacheEntry... dependencies) {
+        addDependencies(dependencies);
+        return this;
     }
 
+    @Override
+    void refresh() {
+        run();
+    }
 }
@@ -3,11 +3,19 @@ package org.team100.lib.coherence;
 /**
  * Takt just caches the FPGA timer, so that all the readers get the same value.
  * 
+ * It also counts "epochs," which is how the caches know their values are stale:
+ * each cache remembers the epoch of its value.
+ * 
  * It should be updated in robotPeriodic and nowhere else (except maybe tests).
  */
 public class Takt {
     /** Current Takt time in seconds. */
     private static double now = actual();
+    /**
+     * Incremented by the main thread only, so the non-atomic increment is ok.
+     * Volatile so other threads see it.
+     */
+    private static volatile long epoch = 0;
 
     /**
      * Update the singleton clock.
@@ -19,6 +27,7 @@ public class Takt {
      */
     public static void update() {
         now = actual();
+        epoch++;
     }
 
     /**
@@ -29,6 +38,14 @@ public class Takt {
         return now;
     }
 
+    /**
+     * The current epoch, which changes every time the Takt time does, and also
+     * whenever Cache.refresh() is called without a Takt update.
+     */
+    public static long epoch() {
+        return epoch;
+    }
+
     /**
      * Curent actual FPGA time in seconds.
      * 
@@ -37,4 +54,9 @@ public class Takt {
     public static double actual() {
         return edu.wpi.first.wpilibj.Timer.getFPGATimestamp();
     }
+
+    /** Start a new epoch without changing the time. For Cache.refresh(). */
+    static void nextEpoch() {
+        epoch++;
+    }
 }
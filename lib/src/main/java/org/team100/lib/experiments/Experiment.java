@@ -79,5 +79,64 @@ public enum Experiment {
     /**
      * Use "shooting method" for turret solution
      */
-    TurretShootingMethod
+    TurretShootingMethod,
+    /**
+     * Collect all the vision updates in each cycle, and replay the odometry history
+     * once, instead of once per update.
+     */
+    BatchVisionReplay,
+    /**
+     * Refresh the caches declared with Cache.inGroup() on a small worker pool,
+     * one group per thread at a time, instead of serially on the main thread.
+     */
+    ParallelCacheRefresh,
+    /**
+     * Log via UDP instead of Network Tables. This is much faster, but you need a
+     * log receiver, see studies/udp_logging. Takes effect at startup.
+     */
+    UdpLogging,
+    /**
+     * Log to a memory-mapped file on the robot, instead of Network Tables. Use
+     * FileLogConverter to make a .wpilog. Takes effect at startup.
+     */
+    FileLogging,
+    /**
+     * Queue the log values in a ring, and drain them into the backend (NT, UDP,
+     * or file) on a background thread, instead of on the main loop. Takes
+     * effect at startup.
+     */
+    AsyncLogging,
+    /**
+     * Plan trajectories on a background thread, holding position until the plan
+     * is ready, instead of planning on the main loop in Command.initialize().
+     */
+    AsyncTrajectoryPlanning,
+    /**
+     * Sample paths into primitive arrays, and time them from the arrays,
+     * instead of making a PathPoint for every candidate sample.
+     */
+    PrimitivePaths,
+    /**
+     * Fuse all the tags in each camera frame, and in frames from other cameras
+     * with the same timestamp, into one weighted least-squares measurement,
+     * instead of one measurement per tag.
+     */
+    MultiTagVision,
+    /**
+     * Carry a pose covariance in the history, grow it with odometry, and apply
+     * vision with a Kalman update, instead of nudging with fixed state sigmas.
+     */
+    KalmanVision,
+    /**
+     * Keep the vision measurements for the whole history window, and solve for
+     * the whole window at once, with a fixed-lag smoother, instead of nudging
+     * and replaying.
+     */
+    FixedLagSmoothing,
+    /**
+     * Schedule trajectories by reachability analysis (ToppraTrajectoryFactory),
+     * in every TrajectoryFactory, instead of with the forward and backward
+     * passes. Replanning still uses the passes.
+     */
+    ToppraTiming
 }
@@ -18,4 +18,8 @@ public class NearR2 implements BiPredicate<Translation2d, Translation2d> {
         return a.getDistance(b) < m_threshold;
     }
 
+    public double threshold() {
+        return m_threshold;
+    }
+
 }
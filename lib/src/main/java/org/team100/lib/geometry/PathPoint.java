@@ -74,6 +74,11 @@ public class PathPoint {
         return m_s;
     }
 
+    /** The source of this point, or null if it was interpolated. */
+    public HolonomicSpline getSpline() {
+        return m_spline;
+    }
+
     /**
      * Linear interpolation of each component separately.
      * 
@@ -0,0 +1,99 @@
+package org.team100.lib.kinematics.urdf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.Num;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose3d;
+
+/**
+ * Recent IK solutions, indexed by the translation of the goal pose on a grid
+ * of cubic cells, for seeding the solver.
+ *
+ * Each cell holds only the most recent solution within it, and the least
+ * recently used cells are evicted.
+ */
+class PoseCache<Q extends Num> {
+    /** Rotation error equivalent to one meter of translation error. */
+    private static final double METERS_PER_RADIAN = 0.1;
+    /** 21 bits per axis. */
+    private static final long MASK = 0x1FFFFF;
+
+    private record Entry<Q extends Num>(Pose3d pose, Vector<Q> q) {
+    }
+
+    private final double m_cellSize;
+    private final Map<Long, Entry<Q>> m_cells;
+
+    /**
+     * @param cellSize meters
+     * @param capacity maximum number of cells
+     */
+    PoseCache(double cellSize, int capacity) {
+        m_cellSize = cellSize;
+        m_cells = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<Q>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Remember a solution; q is copied. */
+    void put(Pose3d pose, Vector<Q> q) {
+        m_cells.put(key(cell(pose.getX()), cell(pose.getY()), cell(pose.getZ())),
+                new Entry<>(pose, new Vector<>(q.getStorage().copy())));
+    }
+
+    /**
+     * The solution whose pose is nearest to the given pose, searching its cell
+     * and the adjacent ones, or null if there are none.
+     */
+    Vector<Q> nearest(Pose3d pose) {
+        long x = cell(pose.getX());
+        long y = cell(pose.getY());
+        long z = cell(pose.getZ());
+        Entry<Q> best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (long dx = -1; dx <= 1; ++dx) {
+            for (long dy = -1; dy <= 1; ++dy) {
+                for (long dz = -1; dz <= 1; ++dz) {
+                    Entry<Q> e = m_cells.get(key(x + dx, y + dy, z + dz));
+                    if (e == null)
+                        continue;
+                    double d = distance(pose, e.pose());
+                    if (d < bestDistance) {
+                        best = e;
+                        bestDistance = d;
+                    }
+                }
+            }
+        }
+        if (best == null)
+            return null;
+        return best.q();
+    }
+
+    void clear() {
+        m_cells.clear();
+    }
+
+    int size() {
+        return m_cells.size();
+    }
+
+    private static double distance(Pose3d a, Pose3d b) {
+        double translation = a.getTranslation().getDistance(b.getTranslation());
+        double rotation = a.getRotation().minus(b.getRotation()).getAngle();
+        return translation + METERS_PER_RADIAN * rotation;
+    }
+
+    private long cell(double x) {
+        return (long) Math.floor(x / m_cellSize);
+    }
+
+    private static long key(long x, long y, long z) {
+        return ((x & MASK) << 42) | ((y & MASK) << 21) | (z & MASK);
+    }
+}
@@ -0,0 +1,201 @@
+package org.team100.lib.kinematics.urdf;
+
+import java.util.Map;
+
+import org.team100.lib.geometry.GeometryUtil;
+import org.team100.lib.optimization.NewtonsMethod;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.Num;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.numbers.N6;
+
+/**
+ * Inverse kinematics for one joint of a URDFRobot, for repeated use, e.g. in
+ * teleop, where the goal moves a little each cycle.
+ *
+ * Like URDFRobot.inverse(), this uses Newton's method, but instead of always
+ * starting from the supplied initial configuration, and relying on random
+ * restarts when it gets stuck, it tries seeds in this order:
+ *
+ * 1. the previous solution
+ * 2. the supplied initial configuration
+ * 3. the cached solution for the nearest recent goal
+ * 4. random restarts, continuing from wherever the previous attempts ended
+ *
+ * The total number of attempts is limited, as in URDFRobot.inverse().
+ *
+ * The solver is made once, and reused, with the goal as a field, so each solve
+ * doesn't allocate a new solver and workspace.
+ *
+ * The iterations and restarts of the most recent solve are available, to see
+ * how close to the loop budget it is.
+ *
+ * This is not thread-safe.
+ */
+public class URDFInverse<Q extends Num> {
+    private static final boolean DEBUG = false;
+    /** Same as URDFRobot.inverse() */
+    private static final double TOLERANCE = 2e-3;
+    private static final int ITERATIONS = 8;
+    private static final int RESTARTS = 3;
+    /** Cache cell size, meters. */
+    private static final double CELL_SIZE = 0.02;
+    private static final int CAPACITY = 1000;
+
+    /** Where the solution came from. */
+    public enum Seed {
+        PREVIOUS, INITIAL, CACHE, RESTART
+    }
+
+    private final URDFRobot<Q> m_robot;
+    private final String m_jointName;
+    private final NewtonsMethod<Q, N6> m_solver;
+    private final PoseCache<Q> m_cache;
+    /** Solver state; also the solution. */
+    private final Vector<Q> m_q;
+
+    private Pose3d m_goal;
+    private Vector<Q> m_previous;
+
+    private int m_iterations;
+    private int m_restarts;
+    private Seed m_seed;
+
+    /**
+     * @param robot     the mechanism
+     * @param jointName the joint to solve for, e.g. the end effector
+     * @param dqLimit   maximum step size, as in URDFRobot.inverse()
+     */
+    public URDFInverse(URDFRobot<Q> robot, String jointName, double dqLimit) {
+        m_robot = robot;
+        m_jointName = jointName;
+        Nat<Q> qDim = robot.qDim();
+        m_solver = new NewtonsMethod<>(
+                qDim, Nat.N6(), this::error, null, false,
+                robot.minQ(qDim), robot.maxQ(qDim),
+                TOLERANCE, ITERATIONS, dqLimit);
+        m_cache = new PoseCache<>(CELL_SIZE, CAPACITY);
+        m_q = new Vector<>(qDim);
+    }
+
+    /**
+     * Solve for the configuration that puts the joint at the goal.
+     *
+     * @param initial the current configuration
+     * @param goal    joint pose
+     * @return joint configuration, keyed by name
+     * @throws IllegalArgumentException if the solver fails
+     */
+    public Map<String, Double> inverse(Vector<Q> initial, Pose3d goal) {
+        long startTime = System.nanoTime();
+        m_goal = goal;
+        m_iterations = 0;
+        m_restarts = 0;
+        try {
+            if (m_previous != null) {
+                set(m_previous);
+                if (attempt(0, false)) {
+                    m_seed = Seed.PREVIOUS;
+                    return solved();
+                }
+                m_restarts++;
+            }
+            set(initial);
+            if (attempt(0, false)) {
+                m_seed = Seed.INITIAL;
+                return solved();
+            }
+            Vector<Q> cached = m_cache.nearest(goal);
+            if (cached != null) {
+                set(cached);
+                m_restarts++;
+                if (attempt(0, false)) {
+                    m_seed = Seed.CACHE;
+                    return solved();
+                }
+            }
+            m_seed = Seed.RESTART;
+            // The total number of attempts is the same as URDFRobot.inverse(),
+            // so the worst case is no worse.
+            int remaining = RESTARTS - m_restarts;
+            try {
+                if (remaining <= 0)
+                    throw new IllegalArgumentException("failed to converge");
+                m_restarts++;
+                attempt(remaining - 1, true);
+            } catch (IllegalArgumentException ex) {
+                // start over next time.
+                m_previous = null;
+                throw ex;
+            }
+            return solved();
+        } finally {
+            if (DEBUG) {
+                long finishTime = System.nanoTime();
+                System.out.printf("seed %s iterations %d restarts %d ET (ms): %6.3f\n",
+                        m_seed, m_iterations, m_restarts,
+                        ((double) finishTime - startTime) / 1000000);
+            }
+        }
+    }
+
+    /** Iterations used by the most recent solve, across all seeds. */
+    public int iterations() {
+        return m_iterations;
+    }
+
+    /** Seeds tried after the first one, in the most recent solve. */
+    public int restarts() {
+        return m_restarts;
+    }
+
+    /** The seed that produced the most recent solution. */
+    public Seed seed() {
+        return m_seed;
+    }
+
+    /** Forget the previous solution and the cache. */
+    public void reset() {
+        m_previous = null;
+        m_cache.clear();
+    }
+
+    int cacheSize() {
+        return m_cache.size();
+    }
+
+    //////////////////////////////////////////////
+
+    private boolean attempt(int restarts, boolean throwOnFailure) {
+        boolean success = m_solver.solveInPlace(m_q, restarts, throwOnFailure);
+        m_iterations += m_solver.lastIterations();
+        m_restarts += m_solver.lastRestarts();
+        return success;
+    }
+
+    private Map<String, Double> solved() {
+        if (m_previous == null)
+            m_previous = new Vector<>(m_q.getStorage().copy());
+        else
+            copy(m_q, m_previous);
+        m_cache.put(m_goal, m_q);
+        return m_robot.qMap(m_q);
+    }
+
+    private void set(Vector<Q> q) {
+        copy(q, m_q);
+    }
+
+    private Vector<N6> error(Vector<Q> q) {
+        Pose3d pose = m_robot.forward(m_robot.qMap(q)).get(m_jointName);
+        return GeometryUtil.toVec(m_goal.log(pose));
+    }
+
+    private static <Q extends Num> void copy(Vector<Q> from, Vector<Q> to) {
+        for (int i = 0; i < from.getNumRows(); ++i) {
+            to.set(i, 0, from.get(i));
+        }
+    }
+}
@@ -61,6 +61,11 @@ public class URDFRobot<Q extends Num> {
         m_joints = joints;
     }
 
+    /** Dimension of the configuration space, i.e. the number of active joints. */
+    public Nat<Q> qDim() {
+        return m_qDim;
+    }
+
     /**
      * Solve forward kinematics for all joints.
      * 
@@ -121,6 +121,10 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
      * away.
      */
     private final TrailingHistory<Pose3d> m_usedTags;
+    /** Reused for every raw value. */
+    private final Blip24Reader m_reader;
+    /** Collects the tags for the MultiTagVision experiment. */
+    private final MultiTagSolver m_solver;
 
     /**
      * @param parent        logger
@@ -141,6 +145,8 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
         m_visionUpdater = visionUpdater;
         m_allTags = new TrailingHistory<>(HISTORY_DURATION);
         m_usedTags = new TrailingHistory<>(HISTORY_DURATION);
+        m_reader = new Blip24Reader();
+        m_solver = new MultiTagSolver();
 
         m_log_allTags = fieldLogger.doubleArrayLogger(Level.TRACE, "all tags");
         m_log_usedTags = fieldLogger.doubleArrayLogger(Level.TRACE, "used tags");
@@ -171,8 +177,31 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
                 DriverStation.getAlliance());
     }
 
+    /** Decode with the flyweight reader, instead of making Blip24s. */
+    @Override
+    protected boolean perRawValue(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            byte[] valueBytes) {
+        if (!m_reader.read(valueBytes))
+            return false;
+        estimateRobotPose(
+                cameraOffset,
+                m_reader,
+                valueTimestamp,
+                DriverStation.getAlliance());
+        return true;
+    }
+
+    @Override
+    protected void beginUpdate() {
+        m_visionUpdater.beginBatch();
+    }
+
     @Override
     protected void finishUpdate() {
+        flushFrame();
+        m_visionUpdater.endBatch();
         m_pub_tags.set(m_allTags.getAll().toArray(new Pose3d[0]));
         m_pub_used_tags.set(m_usedTags.getAll().toArray(new Pose3d[0]));
         m_log_allTags.log(
@@ -204,22 +233,7 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
             Blip24[] blips,
             double valueTimestamp,
             Optional<Alliance> optAlliance) {
-
-        // Vasili added this extra delay after some experimentation, but
-        // it breaks simulation, so I set it back to zero.
-        // The effect is to make the received sight
-        // appear as if it were from further in the past than the timestamp says it is,
-        // which would be required if there were delay (a lot of delay) not included
-        // in the timestamp.
-        // TODO: figure out what this does and describe it describe here.
-        // final double IMPORTANT_MAGIC_NUMBER = 0.027;
-        final double IMPORTANT_MAGIC_NUMBER = 0.0;
-        double correctedTimestamp = valueTimestamp - IMPORTANT_MAGIC_NUMBER;
-
-        // this seems to always be 1. ????
-        // TODO: look more closely at this
-        m_log_lag.log(() -> Takt.get() - correctedTimestamp);
-
+        double correctedTimestamp = correctedTimestamp(valueTimestamp);
         if (!optAlliance.isPresent()) {
             // this happens on startup
             if (DEBUG)
@@ -245,67 +259,217 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
                 continue;
             }
 
-            // Field-to-tag, canonical pose from the JSON file
-            Pose3d tagInField = tagInFieldCoordsOptional.get();
+            Transform3d tagInCamera = tagInCamera(blip.blipToTransform());
+
+            estimateFromTag(
+                    cameraOffset, correctedTimestamp, historicalPose,
+                    blip.getId(), tagInFieldCoordsOptional.get(), tagInCamera);
+        }
+    }
+
+    /**
+     * The same as above, reading the blips from the raw NT value, so that there's
+     * no Blip24 for each tag, and tags without a known pose make no garbage at
+     * all.
+     */
+    void estimateRobotPose(
+            Transform3d cameraOffset,
+            Blip24Reader blips,
+            double valueTimestamp,
+            Optional<Alliance> optAlliance) {
+        double correctedTimestamp = correctedTimestamp(valueTimestamp);
+        if (!optAlliance.isPresent()) {
+            if (DEBUG)
+                System.out.println("WARNING: VisionDataProvider24: Alliance is not present!");
+            return;
+        }
+        Alliance alliance = optAlliance.get();
+        m_log_alliance.log(() -> alliance);
+        m_log_heedRadius.log(() -> m_heedRadiusM);
+
+        Pose2d historicalPose = historicalPose(correctedTimestamp);
+
+        for (int i = 0; i < blips.count(); ++i) {
+            int id = blips.id(i);
+            if (DEBUG)
+                printBlip(blips.blip(i));
+
+            Optional<Pose3d> tagInFieldCoordsOptional = m_layout.getTagPose(alliance, id);
+            if (!tagInFieldCoordsOptional.isPresent()) {
+                System.out.printf("WARNING: VisionDataProvider24: no tag for id %d\n", id);
+                continue;
+            }
+
+            Transform3d tagInCamera = tagInCamera(blips.transform(i));
 
-            Transform3d tagInCamera = tagInCamera(blip);
+            estimateFromTag(
+                    cameraOffset, correctedTimestamp, historicalPose,
+                    id, tagInFieldCoordsOptional.get(), tagInCamera);
+        }
+    }
+
+    /**
+     * Use one tag sighting.
+     * 
+     * @param cameraOffset       Camera pose in robot coordinates
+     * @param correctedTimestamp Camera frame timestamp
+     * @param historicalPose     Robot pose at the frame timestamp
+     * @param id                 Tag id, for calibration output
+     * @param tagInField         Field-to-tag, canonical pose from the JSON file
+     * @param tagInCamera        Camera-to-tag, x-forward NWU
+     */
+    private void estimateFromTag(
+            Transform3d cameraOffset,
+            double correctedTimestamp,
+            Pose2d historicalPose,
+            int id,
+            Pose3d tagInField,
+            Transform3d tagInCamera) {
 
-            printForCalibration(cameraOffset, blip, tagInCamera);
+        printForCalibration(cameraOffset, id, tagInCamera);
 
-            tagInCamera = maybeOverrideRotation(cameraOffset, historicalPose, tagInField, tagInCamera);
+        tagInCamera = maybeOverrideRotation(cameraOffset, historicalPose, tagInField, tagInCamera);
 
-            Pose3d estimatedTagInField = estimatedTagInField(cameraOffset, historicalPose, tagInCamera);
+        Pose3d estimatedTagInField = estimatedTagInField(cameraOffset, historicalPose, tagInCamera);
 
-            m_allTags.add(correctedTimestamp, estimatedTagInField);
+        m_allTags.add(correctedTimestamp, estimatedTagInField);
 
-            logTagError(tagInField, estimatedTagInField);
+        logTagError(tagInField, estimatedTagInField);
 
-            Pose2d robotPose2d = robotPose2d(historicalPose, cameraOffset, tagInField, tagInCamera);
+        Pose2d robotPose2d = robotPose2d(historicalPose, cameraOffset, tagInField, tagInCamera);
 
-            // Clean the used-tags collection in case we don't end up writing to it.
-            m_usedTags.cleanup(correctedTimestamp);
+        // Clean the used-tags collection in case we don't end up writing to it.
+        m_usedTags.cleanup(correctedTimestamp);
 
-            //////////////////////////////////////////////////////////////////
-            ///
-            /// Should we use this update?
-            ///
-            if (!Experiments.instance.enabled(Experiment.HeedVision)) {
-                // No, we've turned vision off.
-                continue;
-            }
-            ///
-            if (tagInCamera.getTranslation().getNorm() > m_heedRadiusM) {
-                // No, the tag is too far away.
-                continue;
+        //////////////////////////////////////////////////////////////////
+        ///
+        /// Should we use this update?
+        ///
+        if (!Experiments.instance.enabled(Experiment.HeedVision)) {
+            // No, we've turned vision off.
+            return;
+        }
+        ///
+        double rangeM = tagInCamera.getTranslation().getNorm();
+        if (rangeM > m_heedRadiusM) {
+            // No, the tag is too far away.
+            return;
+        }
+        ///
+        if (Experiments.instance.enabled(Experiment.MultiTagVision)) {
+            // Maybe, but fuse it with the others first, see flushFrame().
+            if (!m_solver.isEmpty() && m_solver.timestamp() != correctedTimestamp)
+                flushFrame();
+            m_solver.add(
+                    correctedTimestamp,
+                    historicalPose.getRotation(),
+                    robotPose2d,
+                    Uncertainty.tagStdDev(rangeM),
+                    Uncertainty.tagLateralStdDev(rangeM),
+                    estimatedTagInField);
+            return;
+        }
+        ///
+        if (m_prevPose == null) {
+            // No, we need another nearby fix to believe either one.
+            m_prevPose = robotPose2d;
+            return;
+        }
+        ///
+        double distanceM = Metrics.translationalDistance(m_prevPose, robotPose2d);
+        if (distanceM > VISION_CHANGE_TOLERANCE_M) {
+            // No, the new estimate is too far from the previous one.
+            m_prevPose = robotPose2d;
+            return;
+        }
+        ///
+        /// Yes, we should use this update.
+        ///
+        //////////////////////////////////////////////////////////////////
+
+        m_usedTags.add(correctedTimestamp, estimatedTagInField);
+        m_visionUpdater.put(
+                correctedTimestamp,
+                robotPose2d,
+                Uncertainty.stateStdDevs(),
+                Uncertainty.visionStdDevs(distanceM, rangeM));
+        m_prevPose = robotPose2d;
+    }
+
+    /**
+     * For the MultiTagVision experiment: fuse the pending tags, which all share a
+     * timestamp, into one pose, and apply the same checks as the per-tag path.
+     * 
+     * The measurement uncertainty is the same as the per-tag path, scaled on
+     * each axis by the improvement of the fused estimate over the best single
+     * tag, so a frame with one tag is treated exactly as before. If the updater
+     * uses it as measurement noise, it's just the fused sigma.
+     * 
+     * This runs when a tag with a different timestamp arrives, and at the end of
+     * each update.
+     */
+    void flushFrame() {
+        if (!m_solver.solve())
+            return;
+        try {
+            double correctedTimestamp = m_solver.timestamp();
+            Pose2d robotPose2d = m_solver.pose();
+            if (DEBUG) {
+                System.out.printf("multi-tag %d of %d tags sigma %f %f pose %s\n",
+                        m_solver.count(), m_solver.size(), m_solver.sigmaX(), m_solver.sigmaY(), robotPose2d);
             }
-            ///
             if (m_prevPose == null) {
-                // No, we need another nearby fix to believe either one.
                 m_prevPose = robotPose2d;
-                continue;
+                return;
             }
-            ///
             double distanceM = Metrics.translationalDistance(m_prevPose, robotPose2d);
             if (distanceM > VISION_CHANGE_TOLERANCE_M) {
-                // No, the new estimate is too far from the previous one.
                 m_prevPose = robotPose2d;
-                continue;
+                return;
+            }
+            for (int i = 0; i < m_solver.size(); ++i) {
+                if (m_solver.used(i))
+                    m_usedTags.add(correctedTimestamp, m_solver.tag(i));
+            }
+            double[] visionSigma;
+            if (Uncertainty.measurementNoise()) {
+                // The fused covariance is the measurement noise.
+                visionSigma = new double[] {
+                        m_solver.sigmaX(), m_solver.sigmaY(), Double.MAX_VALUE };
+            } else {
+                visionSigma = Uncertainty.visionMeasurementStdDevs(distanceM);
+                visionSigma[0] *= m_solver.sigmaX() / m_solver.bestSigmaX();
+                visionSigma[1] *= m_solver.sigmaY() / m_solver.bestSigmaY();
             }
-            ///
-            /// Yes, we should use this update.
-            ///
-            //////////////////////////////////////////////////////////////////
-
-            m_usedTags.add(correctedTimestamp, estimatedTagInField);
             m_visionUpdater.put(
                     correctedTimestamp,
                     robotPose2d,
                     Uncertainty.stateStdDevs(),
-                    Uncertainty.visionMeasurementStdDevs(distanceM));
+                    visionSigma);
             m_prevPose = robotPose2d;
+        } finally {
+            m_solver.clear();
         }
     }
 
+    private double correctedTimestamp(double valueTimestamp) {
+        // Vasili added this extra delay after some experimentation, but
+        // it breaks simulation, so I set it back to zero.
+        // The effect is to make the received sight
+        // appear as if it were from further in the past than the timestamp says it is,
+        // which would be required if there were delay (a lot of delay) not included
+        // in the timestamp.
+        // TODO: figure out what this does and describe it describe here.
+        // final double IMPORTANT_MAGIC_NUMBER = 0.027;
+        final double IMPORTANT_MAGIC_NUMBER = 0.0;
+        double correctedTimestamp = valueTimestamp - IMPORTANT_MAGIC_NUMBER;
+
+        // this seems to always be 1. ????
+        // TODO: look more closely at this
+        m_log_lag.log(() -> Takt.get() - correctedTimestamp);
+        return correctedTimestamp;
+    }
+
     /**
      * Project the 3d pose into a Pose2d, but use the historical pose rotation
      * (which is the gyro rotation from that timestamp)
@@ -379,12 +543,12 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
      * This is used for camera offset calibration. Place a tag at a known position,
      * observe the offset, and add it to Camera.java, inverted.
      */
-    private void printForCalibration(Transform3d cameraOffset, Blip24 blip, Transform3d tagInCamera) {
+    private void printForCalibration(Transform3d cameraOffset, int id, Transform3d tagInCamera) {
         if (!DEBUG)
             return;
         Transform3d tagInRobot = cameraOffset.plus(tagInCamera);
         System.out.printf("tagInRobot id %d X %5.2f Y %5.2f Z %5.2f R %5.2f P %5.2f Y %5.2f\n",
-                blip.getId(), tagInRobot.getTranslation().getX(), tagInRobot.getTranslation().getY(),
+                id, tagInRobot.getTranslation().getX(), tagInRobot.getTranslation().getY(),
                 tagInRobot.getTranslation().getZ(), tagInRobot.getRotation().getX(),
                 tagInRobot.getRotation().getY(), tagInRobot.getRotation().getZ());
     }
@@ -401,8 +565,7 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
     }
 
     /** Camera-to-tag, as it appears in the camera frame. */
-    private Transform3d tagInCamera(Blip24 blip) {
-        Transform3d blipTransform = blip.blipToTransform();
+    private Transform3d tagInCamera(Transform3d blipTransform) {
         m_log_tag_in_camera.log(() -> blipTransform);
         return blipTransform;
     }
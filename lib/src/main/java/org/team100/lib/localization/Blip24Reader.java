@@ -0,0 +1,119 @@
+package org.team100.lib.localization;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+/**
+ * Flyweight view of a Blip24 struct array, reading fields straight from the
+ * raw NT bytes, without making a Blip24 (and its Transform3d, Translation3d,
+ * Rotation3d, and Quaternion) for every tag.
+ *
+ * The layout is the one in Blip24Struct, little-endian, as NT packs it:
+ *
+ * <pre>
+ * int32 id
+ * double x, y, z       (translation, camera coordinates, z-forward)
+ * double qw, qx, qy, qz (rotation, camera coordinates, z-forward)
+ * </pre>
+ *
+ * Make one and reuse it; it holds a reference to the last array read, so
+ * don't keep it across NT updates. It is not thread-safe.
+ */
+public class Blip24Reader {
+    /** Bytes per blip, same as Blip24Struct.getSize(). */
+    public static final int SIZE = 60;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(
+            int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(
+            double[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] m_bytes = new byte[0];
+    private int m_count;
+
+    /**
+     * Point the reader at the raw value.
+     *
+     * @return false if the value is not a whole number of blips, in which case
+     *         the count is zero.
+     */
+    public boolean read(byte[] bytes) {
+        if (bytes.length % SIZE != 0) {
+            m_bytes = new byte[0];
+            m_count = 0;
+            return false;
+        }
+        m_bytes = bytes;
+        m_count = bytes.length / SIZE;
+        return true;
+    }
+
+    /** Number of blips in the value. */
+    public int count() {
+        return m_count;
+    }
+
+    /** AprilTag id of blip i. */
+    public int id(int i) {
+        return (int) INT.get(m_bytes, i * SIZE);
+    }
+
+    /** Raw translation, camera coordinates (x right). */
+    public double x(int i) {
+        return field(i, 0);
+    }
+
+    /** Raw translation, camera coordinates (y down). */
+    public double y(int i) {
+        return field(i, 1);
+    }
+
+    /** Raw translation, camera coordinates (z forward). */
+    public double z(int i) {
+        return field(i, 2);
+    }
+
+    public double qw(int i) {
+        return field(i, 3);
+    }
+
+    public double qx(int i) {
+        return field(i, 4);
+    }
+
+    public double qy(int i) {
+        return field(i, 5);
+    }
+
+    public double qz(int i) {
+        return field(i, 6);
+    }
+
+    /**
+     * The same as Blip24.blipToTransform(): the tag in x-forward NWU
+     * coordinates, made directly from the raw fields.
+     */
+    public Transform3d transform(int i) {
+        return new Transform3d(
+                new Translation3d(z(i), -x(i), -y(i)),
+                new Rotation3d(new Quaternion(qw(i), qz(i), -qx(i), -qy(i))));
+    }
+
+    /** Blip i as an object, for compatibility. This allocates. */
+    public Blip24 blip(int i) {
+        return new Blip24(id(i), new Transform3d(
+                new Translation3d(x(i), y(i), z(i)),
+                new Rotation3d(new Quaternion(qw(i), qx(i), qy(i), qz(i)))));
+    }
+
+    /** The double at position j after the id. */
+    private double field(int i, int j) {
+        return (double) DOUBLE.get(m_bytes, i * SIZE + Integer.BYTES + j * Double.BYTES);
+    }
+}
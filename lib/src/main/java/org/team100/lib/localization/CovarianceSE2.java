@@ -0,0 +1,167 @@
+package org.team100.lib.localization;
+
+/**
+ * Covariance of an SE(2) pose estimate, (x, y, theta) in field coordinates, for
+ * the KalmanVision experiment.
+ *
+ * This is a symmetric 3x3 matrix, so it's just the six entries of the upper
+ * triangle, with the products written out, instead of a Matrix<N3,N3>, so that
+ * propagation and update each cost a few dozen flops and one small allocation.
+ *
+ * Immutable, like the InterpolationRecord that holds it.
+ */
+final class CovarianceSE2 {
+    /**
+     * Odometry translation error, as a fraction of distance traveled, e.g. due to
+     * wheel slip or wear.
+     */
+    private static final double K_DISTANCE = 0.02;
+    /**
+     * Gyro drift, rad/s, see the localization README.
+     */
+    private static final double GYRO_DRIFT = 0.002;
+    /**
+     * Measurement variance floor, so a zero-variance measurement can't make the
+     * covariance singular.
+     */
+    private static final double MIN_VARIANCE = Uncertainty.MIN_SIGMA * Uncertainty.MIN_SIGMA;
+
+    /**
+     * Position as in Uncertainty.DEFAULT_STATE_STDDEV; heading is about the gyro
+     * noise, see the localization README.
+     */
+    static final CovarianceSE2 INITIAL = diagonal(0.1, 0.1, 0.05);
+
+    final double xx;
+    final double xy;
+    final double xt;
+    final double yy;
+    final double yt;
+    final double tt;
+
+    CovarianceSE2(double xx, double xy, double xt, double yy, double yt, double tt) {
+        this.xx = xx;
+        this.xy = xy;
+        this.xt = xt;
+        this.yy = yy;
+        this.yt = yt;
+        this.tt = tt;
+    }
+
+    /** From standard deviations. */
+    static CovarianceSE2 diagonal(double sx, double sy, double st) {
+        return new CovarianceSE2(sx * sx, 0, 0, sy * sy, 0, st * st);
+    }
+
+    /**
+     * Odometry step: P' = F P F^T + Q, where F is the Jacobian of the new pose
+     * with respect to the old one, for the given field-relative displacement:
+     *
+     * <pre>
+     * 1  0  -dy
+     * 0  1   dx
+     * 0  0   1
+     * </pre>
+     *
+     * and Q grows with distance traveled and with time (gyro drift).
+     *
+     * @param dx field-relative x displacement, meters
+     * @param dy field-relative y displacement, meters
+     * @param dt time step, sec
+     */
+    CovarianceSE2 propagate(double dx, double dy, double dt) {
+        double a = -dy;
+        double b = dx;
+        double sd = K_DISTANCE * Math.hypot(dx, dy);
+        double qxy = sd * sd;
+        double qt = GYRO_DRIFT * GYRO_DRIFT * Math.max(0, dt);
+        return new CovarianceSE2(
+                xx + 2 * a * xt + a * a * tt + qxy,
+                xy + a * yt + b * xt + a * b * tt,
+                xt + a * tt,
+                yy + 2 * b * yt + b * b * tt + qxy,
+                yt + b * tt,
+                tt + qt);
+    }
+
+    /**
+     * Measurement update for a position measurement (H = [I 0]) with the given
+     * variances, i.e. the vision measurement. Vision doesn't measure heading (its
+     * sigma is MAX_VALUE), the gyro does, so only x and y are observed.
+     *
+     * The gyro owns the heading, so the caller doesn't correct it, i.e. the
+     * heading row of the gain is zero. That's not the optimal gain, so the
+     * update uses the Joseph form, P' = (I - KH) P (I - KH)^T + K R K^T, which
+     * is right for any gain: the heading variance is unchanged, and its cross
+     * terms follow the corrected position.
+     *
+     * The variances are floored at MIN_VARIANCE: with zero variance, P
+     * collapses, and the next update divides by zero.
+     *
+     * @param rxx  x measurement variance
+     * @param ryy  y measurement variance
+     * @param gain output, the 2x2 Kalman gain for x and y, row-major, length 4
+     * @return the updated covariance
+     */
+    CovarianceSE2 update(double rxx, double ryy, double[] gain) {
+        double rx = Math.max(rxx, MIN_VARIANCE);
+        double ry = Math.max(ryy, MIN_VARIANCE);
+        // S = H P H^T + R
+        double s00 = xx + rx;
+        double s01 = xy;
+        double s11 = yy + ry;
+        double det = s00 * s11 - s01 * s01;
+        double i00 = s11 / det;
+        double i01 = -s01 / det;
+        double i11 = s00 / det;
+        // K = P H^T S^-1, position rows only.
+        double k00 = xx * i00 + xy * i01;
+        double k01 = xx * i01 + xy * i11;
+        double k10 = xy * i00 + yy * i01;
+        double k11 = xy * i01 + yy * i11;
+        gain[0] = k00;
+        gain[1] = k01;
+        gain[2] = k10;
+        gain[3] = k11;
+        // A = I - K, the position block of I - KH; the heading block is 1.
+        double a00 = 1 - k00;
+        double a01 = -k01;
+        double a10 = -k10;
+        double a11 = 1 - k11;
+        // A P, position block
+        double m00 = a00 * xx + a01 * xy;
+        double m01 = a00 * xy + a01 * yy;
+        double m10 = a10 * xx + a11 * xy;
+        double m11 = a10 * xy + a11 * yy;
+        return new CovarianceSE2(
+                m00 * a00 + m01 * a01 + k00 * k00 * rx + k01 * k01 * ry,
+                m00 * a10 + m01 * a11 + k00 * k10 * rx + k01 * k11 * ry,
+                a00 * xt + a01 * yt,
+                m10 * a10 + m11 * a11 + k10 * k10 * rx + k11 * k11 * ry,
+                a10 * xt + a11 * yt,
+                tt);
+    }
+
+    CovarianceSE2 interpolate(CovarianceSE2 end, double t) {
+        return new CovarianceSE2(
+                xx + (end.xx - xx) * t,
+                xy + (end.xy - xy) * t,
+                xt + (end.xt - xt) * t,
+                yy + (end.yy - yy) * t,
+                yt + (end.yt - yt) * t,
+                tt + (end.tt - tt) * t);
+    }
+
+    /** Standard deviation of position, sqrt of the larger eigenvalue of the xy block. */
+    double positionSigma() {
+        double mean = (xx + yy) / 2;
+        double d = Math.hypot((xx - yy) / 2, xy);
+        return Math.sqrt(mean + d);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CovarianceSE2 [xx=%g, xy=%g, xt=%g, yy=%g, yt=%g, tt=%g]",
+                xx, xy, xt, yy, yt, tt);
+    }
+}
@@ -0,0 +1,237 @@
+package org.team100.lib.localization;
+
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveDriveKinematics100;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleDeltas;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+
+/**
+ * Smooths the whole SwerveHistory window at once, for the FixedLagSmoothing
+ * experiment, instead of nudging one entry per measurement and replaying.
+ *
+ * Each measurement gets its own history entry, at its timestamp, and is kept
+ * until it falls out of the window. Each solve makes a PoseGraph with a node
+ * for every history entry, odometry factors from the wheel positions and gyro
+ * headings stored in the history, and a position factor for every
+ * measurement, and writes the solution back into the history, in place, only
+ * the entries that moved. Since the window reaches the newest entry, there's
+ * no replay.
+ *
+ * Everything before the window is summarized by a prior on the oldest entry
+ * (see WindowPrior), which takes in each measurement as it leaves the window.
+ * The prior isn't taken from the smoothed history, because that already
+ * includes the measurements still in the window, so they'd be counted again
+ * on every solve. The gyro owns the heading, so the headings are written back
+ * unchanged.
+ *
+ * Not thread-safe.
+ */
+class FixedLagSmoother {
+    private static final boolean DEBUG = false;
+    private static final int ITERATIONS = 2;
+    /** Same as the history. */
+    private static final int CAPACITY = 256;
+    /** Five cameras, a few tags each, for the whole window. */
+    private static final int MAX_MEASUREMENTS = 256;
+    /**
+     * Entries that move less than this, meters, aren't written back, so a solve
+     * with nothing new doesn't rewrite the whole history.
+     */
+    private static final double WRITE_TOLERANCE = 1e-6;
+
+    private final SwerveHistory m_history;
+    private final SwerveDriveKinematics100 m_kinematics;
+    private final PoseGraph m_graph;
+    private final WindowPrior m_prior;
+
+    // Measurements in the window, in arrival order.
+    private final double[] m_timeS = new double[MAX_MEASUREMENTS];
+    private final double[] m_x = new double[MAX_MEASUREMENTS];
+    private final double[] m_y = new double[MAX_MEASUREMENTS];
+    private final double[] m_sigma = new double[MAX_MEASUREMENTS];
+    private int m_count;
+    /** Measurements leaving the window, in time order, reused. */
+    private final int[] m_leaving = new int[MAX_MEASUREMENTS];
+
+    FixedLagSmoother(SwerveHistory history, SwerveDriveKinematics100 kinematics) {
+        m_history = history;
+        m_kinematics = kinematics;
+        m_graph = new PoseGraph(CAPACITY, MAX_MEASUREMENTS);
+        m_prior = new WindowPrior(CAPACITY);
+    }
+
+    /**
+     * Add a position measurement, and a history entry at its timestamp, so the
+     * measurement has a node of its own. The rotation is ignored, and the sigma
+     * is floored at Uncertainty.MIN_SIGMA.
+     *
+     * @return false if too old
+     */
+    boolean add(double timestampS, Pose2d measurement, double[] visionSigma) {
+        if (m_history.tooOld(timestampS))
+            return false;
+        if (m_count == MAX_MEASUREMENTS) {
+            // This shouldn't happen, but if it does, forget the oldest.
+            drop(1);
+        }
+        InterpolationRecord sample = m_history.getRecord(timestampS);
+        m_history.put(timestampS, sample.m_state, sample.m_wheelPositions, sample.m_covariance);
+        m_timeS[m_count] = timestampS;
+        m_x[m_count] = measurement.getX();
+        m_y[m_count] = measurement.getY();
+        m_sigma[m_count] = Math.max(Math.max(visionSigma[0], visionSigma[1]), Uncertainty.MIN_SIGMA);
+        m_count++;
+        return true;
+    }
+
+    /** Number of measurements in the window. */
+    int size() {
+        return m_count;
+    }
+
+    /**
+     * Solve for the whole window and write it back to the history.
+     *
+     * @return the number of history entries solved, zero if there are no
+     *         measurements in the window.
+     */
+    int solve() {
+        marginalize();
+        if (m_count == 0)
+            return 0;
+        int n = Math.min(m_history.size(), CAPACITY);
+        m_graph.clear();
+        m_prior.chainStart();
+        InterpolationRecord prev = null;
+        for (int i = 0; i < n; ++i) {
+            InterpolationRecord record = m_history.recordAt(i);
+            Pose2d pose = record.m_state.pose();
+            m_graph.addNode(pose.getX(), pose.getY(), pose.getRotation().getRadians());
+            if (prev != null) {
+                odometry(i - 1, m_history.timeAt(i), prev, record);
+            }
+            prev = record;
+        }
+        m_graph.setPrior(m_prior.x(), m_prior.y(), Math.sqrt(m_prior.variance()));
+        for (int j = 0; j < m_count; ++j) {
+            // the entry at (or if it's gone, just after) the timestamp
+            int node = Math.min(m_history.lowerIndex(m_timeS[j]) + 1, n - 1);
+            m_graph.addPosition(node, m_x[j], m_y[j], m_sigma[j]);
+        }
+        double step = m_graph.solve(ITERATIONS);
+        if (DEBUG)
+            System.out.printf("nodes %d measurements %d step %g\n", n, m_count, step);
+        int written = 0;
+        for (int i = 0; i < n; ++i) {
+            InterpolationRecord record = m_history.recordAt(i);
+            Pose2d pose = record.m_state.pose();
+            double x = m_graph.x(i);
+            double y = m_graph.y(i);
+            if (Math.abs(x - pose.getX()) < WRITE_TOLERANCE
+                    && Math.abs(y - pose.getY()) < WRITE_TOLERANCE)
+                continue;
+            m_history.setAt(i, record.withPose(new Pose2d(x, y, pose.getRotation())));
+            written++;
+        }
+        if (DEBUG)
+            System.out.printf("written %d\n", written);
+        return n;
+    }
+
+    //////////////////////////////////////////////
+
+    /**
+     * Move the prior up to the oldest entry, taking in the measurements that
+     * have left the window, in time order, and forget them.
+     */
+    private void marginalize() {
+        double oldestS = m_history.timeAt(0);
+        if (!m_prior.valid()) {
+            Pose2d pose = m_history.recordAt(0).m_state.pose();
+            m_prior.reset(oldestS, pose.getX(), pose.getY(),
+                    PoseGraph.PRIOR_SIGMA * PoseGraph.PRIOR_SIGMA);
+        }
+        int k = 0;
+        for (int j = 0; j < m_count; ++j) {
+            if (m_timeS[j] >= oldestS)
+                continue;
+            // insertion sort, there are only a few
+            int i = k++;
+            while (i > 0 && m_timeS[m_leaving[i - 1]] > m_timeS[j]) {
+                m_leaving[i] = m_leaving[i - 1];
+                i--;
+            }
+            m_leaving[i] = j;
+        }
+        for (int i = 0; i < k; ++i) {
+            int j = m_leaving[i];
+            m_prior.advance(m_timeS[j]);
+            m_prior.fold(m_x[j], m_y[j], m_sigma[j] * m_sigma[j]);
+        }
+        if (!m_prior.advance(oldestS)) {
+            // No solve for the whole window, so the history is just odometry
+            // from the last solution, which has every measurement once.
+            Pose2d pose = m_history.recordAt(0).m_state.pose();
+            m_prior.reset(oldestS, pose.getX(), pose.getY(), m_prior.variance());
+        }
+        prune();
+    }
+
+    /**
+     * The odometry factor between two entries: the wheel twist, with the gyro
+     * heading change, as in OdometryUpdater, as a chord in the frame of the
+     * first. Also the field-relative step, for the prior.
+     */
+    private void odometry(int i, double timeS, InterpolationRecord a, InterpolationRecord b) {
+        Twist2d twist = m_kinematics.toTwist2d(
+                SwerveModuleDeltas.modulePositionDelta(a.m_wheelPositions, b.m_wheelPositions));
+        double dtheta = b.m_state.pose().getRotation().minus(
+                a.m_state.pose().getRotation()).getRadians();
+        // as in Pose2d.exp(), without the allocation
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - dtheta * dtheta / 6.0;
+            c = 0.5 * dtheta;
+        } else {
+            s = Math.sin(dtheta) / dtheta;
+            c = (1 - Math.cos(dtheta)) / dtheta;
+        }
+        double dx = twist.dx * s - twist.dy * c;
+        double dy = twist.dx * c + twist.dy * s;
+        m_graph.setOdometry(i, dx, dy, dtheta);
+        Rotation2d heading = a.m_state.pose().getRotation();
+        double cos = heading.getCos();
+        double sin = heading.getSin();
+        double sigma = PoseGraph.odometrySigma(dx, dy);
+        m_prior.chainAdd(timeS, cos * dx - sin * dy, sin * dx + cos * dy, sigma * sigma);
+    }
+
+    /** Forget measurements older than the history. */
+    private void prune() {
+        double oldestS = m_history.timeAt(0);
+        int kept = 0;
+        for (int j = 0; j < m_count; ++j) {
+            if (m_timeS[j] < oldestS)
+                continue;
+            m_timeS[kept] = m_timeS[j];
+            m_x[kept] = m_x[j];
+            m_y[kept] = m_y[j];
+            m_sigma[kept] = m_sigma[j];
+            kept++;
+        }
+        m_count = kept;
+    }
+
+    /** Forget the oldest k measurements, by arrival. */
+    private void drop(int k) {
+        int n = m_count - k;
+        System.arraycopy(m_timeS, k, m_timeS, 0, n);
+        System.arraycopy(m_x, k, m_x, 0, n);
+        System.arraycopy(m_y, k, m_y, 0, n);
+        System.arraycopy(m_sigma, k, m_sigma, 0, n);
+        m_count = n;
+    }
+}
@@ -24,7 +24,8 @@ public class FreshSwerveEstimate implements DoubleFunction<ModelSE2> {
             SwerveHistory history) {
         m_history = history;
         m_vision = Cache.ofSideEffect(vision::update);
-        m_odometry = Cache.ofSideEffect(odometry::update);
+        // same order as apply(), below.
+        m_odometry = Cache.ofSideEffect(odometry::update).dependsOn(m_vision);
     }
 
     /**
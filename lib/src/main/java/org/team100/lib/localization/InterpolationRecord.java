@@ -19,8 +19,12 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
 
     final SwerveModulePositions m_wheelPositions;
 
+    /** Pose covariance, for the KalmanVision experiment. */
+    final CovarianceSE2 m_covariance;
+
     /**
-     * Constructs an Interpolation Record with the specified parameters.
+     * Constructs an Interpolation Record with the specified parameters, and the
+     * initial covariance.
      *
      * @param kinematics
      * @param state          The pose observed given the current sensor inputs and
@@ -31,10 +35,33 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
             SwerveDriveKinematics100 kinematics,
             ModelSE2 state,
             SwerveModulePositions wheelPositions) {
+        this(kinematics, state, wheelPositions, CovarianceSE2.INITIAL);
+    }
+
+    InterpolationRecord(
+            SwerveDriveKinematics100 kinematics,
+            ModelSE2 state,
+            SwerveModulePositions wheelPositions,
+            CovarianceSE2 covariance) {
         m_kinematics = kinematics;
         m_state = state;
         // this copy is important, don't keep the passed one.
         m_wheelPositions = new SwerveModulePositions(wheelPositions);
+        m_covariance = covariance;
+    }
+
+    /** Same kinematics, wheel positions, and covariance as the other. */
+    private InterpolationRecord(InterpolationRecord other, ModelSE2 state) {
+        m_kinematics = other.m_kinematics;
+        m_state = state;
+        // already a private copy, so it can be shared.
+        m_wheelPositions = other.m_wheelPositions;
+        m_covariance = other.m_covariance;
+    }
+
+    /** This record with a different pose, and the same velocity. */
+    InterpolationRecord withPose(Pose2d pose) {
+        return new InterpolationRecord(this, new ModelSE2(pose, m_state.velocity()));
     }
 
     /**
@@ -44,6 +71,7 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
      * Interpolates the wheel positions.
      * Integrates wheel positions to find the interpolated pose.
      * Interpolates the velocity.
+     * Interpolates the covariance.
      *
      * @param endValue The upper bound, or end.
      * @param t        How far between the lower and upper bound we are. This should
@@ -77,7 +105,8 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
         VelocitySE2 velocity = startVelocity.plus(endVelocity.minus(startVelocity).times(t));
 
         ModelSE2 newState = new ModelSE2(pose, velocity);
-        return new InterpolationRecord(m_kinematics, newState, wheelLerp);
+        CovarianceSE2 covariance = m_covariance.interpolate(endValue.m_covariance, t);
+        return new InterpolationRecord(m_kinematics, newState, wheelLerp, covariance);
     }
 
     @Override
@@ -0,0 +1,294 @@
+package org.team100.lib.localization;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Fuses the robot positions implied by each tag in a camera frame (or in
+ * several frames with the same timestamp) into one weighted least-squares
+ * estimate.
+ *
+ * The rotation comes from the gyro, and is the same for every tag at the same
+ * timestamp, so the problem is linear in the translation. Each tag has its own
+ * 2x2 covariance: one sigma along the line of sight to the tag, and another
+ * across it, so a tag that sees the robot's range poorly doesn't spoil the
+ * bearing. The solution is the information-weighted mean of the per-tag
+ * positions, (sum of C_i^-1)^-1 (sum of C_i^-1 p_i), with the fused covariance
+ * (sum of C_i^-1)^-1.
+ *
+ * With three or more tags, a tag more than three sigmas (Mahalanobis, using its
+ * own covariance) from the median (which a single bad tag can't drag around,
+ * as it can the mean) is dropped before computing the mean.
+ *
+ * Make one and reuse it; it is not thread-safe.
+ */
+class MultiTagSolver {
+    private static final double OUTLIER_SIGMAS = 3.0;
+
+    private double[] m_x = new double[8];
+    private double[] m_y = new double[8];
+    // Per-tag covariance.
+    private double[] m_cxx = new double[8];
+    private double[] m_cxy = new double[8];
+    private double[] m_cyy = new double[8];
+    // Per-tag information, i.e. the inverse covariance.
+    private double[] m_ixx = new double[8];
+    private double[] m_ixy = new double[8];
+    private double[] m_iyy = new double[8];
+    private boolean[] m_used = new boolean[8];
+    private Pose3d[] m_tags = new Pose3d[8];
+    /** For the median, so solve() doesn't allocate. */
+    private double[] m_scratch = new double[8];
+    private int m_count;
+
+    private double m_timestamp;
+    private Rotation2d m_rotation;
+
+    private double m_solutionX;
+    private double m_solutionY;
+    private double m_solutionXX;
+    private double m_solutionXY;
+    private double m_solutionYY;
+    private int m_solutionCount;
+
+    /**
+     * Add one tag's estimate.
+     *
+     * @param timestamp    frame timestamp, sec, must match the other tags
+     * @param rotation     gyro rotation at the timestamp
+     * @param robotInField robot pose implied by this tag
+     * @param rangeSigma   standard deviation of this tag's estimate along the
+     *                     line from the robot to the tag, meters
+     * @param lateralSigma standard deviation across that line, meters
+     * @param tagInField   estimated tag pose, for the line of sight, and for
+     *                     visualization
+     */
+    void add(
+            double timestamp,
+            Rotation2d rotation,
+            Pose2d robotInField,
+            double rangeSigma,
+            double lateralSigma,
+            Pose3d tagInField) {
+        if (m_count == m_x.length) {
+            int n = 2 * m_count;
+            m_x = Arrays.copyOf(m_x, n);
+            m_y = Arrays.copyOf(m_y, n);
+            m_cxx = Arrays.copyOf(m_cxx, n);
+            m_cxy = Arrays.copyOf(m_cxy, n);
+            m_cyy = Arrays.copyOf(m_cyy, n);
+            m_ixx = Arrays.copyOf(m_ixx, n);
+            m_ixy = Arrays.copyOf(m_ixy, n);
+            m_iyy = Arrays.copyOf(m_iyy, n);
+            m_used = Arrays.copyOf(m_used, n);
+            m_tags = Arrays.copyOf(m_tags, n);
+            m_scratch = new double[n];
+        }
+        m_timestamp = timestamp;
+        m_rotation = rotation;
+        double x = robotInField.getX();
+        double y = robotInField.getY();
+        double rr = square(Math.max(rangeSigma, Uncertainty.MIN_SIGMA));
+        double ll = square(Math.max(lateralSigma, Uncertainty.MIN_SIGMA));
+        // unit vector towards the tag
+        double ux = tagInField.getX() - x;
+        double uy = tagInField.getY() - y;
+        double norm = Math.hypot(ux, uy);
+        if (norm == 0) {
+            // No line of sight, so use the worse sigma in every direction.
+            ux = 1;
+            uy = 0;
+            rr = Math.max(rr, ll);
+            ll = rr;
+        } else {
+            ux /= norm;
+            uy /= norm;
+        }
+        // C = rr u u^T + ll (I - u u^T), and its inverse is the same with the
+        // reciprocals, since u and its normal are orthonormal.
+        m_x[m_count] = x;
+        m_y[m_count] = y;
+        m_cxx[m_count] = rr * ux * ux + ll * uy * uy;
+        m_cxy[m_count] = (rr - ll) * ux * uy;
+        m_cyy[m_count] = rr * uy * uy + ll * ux * ux;
+        m_ixx[m_count] = ux * ux / rr + uy * uy / ll;
+        m_ixy[m_count] = (1 / rr - 1 / ll) * ux * uy;
+        m_iyy[m_count] = uy * uy / rr + ux * ux / ll;
+        m_used[m_count] = true;
+        m_tags[m_count] = tagInField;
+        m_count++;
+    }
+
+    boolean isEmpty() {
+        return m_count == 0;
+    }
+
+    /** Timestamp of the pending tags. */
+    double timestamp() {
+        return m_timestamp;
+    }
+
+    /**
+     * Solve using the pending tags.
+     *
+     * @return false if there are none.
+     */
+    boolean solve() {
+        if (m_count == 0)
+            return false;
+        if (m_count >= 3) {
+            double medianX = median(m_x);
+            double medianY = median(m_y);
+            for (int i = 0; i < m_count; ++i) {
+                double dx = m_x[i] - medianX;
+                double dy = m_y[i] - medianY;
+                // squared Mahalanobis distance
+                double d2 = m_ixx[i] * dx * dx + 2 * m_ixy[i] * dx * dy + m_iyy[i] * dy * dy;
+                m_used[i] = d2 <= OUTLIER_SIGMAS * OUTLIER_SIGMAS;
+            }
+            if (usedCount() == 0) {
+                // they all disagree, so just use all of them.
+                Arrays.fill(m_used, 0, m_count, true);
+            }
+        }
+        mean();
+        return true;
+    }
+
+    /** The fused pose, with the gyro rotation. */
+    Pose2d pose() {
+        return new Pose2d(m_solutionX, m_solutionY, m_rotation);
+    }
+
+    /** Fused covariance, x variance, m^2. */
+    double covXX() {
+        return m_solutionXX;
+    }
+
+    /** Fused covariance, x-y covariance, m^2. */
+    double covXY() {
+        return m_solutionXY;
+    }
+
+    /** Fused covariance, y variance, m^2. */
+    double covYY() {
+        return m_solutionYY;
+    }
+
+    /**
+     * Standard deviation of the fused position in x, meters, for consumers that
+     * take independent per-axis sigmas. It includes the x-y covariance, so that
+     * diag(sigmaX^2, sigmaY^2) - C is positive semidefinite, i.e. it never claims
+     * more certainty than the full covariance.
+     */
+    double sigmaX() {
+        return Math.sqrt(m_solutionXX + Math.abs(m_solutionXY));
+    }
+
+    /** Standard deviation of the fused position in y, like sigmaX(). */
+    double sigmaY() {
+        return Math.sqrt(m_solutionYY + Math.abs(m_solutionXY));
+    }
+
+    /** The smallest sigmaX() of the tags used, each on its own. */
+    double bestSigmaX() {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < m_count; ++i) {
+            if (m_used[i])
+                best = Math.min(best, m_cxx[i] + Math.abs(m_cxy[i]));
+        }
+        return Math.sqrt(best);
+    }
+
+    /** The smallest sigmaY() of the tags used, each on its own. */
+    double bestSigmaY() {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < m_count; ++i) {
+            if (m_used[i])
+                best = Math.min(best, m_cyy[i] + Math.abs(m_cxy[i]));
+        }
+        return Math.sqrt(best);
+    }
+
+    /** Number of tags in the solution. */
+    int count() {
+        return m_solutionCount;
+    }
+
+    /** Number of tags added, used or not. */
+    int size() {
+        return m_count;
+    }
+
+    /** True if tag i was used in the solution. */
+    boolean used(int i) {
+        return m_used[i];
+    }
+
+    /** Estimated pose of tag i. */
+    Pose3d tag(int i) {
+        return m_tags[i];
+    }
+
+    /** Forget the pending tags. */
+    void clear() {
+        Arrays.fill(m_tags, 0, m_count, null);
+        m_count = 0;
+        m_solutionCount = 0;
+    }
+
+    //////////////////////////////////////////////
+
+    private void mean() {
+        // total information, and information-weighted position
+        double sumXX = 0;
+        double sumXY = 0;
+        double sumYY = 0;
+        double sumX = 0;
+        double sumY = 0;
+        int n = 0;
+        for (int i = 0; i < m_count; ++i) {
+            if (!m_used[i])
+                continue;
+            sumXX += m_ixx[i];
+            sumXY += m_ixy[i];
+            sumYY += m_iyy[i];
+            sumX += m_ixx[i] * m_x[i] + m_ixy[i] * m_y[i];
+            sumY += m_ixy[i] * m_x[i] + m_iyy[i] * m_y[i];
+            n++;
+        }
+        // invert the total information to get the fused covariance
+        double det = sumXX * sumYY - sumXY * sumXY;
+        m_solutionXX = sumYY / det;
+        m_solutionXY = -sumXY / det;
+        m_solutionYY = sumXX / det;
+        m_solutionX = m_solutionXX * sumX + m_solutionXY * sumY;
+        m_solutionY = m_solutionXY * sumX + m_solutionYY * sumY;
+        m_solutionCount = n;
+    }
+
+    private double median(double[] values) {
+        System.arraycopy(values, 0, m_scratch, 0, m_count);
+        Arrays.sort(m_scratch, 0, m_count);
+        int mid = m_count / 2;
+        if (m_count % 2 == 1)
+            return m_scratch[mid];
+        return (m_scratch[mid - 1] + m_scratch[mid]) / 2;
+    }
+
+    private static double square(double x) {
+        return x * x;
+    }
+
+    private int usedCount() {
+        int n = 0;
+        for (int i = 0; i < m_count; ++i) {
+            if (m_used[i])
+                n++;
+        }
+        return n;
+    }
+}
@@ -1,6 +1,12 @@
 package org.team100.lib.localization;
 
 import org.team100.lib.coherence.Takt;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.IntLogger;
 import org.team100.lib.state.ModelSE2;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -11,28 +17,83 @@ import edu.wpi.first.math.geometry.Twist2d;
  * pose for the vision timestamp, nudging that pose towards the vision
  * measurement, and then asking the odometry updater to replay all the later
  * odometry.
- * 
+ *
  * The "nudging" here is essentially just a weighted average; you provide the
  * weights you want at update time.
+ *
+ * If the KalmanVision experiment is enabled, the state sigmas are ignored, and
+ * instead the covariance in the history (grown by the OdometryUpdater) is used
+ * for a Kalman measurement update of the position, which also shrinks the
+ * position covariance. The heading belongs to the gyro, so it is neither
+ * corrected nor made more certain. The replay then propagates the new
+ * covariance forward.
+ *
+ * If the BatchVisionReplay experiment is enabled, measurements between
+ * beginBatch() and endBatch() are collected, sorted by timestamp, and applied
+ * in order, replaying only the odometry between each pair of measurements, and
+ * then the rest of the history once at the end. Without batching, each
+ * measurement replays the whole tail of the history, so with several cameras
+ * each seeing several tags, the same entries are replayed many times.
+ *
+ * If the FixedLagSmoothing experiment is enabled, the measurements go to a
+ * FixedLagSmoother instead, which solves for the whole history window at
+ * endBatch() (or right away, outside a batch), with no replay. The state sigmas
+ * are ignored.
  */
 public class NudgingVisionUpdater implements VisionUpdater {
+    /** Five cameras, a few tags each, maybe a couple of frames per cycle. */
+    private static final int MAX_BATCH = 64;
 
     private final SwerveHistory m_history;
     /** For replay. */
     private final OdometryUpdater m_odometryUpdater;
+
+    private final IntLogger m_log_batch_size;
+    private final IntLogger m_log_replays;
+    private final IntLogger m_log_replayed_entries;
+    private final DoubleLogger m_log_replay_time;
+    private final DoubleLogger m_log_time_saved;
+
+    // Batch storage, sorted by timestamp.
+    private final double[] m_batchTimeS = new double[MAX_BATCH];
+    private final Pose2d[] m_batchMeasurement = new Pose2d[MAX_BATCH];
+    private final double[][] m_batchStateSigma = new double[MAX_BATCH][];
+    private final double[][] m_batchVisionSigma = new double[MAX_BATCH][];
+    private int m_batchSize = 0;
+    private boolean m_batching = false;
+
     /** To measure time since last update, for indicator. */
     private double m_latestTimeS = 0;
 
+    /** Kalman gain for x and y, 2x2, row-major, reused. */
+    private final double[] m_gain = new double[4];
+
+    private final FixedLagSmoother m_smoother;
+    private final IntLogger m_log_smoothed_entries;
+    private final DoubleLogger m_log_smoother_time;
+
     public NudgingVisionUpdater(
+            LoggerFactory parent,
             SwerveHistory history,
             OdometryUpdater odometryUpdater) {
+        LoggerFactory log = parent.type(this);
         m_history = history;
         m_odometryUpdater = odometryUpdater;
+        m_log_batch_size = log.intLogger(Level.TRACE, "batch size");
+        m_log_replays = log.intLogger(Level.TRACE, "replays");
+        m_log_replayed_entries = log.intLogger(Level.TRACE, "replayed entries");
+        m_log_replay_time = log.doubleLogger(Level.TRACE, "replay time (s)");
+        m_log_time_saved = log.doubleLogger(Level.TRACE, "replay time saved (s)");
+        m_smoother = new FixedLagSmoother(history, history.kinematics());
+        m_log_smoothed_entries = log.intLogger(Level.TRACE, "smoothed entries");
+        m_log_smoother_time = log.doubleLogger(Level.TRACE, "smoother time (s)");
     }
 
     /**
      * Put a new state estimate based on the supplied pose. If not current,
      * subsequent wheel updates are replayed.
+     *
+     * If batching, the measurement is saved until endBatch().
      */
     @Override
     public void put(
@@ -40,24 +101,55 @@ public class NudgingVisionUpdater implements VisionUpdater {
             Pose2d measurement,
             double[] stateSigma,
             double[] visionSigma) {
+        if (Experiments.instance.enabled(Experiment.FixedLagSmoothing)) {
+            if (m_smoother.add(timestampS, measurement, visionSigma))
+                m_latestTimeS = Takt.get();
+            if (!m_batching)
+                smooth();
+            return;
+        }
+        if (m_batching) {
+            if (m_batchSize == MAX_BATCH) {
+                // This shouldn't happen, but if it does, apply what we have so far.
+                applyBatch();
+            }
+            add(timestampS, measurement, stateSigma, visionSigma);
+            return;
+        }
 
         // Skip too-old measurement
         if (m_history.tooOld(timestampS)) {
             return;
         }
 
-        // Sample the history at the measurement time.
-        InterpolationRecord sample = m_history.getRecord(timestampS);
+        double startS = Takt.actual();
+        nudgeHistory(timestampS, measurement, stateSigma, visionSigma);
+        int replayed = m_odometryUpdater.replay(timestampS);
+        m_log_replays.log(() -> 1);
+        m_log_replayed_entries.log(() -> replayed);
+        m_log_replay_time.log(() -> Takt.actual() - startS);
+    }
 
-        // If there is a sample, nudge it towards the measurement.
-        Pose2d nudged = nudge(
-                sample.m_state.pose(), measurement, stateSigma, visionSigma);
-        m_history.put(
-                timestampS,
-                new ModelSE2(nudged, sample.m_state.velocity()),
-                sample.m_wheelPositions);
-        m_odometryUpdater.replay(timestampS);
-        m_latestTimeS = Takt.get();
+    /**
+     * Collect measurements until endBatch(), if either experiment is enabled.
+     */
+    @Override
+    public void beginBatch() {
+        m_batching = Experiments.instance.enabled(Experiment.BatchVisionReplay)
+                || Experiments.instance.enabled(Experiment.FixedLagSmoothing);
+    }
+
+    /**
+     * Apply the collected measurements, with a single replay at the end, or, if
+     * smoothing, solve the window, even with no new measurements, since the
+     * odometry is new.
+     */
+    @Override
+    public void endBatch() {
+        applyBatch();
+        if (Experiments.instance.enabled(Experiment.FixedLagSmoothing))
+            smooth();
+        m_batching = false;
     }
 
     /**
@@ -86,4 +178,125 @@ public class NudgingVisionUpdater implements VisionUpdater {
         return sample.exp(scaledTwist);
     }
 
+    private void smooth() {
+        double startS = Takt.actual();
+        int smoothed = m_smoother.solve();
+        m_log_smoothed_entries.log(() -> smoothed);
+        m_log_smoother_time.log(() -> Takt.actual() - startS);
+    }
+
+    /** Insert in timestamp order, after any others with the same timestamp. */
+    private void add(
+            double timestampS,
+            Pose2d measurement,
+            double[] stateSigma,
+            double[] visionSigma) {
+        int i = m_batchSize;
+        while (i > 0 && m_batchTimeS[i - 1] > timestampS) {
+            m_batchTimeS[i] = m_batchTimeS[i - 1];
+            m_batchMeasurement[i] = m_batchMeasurement[i - 1];
+            m_batchStateSigma[i] = m_batchStateSigma[i - 1];
+            m_batchVisionSigma[i] = m_batchVisionSigma[i - 1];
+            i--;
+        }
+        m_batchTimeS[i] = timestampS;
+        m_batchMeasurement[i] = measurement;
+        m_batchStateSigma[i] = stateSigma;
+        m_batchVisionSigma[i] = visionSigma;
+        m_batchSize++;
+    }
+
+    /**
+     * Apply the measurements in order. Before each one, replay the odometry since
+     * the previous one, so that the sample at each timestamp includes the
+     * earlier nudges. (The interpolated sample depends only on the entry before
+     * it.) Then replay the rest once.
+     */
+    private void applyBatch() {
+        int n = m_batchSize;
+        m_log_batch_size.log(() -> n);
+        if (n == 0)
+            return;
+        double startS = Takt.actual();
+        int applied = 0;
+        int replayed = 0;
+        // What unbatched updates would have replayed, to estimate time saved.
+        int unbatched = 0;
+        double prevS = 0;
+        for (int i = 0; i < n; ++i) {
+            double timestampS = m_batchTimeS[i];
+            if (m_history.tooOld(timestampS))
+                continue;
+            if (applied > 0) {
+                replayed += m_odometryUpdater.replay(prevS, timestampS);
+            }
+            nudgeHistory(timestampS, m_batchMeasurement[i],
+                    m_batchStateSigma[i], m_batchVisionSigma[i]);
+            int at = m_history.lowerIndex(timestampS) + 1;
+            unbatched += m_history.size() - 1 - at;
+            prevS = timestampS;
+            applied++;
+        }
+        if (applied > 0) {
+            replayed += m_odometryUpdater.replay(prevS);
+        }
+        double elapsedS = Takt.actual() - startS;
+        int totalReplayed = replayed;
+        // Assume replay dominates, and costs the same per entry.
+        double savedS = totalReplayed == 0 ? 0
+                : elapsedS * (unbatched - totalReplayed) / totalReplayed;
+        int replays = applied > 0 ? 1 : 0;
+        m_log_replays.log(replays);
+        m_log_replayed_entries.log(totalReplayed);
+        m_log_replay_time.log(elapsedS);
+        m_log_time_saved.log(savedS);
+        for (int i = 0; i < n; ++i) {
+            m_batchMeasurement[i] = null;
+            m_batchStateSigma[i] = null;
+            m_batchVisionSigma[i] = null;
+        }
+        m_batchSize = 0;
+    }
+
+    /** Nudge the history at the timestamp, without replay. */
+    private void nudgeHistory(
+            double timestampS,
+            Pose2d measurement,
+            double[] stateSigma,
+            double[] visionSigma) {
+        // Sample the history at the measurement time.
+        InterpolationRecord sample = m_history.getRecord(timestampS);
+
+        if (Experiments.instance.enabled(Experiment.KalmanVision)) {
+            Pose2d pose = sample.m_state.pose();
+            CovarianceSE2 covariance = sample.m_covariance.update(
+                    visionSigma[0] * visionSigma[0],
+                    visionSigma[1] * visionSigma[1],
+                    m_gain);
+            double ex = measurement.getX() - pose.getX();
+            double ey = measurement.getY() - pose.getY();
+            // The gyro owns the heading, so it's not corrected here.
+            Pose2d updated = new Pose2d(
+                    pose.getX() + m_gain[0] * ex + m_gain[1] * ey,
+                    pose.getY() + m_gain[2] * ex + m_gain[3] * ey,
+                    pose.getRotation());
+            m_history.put(
+                    timestampS,
+                    new ModelSE2(updated, sample.m_state.velocity()),
+                    sample.m_wheelPositions,
+                    covariance);
+            m_latestTimeS = Takt.get();
+            return;
+        }
+
+        // If there is a sample, nudge it towards the measurement.
+        Pose2d nudged = nudge(
+                sample.m_state.pose(), measurement, stateSigma, visionSigma);
+        m_history.put(
+                timestampS,
+                new ModelSE2(nudged, sample.m_state.velocity()),
+                sample.m_wheelPositions,
+                sample.m_covariance);
+        m_latestTimeS = Takt.get();
+    }
 }
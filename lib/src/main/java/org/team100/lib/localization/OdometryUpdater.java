@@ -1,10 +1,10 @@
 package org.team100.lib.localization;
 
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.function.Supplier;
 
 import org.team100.lib.coherence.Takt;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.DeltaSE2;
 import org.team100.lib.geometry.VelocitySE2;
 import org.team100.lib.sensor.gyro.Gyro;
@@ -27,6 +27,9 @@ import edu.wpi.first.math.geometry.Twist2d;
  * 
  * Manages the gyro offset.
  * 
+ * With the KalmanVision experiment, also propagates the pose covariance: it
+ * grows with distance traveled and with time, until a vision update shrinks it.
+ * 
  * Note we use methods on the specific history implementation; the interface
  * won't work here.
  */
@@ -111,18 +114,17 @@ public class OdometryUpdater {
             SwerveModulePositions wheelPositions) {
 
         // the entry right before this one, the basis for integration.
-        Entry<Double, InterpolationRecord> lowerEntry = m_history.lowerEntry(
-                currentTimeS);
+        int lowerIndex = m_history.lowerIndex(currentTimeS);
 
-        if (lowerEntry == null) {
+        if (lowerIndex < 0) {
             // System.out.println("lower entry is null");
             // We're at the beginning. There's nothing to apply the wheel position delta to.
             // This should never happen.
             return;
         }
 
-        double dt = currentTimeS - lowerEntry.getKey();
-        InterpolationRecord value = lowerEntry.getValue();
+        double dt = currentTimeS - m_history.timeAt(lowerIndex);
+        InterpolationRecord value = m_history.recordAt(lowerIndex);
         ModelSE2 previousState = value.m_state;
         if (DEBUG) {
             System.out.printf("previous x %.6f y %.6f\n", previousState.pose().getX(), previousState.pose().getY());
@@ -166,15 +168,43 @@ public class OdometryUpdater {
 
         ModelSE2 swerveState = new ModelSE2(newPose, velocity);
 
-        m_history.put(currentTimeS, swerveState, wheelPositions);
+        CovarianceSE2 covariance = value.m_covariance;
+        if (Experiments.instance.enabled(Experiment.KalmanVision)) {
+            covariance = covariance.propagate(
+                    newPose.getX() - previousState.pose().getX(),
+                    newPose.getY() - previousState.pose().getY(),
+                    dt);
+        }
+
+        m_history.put(currentTimeS, swerveState, wheelPositions, covariance);
     }
 
-    /** Replay odometry after the sample time. */
-    void replay(double timestamp) {
-        // Note the exclusive tailmap: we don't see the entry at timestamp.
-        for (Map.Entry<Double, InterpolationRecord> entry : m_history.exclusiveTailMap(timestamp).entrySet()) {
-            double entryTimestampS = entry.getKey();
-            InterpolationRecord value = entry.getValue();
+    /**
+     * Replay odometry after the sample time.
+     * 
+     * @return the number of entries replayed
+     */
+    int replay(double timestamp) {
+        return replay(timestamp, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Replay odometry for entries after the start time, up to and including the
+     * end time.
+     * 
+     * @return the number of entries replayed
+     */
+    int replay(double startS, double endS) {
+        int count = 0;
+        // Note the exclusive tail: we don't see the entry at startS.
+        // Each put() can evict old entries, which moves the indices, so use the
+        // timestamp of each entry to find the next one.
+        double entryTimestampS = startS;
+        for (int i = m_history.higherIndex(entryTimestampS); i >= 0; i = m_history.higherIndex(entryTimestampS)) {
+            entryTimestampS = m_history.timeAt(i);
+            if (entryTimestampS > endS)
+                break;
+            InterpolationRecord value = m_history.recordAt(i);
 
             // this is what the gyro must have been given the pose and offset
             // note that stale gyro offsets never occur, because the gyro offset is
@@ -184,7 +214,9 @@ public class OdometryUpdater {
             SwerveModulePositions wheelPositions = value.m_wheelPositions;
 
             put(entryTimestampS, entryGyroAngle, entryGyroRate, wheelPositions);
+            count++;
         }
+        return count;
     }
 
 }
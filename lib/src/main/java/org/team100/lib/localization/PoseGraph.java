@@ -0,0 +1,457 @@
+package org.team100.lib.localization;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A chain of SE(2) poses with odometry between-factors, gyro heading priors,
+ * position measurements, and a prior on the first pose, solved by Gauss-Newton.
+ *
+ * Because the only factors linking poses are between neighbors, the normal
+ * equations are block tridiagonal (3x3 blocks), so each step is an O(n) block
+ * elimination, on arrays allocated once, instead of a dense (3n x 3n) solve.
+ *
+ * Factors, each whitened by its sigma:
+ *
+ * <ul>
+ * <li>odometry: R(theta_i)^T (p_i+1 - p_i) = d_i, and theta_i+1 - theta_i =
+ * dtheta_i, with translation sigma proportional to the step</li>
+ * <li>gyro: theta_i = its initial value, since the gyro owns the heading</li>
+ * <li>prior: pose 0 = its initial value, standing in for everything before the
+ * window, or the position given to setPrior()</li>
+ * <li>position: p_i = a measurement, e.g. from a tag sighting</li>
+ * </ul>
+ *
+ * Not thread-safe.
+ */
+class PoseGraph {
+    /** Odometry translation error, as a fraction of the step. */
+    private static final double K_ODOMETRY = 0.02;
+    /** Odometry translation error floor, meters. */
+    private static final double ODOMETRY_FLOOR = 0.001;
+    /** Gyro heading change error over one step, rad. */
+    private static final double GYRO_STEP_SIGMA = 0.001;
+    /** Gyro absolute heading error, rad. */
+    private static final double GYRO_SIGMA = 0.002;
+    /** Default prior on the first pose, meters. */
+    static final double PRIOR_SIGMA = 0.05;
+    /** Prior on the first heading, rad. */
+    private static final double PRIOR_THETA_SIGMA = 0.01;
+
+    private final int m_capacity;
+    private final int m_maxMeasurements;
+
+    // Nodes
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    /** Initial heading, i.e. the gyro. */
+    private final double[] m_gyro;
+    private double m_priorX;
+    private double m_priorY;
+    private double m_priorTheta;
+    private double m_priorSigma;
+    private int m_n;
+
+    // Odometry, from node i to i+1, in the frame of node i.
+    private final double[] m_dx;
+    private final double[] m_dy;
+    private final double[] m_dtheta;
+
+    // Position measurements
+    private final int[] m_mNode;
+    private final double[] m_mx;
+    private final double[] m_my;
+    private final double[] m_mSigma;
+    private int m_m;
+
+    // Normal equations: diagonal blocks, upper blocks (i, i+1), gradient.
+    private final double[] m_diag;
+    private final double[] m_upper;
+    private final double[] m_g;
+    // Elimination: inverse Schur complements, reduced rhs, step.
+    private final double[] m_cInv;
+    private final double[] m_rhs;
+    private final double[] m_delta;
+    // 3x3 scratch
+    private final double[] m_t1 = new double[9];
+    private final double[] m_t2 = new double[9];
+
+    PoseGraph(int capacity, int maxMeasurements) {
+        m_capacity = capacity;
+        m_maxMeasurements = maxMeasurements;
+        m_x = new double[capacity];
+        m_y = new double[capacity];
+        m_theta = new double[capacity];
+        m_gyro = new double[capacity];
+        m_dx = new double[capacity];
+        m_dy = new double[capacity];
+        m_dtheta = new double[capacity];
+        m_mNode = new int[maxMeasurements];
+        m_mx = new double[maxMeasurements];
+        m_my = new double[maxMeasurements];
+        m_mSigma = new double[maxMeasurements];
+        m_diag = new double[9 * capacity];
+        m_upper = new double[9 * capacity];
+        m_g = new double[3 * capacity];
+        m_cInv = new double[9 * capacity];
+        m_rhs = new double[3 * capacity];
+        m_delta = new double[3 * capacity];
+    }
+
+    void clear() {
+        m_n = 0;
+        m_m = 0;
+    }
+
+    /**
+     * Add a pose at the end of the chain. The heading is also the gyro prior, and
+     * the first pose is also the window prior.
+     *
+     * @return the index, or -1 if full
+     */
+    int addNode(double x, double y, double theta) {
+        if (m_n == m_capacity)
+            return -1;
+        int i = m_n++;
+        m_x[i] = x;
+        m_y[i] = y;
+        m_theta[i] = theta;
+        m_gyro[i] = theta;
+        m_dx[i] = 0;
+        m_dy[i] = 0;
+        m_dtheta[i] = 0;
+        if (i == 0) {
+            m_priorX = x;
+            m_priorY = y;
+            m_priorTheta = theta;
+            m_priorSigma = PRIOR_SIGMA;
+        }
+        return i;
+    }
+
+    /** Replace the position prior on the first pose. */
+    void setPrior(double x, double y, double sigma) {
+        m_priorX = x;
+        m_priorY = y;
+        m_priorSigma = Math.max(sigma, Uncertainty.MIN_SIGMA);
+    }
+
+    /** Odometry from node i to node i+1, in the frame of node i. */
+    void setOdometry(int i, double dx, double dy, double dtheta) {
+        m_dx[i] = dx;
+        m_dy[i] = dy;
+        m_dtheta[i] = dtheta;
+    }
+
+    /**
+     * Position measurement of node i. The sigma is floored at
+     * Uncertainty.MIN_SIGMA.
+     *
+     * @return false if full
+     */
+    boolean addPosition(int i, double x, double y, double sigma) {
+        if (m_m == m_maxMeasurements)
+            return false;
+        m_mNode[m_m] = i;
+        m_mx[m_m] = x;
+        m_my[m_m] = y;
+        m_mSigma[m_m] = Math.max(sigma, Uncertainty.MIN_SIGMA);
+        m_m++;
+        return true;
+    }
+
+    int size() {
+        return m_n;
+    }
+
+    int measurements() {
+        return m_m;
+    }
+
+    double x(int i) {
+        return m_x[i];
+    }
+
+    double y(int i) {
+        return m_y[i];
+    }
+
+    double theta(int i) {
+        return m_theta[i];
+    }
+
+    /** Move node i, without changing its priors, for testing. */
+    void set(int i, double x, double y, double theta) {
+        m_x[i] = x;
+        m_y[i] = y;
+        m_theta[i] = theta;
+    }
+
+    /**
+     * Gauss-Newton steps.
+     *
+     * @return the size of the last step (max abs), for diagnosis.
+     */
+    double solve(int iterations) {
+        double step = 0;
+        if (m_n == 0)
+            return step;
+        for (int iter = 0; iter < iterations; ++iter) {
+            build();
+            eliminate();
+            step = 0;
+            for (int i = 0; i < m_n; ++i) {
+                m_x[i] += m_delta[3 * i];
+                m_y[i] += m_delta[3 * i + 1];
+                m_theta[i] += m_delta[3 * i + 2];
+                step = Math.max(step, Math.abs(m_delta[3 * i]));
+                step = Math.max(step, Math.abs(m_delta[3 * i + 1]));
+            }
+        }
+        return step;
+    }
+
+    /** Total squared whitened error, for testing. */
+    double error() {
+        double e = 0;
+        double r;
+        r = (m_x[0] - m_priorX) / m_priorSigma;
+        e += r * r;
+        r = (m_y[0] - m_priorY) / m_priorSigma;
+        e += r * r;
+        r = MathUtil.angleModulus(m_theta[0] - m_priorTheta) / PRIOR_THETA_SIGMA;
+        e += r * r;
+        for (int i = 0; i < m_n; ++i) {
+            r = MathUtil.angleModulus(m_theta[i] - m_gyro[i]) / GYRO_SIGMA;
+            e += r * r;
+        }
+        for (int i = 0; i < m_n - 1; ++i) {
+            double c = Math.cos(m_theta[i]);
+            double s = Math.sin(m_theta[i]);
+            double ddx = m_x[i + 1] - m_x[i];
+            double ddy = m_y[i + 1] - m_y[i];
+            double w = 1.0 / odometrySigma(i);
+            r = w * (c * ddx + s * ddy - m_dx[i]);
+            e += r * r;
+            r = w * (-s * ddx + c * ddy - m_dy[i]);
+            e += r * r;
+            r = MathUtil.angleModulus(m_theta[i + 1] - m_theta[i] - m_dtheta[i]) / GYRO_STEP_SIGMA;
+            e += r * r;
+        }
+        for (int j = 0; j < m_m; ++j) {
+            int i = m_mNode[j];
+            r = (m_x[i] - m_mx[j]) / m_mSigma[j];
+            e += r * r;
+            r = (m_y[i] - m_my[j]) / m_mSigma[j];
+            e += r * r;
+        }
+        return e;
+    }
+
+    //////////////////////////////////////////////
+
+    /** Linearize all the factors into the normal equations. */
+    private void build() {
+        Arrays.fill(m_diag, 0, 9 * m_n, 0);
+        Arrays.fill(m_upper, 0, 9 * m_n, 0);
+        Arrays.fill(m_g, 0, 3 * m_n, 0);
+
+        // prior on the first pose
+        double w = 1.0 / m_priorSigma;
+        unary(0, w, 0, 0, w * (m_x[0] - m_priorX));
+        unary(0, 0, w, 0, w * (m_y[0] - m_priorY));
+        w = 1.0 / PRIOR_THETA_SIGMA;
+        unary(0, 0, 0, w, w * MathUtil.angleModulus(m_theta[0] - m_priorTheta));
+
+        // gyro
+        w = 1.0 / GYRO_SIGMA;
+        for (int i = 0; i < m_n; ++i) {
+            unary(i, 0, 0, w, w * MathUtil.angleModulus(m_theta[i] - m_gyro[i]));
+        }
+
+        // odometry
+        for (int i = 0; i < m_n - 1; ++i) {
+            double c = Math.cos(m_theta[i]);
+            double s = Math.sin(m_theta[i]);
+            double ddx = m_x[i + 1] - m_x[i];
+            double ddy = m_y[i + 1] - m_y[i];
+            w = 1.0 / odometrySigma(i);
+            // along the robot x axis
+            binary(i,
+                    -w * c, -w * s, w * (-s * ddx + c * ddy),
+                    w * c, w * s, 0,
+                    w * (c * ddx + s * ddy - m_dx[i]));
+            // along the robot y axis
+            binary(i,
+                    w * s, -w * c, w * (-c * ddx - s * ddy),
+                    -w * s, w * c, 0,
+                    w * (-s * ddx + c * ddy - m_dy[i]));
+            // heading change
+            double wt = 1.0 / GYRO_STEP_SIGMA;
+            binary(i,
+                    0, 0, -wt,
+                    0, 0, wt,
+                    wt * MathUtil.angleModulus(m_theta[i + 1] - m_theta[i] - m_dtheta[i]));
+        }
+
+        // measurements
+        for (int j = 0; j < m_m; ++j) {
+            int i = m_mNode[j];
+            w = 1.0 / m_mSigma[j];
+            unary(i, w, 0, 0, w * (m_x[i] - m_mx[j]));
+            unary(i, 0, w, 0, w * (m_y[i] - m_my[j]));
+        }
+    }
+
+    private double odometrySigma(int i) {
+        return odometrySigma(m_dx[i], m_dy[i]);
+    }
+
+    /** Odometry translation sigma for a step. */
+    static double odometrySigma(double dx, double dy) {
+        return K_ODOMETRY * Math.hypot(dx, dy) + ODOMETRY_FLOOR;
+    }
+
+    /** One row of a factor on node i, with Jacobian a and residual r. */
+    private void unary(int i, double a0, double a1, double a2, double r) {
+        int d = 9 * i;
+        m_diag[d] += a0 * a0;
+        m_diag[d + 1] += a0 * a1;
+        m_diag[d + 2] += a0 * a2;
+        m_diag[d + 3] += a1 * a0;
+        m_diag[d + 4] += a1 * a1;
+        m_diag[d + 5] += a1 * a2;
+        m_diag[d + 6] += a2 * a0;
+        m_diag[d + 7] += a2 * a1;
+        m_diag[d + 8] += a2 * a2;
+        m_g[3 * i] += a0 * r;
+        m_g[3 * i + 1] += a1 * r;
+        m_g[3 * i + 2] += a2 * r;
+    }
+
+    /**
+     * One row of a factor on nodes i and i+1, with Jacobians a and b, and
+     * residual r.
+     */
+    private void binary(int i,
+            double a0, double a1, double a2,
+            double b0, double b1, double b2,
+            double r) {
+        unary(i, a0, a1, a2, r);
+        unary(i + 1, b0, b1, b2, r);
+        int u = 9 * i;
+        m_upper[u] += a0 * b0;
+        m_upper[u + 1] += a0 * b1;
+        m_upper[u + 2] += a0 * b2;
+        m_upper[u + 3] += a1 * b0;
+        m_upper[u + 4] += a1 * b1;
+        m_upper[u + 5] += a1 * b2;
+        m_upper[u + 6] += a2 * b0;
+        m_upper[u + 7] += a2 * b1;
+        m_upper[u + 8] += a2 * b2;
+    }
+
+    /**
+     * Solve H delta = -g by block elimination, where H has diagonal blocks D_i
+     * and upper blocks U_i:
+     *
+     * <pre>
+     * C_0 = D_0,  y_0 = -g_0
+     * C_i = D_i - U_i-1^T C_i-1^-1 U_i-1
+     * y_i = -g_i - U_i-1^T C_i-1^-1 y_i-1
+     * delta_n-1 = C_n-1^-1 y_n-1
+     * delta_i = C_i^-1 (y_i - U_i delta_i+1)
+     * </pre>
+     */
+    private void eliminate() {
+        int n = m_n;
+        for (int i = 0; i < n; ++i) {
+            int d = 9 * i;
+            int v = 3 * i;
+            if (i == 0) {
+                System.arraycopy(m_diag, 0, m_t1, 0, 9);
+                m_rhs[0] = -m_g[0];
+                m_rhs[1] = -m_g[1];
+                m_rhs[2] = -m_g[2];
+            } else {
+                int p = 9 * (i - 1);
+                // t2 = C_i-1^-1 U_i-1
+                mul(m_cInv, p, m_upper, p, m_t2, 0);
+                // t1 = D_i - U_i-1^T t2
+                for (int r = 0; r < 3; ++r) {
+                    for (int c = 0; c < 3; ++c) {
+                        double sum = 0;
+                        for (int k = 0; k < 3; ++k) {
+                            sum += m_upper[p + 3 * k + r] * m_t2[3 * k + c];
+                        }
+                        m_t1[3 * r + c] = m_diag[d + 3 * r + c] - sum;
+                    }
+                }
+                // y_i = -g_i - t2^T y_i-1, since (C^-1 U)^T = U^T C^-1
+                int pv = 3 * (i - 1);
+                for (int r = 0; r < 3; ++r) {
+                    double sum = 0;
+                    for (int k = 0; k < 3; ++k) {
+                        sum += m_t2[3 * k + r] * m_rhs[pv + k];
+                    }
+                    m_rhs[v + r] = -m_g[v + r] - sum;
+                }
+            }
+            invert(m_t1, m_cInv, d);
+        }
+        // back substitution
+        for (int i = n - 1; i >= 0; --i) {
+            int d = 9 * i;
+            int v = 3 * i;
+            double r0 = m_rhs[v];
+            double r1 = m_rhs[v + 1];
+            double r2 = m_rhs[v + 2];
+            if (i < n - 1) {
+                int nv = 3 * (i + 1);
+                double e0 = m_delta[nv];
+                double e1 = m_delta[nv + 1];
+                double e2 = m_delta[nv + 2];
+                r0 -= m_upper[d] * e0 + m_upper[d + 1] * e1 + m_upper[d + 2] * e2;
+                r1 -= m_upper[d + 3] * e0 + m_upper[d + 4] * e1 + m_upper[d + 5] * e2;
+                r2 -= m_upper[d + 6] * e0 + m_upper[d + 7] * e1 + m_upper[d + 8] * e2;
+            }
+            m_delta[v] = m_cInv[d] * r0 + m_cInv[d + 1] * r1 + m_cInv[d + 2] * r2;
+            m_delta[v + 1] = m_cInv[d + 3] * r0 + m_cInv[d + 4] * r1 + m_cInv[d + 5] * r2;
+            m_delta[v + 2] = m_cInv[d + 6] * r0 + m_cInv[d + 7] * r1 + m_cInv[d + 8] * r2;
+        }
+    }
+
+    /** out = a b, all 3x3, row-major, at the given offsets. */
+    private static void mul(double[] a, int ao, double[] b, int bo, double[] out, int oo) {
+        for (int r = 0; r < 3; ++r) {
+            for (int c = 0; c < 3; ++c) {
+                out[oo + 3 * r + c] = a[ao + 3 * r] * b[bo + c]
+                        + a[ao + 3 * r + 1] * b[bo + 3 + c]
+                        + a[ao + 3 * r + 2] * b[bo + 6 + c];
+            }
+        }
+    }
+
+    /** out[oo..] = m^-1, by the adjugate. */
+    private static void invert(double[] m, double[] out, int oo) {
+        double a = m[0], b = m[1], c = m[2];
+        double d = m[3], e = m[4], f = m[5];
+        double g = m[6], h = m[7], k = m[8];
+        double A = e * k - f * h;
+        double B = -(d * k - f * g);
+        double C = d * h - e * g;
+        double det = a * A + b * B + c * C;
+        double inv = 1.0 / det;
+        out[oo] = A * inv;
+        out[oo + 1] = -(b * k - c * h) * inv;
+        out[oo + 2] = (b * f - c * e) * inv;
+        out[oo + 3] = B * inv;
+        out[oo + 4] = (a * k - c * g) * inv;
+        out[oo + 5] = -(a * f - c * d) * inv;
+        out[oo + 6] = C * inv;
+        out[oo + 7] = -(a * h - b * g) * inv;
+        out[oo + 8] = (a * e - b * d) * inv;
+    }
+}
@@ -1,7 +1,5 @@
 package org.team100.lib.localization;
 
-import java.util.Map.Entry;
-import java.util.SortedMap;
 import java.util.function.DoubleFunction;
 
 import org.team100.lib.geometry.VelocitySE2;
@@ -9,16 +7,17 @@ import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.state.ModelSE2;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveDriveKinematics100;
 import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModulePositions;
-import org.team100.lib.util.TimeInterpolatableBuffer100;
+import org.team100.lib.util.TimeInterpolatableRingBuffer100;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 
 /**
  * History is just a container, in fact the implementation is little more than a
- * wrapper around TimeInterpolatableBuffer.
+ * wrapper around TimeInterpolatableRingBuffer100.
  * 
  * The history always has *something* in it, even the initial zero pose.
  * 
@@ -38,10 +37,15 @@ public class SwerveHistory implements DoubleFunction<ModelSE2> {
      * older than about 200 ms.
      */
     private static final double BUFFER_DURATION = 0.2;
+    /**
+     * Enough for the buffer duration at 250 Hz odometry, with plenty of room for
+     * vision updates in between.
+     */
+    private static final int BUFFER_CAPACITY = 256;
 
     private final DoubleLogger m_log_timestamp;
     private final SwerveKinodynamics m_kinodynamics;
-    private final TimeInterpolatableBuffer100<InterpolationRecord> m_poseBuffer;
+    private final TimeInterpolatableRingBuffer100<InterpolationRecord> m_poseBuffer;
 
     public SwerveHistory(
             LoggerFactory parent,
@@ -52,7 +56,8 @@ public class SwerveHistory implements DoubleFunction<ModelSE2> {
             double timestampSeconds) {
         m_log_timestamp = parent.type(this).doubleLogger(Level.TRACE, "sample timestamp");
         m_kinodynamics = kinodynamics;
-        m_poseBuffer = new TimeInterpolatableBuffer100<>(
+        m_poseBuffer = new TimeInterpolatableRingBuffer100<>(
+                BUFFER_CAPACITY,
                 BUFFER_DURATION,
                 timestampSeconds,
                 new InterpolationRecord(
@@ -96,16 +101,53 @@ public class SwerveHistory implements DoubleFunction<ModelSE2> {
             double timestamp,
             ModelSE2 model,
             SwerveModulePositions positions) {
+        put(timestamp, model, positions, CovarianceSE2.INITIAL);
+    }
+
+    /**
+     * timestamp in seconds
+     */
+    void put(
+            double timestamp,
+            ModelSE2 model,
+            SwerveModulePositions positions,
+            CovarianceSE2 covariance) {
         m_poseBuffer.put(
                 timestamp,
                 new InterpolationRecord(
                         m_kinodynamics.getKinematics(),
                         model,
-                        positions));
+                        positions,
+                        covariance));
+    }
+
+    /**
+     * Index of the newest record strictly before the timestamp, or -1. Valid until
+     * the next put.
+     */
+    int lowerIndex(double timestamp) {
+        return m_poseBuffer.lowerIndex(timestamp);
+    }
+
+    /**
+     * Index of the oldest record strictly after the timestamp, or -1. Valid until
+     * the next put.
+     */
+    int higherIndex(double timestamp) {
+        return m_poseBuffer.higherIndex(timestamp);
+    }
+
+    double timeAt(int index) {
+        return m_poseBuffer.timeAt(index);
     }
 
-    Entry<Double, InterpolationRecord> lowerEntry(double timestamp) {
-        return m_poseBuffer.lowerEntry(timestamp);
+    InterpolationRecord recordAt(int index) {
+        return m_poseBuffer.valueAt(index);
+    }
+
+    /** Replace the record at the index, keeping its time. */
+    void setAt(int index, InterpolationRecord record) {
+        m_poseBuffer.setAt(index, record);
     }
 
     InterpolationRecord getRecord(double timestamp) {
@@ -116,10 +158,6 @@ public class SwerveHistory implements DoubleFunction<ModelSE2> {
         return m_poseBuffer.tooOld(timestamp);
     }
 
-    SortedMap<Double, InterpolationRecord> exclusiveTailMap(double timestamp) {
-        return m_poseBuffer.tailMap(timestamp, false);
-    }
-
     int size() {
         return m_poseBuffer.size();
     }
@@ -128,4 +166,8 @@ public class SwerveHistory implements DoubleFunction<ModelSE2> {
         return m_poseBuffer.lastKey();
     }
 
+    SwerveDriveKinematics100 kinematics() {
+        return m_kinodynamics.getKinematics();
+    }
+
 }
@@ -9,6 +9,12 @@ import edu.wpi.first.math.geometry.Twist2d;
  * Methods governing vision update uncertainties.
  */
 public class Uncertainty {
+    /**
+     * Floor for measurement standard deviations, meters, to avoid infinite
+     * weight, e.g. for a tag at zero range.
+     */
+    static final double MIN_SIGMA = 0.001;
+
     /** this is the default value which, in hindsight, seems ridiculously high. */
     private static final double[] DEFAULT_STATE_STDDEV = new double[] {
             0.1,
@@ -50,6 +56,48 @@ public class Uncertainty {
                 Double.MAX_VALUE };
     }
 
+    /**
+     * Standard deviation of the robot position implied by one tag, as a fraction
+     * of target range, along the line of sight, used to weight the tags in a
+     * multi-tag solve.
+     */
+    static double tagStdDev(double rangeM) {
+        return visionMeasurementStdDevs(rangeM)[0];
+    }
+
+    /**
+     * Standard deviation across the line of sight. The range comes from the
+     * apparent size of the tag, which is the weakest part of the solution, and
+     * the bearing is better. This is an educated guess.
+     */
+    static double tagLateralStdDev(double rangeM) {
+        final double LATERAL_FRACTION = 0.5;
+        return LATERAL_FRACTION * tagStdDev(rangeM);
+    }
+
+    /**
+     * True if the vision updater uses the vision sigmas as the measurement noise,
+     * i.e. the KalmanVision and FixedLagSmoothing experiments. The nudge uses
+     * them as mixing weights, tuned to the jump from the previous fix.
+     */
+    static boolean measurementNoise() {
+        return Experiments.instance.enabled(Experiment.KalmanVision)
+                || Experiments.instance.enabled(Experiment.FixedLagSmoothing);
+    }
+
+    /**
+     * Vision sigmas for one tag: the measurement noise, from the range to the
+     * tag, if the updater uses it as such, otherwise the nudge weight, from the
+     * jump from the previous fix.
+     */
+    static double[] visionStdDevs(double jumpM, double rangeM) {
+        if (measurementNoise()) {
+            double sigma = tagStdDev(rangeM);
+            return new double[] { sigma, sigma, Double.MAX_VALUE };
+        }
+        return visionMeasurementStdDevs(jumpM);
+    }
+
     static double[] stateStdDevs() {
         if (Experiments.instance.enabled(Experiment.AvoidVisionJitter)) {
             return Uncertainty.TIGHT_STATE_STDDEV;
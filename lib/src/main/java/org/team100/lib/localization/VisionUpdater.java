@@ -15,4 +15,15 @@ public interface VisionUpdater {
             double[] stateSigma,
             double[] visionSigma);
 
+    /**
+     * Start collecting a batch of measurements, e.g. all the camera input for one
+     * cycle. Implementations may defer the work of put() until endBatch().
+     */
+    default void beginBatch() {
+    }
+
+    /** Apply any measurements collected since beginBatch(). */
+    default void endBatch() {
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package org.team100.lib.localization;
+
+/**
+ * The prior on the oldest entry of the FixedLagSmoother window, standing in
+ * for everything that has left the window.
+ *
+ * It's a position and an isotropic variance, carried forward along the
+ * odometry chain of the last solve, taking in each measurement as it leaves
+ * the window, like a Kalman filter that runs one window behind. So every
+ * measurement is counted once: in the window, by the solve, and after that,
+ * here.
+ *
+ * The chain is the field-relative odometry displacement between each pair of
+ * entries, which doesn't depend on the solution, so it's still good for the
+ * next solve. Between entries, it's linear, like the history interpolation.
+ *
+ * Not thread-safe.
+ */
+class WindowPrior {
+    private final int m_capacity;
+    private boolean m_valid;
+    private double m_timeS;
+    private double m_x;
+    private double m_y;
+    private double m_variance;
+
+    // Chain: entry times, and the displacement and its variance from the
+    // entry before.
+    private final double[] m_chainTimeS;
+    private final double[] m_dx;
+    private final double[] m_dy;
+    private final double[] m_dVariance;
+    private int m_length;
+    /** The chain entry at or before the prior. */
+    private int m_index;
+
+    WindowPrior(int capacity) {
+        m_capacity = capacity;
+        m_chainTimeS = new double[capacity];
+        m_dx = new double[capacity];
+        m_dy = new double[capacity];
+        m_dVariance = new double[capacity];
+    }
+
+    boolean valid() {
+        return m_valid;
+    }
+
+    /** Start over at the given place, forgetting the chain. */
+    void reset(double timeS, double x, double y, double variance) {
+        m_valid = true;
+        m_timeS = timeS;
+        m_x = x;
+        m_y = y;
+        m_variance = variance;
+        m_length = 0;
+        m_index = 0;
+    }
+
+    /** Start a new chain, at the prior. */
+    void chainStart() {
+        m_chainTimeS[0] = m_timeS;
+        m_dx[0] = 0;
+        m_dy[0] = 0;
+        m_dVariance[0] = 0;
+        m_length = 1;
+        m_index = 0;
+    }
+
+    /**
+     * Add an entry to the chain.
+     *
+     * @param dx       field-relative displacement from the previous entry
+     * @param dy       field-relative displacement from the previous entry
+     * @param variance of the displacement, in each axis
+     * @return false if full
+     */
+    boolean chainAdd(double timeS, double dx, double dy, double variance) {
+        if (m_length == m_capacity)
+            return false;
+        m_chainTimeS[m_length] = timeS;
+        m_dx[m_length] = dx;
+        m_dy[m_length] = dy;
+        m_dVariance[m_length] = variance;
+        m_length++;
+        return true;
+    }
+
+    /**
+     * Move the prior forward along the chain. Earlier times do nothing.
+     *
+     * @return false if the chain doesn't reach, in which case the prior is at
+     *         its end.
+     */
+    boolean advance(double timeS) {
+        while (m_timeS < timeS) {
+            while (m_index + 1 < m_length && m_chainTimeS[m_index + 1] <= m_timeS)
+                m_index++;
+            if (m_index + 1 >= m_length)
+                return false;
+            double t0 = m_chainTimeS[m_index];
+            double t1 = m_chainTimeS[m_index + 1];
+            double end = Math.min(timeS, t1);
+            double f = (end - m_timeS) / (t1 - t0);
+            m_x += f * m_dx[m_index + 1];
+            m_y += f * m_dy[m_index + 1];
+            m_variance += f * m_dVariance[m_index + 1];
+            m_timeS = end;
+        }
+        return true;
+    }
+
+    /** Kalman update with a position measurement, at the prior. */
+    void fold(double x, double y, double variance) {
+        double k = m_variance / (m_variance + variance);
+        m_x += k * (x - m_x);
+        m_y += k * (y - m_y);
+        m_variance *= 1 - k;
+    }
+
+    double timeS() {
+        return m_timeS;
+    }
+
+    double x() {
+        return m_x;
+    }
+
+    double y() {
+        return m_y;
+    }
+
+    double variance() {
+        return m_variance;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.function.IntSupplier;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
+import org.team100.lib.coherence.Takt;
 import org.team100.lib.geometry.AccelerationSE2;
 import org.team100.lib.geometry.DeltaSE2;
 import org.team100.lib.geometry.GlobalVelocityR2;
@@ -53,9 +54,17 @@ import edu.wpi.first.math.trajectory.Trajectory.State;
  * container keep the root reference.
  * 
  * Don't use slashes in names, it confuses Glass.
+ * 
+ * Each logger has a supplier form, e.g. log(DoubleSupplier), which skips the
+ * supplier if the level filters it out, and a value form, e.g. log(double),
+ * which doesn't allocate anything. A capturing lambda allocates every time,
+ * even if it's filtered out, so if the value is cheap to produce, use the value
+ * form.
+ * 
+ * The level supplier is asked once per Takt epoch, not on every call.
  */
 public class LoggerFactory {
-    private final Supplier<Level> m_level;
+    private final LevelCache m_level;
     private final String m_root;
     private final PrimitiveLogger m_pLogger;
 
@@ -63,6 +72,14 @@ public class LoggerFactory {
             Supplier<Level> level,
             String root,
             PrimitiveLogger primitiveLogger) {
+        this(new LevelCache(level), root, primitiveLogger);
+    }
+
+    /** Children share the parent's level cache. */
+    private LoggerFactory(
+            LevelCache level,
+            String root,
+            PrimitiveLogger primitiveLogger) {
         if (root.startsWith("/"))
             throw new IllegalArgumentException("don't lead with a slash");
         m_level = level;
@@ -114,6 +131,32 @@ public class LoggerFactory {
         return allowed.admit(level);
     }
 
+    /**
+     * Asks the level supplier once per Takt epoch, instead of on every log
+     * call. On the robot, the supplier is a chooser, which is slow, and the
+     * level never changes within a cycle anyway.
+     */
+    private static class LevelCache {
+        private final Supplier<Level> m_supplier;
+        private Level m_allowed;
+        /** Written after the level, so other threads see the level too. */
+        private volatile long m_epoch;
+
+        LevelCache(Supplier<Level> supplier) {
+            m_supplier = supplier;
+            m_epoch = -1;
+        }
+
+        Level get() {
+            long epoch = Takt.epoch();
+            if (m_epoch != epoch) {
+                m_allowed = m_supplier.get();
+                m_epoch = epoch;
+            }
+            return m_allowed;
+        }
+    }
+
     /////////////////////////////////////////////////////
     //
     // logger inner classes
@@ -131,7 +174,12 @@ public class LoggerFactory {
         public void log(BooleanSupplier vals) {
             if (!allow(m_level))
                 return;
-            boolean val = vals.getAsBoolean();
+            log(vals.getAsBoolean());
+        }
+
+        public void log(boolean val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
     }
@@ -152,7 +200,12 @@ public class LoggerFactory {
         public void log(DoubleSupplier vals) {
             if (!allow(m_level))
                 return;
-            double val = vals.getAsDouble();
+            log(vals.getAsDouble());
+        }
+
+        public void log(double val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
 
@@ -181,7 +234,12 @@ public class LoggerFactory {
         public void log(IntSupplier vals) {
             if (!allow(m_level))
                 return;
-            int val = vals.getAsInt();
+            log(vals.getAsInt());
+        }
+
+        public void log(int val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
     }
@@ -193,16 +251,36 @@ public class LoggerFactory {
     public class DoubleArrayLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveDoubleArrayLogger m_primitiveLogger;
+        /**
+         * Reused for every call. The primitive loggers either copy the array or
+         * keep only the latest one, so this is ok.
+         */
+        private final double[] m_scratch3 = new double[3];
 
         DoubleArrayLogger(Level level, String leaf) {
             m_level = level;
             m_primitiveLogger = m_pLogger.doubleArrayLogger(root(leaf));
         }
 
+        /** For the usual Field2d pose, [x, y, degrees], without allocating. */
+        public void log(double a, double b, double c) {
+            if (!allow(m_level))
+                return;
+            m_scratch3[0] = a;
+            m_scratch3[1] = b;
+            m_scratch3[2] = c;
+            m_primitiveLogger.log(m_scratch3);
+        }
+
         public void log(Supplier<double[]> vals) {
             if (!allow(m_level))
                 return;
-            double[] val = vals.get();
+            log(vals.get());
+        }
+
+        public void log(double[] val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
     }
@@ -223,7 +301,12 @@ public class LoggerFactory {
         public void log(LongSupplier vals) {
             if (!allow(m_level))
                 return;
-            long val = vals.getAsLong();
+            log(vals.getAsLong());
+        }
+
+        public void log(long val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
     }
@@ -249,7 +332,12 @@ public class LoggerFactory {
         public void log(Supplier<String> vals) {
             if (!allow(m_level))
                 return;
-            String val = vals.get();
+            log(vals.get());
+        }
+
+        public void log(String val) {
+            if (!allow(m_level))
+                return;
             m_primitiveLogger.log(val);
         }
     }
@@ -270,7 +358,12 @@ public class LoggerFactory {
         public void log(Supplier<OptionalDouble> vals) {
             if (!allow(m_level))
                 return;
-            OptionalDouble val = vals.get();
+            log(vals.get());
+        }
+
+        public void log(OptionalDouble val) {
+            if (!allow(m_level))
+                return;
             if (val.isPresent()) {
                 m_primitiveLogger.log(val.getAsDouble());
             }
@@ -293,8 +386,13 @@ public class LoggerFactory {
         public void log(Supplier<Enum<?>> vals) {
             if (!allow(m_level))
                 return;
-            String val = vals.get().name();
-            m_primitiveLogger.log(val);
+            log(vals.get());
+        }
+
+        public void log(Enum<?> val) {
+            if (!allow(m_level))
+                return;
+            m_primitiveLogger.log(val.name());
         }
     }
 
@@ -316,9 +414,14 @@ public class LoggerFactory {
         public void log(Supplier<Pose2d> vals) {
             if (!allow(m_level))
                 return;
-            Pose2d val = vals.get();
-            m_translation2dLogger.log(val::getTranslation);
-            m_rotation2dLogger.log(val::getRotation);
+            log(vals.get());
+        }
+
+        public void log(Pose2d val) {
+            if (!allow(m_level))
+                return;
+            m_translation2dLogger.log(val.getTranslation());
+            m_rotation2dLogger.log(val.getRotation());
         }
     }
 
@@ -340,9 +443,14 @@ public class LoggerFactory {
         public void log(Supplier<Transform3d> vals) {
             if (!allow(m_level))
                 return;
-            Transform3d val = vals.get();
-            m_translation3dLogger.log(val::getTranslation);
-            m_rotation3dLogger.log(val::getRotation);
+            log(vals.get());
+        }
+
+        public void log(Transform3d val) {
+            if (!allow(m_level))
+                return;
+            m_translation3dLogger.log(val.getTranslation());
+            m_rotation3dLogger.log(val.getRotation());
         }
     }
 
@@ -366,10 +474,15 @@ public class LoggerFactory {
         public void log(Supplier<Translation3d> vals) {
             if (!allow(m_level))
                 return;
-            Translation3d val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
-            m_zLogger.log(val::getZ);
+            log(vals.get());
+        }
+
+        public void log(Translation3d val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.getX());
+            m_yLogger.log(val.getY());
+            m_zLogger.log(val.getZ());
         }
     }
 
@@ -393,10 +506,15 @@ public class LoggerFactory {
         public void log(Supplier<Rotation3d> vals) {
             if (!allow(m_level))
                 return;
-            Rotation3d val = vals.get();
-            m_rollLogger.log(val::getX);
-            m_pitchLogger.log(val::getY);
-            m_yawLogger.log(val::getZ);
+            log(vals.get());
+        }
+
+        public void log(Rotation3d val) {
+            if (!allow(m_level))
+                return;
+            m_rollLogger.log(val.getX());
+            m_pitchLogger.log(val.getY());
+            m_yawLogger.log(val.getZ());
         }
     }
 
@@ -418,9 +536,14 @@ public class LoggerFactory {
         public void log(Supplier<Translation2d> vals) {
             if (!allow(m_level))
                 return;
-            Translation2d val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
+            log(vals.get());
+        }
+
+        public void log(Translation2d val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.getX());
+            m_yLogger.log(val.getY());
         }
     }
 
@@ -440,8 +563,13 @@ public class LoggerFactory {
         public void log(Supplier<Rotation2d> vals) {
             if (!allow(m_level))
                 return;
-            Rotation2d val = vals.get();
-            m_radLogger.log(val::getRadians);
+            log(vals.get());
+        }
+
+        public void log(Rotation2d val) {
+            if (!allow(m_level))
+                return;
+            m_radLogger.log(val.getRadians());
         }
     }
 
@@ -467,12 +595,16 @@ public class LoggerFactory {
         public void log(Supplier<TimedState> vals) {
             if (!allow(m_level))
                 return;
-            TimedState val = vals.get();
-            m_pose2dWithMotionLogger.log(val::point);
-            m_timeLogger.log(val::getTimeS);
-            m_velocityLogger.log(val::velocityM_S);
-            m_accelLogger.log(val::acceleration);
+            log(vals.get());
+        }
 
+        public void log(TimedState val) {
+            if (!allow(m_level))
+                return;
+            m_pose2dWithMotionLogger.log(val.point());
+            m_timeLogger.log(val.getTimeS());
+            m_velocityLogger.log(val.velocityM_S());
+            m_accelLogger.log(val.acceleration());
         }
     }
 
@@ -492,8 +624,13 @@ public class LoggerFactory {
         public void log(Supplier<PoseWithCurvature> vals) {
             if (!allow(m_level))
                 return;
-            PoseWithCurvature val = vals.get();
-            m_pose2dLogger.log(() -> val.poseMeters);
+            log(vals.get());
+        }
+
+        public void log(PoseWithCurvature val) {
+            if (!allow(m_level))
+                return;
+            m_pose2dLogger.log(val.poseMeters);
         }
     }
 
@@ -515,9 +652,15 @@ public class LoggerFactory {
         public void log(Supplier<PathPoint> vals) {
             if (!allow(m_level))
                 return;
-            WaypointSE2 val = vals.get().waypoint();
-            m_pose2dLogger.log(val::pose);
-            m_rotation2dLogger.log(() -> val.course().toRotation());
+            log(vals.get());
+        }
+
+        public void log(PathPoint point) {
+            if (!allow(m_level))
+                return;
+            WaypointSE2 val = point.waypoint();
+            m_pose2dLogger.log(val.pose());
+            m_rotation2dLogger.log(val.course().toRotation());
         }
     }
 
@@ -541,10 +684,15 @@ public class LoggerFactory {
         public void log(Supplier<Twist2d> vals) {
             if (!allow(m_level))
                 return;
-            Twist2d val = vals.get();
-            m_dxLogger.log(() -> val.dx);
-            m_dyLogger.log(() -> val.dy);
-            m_dthetaLogger.log(() -> val.dtheta);
+            log(vals.get());
+        }
+
+        public void log(Twist2d val) {
+            if (!allow(m_level))
+                return;
+            m_dxLogger.log(val.dx);
+            m_dyLogger.log(val.dy);
+            m_dthetaLogger.log(val.dtheta);
         }
     }
 
@@ -568,10 +716,15 @@ public class LoggerFactory {
         public void log(Supplier<ChassisSpeeds> vals) {
             if (!allow(m_level))
                 return;
-            ChassisSpeeds val = vals.get();
-            m_vxLogger.log(() -> val.vxMetersPerSecond);
-            m_vyLogger.log(() -> val.vyMetersPerSecond);
-            m_omegaLogger.log(() -> val.omegaRadiansPerSecond);
+            log(vals.get());
+        }
+
+        public void log(ChassisSpeeds val) {
+            if (!allow(m_level))
+                return;
+            m_vxLogger.log(val.vxMetersPerSecond);
+            m_vyLogger.log(val.vyMetersPerSecond);
+            m_omegaLogger.log(val.omegaRadiansPerSecond);
         }
     }
 
@@ -595,10 +748,15 @@ public class LoggerFactory {
         public void log(Supplier<DeltaSE2> vals) {
             if (!allow(m_level))
                 return;
-            DeltaSE2 val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
-            m_thetaLogger.log(val::getRadians);
+            log(vals.get());
+        }
+
+        public void log(DeltaSE2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.getX());
+            m_yLogger.log(val.getY());
+            m_thetaLogger.log(val.getRadians());
         }
     }
 
@@ -622,10 +780,15 @@ public class LoggerFactory {
         public void log(Supplier<VelocitySE2> vals) {
             if (!allow(m_level))
                 return;
-            VelocitySE2 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            log(vals.get());
+        }
+
+        public void log(VelocitySE2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_yLogger.log(val.y());
+            m_thetaLogger.log(val.theta());
         }
     }
 
@@ -647,9 +810,14 @@ public class LoggerFactory {
         public void log(Supplier<GlobalVelocityR2> vals) {
             if (!allow(m_level))
                 return;
-            GlobalVelocityR2 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
+            log(vals.get());
+        }
+
+        public void log(GlobalVelocityR2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_yLogger.log(val.y());
         }
     }
 
@@ -673,10 +841,15 @@ public class LoggerFactory {
         public void log(Supplier<AccelerationSE2> vals) {
             if (!allow(m_level))
                 return;
-            AccelerationSE2 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            log(vals.get());
+        }
+
+        public void log(AccelerationSE2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_yLogger.log(val.y());
+            m_thetaLogger.log(val.theta());
         }
     }
 
@@ -698,9 +871,14 @@ public class LoggerFactory {
         public void log(Supplier<Model100> vals) {
             if (!allow(m_level))
                 return;
-            Model100 val = vals.get();
-            m_xLogger.log(() -> val.x());
-            m_vLogger.log(val::v);
+            log(vals.get());
+        }
+
+        public void log(Model100 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_vLogger.log(val.v());
         }
     }
 
@@ -720,10 +898,15 @@ public class LoggerFactory {
         public void log(Supplier<Control100> vals) {
             if (!allow(m_level))
                 return;
-            Control100 val = vals.get();
-            m_xLogger.log(val::x);
-            m_vLogger.log(val::v);
-            m_aLogger.log(val::a);
+            log(vals.get());
+        }
+
+        public void log(Control100 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_vLogger.log(val.v());
+            m_aLogger.log(val.a());
         }
     }
 
@@ -745,9 +928,14 @@ public class LoggerFactory {
         public void log(Supplier<SetpointsR1> vals) {
             if (!allow(m_level))
                 return;
-            SetpointsR1 val = vals.get();
-            m_current.log(val::current);
-            m_next.log(val::next);
+            log(vals.get());
+        }
+
+        public void log(SetpointsR1 val) {
+            if (!allow(m_level))
+                return;
+            m_current.log(val.current());
+            m_next.log(val.next());
         }
     }
 
@@ -771,10 +959,15 @@ public class LoggerFactory {
         public void log(Supplier<ControlSE2> vals) {
             if (!allow(m_level))
                 return;
-            ControlSE2 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            log(vals.get());
+        }
+
+        public void log(ControlSE2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_yLogger.log(val.y());
+            m_thetaLogger.log(val.theta());
         }
     }
 
@@ -802,10 +995,15 @@ public class LoggerFactory {
         public void log(Supplier<ModelSE2> vals) {
             if (!allow(m_level))
                 return;
-            ModelSE2 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            log(vals.get());
+        }
+
+        public void log(ModelSE2 val) {
+            if (!allow(m_level))
+                return;
+            m_xLogger.log(val.x());
+            m_yLogger.log(val.y());
+            m_thetaLogger.log(val.theta());
         }
     }
 
@@ -827,10 +1025,15 @@ public class LoggerFactory {
         public void log(Supplier<SwerveModulePosition100> vals) {
             if (!allow(m_level))
                 return;
-            SwerveModulePosition100 val = vals.get();
-            m_distanceLogger.log(() -> val.distanceMeters);
+            log(vals.get());
+        }
+
+        public void log(SwerveModulePosition100 val) {
+            if (!allow(m_level))
+                return;
+            m_distanceLogger.log(val.distanceMeters);
             if (val.unwrappedAngle.isPresent()) {
-                m_rotation2dLogger.log(val.unwrappedAngle::get);
+                m_rotation2dLogger.log(val.unwrappedAngle.get());
             }
         }
     }
@@ -858,11 +1061,16 @@ public class LoggerFactory {
         public void log(Supplier<SwerveModulePositions> vals) {
             if (!allow(m_level))
                 return;
-            SwerveModulePositions val = vals.get();
-            m_frontLeft.log(val::frontLeft);
-            m_frontRight.log(val::frontRight);
-            m_rearLeft.log(val::rearLeft);
-            m_rearRight.log(val::rearRight);
+            log(vals.get());
+        }
+
+        public void log(SwerveModulePositions val) {
+            if (!allow(m_level))
+                return;
+            m_frontLeft.log(val.frontLeft());
+            m_frontRight.log(val.frontRight());
+            m_rearLeft.log(val.rearLeft());
+            m_rearRight.log(val.rearRight());
         }
     }
 
@@ -912,11 +1120,16 @@ public class LoggerFactory {
         public void log(Supplier<State> vals) {
             if (!allow(m_level))
                 return;
-            State val = vals.get();
-            m_poseLogger.log(() -> val.poseMeters);
-            m_curvatureLogger.log(() -> val.curvatureRadPerMeter);
-            m_velocityLogger.log(() -> val.velocityMetersPerSecond);
-            m_accelLogger.log(() -> val.accelerationMetersPerSecondSq);
+            log(vals.get());
+        }
+
+        public void log(State val) {
+            if (!allow(m_level))
+                return;
+            m_poseLogger.log(val.poseMeters);
+            m_curvatureLogger.log(val.curvatureRadPerMeter);
+            m_velocityLogger.log(val.velocityMetersPerSecond);
+            m_accelLogger.log(val.accelerationMetersPerSecondSq);
         }
     }
 
@@ -938,9 +1151,14 @@ public class LoggerFactory {
         public void log(Supplier<Blip24> vals) {
             if (!allow(m_level))
                 return;
-            Blip24 val = vals.get();
-            m_idLogger.log(val::getId);
-            m_transformLogger.log(val::getRawPose);
+            log(vals.get());
+        }
+
+        public void log(Blip24 val) {
+            if (!allow(m_level))
+                return;
+            m_idLogger.log(val.getId());
+            m_transformLogger.log(val.getRawPose());
         }
     }
 
@@ -964,10 +1182,15 @@ public class LoggerFactory {
         public void log(Supplier<EAWConfig> vals) {
             if (!allow(m_level))
                 return;
-            EAWConfig val = vals.get();
-            m_elevator.log(val::shoulderHeight);
-            m_shoulder.log(val::shoulderAngle);
-            m_wrist.log(val::wristAngle);
+            log(vals.get());
+        }
+
+        public void log(EAWConfig val) {
+            if (!allow(m_level))
+                return;
+            m_elevator.log(val.shoulderHeight());
+            m_shoulder.log(val.shoulderAngle());
+            m_wrist.log(val.wristAngle());
         }
     }
 
@@ -991,10 +1214,15 @@ public class LoggerFactory {
         public void log(Supplier<JointVelocities> vals) {
             if (!allow(m_level))
                 return;
-            JointVelocities val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            log(vals.get());
+        }
+
+        public void log(JointVelocities val) {
+            if (!allow(m_level))
+                return;
+            m_elevator.log(val.elevator());
+            m_shoulder.log(val.shoulder());
+            m_wrist.log(val.wrist());
         }
     }
 
@@ -1018,10 +1246,15 @@ public class LoggerFactory {
         public void log(Supplier<JointAccelerations> vals) {
             if (!allow(m_level))
                 return;
-            JointAccelerations val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            log(vals.get());
+        }
+
+        public void log(JointAccelerations val) {
+            if (!allow(m_level))
+                return;
+            m_elevator.log(val.elevator());
+            m_shoulder.log(val.shoulder());
+            m_wrist.log(val.wrist());
         }
     }
 
@@ -1045,10 +1278,15 @@ public class LoggerFactory {
         public void log(Supplier<JointForce> vals) {
             if (!allow(m_level))
                 return;
-            JointForce val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            log(vals.get());
+        }
+
+        public void log(JointForce val) {
+            if (!allow(m_level))
+                return;
+            m_elevator.log(val.elevator());
+            m_shoulder.log(val.shoulder());
+            m_wrist.log(val.wrist());
         }
     }
 
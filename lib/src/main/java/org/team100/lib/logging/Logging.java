@@ -1,7 +1,16 @@
 package org.team100.lib.logging;
 
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.IntLogger;
+import org.team100.lib.logging.LoggerFactory.LongLogger;
+import org.team100.lib.logging.primitive.AsyncPrimitiveLogger;
+import org.team100.lib.logging.primitive.FilePrimitiveLogger;
 import org.team100.lib.logging.primitive.NTPrimitiveLogger;
 import org.team100.lib.logging.primitive.PrimitiveLogger;
+import org.team100.lib.logging.primitive.UdpPrimitiveLogger;
+import org.team100.lib.logging.primitive.UdpSender;
 import org.team100.lib.util.NamedChooser;
 
 import com.ctre.phoenix6.SignalLogger;
@@ -13,11 +22,29 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  * Logging singleton.
  * 
  * If you use this logger you'll want to set the log level.
+ * 
+ * The backend is Network Tables, unless the UdpLogging experiment is enabled,
+ * in which case it's UDP, which is much faster, but needs a log receiver, or
+ * the FileLogging experiment is enabled, in which case it's a file on the
+ * robot.
+ * 
+ * If the AsyncLogging experiment is enabled, the backend is fed from a
+ * background thread, and the queue depth, drops, and drain latency are logged
+ * at COMP level.
  */
 public class Logging {
     private static final Level DEFAULT_LEVEL = Level.TRACE;
 
     private PrimitiveLogger ntLogger;
+    /** Null unless the UdpLogging experiment is enabled. */
+    private UdpPrimitiveLogger udpLogger;
+    /** Null unless the FileLogging experiment is enabled. */
+    private FilePrimitiveLogger fileLogger;
+    /** Null unless the AsyncLogging experiment is enabled. */
+    private AsyncPrimitiveLogger asyncLogger;
+    private IntLogger m_log_depth;
+    private LongLogger m_log_dropped;
+    private DoubleLogger m_log_latency;
 
     private static final SendableChooser<Level> m_LevelChooser = new NamedChooser<>("Log Level");
 
@@ -42,9 +69,35 @@ public class Logging {
      * Clients should use the static instance, not the constructor.
      */
     private Logging() {
-        ntLogger = new NTPrimitiveLogger();
-        fieldLogger = new LoggerFactory(this::getLevel, "field", ntLogger);
-        rootLogger = new LoggerFactory(this::getLevel, "log", ntLogger);
+        PrimitiveLogger primitiveLogger;
+        Runnable flush = null;
+        if (Experiments.instance.enabled(Experiment.UdpLogging)) {
+            System.out.println("WARNING: Using UDP network logging!");
+            System.out.println("WARNING: You must have a log receiver connected!");
+            udpLogger = new UdpPrimitiveLogger(UdpSender.data(), UdpSender.meta());
+            primitiveLogger = udpLogger;
+            flush = udpLogger::periodic;
+        } else if (Experiments.instance.enabled(Experiment.FileLogging)) {
+            System.out.println("WARNING: Using file logging, nothing goes to Network Tables!");
+            fileLogger = FilePrimitiveLogger.onRobot();
+            primitiveLogger = fileLogger;
+            flush = fileLogger::periodic;
+        } else {
+            ntLogger = new NTPrimitiveLogger();
+            primitiveLogger = ntLogger;
+        }
+        if (Experiments.instance.enabled(Experiment.AsyncLogging)) {
+            asyncLogger = new AsyncPrimitiveLogger(primitiveLogger, flush);
+            primitiveLogger = asyncLogger;
+        }
+        fieldLogger = new LoggerFactory(this::getLevel, "field", primitiveLogger);
+        rootLogger = new LoggerFactory(this::getLevel, "log", primitiveLogger);
+        if (asyncLogger != null) {
+            LoggerFactory log = rootLogger.name("Logging");
+            m_log_depth = log.intLogger(Level.COMP, "queue depth");
+            m_log_dropped = log.longLogger(Level.COMP, "dropped");
+            m_log_latency = log.doubleLogger(Level.COMP, "drain latency (s)");
+        }
         fieldLogger.stringLogger(Level.COMP, ".type").log(() -> "Field2d");
 
         // turn off the CTRE log we never use
@@ -52,11 +105,39 @@ public class Logging {
     }
 
     public int keyCount() {
+        // the backend belongs to the drain thread.
+        if (asyncLogger != null)
+            return asyncLogger.keyCount();
+        if (udpLogger != null)
+            return udpLogger.keyCount();
+        if (fileLogger != null)
+            return fileLogger.keyCount();
         if (ntLogger != null)
             return ntLogger.keyCount();
         return 0;
     }
 
+    /**
+     * Sends the buffered UDP logs, or rotates the log file at the start of a
+     * match, if that's the backend. NT doesn't need this. With AsyncLogging,
+     * this just marks the end of the cycle. Call it once per cycle, after
+     * everything else has logged.
+     */
+    public void periodic() {
+        if (asyncLogger != null) {
+            // the backend is flushed on the drain thread.
+            m_log_depth.log(asyncLogger::depth);
+            m_log_dropped.log(asyncLogger::dropped);
+            m_log_latency.log(asyncLogger::latencyS);
+            asyncLogger.periodic();
+            return;
+        }
+        if (udpLogger != null)
+            udpLogger.periodic();
+        if (fileLogger != null)
+            fileLogger.periodic();
+    }
+
     public Level getLevel() {
         return m_LevelChooser.getSelected();
     }
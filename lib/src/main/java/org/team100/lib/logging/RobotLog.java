@@ -37,5 +37,7 @@ public class RobotLog {
         m_log_ds_TeleopEnabled.log(DriverStation::isTeleopEnabled);
         m_log_ds_FMSAttached.log(DriverStation::isFMSAttached);
         m_log_voltage.log(RobotController::getBatteryVoltage);
+        // this is the last logging in the cycle, so send it.
+        Logging.instance().periodic();
     }
 }
@@ -0,0 +1,382 @@
+package org.team100.lib.logging.primitive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the primitive logging work off the main loop.
+ *
+ * The logging thread writes each value into a preallocated ring, which is just
+ * a few array stores, and a background thread drains the ring into the
+ * delegate (NT, UDP, or file).
+ *
+ * Double arrays are copied into a separate preallocated ring of doubles, so
+ * the caller can reuse its array. Strings are immutable, so the ring just
+ * holds the reference.
+ *
+ * If the ring is full, the value is dropped, and counted.
+ *
+ * Call periodic() once per cycle, after everything has logged: it puts a
+ * marker in the ring, and when the drain thread reaches the marker, it runs
+ * the delegate's flush (e.g. UdpPrimitiveLogger.periodic()), and measures the
+ * drain latency, i.e. the time from the marker to the flush.
+ *
+ * Any thread may log, e.g. the cache refresh workers do. Writers take a short
+ * lock, which is almost never contended, and the drain thread doesn't take it
+ * at all.
+ *
+ * The delegate is only ever used on the drain thread: creating a logger puts a
+ * request in the ring, and the drain thread creates the delegate's logger,
+ * before any of its values, which are behind it in the ring. So the delegate
+ * doesn't need to be thread-safe, as long as nothing else uses it, and loggers
+ * can be created at any time, e.g. by commands. Creation is never dropped: if
+ * the ring is full, it waits.
+ *
+ * Note that the delegate sees the time of the drain, not the time of the log
+ * call, so delegates that timestamp values (e.g. the file logger) may see a
+ * value from the end of one cycle as belonging to the next one.
+ */
+public class AsyncPrimitiveLogger implements PrimitiveLogger {
+    private static final boolean DEBUG = false;
+    /** Values; 2^16 is more than 10 cycles of 5000 keys. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /** Doubles in all the arrays together. */
+    public static final int DEFAULT_ARRAY_CAPACITY = 1 << 16;
+    /** If there's nothing to do, wait this long for more. */
+    private static final long IDLE_NS = 1000000;
+
+    private static final byte BOOLEAN = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte INT = 3;
+    private static final byte DOUBLE_ARRAY = 4;
+    private static final byte LONG = 5;
+    private static final byte STRING = 6;
+    private static final byte FLUSH = 7;
+    private static final byte CREATE = 8;
+
+    private final PrimitiveLogger m_delegate;
+    private final Runnable m_flush;
+    /** Delegate loggers, indexed by key, or null if creation failed. Drain thread only. */
+    private final List<Object> m_sinks = new ArrayList<>();
+    /** Writers hold this while they write to the ring. */
+    private final Object m_lock = new Object();
+
+    // the value ring, as parallel arrays.
+    private final int m_mask;
+    private final byte[] m_type;
+    private final int[] m_key;
+    /** Scalar bits, or, for arrays, the start in the array ring. */
+    private final long[] m_bits;
+    private final String[] m_string;
+    /** For arrays. */
+    private final int[] m_length;
+
+    // the array ring.
+    private final int m_arrayMask;
+    private final double[] m_doubles;
+
+    /** Next slot to write. Written only with the lock. */
+    private final AtomicLong m_head = new AtomicLong();
+    /** Next slot to read. Written only by the drain thread. */
+    private final AtomicLong m_tail = new AtomicLong();
+    /** Next double to write. Only used with the lock. */
+    private long m_arrayHead;
+    /** Next double to read. Written only by the drain thread. */
+    private final AtomicLong m_arrayTail = new AtomicLong();
+    /** Next key. Only used with the lock. */
+    private int m_nextKey;
+
+    private final Thread m_thread;
+    /** Written only with the lock. */
+    private volatile long m_dropped;
+    /** Written only by the drain thread. */
+    private volatile double m_latencyS;
+    /** The delegate's key count, written by the drain thread. */
+    private volatile int m_keyCount;
+    private volatile boolean m_running;
+
+    /**
+     * @param delegate   does the actual logging, on the drain thread
+     * @param flush      runs on the drain thread once per cycle, may be null
+     * @param capacity   values, must be a power of two
+     * @param arrayCapacity doubles in arrays, must be a power of two
+     */
+    public AsyncPrimitiveLogger(
+            PrimitiveLogger delegate,
+            Runnable flush,
+            int capacity,
+            int arrayCapacity) {
+        if (Integer.bitCount(capacity) != 1 || Integer.bitCount(arrayCapacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+        m_delegate = delegate;
+        m_flush = flush;
+        m_mask = capacity - 1;
+        m_type = new byte[capacity];
+        m_key = new int[capacity];
+        m_bits = new long[capacity];
+        m_string = new String[capacity];
+        m_length = new int[capacity];
+        m_arrayMask = arrayCapacity - 1;
+        m_doubles = new double[arrayCapacity];
+        m_running = true;
+        m_thread = new Thread(this::drainLoop, "AsyncPrimitiveLogger");
+        m_thread.setDaemon(true);
+        // below the main loop, which is what this is for.
+        m_thread.setPriority(Thread.MIN_PRIORITY);
+        m_thread.start();
+    }
+
+    public AsyncPrimitiveLogger(PrimitiveLogger delegate, Runnable flush) {
+        this(delegate, flush, DEFAULT_CAPACITY, DEFAULT_ARRAY_CAPACITY);
+    }
+
+    /** The delegate's key count, as of the most recent logger it created. */
+    @Override
+    public int keyCount() {
+        return m_keyCount;
+    }
+
+    /** Values waiting to be drained. */
+    public int depth() {
+        return (int) (m_head.get() - m_tail.get());
+    }
+
+    /** Values dropped because the ring was full. */
+    public long dropped() {
+        return m_dropped;
+    }
+
+    /** Time from the most recent periodic() to its flush, in seconds. */
+    public double latencyS() {
+        return m_latencyS;
+    }
+
+    /** Mark the end of the cycle, and wake the drain thread. */
+    public void periodic() {
+        synchronized (m_lock) {
+            put(FLUSH, 0, System.nanoTime(), null, 0);
+        }
+        LockSupport.unpark(m_thread);
+    }
+
+    /**
+     * Wait until everything logged so far has been drained, for tests and
+     * shutdown.
+     */
+    public void drain() {
+        long head = m_head.get();
+        while (m_tail.get() < head) {
+            LockSupport.unpark(m_thread);
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Stop the drain thread, after draining what's there. */
+    public void close() {
+        drain();
+        m_running = false;
+        LockSupport.unpark(m_thread);
+        try {
+            m_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //////////////////////////////////////////////////////
+
+    @Override
+    public PrimitiveBooleanLogger booleanLogger(String label) {
+        int key = create(BOOLEAN, label);
+        return x -> log(BOOLEAN, key, x ? 1 : 0, null);
+    }
+
+    @Override
+    public PrimitiveDoubleLogger doubleLogger(String label) {
+        int key = create(DOUBLE, label);
+        return x -> log(DOUBLE, key, Double.doubleToRawLongBits(x), null);
+    }
+
+    @Override
+    public PrimitiveIntLogger intLogger(String label) {
+        int key = create(INT, label);
+        return x -> log(INT, key, x, null);
+    }
+
+    @Override
+    public PrimitiveDoubleArrayLogger doubleArrayLogger(String label) {
+        int key = create(DOUBLE_ARRAY, label);
+        return x -> logArray(key, x);
+    }
+
+    @Override
+    public PrimitiveLongLogger longLogger(String label) {
+        int key = create(LONG, label);
+        return x -> log(LONG, key, x, null);
+    }
+
+    @Override
+    public PrimitiveStringLogger stringLogger(String label) {
+        int key = create(STRING, label);
+        return x -> log(STRING, key, 0, x);
+    }
+
+    //////////////////////////////////////////////////////
+
+    /**
+     * Ask the drain thread to create the delegate's logger. This waits for room
+     * in the ring, rather than dropping, since every later value needs it.
+     *
+     * @return the key
+     */
+    private int create(byte type, String label) {
+        synchronized (m_lock) {
+            while (m_head.get() - m_tail.get() > m_mask) {
+                if (!m_running)
+                    throw new IllegalStateException("closed");
+                LockSupport.unpark(m_thread);
+                Thread.onSpinWait();
+            }
+            int key = m_nextKey++;
+            put(CREATE, key, type, label, 0);
+            return key;
+        }
+    }
+
+    private void log(byte type, int key, long bits, String string) {
+        synchronized (m_lock) {
+            put(type, key, bits, string, 0);
+        }
+    }
+
+    private void logArray(int key, double[] val) {
+        synchronized (m_lock) {
+            if (m_arrayHead + val.length - m_arrayTail.get() > m_arrayMask + 1) {
+                m_dropped++;
+                return;
+            }
+            if (m_head.get() - m_tail.get() > m_mask) {
+                m_dropped++;
+                return;
+            }
+            long start = m_arrayHead;
+            for (int j = 0; j < val.length; ++j) {
+                m_doubles[(int) ((start + j) & m_arrayMask)] = val[j];
+            }
+            m_arrayHead += val.length;
+            put(DOUBLE_ARRAY, key, start, null, val.length);
+        }
+    }
+
+    /** With the lock. */
+    private void put(byte type, int key, long bits, String string, int length) {
+        long head = m_head.get();
+        if (head - m_tail.get() > m_mask) {
+            m_dropped++;
+            return;
+        }
+        int i = (int) (head & m_mask);
+        m_type[i] = type;
+        m_key[i] = key;
+        m_bits[i] = bits;
+        m_string[i] = string;
+        m_length[i] = length;
+        // publish the slot.
+        m_head.lazySet(head + 1);
+    }
+
+    private void drainLoop() {
+        while (m_running) {
+            if (!drainSome())
+                LockSupport.parkNanos(IDLE_NS);
+        }
+    }
+
+    /**
+     * Drain thread only.
+     *
+     * @return true if there was anything to drain
+     */
+    private boolean drainSome() {
+        long tail = m_tail.get();
+        long head = m_head.get();
+        if (tail == head)
+            return false;
+        for (; tail < head; ++tail) {
+            int i = (int) (tail & m_mask);
+            try {
+                drainOne(i);
+            } catch (RuntimeException e) {
+                // a broken delegate shouldn't stop logging.
+                e.printStackTrace();
+            }
+            m_string[i] = null;
+            // free the slot.
+            m_tail.lazySet(tail + 1);
+        }
+        return true;
+    }
+
+    private void drainOne(int i) {
+        byte type = m_type[i];
+        if (type == FLUSH) {
+            if (m_flush != null)
+                m_flush.run();
+            m_latencyS = 1e-9 * (System.nanoTime() - m_bits[i]);
+            if (DEBUG)
+                System.out.printf("latency %.6f\n", m_latencyS);
+            return;
+        }
+        if (type == CREATE) {
+            // keys are in order, so this is always the next one.
+            Object sink = null;
+            try {
+                sink = newSink((byte) m_bits[i], m_string[i]);
+            } finally {
+                m_sinks.add(sink);
+                m_keyCount = m_delegate.keyCount();
+            }
+            return;
+        }
+        Object sink = m_sinks.get(m_key[i]);
+        if (sink == null) {
+            // creation failed, and said so.
+            if (type == DOUBLE_ARRAY)
+                m_arrayTail.lazySet(m_bits[i] + m_length[i]);
+            return;
+        }
+        switch (type) {
+            case BOOLEAN -> ((PrimitiveBooleanLogger) sink).log(m_bits[i] != 0);
+            case DOUBLE -> ((PrimitiveDoubleLogger) sink).log(Double.longBitsToDouble(m_bits[i]));
+            case INT -> ((PrimitiveIntLogger) sink).log((int) m_bits[i]);
+            case LONG -> ((PrimitiveLongLogger) sink).log(m_bits[i]);
+            case STRING -> ((PrimitiveStringLogger) sink).log(m_string[i]);
+            case DOUBLE_ARRAY -> {
+                long start = m_bits[i];
+                // the delegate may keep the array, so it needs a new one.
+                double[] val = new double[m_length[i]];
+                for (int j = 0; j < val.length; ++j) {
+                    val[j] = m_doubles[(int) ((start + j) & m_arrayMask)];
+                }
+                m_arrayTail.lazySet(start + val.length);
+                ((PrimitiveDoubleArrayLogger) sink).log(val);
+            }
+            default -> throw new IllegalStateException("bad type " + type);
+        }
+    }
+
+    /** Drain thread only. */
+    private Object newSink(byte type, String label) {
+        return switch (type) {
+            case BOOLEAN -> m_delegate.booleanLogger(label);
+            case DOUBLE -> m_delegate.doubleLogger(label);
+            case INT -> m_delegate.intLogger(label);
+            case LONG -> m_delegate.longLogger(label);
+            case STRING -> m_delegate.stringLogger(label);
+            case DOUBLE_ARRAY -> m_delegate.doubleArrayLogger(label);
+            default -> throw new IllegalStateException("bad type " + type);
+        };
+    }
+}
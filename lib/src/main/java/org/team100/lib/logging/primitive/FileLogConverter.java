@@ -0,0 +1,128 @@
+package org.team100.lib.logging.primitive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DataLogWriter;
+
+/**
+ * Converts a file written by FilePrimitiveLogger into a .wpilog, for
+ * AdvantageScope etc.
+ *
+ * Run it on the laptop, after copying the files off the robot:
+ *
+ * <pre>
+ * java -cp ... org.team100.lib.logging.primitive.FileLogConverter in.blog [out.wpilog]
+ * </pre>
+ */
+public class FileLogConverter {
+    private static final boolean DEBUG = false;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: FileLogConverter in.blog [out.wpilog]");
+            return;
+        }
+        Path in = Path.of(args[0]);
+        Path out = args.length > 1
+                ? Path.of(args[1])
+                : Path.of(args[0].replaceFirst("\\.blog$", "") + ".wpilog");
+        int n = convert(in, out);
+        System.out.printf("wrote %d records to %s\n", n, out);
+    }
+
+    /** @return the number of records converted */
+    public static int convert(Path in, Path out) throws IOException {
+        ByteBuffer buf = read(in);
+        byte[] magic = new byte[FilePrimitiveLogger.MAGIC.length];
+        buf.get(0, magic);
+        if (!Arrays.equals(magic, FilePrimitiveLogger.MAGIC))
+            throw new IOException("not a log file: " + in);
+        int version = buf.getInt(8);
+        if (version != FilePrimitiveLogger.VERSION)
+            throw new IOException("unknown version: " + version);
+
+        DataLog log = new DataLogWriter(out.toString());
+        try {
+            Map<Integer, Integer> entries = new HashMap<>();
+            Map<Integer, UdpType> types = new HashMap<>();
+            int keyCount = buf.getInt(FilePrimitiveLogger.COUNT_OFFSET);
+            int p = FilePrimitiveLogger.META_START;
+            for (int i = 0; i < keyCount; ++i) {
+                int key = buf.getChar(p);
+                UdpType type = UdpType.get(buf.get(p + 2));
+                int length = buf.get(p + 3) & 0xff;
+                byte[] label = new byte[length];
+                buf.get(p + 4, label);
+                p += 4 + length;
+                types.put(key, type);
+                entries.put(key, log.start(
+                        new String(label, StandardCharsets.US_ASCII), typeString(type)));
+            }
+
+            int count = 0;
+            buf.position(FilePrimitiveLogger.HEADER_SIZE);
+            while (buf.remaining() >= FilePrimitiveLogger.RECORD_PREFIX) {
+                int key = buf.getChar();
+                if (key == 0)
+                    break;
+                UdpType type = UdpType.get(buf.get());
+                long timestampUs = buf.getLong();
+                Integer entry = entries.get(key);
+                if (entry == null || type != types.get(key))
+                    throw new IOException("bad record at " + buf.position());
+                switch (type) {
+                    case BOOLEAN -> log.appendBoolean(entry, buf.getLong() != 0, timestampUs);
+                    case DOUBLE -> log.appendDouble(entry, buf.getDouble(), timestampUs);
+                    case INT, LONG -> log.appendInteger(entry, buf.getLong(), timestampUs);
+                    case DOUBLE_ARRAY -> {
+                        double[] val = new double[buf.get() & 0xff];
+                        for (int i = 0; i < val.length; ++i) {
+                            val[i] = buf.getDouble();
+                        }
+                        log.appendDoubleArray(entry, val, timestampUs);
+                    }
+                    case STRING -> {
+                        byte[] val = new byte[buf.get() & 0xff];
+                        buf.get(val);
+                        log.appendString(entry, new String(val, StandardCharsets.US_ASCII), timestampUs);
+                    }
+                    default -> throw new IOException("bad type at " + buf.position());
+                }
+                count++;
+            }
+            if (DEBUG)
+                System.out.printf("keys %d records %d\n", keyCount, count);
+            return count;
+        } finally {
+            log.close();
+        }
+    }
+
+    private static String typeString(UdpType type) {
+        return switch (type) {
+            case BOOLEAN -> "boolean";
+            case DOUBLE -> "double";
+            case INT, LONG -> "int64";
+            case DOUBLE_ARRAY -> "double[]";
+            case STRING -> "string";
+            default -> throw new IllegalArgumentException("bad type " + type);
+        };
+    }
+
+    private static ByteBuffer read(Path in) throws IOException {
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+}
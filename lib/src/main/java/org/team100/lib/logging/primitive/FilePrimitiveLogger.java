@@ -0,0 +1,648 @@
+package org.team100.lib.logging.primitive;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.team100.lib.coherence.Takt;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.MatchType;
+
+/**
+ * Log to a memory-mapped file on the robot's disk.
+ *
+ * The file is allocated and mapped up front, so logging a value is just a
+ * bounded copy into memory: no allocation, no system call, and no dependence
+ * on the driver station link. The operating system writes the pages to disk
+ * in the background.
+ *
+ * The file is sparse, so writing a page the disk can't hold would crash the
+ * JVM (SIGBUS). So each file is sized to fit in the usable space on the disk,
+ * leaving a reserve for everything else, and capped, since the 32-bit JVM on
+ * the RoboRIO can't map very much. If there's not enough room, or the mapping
+ * fails, there's a driver station warning, and values are dropped.
+ *
+ * The file has a fixed-size header section, with the key metadata, followed by
+ * the records:
+ *
+ * <pre>
+ * header:
+ * MMMMMMMMVVVVNNNNSSSSSSSS........
+ * ^^^^^^^^                          magic = "T100BLOG"
+ *         ^^^^                      version = 1
+ *             ^^^^                  number of keys
+ *                 ^^^^^^^^          epoch seconds at start, or zero
+ *                         ^^^^^^^^  (reserved)
+ * then for each key:
+ * KKTLAAAA
+ * ^^       key
+ *   ^      type, see UdpType
+ *    ^     label length
+ *     ^^^^ label in ascii
+ *
+ * record:
+ * KKTSSSSSSSSVVVVVVVV
+ * ^^                  key
+ *   ^                 type
+ *    ^^^^^^^^         Takt time in microseconds
+ *            ^^^^^^^^ value: double bits, long, int, or boolean (0 or 1)
+ * double arrays and strings are variable-length:
+ * KKTSSSSSSSSLVVVVVVVVVVVVVVVV
+ *            ^                 length (1 byte)
+ *             ^^^^^^^^^^^^^^^^ doubles, or ascii bytes
+ * </pre>
+ *
+ * Keys start at 1, so the zero-filled space after the last record reads as a
+ * zero key, which marks the end.
+ *
+ * When the file is full, logging switches to a spare file, which was mapped
+ * ahead of time, so the main loop only writes the new header. The system
+ * calls, i.e. writing back and trimming the full file, renaming the spare, and
+ * mapping the next spare, happen on a low-priority background thread. Values
+ * are dropped, and counted, only if there's no file, e.g. if the spare isn't
+ * ready yet.
+ *
+ * Before mapping a file, the oldest log files in the directory are deleted,
+ * until a full-size file fits, like DataLogManager does.
+ *
+ * The file is also rotated at the start of each match (i.e. when the driver
+ * station reports a new match). The header of each new file includes all the
+ * keys.
+ *
+ * Use FileLogConverter to convert the file to .wpilog for AdvantageScope.
+ *
+ * Like UdpPrimitiveLogger, this is not thread-safe: log from the main loop
+ * only.
+ */
+public class FilePrimitiveLogger implements PrimitiveLogger {
+    private static final boolean DEBUG = false;
+    static final byte[] MAGIC = "T100BLOG".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 1 << 20;
+    /** Offset of the first metadata entry within the header. */
+    static final int META_START = 32;
+    static final int COUNT_OFFSET = 12;
+    /** Key + type + timestamp. */
+    static final int RECORD_PREFIX = 11;
+    /**
+     * Default maximum size, small enough to map on the RoboRIO. At 5000 keys at
+     * 50 Hz, this is about half a minute, and then the next file starts.
+     */
+    public static final long DEFAULT_SIZE = 1L << 27;
+    /** Space on the disk to leave for everything else. */
+    public static final long DEFAULT_RESERVE = 1L << 26;
+    /** The spare file is mapped under this name until it's used. */
+    static final String SPARE_NAME = ".T100_spare.blog";
+
+    /** A mapped file. */
+    private record Mapped(Path path, MappedByteBuffer buf, long size) {
+    }
+
+    record Metadata(int key, UdpType type, String label) {
+        public Metadata {
+            if (key > 65535)
+                throw new IllegalArgumentException("too many keys");
+            if (label.length() > 255)
+                throw new IllegalArgumentException("label too long: " + label);
+        }
+    }
+
+    private final Path m_dir;
+    private final long m_maxSize;
+    private final long m_reserve;
+    private final List<Metadata> m_metadata = new ArrayList<>();
+    private final Map<String, PrimitiveBooleanLogger> m_booleans = new HashMap<>();
+    private final Map<String, PrimitiveDoubleLogger> m_doubles = new HashMap<>();
+    private final Map<String, PrimitiveIntLogger> m_ints = new HashMap<>();
+    private final Map<String, PrimitiveDoubleArrayLogger> m_doubleArrays = new HashMap<>();
+    private final Map<String, PrimitiveLongLogger> m_longs = new HashMap<>();
+    private final Map<String, PrimitiveStringLogger> m_strings = new HashMap<>();
+    /** Does the system calls, off the main loop. */
+    private final ThreadPoolExecutor m_background;
+    /** The next file, written by the background thread. */
+    private final AtomicReference<Mapped> m_spare = new AtomicReference<>();
+    /** True if the background thread failed to make the spare. */
+    private final AtomicBoolean m_failed = new AtomicBoolean();
+
+    /** Name of the current file, or the next one, if it's not ready yet. */
+    private Path m_path;
+    private Mapped m_file;
+    private MappedByteBuffer m_buf;
+    /** Waiting for the spare. */
+    private boolean m_waiting;
+    /** Size of the current file. */
+    private long m_size;
+    /** Next byte to write in the header. */
+    private int m_metaPosition;
+    /** Next byte to write in the records. */
+    private long m_position;
+    private long m_dropped;
+    /** The current match, to detect the next one. */
+    private MatchType m_matchType;
+    private int m_matchNumber;
+    private int m_replayNumber;
+    /** Goes in the file name. */
+    private String m_match;
+    private int m_fileCount;
+
+    /**
+     * @param dir     where the log files go
+     * @param maxSize of each file, including the header
+     * @param reserve free space to leave on the disk
+     */
+    public FilePrimitiveLogger(Path dir, long maxSize, long reserve) {
+        if (maxSize <= HEADER_SIZE || maxSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("bad size " + maxSize);
+        m_dir = dir;
+        m_maxSize = maxSize;
+        m_reserve = reserve;
+        m_matchType = MatchType.None;
+        m_match = "";
+        m_background = new ThreadPoolExecutor(
+                1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "FilePrimitiveLogger");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        // the first file is mapped right here, since nothing is running yet.
+        m_path = m_dir.resolve(fileName());
+        prepare(m_path, 0, null);
+        take(false);
+    }
+
+    public FilePrimitiveLogger(Path dir, long maxSize) {
+        this(dir, maxSize, DEFAULT_RESERVE);
+    }
+
+    /** Uses the USB stick if there is one, otherwise the RoboRIO disk. */
+    public static FilePrimitiveLogger onRobot() {
+        Path usb = Path.of("/u");
+        Path dir = Files.isDirectory(usb) ? usb.resolve("logs") : Path.of("/home/lvuser/logs");
+        return new FilePrimitiveLogger(dir, DEFAULT_SIZE, DEFAULT_RESERVE);
+    }
+
+    @Override
+    public int keyCount() {
+        return m_metadata.size();
+    }
+
+    /** Values dropped because there was no file. */
+    public long dropped() {
+        return m_dropped;
+    }
+
+    /** Bytes of records written to the current file. */
+    public long used() {
+        if (m_buf == null)
+            return 0;
+        return m_position - HEADER_SIZE;
+    }
+
+    /** Size of the current file, or zero if there isn't one. */
+    public long size() {
+        if (m_buf == null)
+            return 0;
+        return m_size;
+    }
+
+    public Path path() {
+        return m_path;
+    }
+
+    /** Rotate the file if a new match has started. Call this once per cycle. */
+    public void periodic() {
+        if (!DriverStation.isFMSAttached())
+            return;
+        MatchType type = DriverStation.getMatchType();
+        int number = DriverStation.getMatchNumber();
+        int replay = DriverStation.getReplayNumber();
+        if (type == MatchType.None || number == 0)
+            return;
+        if (type == m_matchType && number == m_matchNumber && replay == m_replayNumber)
+            return;
+        m_matchType = type;
+        m_matchNumber = number;
+        m_replayNumber = replay;
+        m_match = String.format("%s%d_%d", type.name(), number, replay);
+        rotate();
+    }
+
+    /**
+     * Switch to the spare file, with all the keys, and finish the current one
+     * in the background. If the spare isn't ready, values are dropped until it
+     * is.
+     */
+    public void rotate() {
+        if (m_background.isShutdown())
+            return;
+        if (m_file != null) {
+            Mapped full = m_file;
+            long end = m_position;
+            m_background.execute(() -> finish(full, end));
+        }
+        m_file = null;
+        m_buf = null;
+        m_path = m_dir.resolve(fileName());
+        m_waiting = true;
+        if (m_failed.getAndSet(false)) {
+            // the last attempt failed, so try again.
+            m_background.execute(() -> prepare(m_dir.resolve(SPARE_NAME), 0, null));
+        }
+        take(true);
+    }
+
+    /**
+     * Finish the background work, write everything to disk, and trim the
+     * unused space, so the file is complete. This waits for system calls, so
+     * don't do it in the main loop. After this, nothing is logged.
+     */
+    public void close() {
+        sync();
+        m_background.shutdown();
+        if (m_file != null)
+            finish(m_file, m_position);
+        m_file = null;
+        m_buf = null;
+        m_waiting = false;
+        Mapped spare = m_spare.getAndSet(null);
+        if (spare != null) {
+            unmap(spare.buf());
+            try {
+                Files.deleteIfExists(spare.path());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Wait for the background work, for tests. */
+    void sync() {
+        if (m_background.isShutdown())
+            return;
+        try {
+            m_background.submit(() -> {
+            }).get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //////////////////////////////////////////////////////
+
+    private class FileBooleanLogger implements PrimitiveBooleanLogger {
+        private final int m_key;
+
+        FileBooleanLogger(String label) {
+            m_key = addKey(UdpType.BOOLEAN, label);
+        }
+
+        @Override
+        public void log(boolean val) {
+            writeScalar(m_key, UdpType.BOOLEAN, val ? 1 : 0);
+        }
+    }
+
+    private class FileDoubleLogger implements PrimitiveDoubleLogger {
+        private final int m_key;
+
+        FileDoubleLogger(String label) {
+            m_key = addKey(UdpType.DOUBLE, label);
+        }
+
+        @Override
+        public void log(double val) {
+            writeScalar(m_key, UdpType.DOUBLE, Double.doubleToRawLongBits(val));
+        }
+    }
+
+    private class FileIntLogger implements PrimitiveIntLogger {
+        private final int m_key;
+
+        FileIntLogger(String label) {
+            m_key = addKey(UdpType.INT, label);
+        }
+
+        @Override
+        public void log(int val) {
+            writeScalar(m_key, UdpType.INT, val);
+        }
+    }
+
+    private class FileDoubleArrayLogger implements PrimitiveDoubleArrayLogger {
+        private final int m_key;
+
+        FileDoubleArrayLogger(String label) {
+            m_key = addKey(UdpType.DOUBLE_ARRAY, label);
+        }
+
+        @Override
+        public void log(double[] val) {
+            writeDoubleArray(m_key, val);
+        }
+    }
+
+    private class FileLongLogger implements PrimitiveLongLogger {
+        private final int m_key;
+
+        FileLongLogger(String label) {
+            m_key = addKey(UdpType.LONG, label);
+        }
+
+        @Override
+        public void log(long val) {
+            writeScalar(m_key, UdpType.LONG, val);
+        }
+    }
+
+    private class FileStringLogger implements PrimitiveStringLogger {
+        private final int m_key;
+
+        FileStringLogger(String label) {
+            m_key = addKey(UdpType.STRING, label);
+        }
+
+        @Override
+        public void log(String val) {
+            writeString(m_key, val);
+        }
+    }
+
+    @Override
+    public PrimitiveBooleanLogger booleanLogger(String label) {
+        return m_booleans.computeIfAbsent(label, FileBooleanLogger::new);
+    }
+
+    @Override
+    public PrimitiveDoubleLogger doubleLogger(String label) {
+        return m_doubles.computeIfAbsent(label, FileDoubleLogger::new);
+    }
+
+    @Override
+    public PrimitiveIntLogger intLogger(String label) {
+        return m_ints.computeIfAbsent(label, FileIntLogger::new);
+    }
+
+    @Override
+    public PrimitiveDoubleArrayLogger doubleArrayLogger(String label) {
+        return m_doubleArrays.computeIfAbsent(label, FileDoubleArrayLogger::new);
+    }
+
+    @Override
+    public PrimitiveLongLogger longLogger(String label) {
+        return m_longs.computeIfAbsent(label, FileLongLogger::new);
+    }
+
+    @Override
+    public PrimitiveStringLogger stringLogger(String label) {
+        return m_strings.computeIfAbsent(label, FileStringLogger::new);
+    }
+
+    //////////////////////////////////////////////////////
+
+    private int addKey(UdpType type, String label) {
+        Metadata m = new Metadata(m_metadata.size() + 1, type, label);
+        m_metadata.add(m);
+        if (m_buf != null)
+            writeMetadata(m);
+        return m.key();
+    }
+
+    private void writeMetadata(Metadata m) {
+        int n = m.label().length();
+        if (m_metaPosition + 4 + n > HEADER_SIZE)
+            throw new IllegalStateException("header is full");
+        m_buf.putChar(m_metaPosition, (char) m.key());
+        m_buf.put(m_metaPosition + 2, m.type().id);
+        m_buf.put(m_metaPosition + 3, (byte) n);
+        for (int i = 0; i < n; ++i) {
+            m_buf.put(m_metaPosition + 4 + i, (byte) m.label().charAt(i));
+        }
+        m_metaPosition += 4 + n;
+        m_buf.putInt(COUNT_OFFSET, m.key());
+    }
+
+    /** @return the position of the value, or -1 if there's no room. */
+    private int prefix(int key, UdpType type, int valueLength) {
+        if (m_waiting)
+            take(true);
+        if (m_buf != null && m_position > HEADER_SIZE
+                && m_position + RECORD_PREFIX + valueLength > m_size) {
+            // full, so start the next file.
+            rotate();
+        }
+        if (m_buf == null || m_position + RECORD_PREFIX + valueLength > m_size) {
+            m_dropped++;
+            return -1;
+        }
+        int p = (int) m_position;
+        m_buf.putChar(p, (char) key);
+        m_buf.put(p + 2, type.id);
+        m_buf.putLong(p + 3, (long) (Takt.get() * 1000000));
+        m_position += RECORD_PREFIX + valueLength;
+        return p + RECORD_PREFIX;
+    }
+
+    private void writeScalar(int key, UdpType type, long bits) {
+        int p = prefix(key, type, 8);
+        if (p < 0)
+            return;
+        m_buf.putLong(p, bits);
+    }
+
+    private void writeDoubleArray(int key, double[] val) {
+        if (val.length > 255)
+            throw new IllegalArgumentException();
+        int p = prefix(key, UdpType.DOUBLE_ARRAY, 1 + 8 * val.length);
+        if (p < 0)
+            return;
+        m_buf.put(p, (byte) val.length);
+        for (int i = 0; i < val.length; ++i) {
+            m_buf.putDouble(p + 1 + 8 * i, val[i]);
+        }
+    }
+
+    private void writeString(int key, String val) {
+        int n = Math.min(255, val.length());
+        int p = prefix(key, UdpType.STRING, 1 + n);
+        if (p < 0)
+            return;
+        m_buf.put(p, (byte) n);
+        for (int i = 0; i < n; ++i) {
+            m_buf.put(p + 1 + i, (byte) val.charAt(i));
+        }
+    }
+
+    /**
+     * Start logging to the spare, if it's ready, and make the next one in the
+     * background.
+     * 
+     * @param rename move the spare to m_path, in the background
+     */
+    private void take(boolean rename) {
+        Mapped spare = m_spare.getAndSet(null);
+        if (spare == null)
+            return;
+        m_waiting = false;
+        Path path = m_path;
+        m_file = new Mapped(path, spare.buf(), spare.size());
+        m_buf = spare.buf();
+        m_size = spare.size();
+        if (DEBUG)
+            System.out.printf("log file %s size %d\n", path, m_size);
+        m_buf.order(ByteOrder.BIG_ENDIAN);
+        m_buf.put(0, MAGIC);
+        m_buf.putInt(8, VERSION);
+        m_buf.putInt(COUNT_OFFSET, 0);
+        m_buf.putLong(16, System.currentTimeMillis() / 1000);
+        m_metaPosition = META_START;
+        for (Metadata m : m_metadata) {
+            writeMetadata(m);
+        }
+        m_position = HEADER_SIZE;
+        long committed = m_size;
+        m_background.execute(() -> {
+            if (rename) {
+                try {
+                    Files.move(spare.path(), path, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    DriverStation.reportWarning(String.format(
+                            "Log file %s rename failed: %s", path, e), false);
+                }
+            }
+            prepare(m_dir.resolve(SPARE_NAME), committed, path);
+        });
+    }
+
+    /**
+     * Background thread (or constructor): write everything to disk, release
+     * the mapping, and trim the unused space.
+     */
+    private static void finish(Mapped file, long end) {
+        file.buf().force();
+        unmap(file.buf());
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.WRITE)) {
+            // leave one zero key as the end marker.
+            channel.truncate(Math.min(file.size(), end + 2));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Background thread (or constructor): map a new file, for the main loop to
+     * take.
+     * 
+     * @param path      where to put it
+     * @param committed space the current file might still use
+     * @param current   the file in use, not to be deleted, or null
+     */
+    private void prepare(Path path, long committed, Path current) {
+        try {
+            Files.createDirectories(m_dir);
+            deleteOldest(m_maxSize + m_reserve + committed, current);
+            // the file is sparse, so it has to fit in the space that's left.
+            long usable = Files.getFileStore(m_dir).getUsableSpace() - m_reserve - committed;
+            long size = Math.min(m_maxSize, usable);
+            if (size <= HEADER_SIZE) {
+                DriverStation.reportWarning(String.format(
+                        "Not enough disk space for log file in %s, nothing will be logged", m_dir), false);
+                m_failed.set(true);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // the mapping stays valid after the channel is closed.
+                m_spare.set(new Mapped(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), size));
+            }
+        } catch (IOException e) {
+            // logging is not worth crashing for, but it's worth knowing about.
+            DriverStation.reportWarning(String.format(
+                    "Log file %s failed, nothing will be logged: %s", path, e), false);
+            m_failed.set(true);
+        }
+    }
+
+    /**
+     * Delete the oldest log files until there's the needed space. The spare
+     * has a different name, so it's never deleted.
+     */
+    private void deleteOldest(long needed, Path current) throws IOException {
+        if (Files.getFileStore(m_dir).getUsableSpace() >= needed)
+            return;
+        List<Path> logs;
+        try (Stream<Path> files = Files.list(m_dir)) {
+            logs = files
+                    .filter(p -> p.getFileName().toString().startsWith("T100_"))
+                    .filter(p -> p.getFileName().toString().endsWith(".blog"))
+                    .filter(p -> !p.equals(current))
+                    .sorted(Comparator.comparing(FilePrimitiveLogger::modified))
+                    .toList();
+        }
+        for (Path p : logs) {
+            if (Files.getFileStore(m_dir).getUsableSpace() >= needed)
+                return;
+            if (DEBUG)
+                System.out.printf("delete old log file %s\n", p);
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private static FileTime modified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Release the mapping now, rather than whenever the buffer is collected,
+     * since the 32-bit address space only holds a few of them.
+     */
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(f.get(null), buf);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the collector will do it eventually.
+            if (DEBUG)
+                e.printStackTrace();
+        }
+    }
+
+    private String fileName() {
+        m_fileCount++;
+        if (m_match.isEmpty())
+            return String.format("T100_%d_%d.blog", System.currentTimeMillis() / 1000, m_fileCount);
+        return String.format("T100_%s_%d.blog", m_match, m_fileCount);
+    }
+}
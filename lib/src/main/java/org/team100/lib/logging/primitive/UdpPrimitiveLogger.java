@@ -6,11 +6,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
-import org.team100.lib.util.Takt;
-import org.team100.lib.util.Util;
+import org.team100.lib.coherence.Takt;
 
 /**
  * Send logs to a log recipient via UDP.
@@ -18,10 +16,13 @@ import org.team100.lib.util.Util;
  * UDP is not formally reliable but on the robot LAN, for log data, it's good
  * enough.
  * 
- * The recipient IP is always 10.1.0.100. (or 16 at the moment)
+ * The recipient IP is 10.1.0.16, see UdpSender.
  * 
  * This logger accepts inputs only one value per key per flush period; the
- * newest value wins.
+ * newest value wins. Logging a value just stores it and marks it dirty, so it's
+ * very cheap; the work happens in periodic(), which encodes the dirty values
+ * into reusable buffers, and also streams a packet of labels each time, so that
+ * a receiver that starts late eventually sees all of them.
  */
 public class UdpPrimitiveLogger implements PrimitiveLogger {
     /** if false, throw when a duplicate logger is created. */
@@ -255,22 +256,24 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
 
     //////////////////////////////////////////
 
-    /** @param putter puts the value if there's room, returns false if not. */
-    private void putAndMaybeSend(BooleanSupplier putter) {
-        if (!putter.getAsBoolean()) {
-            // time to send the packet
-            m_bufferSink.accept(m_dataProtocol.trim());
-            m_dataProtocol.clear();
-            if (!putter.getAsBoolean())
-                throw new IllegalStateException();
-        }
-
+    /** The packet is full, so send it and start another one. */
+    private void send() {
+        m_bufferSink.accept(m_dataProtocol.trim());
+        m_dataProtocol.clear();
     }
 
+    // Each of these tries to put the value, and if there's no room, sends the
+    // packet and tries again. These used to take a lambda, which allocated for
+    // every value.
+
     private void flushBoolean() {
         for (UdpBooleanLogger logger : booleanLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putBoolean(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putBoolean(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putBoolean(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -279,7 +282,11 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     private void flushDouble() {
         for (UdpDoubleLogger logger : doubleLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putDouble(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putDouble(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putDouble(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -288,7 +295,11 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     private void flushInteger() {
         for (UdpIntLogger logger : integerLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putInt(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putInt(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putInt(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -297,7 +308,11 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     private void flushDoubleArray() {
         for (UdpDoubleArrayLogger logger : doubleArrayLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putDoubleArray(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putDoubleArray(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putDoubleArray(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -306,7 +321,11 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     private void flushLong() {
         for (UdpLongLogger logger : longLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putLong(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putLong(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putLong(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -315,7 +334,11 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     private void flushString() {
         for (UdpStringLogger logger : stringLoggers) {
             if (logger.m_dirty) {
-                putAndMaybeSend(() -> m_dataProtocol.putString(logger.m_key, logger.m_val));
+                if (!m_dataProtocol.putString(logger.m_key, logger.m_val)) {
+                    send();
+                    if (!m_dataProtocol.putString(logger.m_key, logger.m_val))
+                        throw new IllegalStateException();
+                }
                 logger.m_dirty = false;
             }
         }
@@ -325,7 +348,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveBooleanLogger booleanLogger(String label) {
         if (booleanIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return booleanIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -340,7 +363,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveDoubleLogger doubleLogger(String label) {
         if (doubleIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return doubleIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -355,7 +378,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveIntLogger intLogger(String label) {
         if (intIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return intIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -370,7 +393,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveDoubleArrayLogger doubleArrayLogger(String label) {
         if (doubleArrayIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return doubleArrayIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -385,7 +408,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveLongLogger longLogger(String label) {
         if (longIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return longIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -400,7 +423,7 @@ public class UdpPrimitiveLogger implements PrimitiveLogger {
     public PrimitiveStringLogger stringLogger(String label) {
         if (stringIdx.containsKey(label)) {
             if (ALLOW_DUPLICATES) {
-                Util.warn("duplicate label " + label);
+                System.out.println("WARNING: duplicate label " + label);
                 return stringIdx.get(label);
             } else {
                 throw new IllegalArgumentException("duplicate label " + label);
@@ -3,11 +3,16 @@ package org.team100.lib.logging.primitive;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.util.function.Consumer;
 
+/**
+ * Sends each buffer as a datagram, without blocking. If the channel can't be
+ * opened, e.g. the network isn't up yet, this does nothing.
+ */
 public class UdpSender implements Consumer<ByteBuffer> {
     /**
      * 508 is the "really don't fragment" size. Our network uses a 1500 byte MTU so
@@ -27,7 +32,11 @@ public class UdpSender implements Consumer<ByteBuffer> {
     private int m_counter;
 
     public UdpSender(int port) {
-        m_channel = makeChannel(port);
+        this(address(ADDR), port);
+    }
+
+    public UdpSender(InetAddress addr, int port) {
+        m_channel = makeChannel(addr, port);
         m_counter = 0;
     }
 
@@ -43,19 +52,28 @@ public class UdpSender implements Consumer<ByteBuffer> {
         return new UdpSender(kmetadataPort);
     }
 
-    private static DatagramChannel makeChannel(int port) {
+    /** Don't use this in prod! For testing, and for a receiver on the RoboRIO. */
+    public static UdpSender loopback(int port) {
+        return new UdpSender(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static InetAddress address(byte[] addr) {
+        try {
+            return InetAddress.getByAddress(addr);
+        } catch (IOException e) {
+            // only happens if the address is the wrong length
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static DatagramChannel makeChannel(InetAddress addr, int port) {
         try {
             DatagramChannel channel = DatagramChannel.open();
             channel.configureBlocking(false);
             // big buffer does not help but doesn't hurt
             channel.setOption(StandardSocketOptions.SO_SNDBUF, 1000000);
 
-            InetAddress m_addr = InetAddress.getByAddress(ADDR);
-
-            // NOTE! don't use localhost in prod! for testing!
-            // InetAddress m_addr = InetAddress.getLocalHost();
-
-            InetSocketAddress sockAddr = new InetSocketAddress(m_addr, port);
+            InetSocketAddress sockAddr = new InetSocketAddress(addr, port);
             // this will fail for localhost if there's no listener
             channel.connect(sockAddr);
             return channel;
@@ -73,6 +91,9 @@ public class UdpSender implements Consumer<ByteBuffer> {
         try {
             // should write bb.remaining() bytes.
             m_channel.write(bb);
+            m_counter++;
+        } catch (PortUnreachableException e) {
+            // no receiver is listening, which is fine.
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -1,5 +1,6 @@
 package org.team100.lib.network;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 
 import org.team100.lib.config.Camera;
@@ -21,6 +22,11 @@ import edu.wpi.first.wpilibj.Timer;
 /**
  * Reads camera input from network tables, which is always a StructArray.
  * 
+ * The camera offset for each topic is found once, the first time the topic
+ * appears, and remembered by topic handle, so the per-event work doesn't parse
+ * the topic name. Subclasses that care about allocation can override
+ * perRawValue() to decode the raw bytes themselves, see Blip24Reader.
+ * 
  * @param T payload type
  */
 public abstract class CameraReader<T> {
@@ -37,9 +43,20 @@ public abstract class CameraReader<T> {
     private final String m_ntValueName;
     /** Manages the queue of incoming messages. */
     private final NetworkTableListenerPoller m_poller;
-    /** Deserializer used in update(). */
+    /** Deserializer used in perRawValue(). */
     private final StructBuffer<T> m_buf;
 
+    /**
+     * Topic handles seen so far. There's one topic per camera, so this is short,
+     * and a linear scan is fine.
+     */
+    private int[] m_topics = new int[8];
+    /** Topic names, for warnings. */
+    private String[] m_names = new String[8];
+    /** Camera offset for each topic, or null if the topic should be ignored. */
+    private Transform3d[] m_offsets = new Transform3d[8];
+    private int m_topicCount;
+
     public CameraReader(
             LoggerFactory parent,
             String ntRootName,
@@ -74,63 +91,94 @@ public abstract class CameraReader<T> {
         beginUpdate();
         for (NetworkTableEvent e : m_poller.readQueue()) {
             ValueEventData valueEventData = e.valueData;
+            int slot = slot(valueEventData.topic);
+            if (slot < 0)
+                slot = addTopic(valueEventData.topic, valueEventData.getTopic().getName());
             NetworkTableValue ntValue = valueEventData.value;
-            String name = valueEventData.getTopic().getName();
-            if (DEBUG) {
-                System.out.printf("poll %s\n", name);
-            }
-            String[] fields = name.split("/");
-            if (fields.length != 4) {
-                System.out.printf("WARNING: weird event name: %s\n", name);
-                continue;
-            }
-            // key is "rootName/cameraId/cameraNumber/valueName"
-            String cameraId = fields[1];
-            if (!fields[3].equals(m_ntValueName)) {
-                System.out.println("WARNING: weird key: " + name);
-                continue;
-            }
-            if (DEBUG) {
-                System.out.print("found value\n");
-            }
             // decode the way StructArrayEntryImpl does
-            byte[] valueBytes = ntValue.getRaw();
-            if (valueBytes.length == 0) {
-                // this should never happen, but it does, very occasionally.
-                continue;
-            }
-            T[] valueArray;
-            try {
-                valueArray = m_buf.readArray(valueBytes);
-            } catch (RuntimeException ex) {
-                System.out.printf("WARNING: decoding failed for name: %s\n", name);
-                continue;
-            }
-
-            // Robot-to-camera, offset from Camera.java
-            // in tests this offset is identity.
-            Transform3d cameraOffset = Camera.get(cameraId).getOffset();
-            if (DEBUG) {
-                System.out.printf("camera %s offset %s\n", cameraId, cameraOffset);
-            }
-
-            // time is in microseconds
-            // https://docs.wpilib.org/en/stable/docs/software/networktables/networktables-intro.html#timestamps
-            // NT provides a local time comparable to FPGATime, which is what the history
-            // uses.
-            double valueTimestamp = ((double) ntValue.getTime()) / 1000000.0;
-            double age = Timer.getFPGATimestamp() - valueTimestamp;
-            m_log_timestamp.log(() -> valueTimestamp);
-            m_log_age.log(() -> age);
-            if (DEBUG) {
-                System.out.printf("reader timestamp %f\n", valueTimestamp);
-            }
-
-            perValue(cameraOffset, valueTimestamp, valueArray);
+            event(slot, ntValue.getRaw(), ntValue.getTime());
         }
         finishUpdate();
     }
 
+    /**
+     * Same as update(), but with synthetic events instead of the network
+     * input, for tests and benchmarks.
+     * 
+     * @param topics  topic handle of each event
+     * @param names   topic name of each event
+     * @param values  raw payload of each event
+     * @param timesUs network tables local time of each event, in microseconds
+     */
+    void update(int[] topics, String[] names, byte[][] values, long[] timesUs) {
+        beginUpdate();
+        for (int i = 0; i < topics.length; ++i) {
+            int slot = slot(topics[i]);
+            if (slot < 0)
+                slot = addTopic(topics[i], names[i]);
+            event(slot, values[i], timesUs[i]);
+        }
+        finishUpdate();
+    }
+
+    /** Number of topics seen so far, including weird ones. */
+    int topicCount() {
+        return m_topicCount;
+    }
+
+    private void event(int slot, byte[] valueBytes, long timeUs) {
+        // Robot-to-camera, offset from Camera.java
+        // in tests this offset is identity.
+        Transform3d cameraOffset = m_offsets[slot];
+        if (cameraOffset == null) {
+            // weird topic, already warned about.
+            return;
+        }
+        if (valueBytes.length == 0) {
+            // this should never happen, but it does, very occasionally.
+            return;
+        }
+
+        // time is in microseconds
+        // https://docs.wpilib.org/en/stable/docs/software/networktables/networktables-intro.html#timestamps
+        // NT provides a local time comparable to FPGATime, which is what the history
+        // uses.
+        double valueTimestamp = ((double) timeUs) / 1000000.0;
+        double age = Timer.getFPGATimestamp() - valueTimestamp;
+        m_log_timestamp.log(() -> valueTimestamp);
+        m_log_age.log(() -> age);
+        if (DEBUG) {
+            System.out.printf("reader timestamp %f\n", valueTimestamp);
+        }
+
+        if (!perRawValue(cameraOffset, valueTimestamp, valueBytes)) {
+            System.out.printf("WARNING: decoding failed for name: %s\n", m_names[slot]);
+        }
+    }
+
+    /**
+     * Called for each raw value received. The default decodes the StructArray and
+     * calls perValue(); override this to decode without allocating.
+     * 
+     * @param cameraOffset   camera pose in robot coordinates
+     * @param valueTimestamp network tables local time in seconds
+     * @param valueBytes     raw payload
+     * @return false if decoding failed
+     */
+    protected boolean perRawValue(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            byte[] valueBytes) {
+        T[] valueArray;
+        try {
+            valueArray = m_buf.readArray(valueBytes);
+        } catch (RuntimeException ex) {
+            return false;
+        }
+        perValue(cameraOffset, valueTimestamp, valueArray);
+        return true;
+    }
+
     /** Called when update() starts. */
     protected void beginUpdate() {
     };
@@ -151,4 +199,53 @@ public abstract class CameraReader<T> {
     protected void finishUpdate() {
     }
 
+    /** Index of the topic, or -1 if it's new. */
+    private int slot(int handle) {
+        for (int i = 0; i < m_topicCount; ++i) {
+            if (m_topics[i] == handle)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a topic, and return its index. This parses the topic name, so it
+     * only happens once per topic.
+     */
+    private int addTopic(int handle, String name) {
+        if (m_topicCount == m_topics.length) {
+            m_topics = Arrays.copyOf(m_topics, 2 * m_topicCount);
+            m_names = Arrays.copyOf(m_names, 2 * m_topicCount);
+            m_offsets = Arrays.copyOf(m_offsets, 2 * m_topicCount);
+        }
+        int slot = m_topicCount++;
+        m_topics[slot] = handle;
+        m_names[slot] = name;
+        m_offsets[slot] = offset(name);
+        return slot;
+    }
+
+    /** Camera offset for the topic name, or null if the name is weird. */
+    private Transform3d offset(String name) {
+        if (DEBUG) {
+            System.out.printf("new topic %s\n", name);
+        }
+        String[] fields = name.split("/");
+        if (fields.length != 4) {
+            System.out.printf("WARNING: weird event name: %s\n", name);
+            return null;
+        }
+        // key is "rootName/cameraId/cameraNumber/valueName"
+        String cameraId = fields[1];
+        if (!fields[3].equals(m_ntValueName)) {
+            System.out.println("WARNING: weird key: " + name);
+            return null;
+        }
+        Transform3d cameraOffset = Camera.get(cameraId).getOffset();
+        if (DEBUG) {
+            System.out.printf("camera %s offset %s\n", cameraId, cameraOffset);
+        }
+        return cameraOffset;
+    }
+
 }
@@ -3,6 +3,7 @@ package org.team100.lib.network;
 import java.util.function.ObjDoubleConsumer;
 
 import org.team100.lib.localization.Blip24;
+import org.team100.lib.localization.Blip24Reader;
 import org.team100.lib.logging.LoggerFactory;
 
 import edu.wpi.first.math.geometry.Transform3d;
@@ -11,12 +12,26 @@ import edu.wpi.first.util.struct.StructBuffer;
 /** Listen to raw tag input from the cameras, for testing. */
 public class RawTags extends CameraReader<Blip24> {
     private final ObjDoubleConsumer<Transform3d> m_sink;
+    private final Blip24Reader m_reader = new Blip24Reader();
 
     public RawTags(LoggerFactory parent, ObjDoubleConsumer<Transform3d> sink) {
         super(parent, "vision", "blips", StructBuffer.create(Blip24.struct));
         m_sink = sink;
     }
 
+    @Override
+    protected boolean perRawValue(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            byte[] valueBytes) {
+        if (!m_reader.read(valueBytes))
+            return false;
+        for (int i = 0; i < m_reader.count(); ++i) {
+            m_sink.accept(m_reader.transform(i), valueTimestamp);
+        }
+        return true;
+    }
+
     @Override
     protected void perValue(
             Transform3d cameraOffset,
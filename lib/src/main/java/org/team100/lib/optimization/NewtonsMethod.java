@@ -22,12 +22,37 @@ import edu.wpi.first.math.jni.EigenJNI;
  * 
  * https://en.wikipedia.org/wiki/Newton%27s_method
  * https://hades.mech.northwestern.edu/images/7/7f/MR.pdf
+ * 
+ * There are two versions of the solver. The original one, solve2(), estimates
+ * the Jacobian at every step, and uses WPI matrices, which means a lot of
+ * allocation and a JNI call per step. The newer one, solveInPlace(), uses
+ * preallocated workspace arrays, can use an analytic Jacobian, if you have one,
+ * and can use Broyden's method to update the Jacobian estimate, instead of
+ * re-estimating it, which saves n function evaluations per step.
+ * 
+ * https://en.wikipedia.org/wiki/Broyden%27s_method
+ * 
+ * The workspace makes an instance of this class not thread-safe.
  */
 public class NewtonsMethod<X extends Num, Y extends Num> {
     private static final boolean DEBUG = false;
+    /** Treat smaller pivots as zero. */
+    private static final double SINGULAR = 1e-12;
+
+    /**
+     * Writes the Jacobian of f at x into j, so that it doesn't need to allocate.
+     */
+    public interface Jacobian<X extends Num, Y extends Num> {
+        void apply(Vector<X> x, Matrix<Y, X> j);
+    }
+
     private final Nat<X> m_xdim;
     private final Nat<Y> m_ydim;
     private final Function<Vector<X>, Vector<Y>> m_f;
+    /** Analytic Jacobian, or null to estimate it numerically. */
+    private final Jacobian<X, Y> m_jacobian;
+    /** Update the Jacobian with Broyden's method instead of re-evaluating it. */
+    private final boolean m_broyden;
     private final Vector<X> m_xMin;
     private final Vector<X> m_xMax;
     private final double m_tolerance;
@@ -39,6 +64,25 @@ public class NewtonsMethod<X extends Num, Y extends Num> {
 
     private final Random random = new Random();
 
+    ////////////////////////////
+    // workspace for solveInPlace()
+    private final int m_n;
+    private final int m_m;
+    /** Output of the analytic Jacobian. */
+    private final Matrix<Y, X> m_jMatrix;
+    /** Jacobian, (m x n) row-major */
+    private final double[] m_j;
+    private final double[] m_error;
+    private final double[] m_prevError;
+    private final double[] m_prevX;
+    /** Normal equations or square system, (n x n) row-major */
+    private final double[] m_a;
+    private final double[] m_b;
+    private final double[] m_dx;
+
+    private int m_lastIterations;
+    private int m_lastRestarts;
+
     /**
      * 
      * @param xdim       domain dimension
@@ -63,14 +107,55 @@ public class NewtonsMethod<X extends Num, Y extends Num> {
             double tolerance,
             int iterations,
             double dxLimit) {
+        this(xdim, ydim, f, null, false, xMin, xMax, tolerance, iterations, dxLimit);
+    }
+
+    /**
+     * @param xdim       domain dimension
+     * @param ydim       codomain dimension
+     * @param f          error function, as above
+     * @param jacobian   analytic Jacobian of f, or null to estimate it
+     *                   numerically
+     * @param broyden    in solveInPlace(), evaluate the Jacobian only at the start
+     *                   (and when the error grows), and otherwise use Broyden's
+     *                   rank-one update
+     * @param xMin       minimum x
+     * @param xMax       maximum x
+     * @param tolerance  return when solution x yields f(x) this close to zero
+     * @param iterations iteration limit per restart
+     * @param dxLimit    maximum step size
+     */
+    public NewtonsMethod(
+            Nat<X> xdim,
+            Nat<Y> ydim,
+            Function<Vector<X>, Vector<Y>> f,
+            Jacobian<X, Y> jacobian,
+            boolean broyden,
+            Vector<X> xMin,
+            Vector<X> xMax,
+            double tolerance,
+            int iterations,
+            double dxLimit) {
         m_xdim = xdim;
         m_ydim = ydim;
         m_f = f;
+        m_jacobian = jacobian;
+        m_broyden = broyden;
         m_xMin = xMin;
         m_xMax = xMax;
         m_tolerance = tolerance;
         m_iterations = iterations;
         m_dxLimit = dxLimit;
+        m_n = xdim.getNum();
+        m_m = ydim.getNum();
+        m_jMatrix = new Matrix<>(ydim, xdim);
+        m_j = new double[m_m * m_n];
+        m_error = new double[m_m];
+        m_prevError = new double[m_m];
+        m_prevX = new double[m_n];
+        m_a = new double[m_n * m_n];
+        m_b = new double[m_n];
+        m_dx = new double[m_n];
     }
 
     /** Symmetric Jacobian, slower. */
@@ -121,7 +206,7 @@ public class NewtonsMethod<X extends Num, Y extends Num> {
                     // System.out.println("success");
                     return x;
                 }
-                Matrix<Y, X> j = NumericalJacobian100.numericalJacobian2(m_xdim, m_ydim, m_f, x);
+                Matrix<Y, X> j = jacobian(x);
 
                 // if (DEBUG)
                 // System.out.printf("J %s\n", StrUtil.matStr(j));
@@ -183,6 +268,250 @@ public class NewtonsMethod<X extends Num, Y extends Num> {
         }
     }
 
+    /**
+     * Like solve2(), but it starts from x, and mutates x to hold the solution,
+     * using preallocated workspace, so that it allocates nothing itself (f
+     * might). With broyden, the Jacobian is evaluated only at the start of each
+     * restart.
+     * 
+     * The iteration and restart counts are available afterwards from
+     * lastIterations() and lastRestarts().
+     * 
+     * @param x              start here, and return the solution here
+     * @param restarts       number of random restarts in case of non-convergence
+     * @param throwOnFailure throw an exception if we fail to find a solution.
+     * @return true if the solution is within tolerance
+     */
+    public boolean solveInPlace(Vector<X> x, int restarts, boolean throwOnFailure) {
+        long startTime = System.nanoTime();
+        m_lastIterations = 0;
+        m_lastRestarts = 0;
+        try {
+            for (int attempt = 0; attempt <= restarts; ++attempt) {
+                if (attempt > 0) {
+                    if (DEBUG)
+                        System.out.println("convergence failed, trying random restart");
+                    m_lastRestarts++;
+                    for (int i = 0; i < m_n; i++) {
+                        x.set(i, 0, x.get(i) + 0.1 * (random.nextDouble() - 0.5));
+                    }
+                    limit(x);
+                }
+                if (iterate(x))
+                    return true;
+            }
+            System.out.printf("random restart failed, error %f\n", maxAbs(m_error));
+            if (throwOnFailure)
+                throw new IllegalArgumentException(
+                        String.format("failed to converge, last estimate %s",
+                                StrUtil.vecStr(x)));
+            return false;
+        } finally {
+            if (DEBUG) {
+                long finishTime = System.nanoTime();
+                System.out.printf("solveInPlace iterations: %d restarts %d ET (ms): %6.3f\n",
+                        m_lastIterations, m_lastRestarts,
+                        ((double) finishTime - startTime) / 1000000);
+            }
+        }
+    }
+
+    /** Total iterations of the most recent solveInPlace(), across restarts. */
+    public int lastIterations() {
+        return m_lastIterations;
+    }
+
+    /** Random restarts used by the most recent solveInPlace(). */
+    public int lastRestarts() {
+        return m_lastRestarts;
+    }
+
+    /** One attempt of solveInPlace(). */
+    private boolean iterate(Vector<X> x) {
+        boolean haveJacobian = false;
+        for (int iter = 0; iter < m_iterations; ++iter) {
+            m_lastIterations++;
+            evaluate(x);
+            if (maxAbs(m_error) < m_tolerance)
+                return true;
+            if (m_broyden && haveJacobian && norm2(m_error) < norm2(m_prevError)) {
+                broyden(x);
+            } else {
+                // first step, or Broyden is off, or the last step made things
+                // worse, which means the estimate is bad.
+                evaluateJacobian(x);
+                haveJacobian = true;
+            }
+            step();
+            for (int i = 0; i < m_n; ++i) {
+                m_prevX[i] = x.get(i);
+            }
+            System.arraycopy(m_error, 0, m_prevError, 0, m_m);
+            for (int i = 0; i < m_n; ++i) {
+                double dx = MathUtil.clamp(m_dx[i], -m_dxLimit, m_dxLimit);
+                double xi = MathUtil.clamp(x.get(i) - dx, m_xMin.get(i), m_xMax.get(i));
+                x.set(i, 0, xi);
+            }
+        }
+        return false;
+    }
+
+    /** Write f(x) into the error workspace. */
+    private void evaluate(Vector<X> x) {
+        Vector<Y> y = m_f.apply(x);
+        for (int i = 0; i < m_m; ++i) {
+            m_error[i] = y.get(i);
+        }
+    }
+
+    /** Write the Jacobian at x into the workspace; the error must be current. */
+    private void evaluateJacobian(Vector<X> x) {
+        if (m_jacobian != null) {
+            m_jacobian.apply(x, m_jMatrix);
+            for (int row = 0; row < m_m; ++row) {
+                for (int col = 0; col < m_n; ++col) {
+                    m_j[row * m_n + col] = m_jMatrix.get(row, col);
+                }
+            }
+            return;
+        }
+        // Single-sided, like NumericalJacobian100.numericalJacobian2().
+        for (int col = 0; col < m_n; ++col) {
+            final double xi = x.get(col);
+            x.set(col, 0, xi + NumericalJacobian100.DX);
+            Vector<Y> y1 = m_f.apply(x);
+            for (int row = 0; row < m_m; ++row) {
+                m_j[row * m_n + col] = (y1.get(row) - m_error[row]) / NumericalJacobian100.DX;
+            }
+            x.set(col, 0, xi);
+        }
+    }
+
+    /**
+     * Broyden's "good" update: J += (dy - J dx) dx^T / (dx^T dx), using the
+     * previous step.
+     */
+    private void broyden(Vector<X> x) {
+        double ss = 0;
+        for (int col = 0; col < m_n; ++col) {
+            double s = x.get(col) - m_prevX[col];
+            ss += s * s;
+        }
+        if (ss < SINGULAR)
+            return;
+        for (int row = 0; row < m_m; ++row) {
+            double js = 0;
+            for (int col = 0; col < m_n; ++col) {
+                js += m_j[row * m_n + col] * (x.get(col) - m_prevX[col]);
+            }
+            double d = (m_error[row] - m_prevError[row] - js) / ss;
+            for (int col = 0; col < m_n; ++col) {
+                m_j[row * m_n + col] += d * (x.get(col) - m_prevX[col]);
+            }
+        }
+    }
+
+    /**
+     * Solve J dx = error, in the least-squares sense if J isn't square, i.e.
+     * using the normal equations J^T J dx = J^T error.
+     */
+    private void step() {
+        if (m_m == m_n) {
+            System.arraycopy(m_j, 0, m_a, 0, m_n * m_n);
+            System.arraycopy(m_error, 0, m_b, 0, m_n);
+        } else {
+            for (int r = 0; r < m_n; ++r) {
+                for (int c = 0; c < m_n; ++c) {
+                    double sum = 0;
+                    for (int k = 0; k < m_m; ++k) {
+                        sum += m_j[k * m_n + r] * m_j[k * m_n + c];
+                    }
+                    m_a[r * m_n + c] = sum;
+                }
+                double sum = 0;
+                for (int k = 0; k < m_m; ++k) {
+                    sum += m_j[k * m_n + r] * m_error[k];
+                }
+                m_b[r] = sum;
+            }
+        }
+        gauss(m_a, m_b, m_dx, m_n);
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting, destroying a and b. Components
+     * with zero pivots are set to zero, so a singular system still yields a
+     * (smaller) step.
+     */
+    static void gauss(double[] a, double[] b, double[] x, int n) {
+        for (int col = 0; col < n; ++col) {
+            int pivot = col;
+            for (int row = col + 1; row < n; ++row) {
+                if (Math.abs(a[row * n + col]) > Math.abs(a[pivot * n + col]))
+                    pivot = row;
+            }
+            if (pivot != col) {
+                for (int k = 0; k < n; ++k) {
+                    double tmp = a[col * n + k];
+                    a[col * n + k] = a[pivot * n + k];
+                    a[pivot * n + k] = tmp;
+                }
+                double tmp = b[col];
+                b[col] = b[pivot];
+                b[pivot] = tmp;
+            }
+            double p = a[col * n + col];
+            if (Math.abs(p) < SINGULAR)
+                continue;
+            for (int row = col + 1; row < n; ++row) {
+                double factor = a[row * n + col] / p;
+                if (factor == 0)
+                    continue;
+                for (int k = col; k < n; ++k) {
+                    a[row * n + k] -= factor * a[col * n + k];
+                }
+                b[row] -= factor * b[col];
+            }
+        }
+        for (int row = n - 1; row >= 0; --row) {
+            double p = a[row * n + row];
+            if (Math.abs(p) < SINGULAR) {
+                x[row] = 0;
+                continue;
+            }
+            double sum = b[row];
+            for (int k = row + 1; k < n; ++k) {
+                sum -= a[row * n + k] * x[k];
+            }
+            x[row] = sum / p;
+        }
+    }
+
+    private static double maxAbs(double[] v) {
+        double max = 0;
+        for (double d : v) {
+            max = Math.max(max, Math.abs(d));
+        }
+        return max;
+    }
+
+    private static double norm2(double[] v) {
+        double sum = 0;
+        for (double d : v) {
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /** Analytic, if we have it, otherwise numerical. */
+    private Matrix<Y, X> jacobian(Vector<X> x) {
+        if (m_jacobian == null)
+            return NumericalJacobian100.numericalJacobian2(m_xdim, m_ydim, m_f, x);
+        Matrix<Y, X> j = new Matrix<>(m_ydim, m_xdim);
+        m_jacobian.apply(x, j);
+        return j;
+    }
+
     /** A different solver */
     Vector<X> getDxWithQRDecomp(Vector<Y> error, Matrix<Y, X> j) {
         double[] A = j.getData();
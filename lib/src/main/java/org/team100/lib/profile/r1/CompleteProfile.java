@@ -7,6 +7,7 @@ import org.team100.lib.tuning.Mutable;
 import org.team100.lib.util.Math100;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.interpolation.InterpolatingDoubleTreeMap;
 import edu.wpi.first.math.interpolation.InterpolatingTreeMap;
 import edu.wpi.first.math.interpolation.InverseInterpolator;
 
@@ -55,6 +56,10 @@ public class CompleteProfile implements IncrementalProfile {
     private final double m_scale;
     private final Mutable m_tolerance;
     final InterpolatingTreeMap<Double, Control100> m_byDistance;
+    /** Goal path distance to go, by speed, for the ETA. */
+    private final InterpolatingDoubleTreeMap m_distanceBySpeed;
+    /** Goal path time to go, by speed, for the ETA. */
+    private final InterpolatingDoubleTreeMap m_timeBySpeed;
 
     /**
      * Too-low a tolerance will produce chatter. Too-high a tolerance will produce a
@@ -97,6 +102,8 @@ public class CompleteProfile implements IncrementalProfile {
         m_scale = 1.0;
         m_tolerance = new Mutable(log, "tolerance", tolerance, this::update);
         m_byDistance = new InterpolatingTreeMap<>(InverseInterpolator.forDouble(), Control100::interpolate);
+        m_distanceBySpeed = new InterpolatingDoubleTreeMap();
+        m_timeBySpeed = new InterpolatingDoubleTreeMap();
         init();
     }
 
@@ -113,6 +120,8 @@ public class CompleteProfile implements IncrementalProfile {
         m_scale = scale;
         m_tolerance = tolerance;
         m_byDistance = new InterpolatingTreeMap<>(InverseInterpolator.forDouble(), Control100::interpolate);
+        m_distanceBySpeed = new InterpolatingDoubleTreeMap();
+        m_timeBySpeed = new InterpolatingDoubleTreeMap();
         init();
     }
 
@@ -126,9 +135,12 @@ public class CompleteProfile implements IncrementalProfile {
      */
     void init() {
         m_byDistance.clear();
+        m_distanceBySpeed.clear();
+        m_timeBySpeed.clear();
         // This is the goal state, zero control here.
         Control100 control = new Control100();
         put(0.0, control);
+        putSpeed(0.0, control);
         // Far-away points so that the interpolator always yields maxV.
         put(0.0, new Control100(-FAR_AWAY, m_maxV.getAsDouble(), 0));
         put(0.0, new Control100(FAR_AWAY, -m_maxV.getAsDouble(), 0));
@@ -158,6 +170,7 @@ public class CompleteProfile implements IncrementalProfile {
                             m_maxV.getAsDouble(),
                             jerkLimitedA);
                     put(t, control);
+                    putSpeed(t, control);
                     // this is zero accel, epsilon away, so that the interpolator doesn't try to
                     // match the full-accel at the corner.
                     Control100 corner = new Control100(
@@ -175,6 +188,7 @@ public class CompleteProfile implements IncrementalProfile {
                             jerkLimitedA);
                     t += DT;
                     put(t, control);
+                    putSpeed(t, control);
                 }
             }
         }
@@ -253,6 +267,167 @@ public class CompleteProfile implements IncrementalProfile {
                 m_takeoffJ, m_landingJ, s, m_tolerance);
     }
 
+    /**
+     * ETA from the takeoff path, in closed form, and the goal path, from the
+     * table made in init(). Falls back to simulation for the cases it doesn't
+     * handle, i.e. braking.
+     */
+    @Override
+    public double eta(double dt, Control100 initial, Model100 goal) {
+        double eta = analyticEta(initial, goal);
+        if (Double.isNaN(eta))
+            return simulateForETA(dt, initial, goal);
+        return eta;
+    }
+
+    /**
+     * Bisection on the analytic ETA. Each step makes a scaled profile, which
+     * recomputes the goal path, but that's still much cheaper than simulating.
+     */
+    @Override
+    public double scaleForETA(
+            double dt, Control100 i, Model100 g, double goalETA, double etaTolerance) {
+        double s = ProfileTiming.scaleForETA(
+                x -> ((CompleteProfile) scale(x)).analyticEta(i, g), goalETA, etaTolerance);
+        if (Double.isNaN(s))
+            return IncrementalProfile.super.scaleForETA(dt, i, g, goalETA, etaTolerance);
+        return s;
+    }
+
+    /**
+     * The takeoff path is jerk-limited, then current-limited, then back-EMF
+     * limited, and it meets the goal path at some speed, which is found by
+     * bisection.
+     * 
+     * Returns NaN if the setpoint needs to brake, or if there's no takeoff jerk
+     * limit.
+     */
+    double analyticEta(Control100 setpoint, Model100 goal) {
+        if (Math.abs(goal.v()) > 1e-6)
+            return Double.NaN;
+        double togo = goal.x() - setpoint.x();
+        if (MathUtil.isNear(0, togo, m_tolerance.getAsDouble()))
+            return 0;
+        double maxV = m_maxV.getAsDouble();
+        double d = Math.abs(togo);
+        double v0 = Math.signum(togo) * setpoint.v();
+        if (v0 < 0 || v0 >= maxV - m_tolerance.getAsDouble() || m_takeoffJ.getAsDouble() <= 0)
+            return Double.NaN;
+        if (m_distanceBySpeed.get(v0) > d) {
+            // above the goal path
+            return Double.NaN;
+        }
+        Takeoff takeoff = new Takeoff(v0, Math.abs(setpoint.a()));
+        double lo = v0;
+        // close to maxV is cruising, as in init().
+        double hi = maxV - m_tolerance.getAsDouble();
+        double cruise = d - takeoff.distance(hi) - m_distanceBySpeed.get(hi);
+        if (cruise > 0)
+            return takeoff.time(hi) + cruise / maxV + m_timeBySpeed.get(hi);
+        double vs = lo;
+        for (int i = 0; i < 60; ++i) {
+            vs = (lo + hi) / 2;
+            double f = takeoff.distance(vs) + m_distanceBySpeed.get(vs) - d;
+            if (Math.abs(f) < 1e-9)
+                break;
+            if (f < 0)
+                lo = vs;
+            else
+                hi = vs;
+        }
+        if (DEBUG)
+            System.out.printf("switching speed %f\n", vs);
+        return takeoff.time(vs) + m_timeBySpeed.get(vs);
+    }
+
+    /**
+     * The takeoff path in closed form, matching accel(): acceleration ramps at
+     * the takeoff jerk until it reaches the current limit or the back-EMF limit.
+     */
+    private class Takeoff {
+        private final double m_v0;
+        private final double m_a0;
+        private final double m_j;
+        private final double m_vmax;
+        private final double m_a;
+        private final double m_stall;
+        /** Speed where back-EMF becomes the limit. */
+        private final double m_limit;
+        /** End of the jerk ramp. */
+        private final double m_t1;
+        private final double m_v1;
+        private final double m_x1;
+
+        Takeoff(double v0, double a0) {
+            m_v0 = v0;
+            m_a0 = a0;
+            m_j = m_takeoffJ.getAsDouble();
+            m_vmax = m_maxV.getAsDouble();
+            m_a = getScaledA();
+            m_stall = getScaledStall();
+            m_limit = Math.max(0, (1 - m_a / m_stall) * m_vmax);
+            double cap = Math.min(m_a, m_stall * (1 - v0 / m_vmax));
+            double t1 = 0;
+            if (a0 < cap) {
+                t1 = (m_a - a0) / m_j;
+                if (v(t1) > m_limit) {
+                    // the ramp meets the back-EMF curve first
+                    double qa = m_stall * m_j / (2 * m_vmax);
+                    double qb = m_j + m_stall * a0 / m_vmax;
+                    double qc = a0 - m_stall * (1 - v0 / m_vmax);
+                    t1 = (-qb + Math.sqrt(qb * qb - 4 * qa * qc)) / (2 * qa);
+                }
+            }
+            m_t1 = t1;
+            m_v1 = v(t1);
+            m_x1 = x(t1);
+        }
+
+        double time(double vs) {
+            if (vs <= m_v1)
+                return rampTime(vs);
+            double t = m_t1;
+            double v = m_v1;
+            if (v < m_limit) {
+                double w = Math.min(vs, m_limit);
+                t += (w - v) / m_a;
+                v = w;
+            }
+            if (vs > v)
+                t += (m_vmax / m_stall) * Math.log((m_vmax - v) / (m_vmax - vs));
+            return t;
+        }
+
+        double distance(double vs) {
+            if (vs <= m_v1)
+                return x(rampTime(vs));
+            double x = m_x1;
+            double v = m_v1;
+            if (v < m_limit) {
+                double w = Math.min(vs, m_limit);
+                x += (w * w - v * v) / (2 * m_a);
+                v = w;
+            }
+            if (vs > v) {
+                double k = m_vmax / m_stall;
+                x += k * (m_vmax * Math.log((m_vmax - v) / (m_vmax - vs)) - (vs - v));
+            }
+            return x;
+        }
+
+        private double rampTime(double vs) {
+            return (-m_a0 + Math.sqrt(m_a0 * m_a0 + 2 * m_j * (vs - m_v0))) / m_j;
+        }
+
+        private double v(double t) {
+            return m_v0 + m_a0 * t + 0.5 * m_j * t * t;
+        }
+
+        private double x(double t) {
+            return m_v0 * t + 0.5 * m_a0 * t * t + m_j * t * t * t / 6;
+        }
+    }
+
     private double getScaledA() {
         return m_scale * m_maxAUnscaled.getAsDouble();
     }
@@ -335,6 +510,12 @@ public class CompleteProfile implements IncrementalProfile {
         m_byDistance.put(-c.x(), c.mult(-1.0));
     }
 
+    /** Goal path by speed; the distance is always positive. */
+    private void putSpeed(double t, Control100 c) {
+        m_distanceBySpeed.put(c.v(), -c.x());
+        m_timeBySpeed.put(c.v(), t);
+    }
+
     /**
      * This is for the "goal path" which is always slowing down, so use the max
      * decel. The jerk limit affects the "landing".
@@ -71,6 +71,36 @@ public class CurrentLimitedExponentialProfile implements IncrementalProfile {
                 m_maxVel, s * m_limitedAccel, s * m_stallAccel);
     }
 
+    /**
+     * Closed-form ETA, see ProfileTiming.exponential(). This is the ideal
+     * current-limited motor, so it can differ a little from calculate(), which
+     * switches between the two WPI profiles. Falls back to simulation for paths
+     * that overshoot.
+     */
+    @Override
+    public double eta(double dt, Control100 initial, Model100 goal) {
+        double eta = etaAtScale(1, initial, goal);
+        if (Double.isNaN(eta))
+            return simulateForETA(dt, initial, goal);
+        return eta;
+    }
+
+    @Override
+    public double scaleForETA(
+            double dt, Control100 i, Model100 g, double goalETA, double etaTolerance) {
+        double s = ProfileTiming.scaleForETA(x -> etaAtScale(x, i, g), goalETA, etaTolerance);
+        if (Double.isNaN(s))
+            return IncrementalProfile.super.scaleForETA(dt, i, g, goalETA, etaTolerance);
+        return s;
+    }
+
+    /** Decel is the exponential profile, i.e. plugging at the stall accel. */
+    private double etaAtScale(double s, Control100 initial, Model100 goal) {
+        return ProfileTiming.exponential(
+                initial.x(), initial.v(), goal.x(), goal.v(),
+                m_maxVel, s * m_limitedAccel, s * m_stallAccel, s * m_stallAccel);
+    }
+
     public double getMaxVelocity() {
         return m_maxVel;
     }
@@ -39,6 +39,35 @@ public class ExponentialProfileWPI implements IncrementalProfile {
                 m_constraints.maxVelocity(), s * m_constraints.B);
     }
 
+    /**
+     * Closed-form ETA, see ProfileTiming.exponential(). Falls back to simulation
+     * for paths that overshoot.
+     */
+    @Override
+    public double eta(double dt, Control100 initial, Model100 goal) {
+        double eta = etaAtB(m_constraints.B, initial, goal);
+        if (Double.isNaN(eta))
+            return simulateForETA(dt, initial, goal);
+        return eta;
+    }
+
+    @Override
+    public double scaleForETA(
+            double dt, Control100 i, Model100 g, double goalETA, double etaTolerance) {
+        double s = ProfileTiming.scaleForETA(
+                x -> etaAtB(x * m_constraints.B, i, g), goalETA, etaTolerance);
+        if (Double.isNaN(s))
+            return IncrementalProfile.super.scaleForETA(dt, i, g, goalETA, etaTolerance);
+        return s;
+    }
+
+    /** The same motor accelerates, and plugs, at B. */
+    private double etaAtB(double B, Control100 initial, Model100 goal) {
+        double maxV = m_constraints.maxVelocity();
+        return ProfileTiming.exponential(
+                initial.x(), initial.v(), goal.x(), goal.v(), maxV, B, B, B);
+    }
+
     public double getMaxVelocity() {
         return m_constraints.maxVelocity();
     }
@@ -43,6 +43,17 @@ public interface IncrementalProfile {
         return t;
     }
 
+    /**
+     * Duration of the profile from initial to goal.
+     * 
+     * The default simulates; implementations with a closed form should override
+     * this, and use the simulation only for cases the closed form doesn't
+     * handle.
+     */
+    default double eta(double dt, Control100 initial, Model100 goal) {
+        return simulateForETA(dt, initial, goal);
+    }
+
     /**
      * Return a new profile scaled by s. The choice of what the parameter actually
      * does is up to the implementation. A good choice would be to scale
@@ -81,4 +92,21 @@ public interface IncrementalProfile {
         return ss;
     }
 
+    /**
+     * Find the scale factor that makes the profile complete in the specified time
+     * (ETA), with the same limits as solve().
+     * 
+     * The default uses solve(), with the tolerance no finer than dt, since the
+     * simulation can't resolve anything finer. Implementations with a closed-form
+     * ETA should override this.
+     */
+    default double scaleForETA(
+            double dt,
+            Control100 i,
+            Model100 g,
+            double goalETA,
+            double etaTolerance) {
+        return solve(dt, i, g, goalETA, Math.max(dt, etaTolerance));
+    }
+
 }
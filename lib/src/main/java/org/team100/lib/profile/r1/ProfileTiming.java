@@ -0,0 +1,276 @@
+package org.team100.lib.profile.r1;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Closed-form durations for the profiles, so that coordination doesn't need to
+ * simulate.
+ *
+ * The trapezoid case is from LaValle 2023 (see TrapezoidIncrementalProfile):
+ * every path is I+G- or I-G+, maybe with a cruise segment, and the switching
+ * velocity comes straight from the two parabolas.
+ *
+ * The exponential case uses the motor model from ExponentialProfileWPI, i.e.
+ * a = B(u - v/vmax), with an optional current limit at low speed (see
+ * CurrentLimitedExponentialProfile). Each segment has a closed form, but the
+ * switching velocity doesn't, so it's found by bisection, which is cheap.
+ *
+ * Everything here returns NaN for cases it doesn't handle, and the caller
+ * should fall back to simulation.
+ */
+final class ProfileTiming {
+    private static final boolean DEBUG = false;
+    /** Minimum scale, same as IncrementalProfile.solve(). */
+    static final double MIN_S = 0.01;
+    /** Maximum scale, same as IncrementalProfile.solve(). */
+    static final double MAX_S = 1.0;
+    private static final int MAX_ITERATIONS = 60;
+    /** Closer than this fraction to the velocity asymptote is cruising. */
+    private static final double CRUISE = 1e-6;
+
+    private ProfileTiming() {
+        //
+    }
+
+    /**
+     * Duration of the minimum-time acceleration-limited path, with a velocity
+     * limit.
+     *
+     * Initial speed above the limit is braked first, as in
+     * TrapezoidIncrementalProfile. Goal speed is clamped to the limit.
+     */
+    static double trapezoid(
+            double x0, double v0, double xg, double vg, double maxV, double maxA) {
+        vg = Math.max(-maxV, Math.min(maxV, vg));
+        double t = 0;
+        if (Math.abs(v0) > maxV) {
+            // brake to the limit
+            double sign = Math.signum(v0);
+            t += (Math.abs(v0) - maxV) / maxA;
+            x0 += sign * (v0 * v0 - maxV * maxV) / (2 * maxA);
+            v0 = sign * maxV;
+        }
+        double plus = iPlusGMinus(x0, v0, xg, vg, maxV, maxA);
+        // I-G+ is the mirror image
+        double minus = iPlusGMinus(-x0, -v0, -xg, -vg, maxV, maxA);
+        if (DEBUG)
+            System.out.printf("I+G- %f I-G+ %f\n", plus, minus);
+        double best = Math.min(plus, minus);
+        if (Double.isNaN(plus))
+            best = minus;
+        if (Double.isNaN(minus))
+            best = plus;
+        return t + best;
+    }
+
+    /**
+     * Acceleration that makes a rest-to-rest trapezoid take the duration eta, as
+     * a fraction of maxA, within [MIN_S, MAX_S].
+     */
+    static double trapezoidScale(double distance, double maxV, double maxA, double eta) {
+        double d = Math.abs(distance);
+        if (d < 1e-12 || eta <= 0)
+            return MAX_S;
+        double a;
+        if (2 * d / eta <= maxV) {
+            // triangle: peak velocity is 2d/eta
+            a = 4 * d / (eta * eta);
+        } else if (eta > d / maxV) {
+            // trapezoid: eta = maxV/a + d/maxV
+            a = maxV / (eta - d / maxV);
+        } else {
+            // too far to go, even at infinite acceleration
+            return MAX_S;
+        }
+        return clampScale(a / maxA);
+    }
+
+    /**
+     * Duration of the path for a DC motor, with optional current limiting: below
+     * the speed where the torque curves cross, acceleration is limitedA, above
+     * that it follows the back-EMF curve, stallA(1 - v/maxV). Deceleration
+     * ("plugging") follows plugA(1 + v/maxV), which is more than the stall
+     * acceleration, since back-EMF helps.
+     *
+     * The velocity limit is never reached, it's the asymptote.
+     *
+     * Returns NaN for paths that overshoot the goal, or start too fast.
+     */
+    static double exponential(
+            double x0, double v0, double xg, double vg,
+            double maxV, double limitedA, double stallA, double plugA) {
+        if (xg < x0) {
+            // mirror
+            x0 = -x0;
+            v0 = -v0;
+            xg = -xg;
+            vg = -vg;
+        }
+        if (vg < 0 || vg >= maxV || v0 >= maxV || v0 <= -maxV)
+            return Double.NaN;
+        double d = xg - x0;
+        double t = 0;
+        if (v0 < 0) {
+            // moving the wrong way, so brake first.
+            t += plugTime(-v0, 0, maxV, plugA);
+            d += plugDistance(-v0, 0, maxV, plugA);
+            v0 = 0;
+        }
+        if (d < 1e-12 && Math.abs(v0 - vg) < 1e-12)
+            return t;
+        double limit = Math.max(0, (1 - limitedA / stallA) * maxV);
+        double lo = Math.max(v0, vg);
+        double f0 = motorDistance(v0, lo, maxV, limit, limitedA, stallA)
+                + plugDistance(lo, vg, maxV, plugA) - d;
+        if (f0 > 1e-9) {
+            // overshoot
+            return Double.NaN;
+        }
+        double hi = maxV * (1 - CRUISE);
+        double cruise = d - motorDistance(v0, hi, maxV, limit, limitedA, stallA)
+                - plugDistance(hi, vg, maxV, plugA);
+        double vs = lo;
+        if (cruise > 0) {
+            // so close to the asymptote that it's just cruising
+            vs = hi;
+            t += cruise / hi;
+        } else if (f0 < -1e-9) {
+            // distance is increasing in vs
+            for (int i = 0; i < MAX_ITERATIONS; ++i) {
+                vs = (lo + hi) / 2;
+                double f = motorDistance(v0, vs, maxV, limit, limitedA, stallA)
+                        + plugDistance(vs, vg, maxV, plugA) - d;
+                if (Math.abs(f) < 1e-9)
+                    break;
+                if (f < 0)
+                    lo = vs;
+                else
+                    hi = vs;
+            }
+        }
+        if (DEBUG)
+            System.out.printf("vs %f\n", vs);
+        return t
+                + motorTime(v0, vs, maxV, limit, limitedA, stallA)
+                + plugTime(vs, vg, maxV, plugA);
+    }
+
+    /**
+     * Find the scale that makes the duration equal the goal ETA. The duration
+     * must decrease with scale. Returns MAX_S if the full-scale duration is
+     * already longer than the goal, i.e. this is the slowest axis, and MIN_S if
+     * even the minimum scale is too fast.
+     *
+     * Returns NaN if the duration function does.
+     */
+    static double scaleForETA(
+            DoubleUnaryOperator etaOfScale, double goalETA, double etaTolerance) {
+        double fastest = etaOfScale.applyAsDouble(MAX_S);
+        if (Double.isNaN(fastest))
+            return Double.NaN;
+        if (fastest < 1e-9 || fastest >= goalETA - etaTolerance)
+            return MAX_S;
+        double slowest = etaOfScale.applyAsDouble(MIN_S);
+        if (Double.isNaN(slowest))
+            return Double.NaN;
+        if (slowest <= goalETA + etaTolerance)
+            return MIN_S;
+        double lo = MIN_S;
+        double hi = MAX_S;
+        double s = hi;
+        for (int i = 0; i < MAX_ITERATIONS; ++i) {
+            s = (lo + hi) / 2;
+            double eta = etaOfScale.applyAsDouble(s);
+            if (Double.isNaN(eta))
+                return Double.NaN;
+            if (Math.abs(eta - goalETA) < etaTolerance)
+                break;
+            if (eta > goalETA)
+                lo = s;
+            else
+                hi = s;
+        }
+        if (DEBUG)
+            System.out.printf("s %f\n", s);
+        return s;
+    }
+
+    static double clampScale(double s) {
+        return Math.max(MIN_S, Math.min(MAX_S, s));
+    }
+
+    //////////////////////////////////////////////////////
+
+    /**
+     * Duration of the I+G- path, or NaN if there isn't one. Note the switching
+     * velocity may be negative.
+     */
+    private static double iPlusGMinus(
+            double x0, double v0, double xg, double vg, double maxV, double maxA) {
+        // (vs^2 - v0^2)/2a + (vs^2 - vg^2)/2a = xg - x0
+        double vs2 = maxA * (xg - x0) + (v0 * v0 + vg * vg) / 2;
+        if (vs2 < 0)
+            return Double.NaN;
+        double floor = Math.max(v0, vg);
+        double root = Math.sqrt(vs2);
+        // the slower of the two, if it works; allow for rounding.
+        double vs;
+        if (-root >= floor - 1e-9) {
+            vs = -root;
+        } else if (root >= floor - 1e-9) {
+            vs = Math.max(root, floor);
+        } else {
+            return Double.NaN;
+        }
+        if (vs <= maxV)
+            return (2 * vs - v0 - vg) / maxA;
+        // clipped by cruise
+        return (2 * maxV - v0 - vg) / maxA + (vs2 - maxV * maxV) / (maxA * maxV);
+    }
+
+    /** Distance to accelerate from v1 to v2. */
+    private static double motorDistance(
+            double v1, double v2, double maxV, double limit, double limitedA, double stallA) {
+        double d = 0;
+        if (v1 < limit) {
+            double v = Math.min(v2, limit);
+            d += (v * v - v1 * v1) / (2 * limitedA);
+            v1 = v;
+        }
+        if (v2 > v1) {
+            double k = maxV / stallA;
+            d += k * (maxV * Math.log((maxV - v1) / (maxV - v2)) - (v2 - v1));
+        }
+        return d;
+    }
+
+    /** Time to accelerate from v1 to v2. */
+    private static double motorTime(
+            double v1, double v2, double maxV, double limit, double limitedA, double stallA) {
+        double t = 0;
+        if (v1 < limit) {
+            double v = Math.min(v2, limit);
+            t += (v - v1) / limitedA;
+            v1 = v;
+        }
+        if (v2 > v1) {
+            t += (maxV / stallA) * Math.log((maxV - v1) / (maxV - v2));
+        }
+        return t;
+    }
+
+    /** Distance to decelerate from v1 down to v2, both positive. */
+    private static double plugDistance(double v1, double v2, double maxV, double plugA) {
+        if (v1 <= v2)
+            return 0;
+        double k = maxV / plugA;
+        return k * ((v1 - v2) - maxV * Math.log((maxV + v1) / (maxV + v2)));
+    }
+
+    /** Time to decelerate from v1 down to v2, both positive. */
+    private static double plugTime(double v1, double v2, double maxV, double plugA) {
+        if (v1 <= v2)
+            return 0;
+        return (maxV / plugA) * Math.log((maxV + v1) / (maxV + v2));
+    }
+}
@@ -594,6 +594,42 @@ public class TrapezoidIncrementalProfile implements IncrementalProfile {
         return 0;
     }
 
+    /**
+     * Closed-form ETA, see ProfileTiming.trapezoid().
+     */
+    @Override
+    public double eta(double dt, Control100 initial, Model100 goal) {
+        return etaAtScale(m_scale, initial, goal);
+    }
+
+    /**
+     * Scale from the closed-form ETA: rest-to-rest is solved directly, anything
+     * else is solved by bisection.
+     */
+    @Override
+    public double scaleForETA(
+            double dt, Control100 i, Model100 g, double goalETA, double etaTolerance) {
+        if (i.model().near(g, m_tolerance.getAsDouble()))
+            return ProfileTiming.MAX_S;
+        if (i.v() == 0 && g.v() == 0) {
+            return ProfileTiming.trapezoidScale(
+                    g.x() - i.x(),
+                    m_maxVelocity.getAsDouble(),
+                    m_maxAccelerationUnscaled.getAsDouble(),
+                    goalETA);
+        }
+        return ProfileTiming.scaleForETA(s -> etaAtScale(s, i, g), goalETA, etaTolerance);
+    }
+
+    private double etaAtScale(double scale, Control100 initial, Model100 goal) {
+        if (initial.model().near(goal, m_tolerance.getAsDouble()))
+            return 0;
+        return ProfileTiming.trapezoid(
+                initial.x(), initial.v(), goal.x(), goal.v(),
+                m_maxVelocity.getAsDouble(),
+                scale * m_maxAccelerationUnscaled.getAsDouble());
+    }
+
     public double getMaxVelocity() {
         return m_maxVelocity.getAsDouble();
     }
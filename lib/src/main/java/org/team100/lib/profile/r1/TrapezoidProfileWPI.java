@@ -40,6 +40,30 @@ public class TrapezoidProfileWPI implements IncrementalProfile {
                 s * m_constraints.maxAcceleration);
     }
 
+    /**
+     * Closed-form ETA, see ProfileTiming.trapezoid().
+     */
+    @Override
+    public double eta(double dt, Control100 initial, Model100 goal) {
+        return etaAtAccel(m_constraints.maxAcceleration, initial, goal);
+    }
+
+    @Override
+    public double scaleForETA(
+            double dt, Control100 i, Model100 g, double goalETA, double etaTolerance) {
+        if (i.v() == 0 && g.v() == 0) {
+            return ProfileTiming.trapezoidScale(
+                    g.x() - i.x(), m_maxVel, m_constraints.maxAcceleration, goalETA);
+        }
+        return ProfileTiming.scaleForETA(
+                s -> etaAtAccel(s * m_constraints.maxAcceleration, i, g), goalETA, etaTolerance);
+    }
+
+    private double etaAtAccel(double maxAccel, Control100 initial, Model100 goal) {
+        return ProfileTiming.trapezoid(
+                initial.x(), initial.v(), goal.x(), goal.v(), m_maxVel, maxAccel);
+    }
+
     public double getMaxVelocity() {
         return m_maxVel;
     }
@@ -20,9 +20,12 @@ public class FreeRotationProfile implements ProfileSE2 {
 
     /** For testing */
     private static final boolean DEBUG = false;
-    /** Solver accuracy is low, in the interest of speed. */
-    private static final double ETA_TOLERANCE = 0.1;
-    /** Simulation for ETA is coarse, in the interest of speed. */
+    /**
+     * The closed-form ETAs are cheap, so the solver can be accurate. Profiles
+     * that simulate use SOLVE_DT instead.
+     */
+    private static final double ETA_TOLERANCE = 0.001;
+    /** Simulation for ETA, if any, is coarse, in the interest of speed. */
     private static final double SOLVE_DT = 0.1;
     private static final double DT = TimedRobot100.LOOP_PERIOD_S;
 
@@ -49,7 +52,8 @@ public class FreeRotationProfile implements ProfileSE2 {
     }
 
     /**
-     * This is a fairly coarse optimization, i.e. ETA within 0.1 sec or so.
+     * With closed-form ETAs, this is accurate to a millisecond or so. For
+     * profiles that simulate, it's within 0.1 sec or so.
      */
     @Override
     public void solve(ModelSE2 i, ModelSE2 g) {
@@ -57,9 +61,9 @@ public class FreeRotationProfile implements ProfileSE2 {
         if (DEBUG) {
             System.out.printf("i %s g %s\n", i, g);
         }
-        // note coarser DT
-        double xETA = px.simulateForETA(SOLVE_DT, i.x().control(), g.x());
-        double yETA = py.simulateForETA(SOLVE_DT, i.y().control(), g.y());
+        // note coarser DT, if simulating
+        double xETA = px.eta(SOLVE_DT, i.x().control(), g.x());
+        double yETA = py.eta(SOLVE_DT, i.y().control(), g.y());
 
         if (DEBUG) {
             System.out.printf("ETAs: %f %f\n", xETA, yETA);
@@ -67,8 +71,8 @@ public class FreeRotationProfile implements ProfileSE2 {
         double slowETA = xETA;
         slowETA = Math.max(slowETA, yETA);
 
-        sx = px.solve(SOLVE_DT, i.x().control(), g.x(), slowETA, ETA_TOLERANCE);
-        sy = py.solve(SOLVE_DT, i.y().control(), g.y(), slowETA, ETA_TOLERANCE);
+        sx = px.scaleForETA(SOLVE_DT, i.x().control(), g.x(), slowETA, ETA_TOLERANCE);
+        sy = py.scaleForETA(SOLVE_DT, i.y().control(), g.y(), slowETA, ETA_TOLERANCE);
 
         if (DEBUG) {
             System.out.printf("sx %.3f sy %.3f\n", sx, sy);
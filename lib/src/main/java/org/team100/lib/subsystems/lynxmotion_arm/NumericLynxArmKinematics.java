@@ -3,19 +3,27 @@ package org.team100.lib.subsystems.lynxmotion_arm;
 import java.util.Map;
 
 import org.team100.lib.kinematics.urdf.URDFAL5D;
+import org.team100.lib.kinematics.urdf.URDFInverse;
 import org.team100.lib.kinematics.urdf.URDFRobot;
 
 import edu.wpi.first.math.Vector;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.numbers.N5;
 
-/** Uses URDFRobot for the Lynxmotion arm. */
+/**
+ * Uses URDFRobot for the Lynxmotion arm.
+ * 
+ * The inverse is warm-started from the previous solution, since the goal
+ * usually moves only a little each time.
+ */
 public class NumericLynxArmKinematics implements LynxArmKinematics {
 
     private final URDFRobot<N5> m_arm;
+    private final URDFInverse<N5> m_inverse;
 
     public NumericLynxArmKinematics() {
         m_arm = URDFAL5D.make();
+        m_inverse = new URDFInverse<>(m_arm, "center_point", 1);
     }
 
     @Override
@@ -41,7 +49,7 @@ public class NumericLynxArmKinematics implements LynxArmKinematics {
     @Override
     public LynxArmConfig inverse(LynxArmConfig initial, Pose3d end) {
         Vector<N5> q0 = initial.toVec();
-        Map<String, Double> qMap = m_arm.inverse(q0, 1, "center_point", end);
+        Map<String, Double> qMap = m_inverse.inverse(q0, end);
         LynxArmConfig c = new LynxArmConfig(
                 qMap.get("base_pan"),
                 qMap.get("shoulder_tilt"),
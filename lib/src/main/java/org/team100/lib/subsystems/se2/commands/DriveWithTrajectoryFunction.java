@@ -8,9 +8,13 @@ import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.BooleanLogger;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.reference.se2.ConstantReferenceSE2;
 import org.team100.lib.reference.se2.TrajectoryReferenceSE2;
+import org.team100.lib.state.ModelSE2;
 import org.team100.lib.subsystems.se2.VelocitySubsystemSE2;
 import org.team100.lib.subsystems.se2.commands.helper.VelocityReferenceControllerSE2;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner.Plan;
 import org.team100.lib.trajectory.Trajectory100;
 import org.team100.lib.visualization.TrajectoryVisualization;
 
@@ -20,6 +24,10 @@ import edu.wpi.first.math.geometry.Pose2d;
  * Follow a trajectory created at initialization time, given the pose at that
  * time. Since the trajectory function takes a pose, and not a state, then
  * probably the returned trajectory should start from rest.
+ * 
+ * If an AsyncTrajectoryPlanner is supplied, the trajectory function runs on
+ * its worker, and the drive holds its initial pose until the trajectory is
+ * ready.
  */
 public class DriveWithTrajectoryFunction extends MoveAndHold {
     private final LoggerFactory m_log;
@@ -29,6 +37,11 @@ public class DriveWithTrajectoryFunction extends MoveAndHold {
     private final ControllerSE2 m_controller;
     private final TrajectoryVisualization m_viz;
     private final Function<Pose2d, Trajectory100> m_trajectoryFn;
+    /** Null for synchronous planning. */
+    private final AsyncTrajectoryPlanner m_async;
+
+    /** Non-null while waiting for the trajectory. */
+    private Plan m_plan;
 
     /**
      * Non-null when the command is active (between initialize and end), null
@@ -42,6 +55,16 @@ public class DriveWithTrajectoryFunction extends MoveAndHold {
             ControllerSE2 controller,
             TrajectoryVisualization viz,
             Function<Pose2d, Trajectory100> trajectoryFn) {
+        this(parent, drive, controller, viz, trajectoryFn, null);
+    }
+
+    public DriveWithTrajectoryFunction(
+            LoggerFactory parent,
+            VelocitySubsystemSE2 drive,
+            ControllerSE2 controller,
+            TrajectoryVisualization viz,
+            Function<Pose2d, Trajectory100> trajectoryFn,
+            AsyncTrajectoryPlanner async) {
         m_log = parent.type(this);
         m_logDone = m_log.booleanLogger(Level.TRACE, "done");
         m_logToGo = m_log.doubleLogger(Level.TRACE, "to go");
@@ -49,26 +72,48 @@ public class DriveWithTrajectoryFunction extends MoveAndHold {
         m_controller = controller;
         m_viz = viz;
         m_trajectoryFn = trajectoryFn;
+        m_async = async;
         addRequirements(m_drive);
     }
 
     @Override
     public void initialize() {
-        Trajectory100 trajectory = m_trajectoryFn.apply(m_drive.getState().pose());
-        m_viz.setViz(trajectory);
-        TrajectoryReferenceSE2 reference = new TrajectoryReferenceSE2(m_log, trajectory);
+        Pose2d pose = m_drive.getState().pose();
+        if (m_async == null) {
+            follow(m_trajectoryFn.apply(pose));
+            return;
+        }
+        m_plan = m_async.submit(() -> m_trajectoryFn.apply(pose));
+        Trajectory100 trajectory = m_plan.poll();
+        if (trajectory != null) {
+            m_plan = null;
+            follow(trajectory);
+            return;
+        }
+        // Hold the initial pose, which is where the trajectory starts.
         m_referenceController = new VelocityReferenceControllerSE2(
-                m_log, m_drive, m_controller, reference);
+                m_log, m_drive, m_controller, new ConstantReferenceSE2(new ModelSE2(pose)));
     }
 
     @Override
     public void execute() {
+        if (m_plan != null) {
+            Trajectory100 trajectory = m_plan.poll();
+            if (trajectory != null) {
+                m_plan = null;
+                follow(trajectory);
+            }
+        }
         m_referenceController.execute();
         toGo();
     }
 
     @Override
     public void end(boolean interrupted) {
+        if (m_plan != null) {
+            m_plan.cancel();
+            m_plan = null;
+        }
         m_drive.stop();
         m_viz.clear();
         m_referenceController = null;
@@ -76,16 +121,27 @@ public class DriveWithTrajectoryFunction extends MoveAndHold {
 
     @Override
     public boolean isDone() {
-        boolean done = m_referenceController != null && m_referenceController.isDone();
+        boolean done = m_plan == null
+                && m_referenceController != null
+                && m_referenceController.isDone();
         m_logDone.log(() -> done);
         return done;
     }
 
     @Override
     public double toGo() {
-        double togo = (m_referenceController == null) ? 0 : m_referenceController.toGo();
+        // While planning, the goal is unknown, so it's far away.
+        double togo = (m_plan != null) ? Double.POSITIVE_INFINITY
+                : (m_referenceController == null) ? 0 : m_referenceController.toGo();
         m_logToGo.log(() -> togo);
         return togo;
     }
 
+    private void follow(Trajectory100 trajectory) {
+        m_viz.setViz(trajectory);
+        TrajectoryReferenceSE2 reference = new TrajectoryReferenceSE2(m_log, trajectory);
+        m_referenceController = new VelocityReferenceControllerSE2(
+                m_log, m_drive, m_controller, reference);
+    }
+
 }
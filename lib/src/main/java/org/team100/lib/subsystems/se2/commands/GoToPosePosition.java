@@ -6,26 +6,39 @@ import org.team100.lib.commands.MoveAndHold;
 import org.team100.lib.geometry.DirectionSE2;
 import org.team100.lib.geometry.WaypointSE2;
 import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.reference.se2.ConstantReferenceSE2;
 import org.team100.lib.reference.se2.TrajectoryReferenceSE2;
+import org.team100.lib.state.ModelSE2;
 import org.team100.lib.subsystems.se2.PositionSubsystemSE2;
 import org.team100.lib.subsystems.se2.commands.helper.PositionReferenceControllerSE2;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner.Plan;
 import org.team100.lib.trajectory.Trajectory100;
 import org.team100.lib.trajectory.TrajectoryPlanner;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 
 /**
  * Using the pose at initialization time, and the specified course, construct a
  * rest-to-rest trajectory to the goal and follow it.
+ * 
+ * With an AsyncTrajectoryPlanner, planning happens on its worker, and the
+ * subsystem holds its initial pose until the trajectory is ready.
  */
 public class GoToPosePosition extends MoveAndHold {
     private final LoggerFactory m_log;
     private final PositionSubsystemSE2 m_subsystem;
     private final WaypointSE2 m_goal;
     private final Rotation2d m_course;
+    /** Null for asynchronous planning. */
     private final TrajectoryPlanner m_trajectoryPlanner;
+    /** Null for synchronous planning. */
+    private final AsyncTrajectoryPlanner m_async;
 
     private PositionReferenceControllerSE2 m_referenceController;
+    /** Non-null while waiting for the trajectory. */
+    private Plan m_plan;
 
     public GoToPosePosition(
             LoggerFactory parent,
@@ -33,45 +46,104 @@ public class GoToPosePosition extends MoveAndHold {
             Rotation2d course,
             WaypointSE2 goal,
             TrajectoryPlanner trajectoryPlanner) {
+        this(parent, subsystem, course, goal, trajectoryPlanner, null);
+    }
+
+    public GoToPosePosition(
+            LoggerFactory parent,
+            PositionSubsystemSE2 subsystem,
+            Rotation2d course,
+            WaypointSE2 goal,
+            AsyncTrajectoryPlanner async) {
+        this(parent, subsystem, course, goal, null, async);
+    }
+
+    private GoToPosePosition(
+            LoggerFactory parent,
+            PositionSubsystemSE2 subsystem,
+            Rotation2d course,
+            WaypointSE2 goal,
+            TrajectoryPlanner trajectoryPlanner,
+            AsyncTrajectoryPlanner async) {
         m_log = parent.type(this);
         m_subsystem = subsystem;
         m_goal = goal;
         m_course = course;
         m_trajectoryPlanner = trajectoryPlanner;
+        m_async = async;
         addRequirements(subsystem);
     }
 
     @Override
     public void initialize() {
-        WaypointSE2 m_currentPose = new WaypointSE2(
-                m_subsystem.getState().pose(),
-                DirectionSE2.irrotational(m_course), 1);
-        Trajectory100 m_trajectory = m_trajectoryPlanner.restToRest(
-                List.of(m_currentPose, m_goal));
+        Pose2d currentPose = m_subsystem.getState().pose();
+        List<WaypointSE2> waypoints = waypoints(currentPose, m_course, m_goal);
+        if (m_async == null) {
+            follow(m_trajectoryPlanner.restToRest(waypoints));
+            return;
+        }
+        m_plan = m_async.restToRest(waypoints);
+        Trajectory100 trajectory = m_plan.poll();
+        if (trajectory != null) {
+            m_plan = null;
+            follow(trajectory);
+            return;
+        }
+        // Hold the initial pose, which is where the trajectory starts.
         m_referenceController = new PositionReferenceControllerSE2(
-                m_log, m_subsystem, new TrajectoryReferenceSE2(m_log, m_trajectory));
+                m_log, m_subsystem,
+                new ConstantReferenceSE2(new ModelSE2(currentPose)));
     }
 
     @Override
     public void execute() {
+        if (m_plan != null) {
+            Trajectory100 trajectory = m_plan.poll();
+            if (trajectory != null) {
+                m_plan = null;
+                follow(trajectory);
+            }
+        }
         m_referenceController.execute();
     }
 
     @Override
     public boolean isDone() {
-        if (m_referenceController == null)
+        if (m_plan != null || m_referenceController == null)
             return false;
         return m_referenceController.isDone();
     }
 
     @Override
     public double toGo() {
+        // While planning, the goal is unknown, so it's far away.
+        if (m_plan != null)
+            return Double.POSITIVE_INFINITY;
         return (m_referenceController == null) ? 0 : m_referenceController.toGo();
     }
 
     @Override
     public void end(boolean interrupted) {
+        if (m_plan != null) {
+            m_plan.cancel();
+            m_plan = null;
+        }
         m_subsystem.stop();
     }
 
+    /**
+     * The waypoints for a move from the start pose, with the specified course.
+     * This is how the trajectory cache keys are made.
+     */
+    public static List<WaypointSE2> waypoints(Pose2d start, Rotation2d course, WaypointSE2 goal) {
+        return List.of(
+                new WaypointSE2(start, DirectionSE2.irrotational(course), 1),
+                goal);
+    }
+
+    private void follow(Trajectory100 trajectory) {
+        m_referenceController = new PositionReferenceControllerSE2(
+                m_log, m_subsystem, new TrajectoryReferenceSE2(m_log, trajectory));
+    }
+
 }
\ No newline at end of file
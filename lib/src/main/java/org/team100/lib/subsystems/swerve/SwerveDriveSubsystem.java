@@ -178,22 +178,15 @@ public class SwerveDriveSubsystem extends SubsystemBase implements VelocitySubsy
         // Robot.java
         // and i think we don't need to do it twice.
         // m_stateSupplier.reset();
-        m_log_state.log(this::getState);
+        m_log_state.log(getState());
         m_log_turning.log(() -> getPose().getRotation().getDegrees());
-        m_log_pose_array.log(this::poseArray);
+        Pose2d pose = getPose();
+        m_log_pose_array.log(pose.getX(), pose.getY(), pose.getRotation().getDegrees());
 
         m_log_skill.log(() -> DriverSkill.level());
         m_swerveLocal.periodic();
     }
 
-    private double[] poseArray() {
-        return new double[] {
-                getPose().getX(),
-                getPose().getY(),
-                getPose().getRotation().getDegrees()
-        };
-    }
-
     public void close() {
         m_swerveLocal.close();
     }
@@ -8,7 +8,9 @@ import org.team100.lib.subsystems.swerve.module.state.SwerveModuleDeltas;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleState100;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStates;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStatesBuffer;
 
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -19,6 +21,12 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
  * Note: forward kinematics is never more accurate than the gyro and we
  * absolutely cannot operate without a functional gyro, so we should use the
  * gyro instead. see https://github.com/Team100/all24/issues/350
+ *
+ * The matrices below define the kinematics, but the products are done with
+ * scalar math on copies of their entries, since this is called for every
+ * module state, every odometry update, and every trajectory sample, and the
+ * SimpleMatrix version made a lot of garbage. For the hottest loops, use the
+ * SwerveModuleStatesBuffer methods, which allocate nothing.
  */
 public class SwerveDriveKinematics100 {
     private final int m_numModules;
@@ -85,6 +93,13 @@ public class SwerveDriveKinematics100 {
      */
     final SimpleMatrix m_forwardKinematics;
 
+    /** Module x coordinates, for the scalar inverse kinematics. */
+    private final double[] m_x;
+    /** Module y coordinates, for the scalar inverse kinematics. */
+    private final double[] m_y;
+    /** m_forwardKinematics, row-major (3 x 2n), for the scalar forward kinematics. */
+    private final double[] m_forward;
+
     /**
      * array order:
      * 
@@ -101,6 +116,18 @@ public class SwerveDriveKinematics100 {
         m_moduleLocations = Arrays.copyOf(moduleTranslationsM, m_numModules);
         m_inverseKinematics = inverseMatrix(m_moduleLocations);
         m_forwardKinematics = m_inverseKinematics.pseudoInverse();
+        m_x = new double[m_numModules];
+        m_y = new double[m_numModules];
+        for (int i = 0; i < m_numModules; ++i) {
+            m_x[i] = m_moduleLocations[i].getX();
+            m_y[i] = m_moduleLocations[i].getY();
+        }
+        m_forward = new double[3 * 2 * m_numModules];
+        for (int row = 0; row < 3; ++row) {
+            for (int col = 0; col < 2 * m_numModules; ++col) {
+                m_forward[row * 2 * m_numModules + col] = m_forwardKinematics.get(row, col);
+            }
+        }
     }
 
     /**
@@ -113,10 +140,43 @@ public class SwerveDriveKinematics100 {
      * Angles are otherwise always within [-pi, pi].
      */
     public SwerveModuleStates toSwerveModuleStates(DiscreteSpeed speed) {
-        // [vx; vy; omega] (3 x 1)
-        SimpleMatrix chassisSpeedsVector = chassisSpeeds2Vector(speed);
-        // [v cos; v sin; ...] (2n x 1)
-        return statesFromVector(chassisSpeedsVector);
+        double dt = speed.dt();
+        double vx = speed.twist().dx / dt;
+        double vy = speed.twist().dy / dt;
+        double omega = speed.twist().dtheta / dt;
+        return new SwerveModuleStates(
+                SwerveModuleState100.fromSpeed(vx - m_y[0] * omega, vy + m_x[0] * omega),
+                SwerveModuleState100.fromSpeed(vx - m_y[1] * omega, vy + m_x[1] * omega),
+                SwerveModuleState100.fromSpeed(vx - m_y[2] * omega, vy + m_x[2] * omega),
+                SwerveModuleState100.fromSpeed(vx - m_y[3] * omega, vy + m_x[3] * omega));
+    }
+
+    /**
+     * INVERSE: chassis speeds -> module states, written into the buffer, without
+     * allocating anything.
+     */
+    public void toSwerveModuleStates(DiscreteSpeed speed, SwerveModuleStatesBuffer states) {
+        double dt = speed.dt();
+        toSwerveModuleStates(
+                speed.twist().dx / dt,
+                speed.twist().dy / dt,
+                speed.twist().dtheta / dt,
+                states);
+    }
+
+    /**
+     * INVERSE: chassis speeds -> module states, written into the buffer, without
+     * allocating anything.
+     * 
+     * @param vx    robot-relative, m/s
+     * @param vy    robot-relative, m/s
+     * @param omega rad/s
+     */
+    public void toSwerveModuleStates(
+            double vx, double vy, double omega, SwerveModuleStatesBuffer states) {
+        for (int i = 0; i < SwerveModuleStatesBuffer.MODULES; ++i) {
+            states.set(i, vx - m_y[i] * omega, vy + m_x[i] * omega);
+        }
     }
 
     /**
@@ -129,11 +189,14 @@ public class SwerveDriveKinematics100 {
      * States may include empty angles for motionless wheels.
      */
     public SwerveModuleDeltas toSwerveModuleDelta(Twist2d twist) {
-        // [dx; dy; dtheta] (3 x 1)
-        SimpleMatrix twistVector = twist2Vector(twist);
-        // [d cos; d sin; ...] (2n x 1)
-        SimpleMatrix deltaVector = m_inverseKinematics.mult(twistVector);
-        return deltasFromVector(deltaVector);
+        double dx = twist.dx;
+        double dy = twist.dy;
+        double dtheta = twist.dtheta;
+        return new SwerveModuleDeltas(
+                new SwerveModuleDelta(dx - m_y[0] * dtheta, dy + m_x[0] * dtheta),
+                new SwerveModuleDelta(dx - m_y[1] * dtheta, dy + m_x[1] * dtheta),
+                new SwerveModuleDelta(dx - m_y[2] * dtheta, dy + m_x[2] * dtheta),
+                new SwerveModuleDelta(dx - m_y[3] * dtheta, dy + m_x[3] * dtheta));
     }
 
     /**
@@ -150,142 +213,89 @@ public class SwerveDriveKinematics100 {
      * FORWARD: module states -> chassis speeds
      */
     public ChassisSpeeds toChassisSpeeds(SwerveModuleStates states) {
-        // checkLength(states);
-        // [v cos; v sin; ...] (2n x 1)
-        SimpleMatrix statesVector = states2Vector(states);
-        // [vx; vy; omega]
-        SimpleMatrix chassisSpeedsVector = m_forwardKinematics.mult(statesVector);
-        return vector2ChassisSpeeds(chassisSpeedsVector);
-    }
-
-    /**
-     * FORWARD: module deltas -> twist.
-     * 
-     * assumes the module deltas represent straight lines.
-     * 
-     * NOTE: do not use the returned dtheta, use the gyro instead.
-     * 
-     * NOTE: this twist represents the "discrete" motion of the robot; don't use it
-     * as if it were the instantaneous speed.
-     */
-    public Twist2d toTwist2d(SwerveModuleDeltas deltas) {
-        // [d cos; d sin; ...] (2n x 1)
-        SimpleMatrix deltaVector = deltas2Vector(deltas);
-        // [dx ;dy; dtheta]
-        SimpleMatrix twistVector = m_forwardKinematics.mult(deltaVector);
-        return vector2Twist(twistVector);
-    }
-
-    ///////////////////////////////////////
-
-    /** states -> [v cos; v sin; ... v cos; v sin] (2n x 1) */
-    private SimpleMatrix states2Vector(SwerveModuleStates moduleStates) {
-        SwerveModuleState100[] moduleStatesAll = moduleStates.all();
-        SimpleMatrix moduleStatesMatrix = new SimpleMatrix(m_numModules * 2, 1);
+        double vx = 0;
+        double vy = 0;
+        double omega = 0;
+        SwerveModuleState100[] all = states.all();
+        int cols = 2 * m_numModules;
         for (int i = 0; i < m_numModules; i++) {
-            SwerveModuleState100 module = moduleStatesAll[i];
-            if (Math.abs(module.speedMetersPerSecond()) < 1e-6 || module.angle().isEmpty()) {
+            SwerveModuleState100 module = all[i];
+            double speed = module.speedMetersPerSecond();
+            if (Math.abs(speed) < 1e-6 || module.angle().isEmpty()) {
                 // wheel is stopped, or angle is invalid so pretend it's stopped.
-                moduleStatesMatrix.set(i * 2, 0, 0);
-                moduleStatesMatrix.set(i * 2 + 1, 0, 0);
-            } else {
-                moduleStatesMatrix.set(i * 2, 0, module.speedMetersPerSecond() * module.angle().get().getCos());
-                moduleStatesMatrix.set(i * 2 + 1, 0, module.speedMetersPerSecond() * module.angle().get().getSin());
-
+                continue;
             }
+            Rotation2d angle = module.angle().get();
+            double mx = speed * angle.getCos();
+            double my = speed * angle.getSin();
+            vx += m_forward[2 * i] * mx + m_forward[2 * i + 1] * my;
+            vy += m_forward[cols + 2 * i] * mx + m_forward[cols + 2 * i + 1] * my;
+            omega += m_forward[2 * cols + 2 * i] * mx + m_forward[2 * cols + 2 * i + 1] * my;
         }
-        return moduleStatesMatrix;
+        return new ChassisSpeeds(vx, vy, omega);
     }
 
     /**
-     * produces a vector of corner dx and dy, assuming the module deltas represent
-     * straight line paths.
+     * FORWARD: module states -> chassis speeds, without allocating anything.
      * 
-     * @param moduleDeltas [d cos; d sin; ... ] (2n x 1)
+     * @param states module states
+     * @param speeds output [vx, vy, omega], length 3
      */
-    private SimpleMatrix deltas2Vector(SwerveModuleDeltas moduleDeltas) {
-        SwerveModuleDelta[] deltas = moduleDeltas.all();
-        SimpleMatrix moduleDeltaMatrix = new SimpleMatrix(m_numModules * 2, 1);
-        for (int i = 0; i < m_numModules; i++) {
-            SwerveModuleDelta module = deltas[i];
-            if (Math.abs(module.distanceMeters) < 1e-6 || module.wrappedAngle.isEmpty()) {
-                moduleDeltaMatrix.set(i * 2, 0, 0);
-                moduleDeltaMatrix.set(i * 2 + 1, 0, 0);
-            } else {
-                moduleDeltaMatrix.set(i * 2, 0, module.distanceMeters * module.wrappedAngle.get().getCos());
-                moduleDeltaMatrix.set(i * 2 + 1, 0, module.distanceMeters * module.wrappedAngle.get().getSin());
+    public void toChassisSpeeds(SwerveModuleStatesBuffer states, double[] speeds) {
+        double vx = 0;
+        double vy = 0;
+        double omega = 0;
+        int cols = 2 * m_numModules;
+        for (int i = 0; i < SwerveModuleStatesBuffer.MODULES; i++) {
+            if (Math.abs(states.speed(i)) < 1e-6 || !states.hasAngle(i)) {
+                continue;
             }
+            double mx = states.vx(i);
+            double my = states.vy(i);
+            vx += m_forward[2 * i] * mx + m_forward[2 * i + 1] * my;
+            vy += m_forward[cols + 2 * i] * mx + m_forward[cols + 2 * i + 1] * my;
+            omega += m_forward[2 * cols + 2 * i] * mx + m_forward[2 * cols + 2 * i + 1] * my;
         }
-        return moduleDeltaMatrix;
-    }
-
-    /** ChassisSpeeds -> [vx; vy; omega] (3 x 1) */
-    private SimpleMatrix chassisSpeeds2Vector(DiscreteSpeed speed) {
-        SimpleMatrix chassisSpeedsVector = new SimpleMatrix(3, 1);
-        chassisSpeedsVector.setColumn(
-                0,
-                0,
-                speed.twist().dx / speed.dt(),
-                speed.twist().dy / speed.dt(),
-                speed.twist().dtheta / speed.dt());
-        return chassisSpeedsVector;
-    }
-
-    /** Twist as a 3x1 column vector: [dx; dy; dtheta] */
-    private static SimpleMatrix twist2Vector(Twist2d twist) {
-        return new SimpleMatrix(new double[] {
-                twist.dx,
-                twist.dy,
-                twist.dtheta });
-    }
-
-    /** [vx; vy; omega] (3 x 1) -> ChassisSpeeds */
-    private static ChassisSpeeds vector2ChassisSpeeds(SimpleMatrix v) {
-        return new ChassisSpeeds(v.get(0, 0), v.get(1, 0), v.get(2, 0));
-    }
-
-    /** [dx; dy; dtheta] (3 x 1) -> Twist2d */
-    private static Twist2d vector2Twist(SimpleMatrix v) {
-        return new Twist2d(v.get(0, 0), v.get(1, 0), v.get(2, 0));
+        speeds[0] = vx;
+        speeds[1] = vy;
+        speeds[2] = omega;
     }
 
     /**
-     * [v cos; v sin; ... ] (2n x 1) -> states[]
+     * FORWARD: module deltas -> twist.
      * 
-     * Speed is always non-negative.
+     * assumes the module deltas represent straight lines.
      * 
-     * Angle can be empty if speed is about zero.
-     * Otherwise angle is always within [-pi, pi].
+     * NOTE: do not use the returned dtheta, use the gyro instead.
      * 
-     * @param chassisSpeedsVector [vx0; vy0; vx1; ...]
+     * NOTE: this twist represents the "discrete" motion of the robot; don't use it
+     * as if it were the instantaneous speed.
      */
-    SwerveModuleStates statesFromVector(SimpleMatrix chassisSpeedsVector) {
-        SimpleMatrix m = m_inverseKinematics.mult(chassisSpeedsVector);
-        return new SwerveModuleStates(
-                SwerveModuleState100.fromSpeed(m.get(0, 0), m.get(1, 0)),
-                SwerveModuleState100.fromSpeed(m.get(2, 0), m.get(3, 0)),
-                SwerveModuleState100.fromSpeed(m.get(4, 0), m.get(5, 0)),
-                SwerveModuleState100.fromSpeed(m.get(6, 0), m.get(7, 0)));
+    public Twist2d toTwist2d(SwerveModuleDeltas deltas) {
+        double dx = 0;
+        double dy = 0;
+        double dtheta = 0;
+        SwerveModuleDelta[] all = deltas.all();
+        int cols = 2 * m_numModules;
+        for (int i = 0; i < m_numModules; i++) {
+            SwerveModuleDelta module = all[i];
+            if (Math.abs(module.distanceMeters) < 1e-6 || module.wrappedAngle.isEmpty()) {
+                continue;
+            }
+            Rotation2d angle = module.wrappedAngle.get();
+            double mx = module.distanceMeters * angle.getCos();
+            double my = module.distanceMeters * angle.getSin();
+            dx += m_forward[2 * i] * mx + m_forward[2 * i + 1] * my;
+            dy += m_forward[cols + 2 * i] * mx + m_forward[cols + 2 * i + 1] * my;
+            dtheta += m_forward[2 * cols + 2 * i] * mx + m_forward[2 * cols + 2 * i + 1] * my;
+        }
+        return new Twist2d(dx, dy, dtheta);
     }
 
     public Translation2d[] getModuleLocations() {
         return m_moduleLocations;
     }
 
-    /**
-     * The resulting distance is always positive.
-     * 
-     * @param moduleDeltaVector [d cos; d sin; ...] (2n x 1),
-     *                          equivalently [dx0; dy0; dx1; ...]
-     */
-    private SwerveModuleDeltas deltasFromVector(SimpleMatrix moduleDeltaVector) {
-        return new SwerveModuleDeltas(
-                new SwerveModuleDelta(moduleDeltaVector.get(0, 0), moduleDeltaVector.get(1, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(2, 0), moduleDeltaVector.get(3, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(4, 0), moduleDeltaVector.get(5, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(6, 0), moduleDeltaVector.get(7, 0)));
-    }
-
     /** module locations -> inverse kinematics matrix (2n x 3) */
     private static SimpleMatrix inverseMatrix(Translation2d[] moduleLocations) {
         int numModules = moduleLocations.length;
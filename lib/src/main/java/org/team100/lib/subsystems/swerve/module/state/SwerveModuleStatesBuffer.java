@@ -0,0 +1,124 @@
+package org.team100.lib.subsystems.swerve.module.state;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Mutable holder for four module states, in the same order as
+ * SwerveModuleStates: frontLeft, frontRight, rearLeft, rearRight.
+ *
+ * This is for hot loops, e.g. the kinematics inside trajectory constraints,
+ * where making a SwerveModuleStates (and four Optional<Rotation2d>) per call
+ * is a lot of garbage. Make one buffer per caller and reuse it; it is not
+ * thread-safe.
+ *
+ * The semantics match SwerveModuleState100.fromSpeed(): speed is always
+ * non-negative, and the angle is absent if the speed is about zero.
+ */
+public class SwerveModuleStatesBuffer {
+    public static final int MODULES = 4;
+    /** Same as SwerveModuleState100.fromSpeed() */
+    private static final double STOPPED = 0.004;
+
+    private final double[] m_vx = new double[MODULES];
+    private final double[] m_vy = new double[MODULES];
+    private final double[] m_speed = new double[MODULES];
+    private final double[] m_cos = new double[MODULES];
+    private final double[] m_sin = new double[MODULES];
+    private final boolean[] m_hasAngle = new boolean[MODULES];
+
+    /** Set module i from the cartesian velocity of its contact patch. */
+    public void set(int i, double vx, double vy) {
+        m_vx[i] = vx;
+        m_vy[i] = vy;
+        if (Math.abs(vx) < STOPPED && Math.abs(vy) < STOPPED) {
+            m_speed[i] = 0;
+            m_cos[i] = 1;
+            m_sin[i] = 0;
+            m_hasAngle[i] = false;
+        } else {
+            double speed = Math.hypot(vx, vy);
+            m_speed[i] = speed;
+            m_cos[i] = vx / speed;
+            m_sin[i] = vy / speed;
+            m_hasAngle[i] = true;
+        }
+    }
+
+    /**
+     * Set module i from a speed and angle, e.g. a measurement. The speed may be
+     * negative. An empty angle is treated as stopped.
+     */
+    public void set(int i, SwerveModuleState100 state) {
+        Optional<Rotation2d> angle = state.angle();
+        if (angle.isEmpty()) {
+            set(i, 0, 0);
+            return;
+        }
+        double speed = state.speedMetersPerSecond();
+        Rotation2d r = angle.get();
+        m_vx[i] = speed * r.getCos();
+        m_vy[i] = speed * r.getSin();
+        m_speed[i] = speed;
+        m_cos[i] = r.getCos();
+        m_sin[i] = r.getSin();
+        m_hasAngle[i] = true;
+    }
+
+    public void set(SwerveModuleStates states) {
+        set(0, states.frontLeft());
+        set(1, states.frontRight());
+        set(2, states.rearLeft());
+        set(3, states.rearRight());
+    }
+
+    /** Velocity of the contact patch, x component, m/s. */
+    public double vx(int i) {
+        return m_vx[i];
+    }
+
+    /** Velocity of the contact patch, y component, m/s. */
+    public double vy(int i) {
+        return m_vy[i];
+    }
+
+    /** Wheel speed, m/s. */
+    public double speed(int i) {
+        return m_speed[i];
+    }
+
+    /** False if the module is stopped, in which case the angle is arbitrary. */
+    public boolean hasAngle(int i) {
+        return m_hasAngle[i];
+    }
+
+    public double cos(int i) {
+        return m_cos[i];
+    }
+
+    public double sin(int i) {
+        return m_sin[i];
+    }
+
+    /** The largest absolute wheel speed. */
+    public double maxSpeed() {
+        double max = 0;
+        for (int i = 0; i < MODULES; ++i) {
+            max = Math.max(max, Math.abs(m_speed[i]));
+        }
+        return max;
+    }
+
+    /** Module i as an immutable state. */
+    public SwerveModuleState100 state(int i) {
+        if (!m_hasAngle[i])
+            return new SwerveModuleState100(0.0, Optional.empty());
+        return new SwerveModuleState100(m_speed[i], Optional.of(new Rotation2d(m_cos[i], m_sin[i])));
+    }
+
+    /** An immutable copy. */
+    public SwerveModuleStates toStates() {
+        return new SwerveModuleStates(state(0), state(1), state(2), state(3));
+    }
+}
@@ -17,7 +17,7 @@ import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.logging.LoggerFactory.IntLogger;
 import org.team100.lib.network.CameraReader;
 import org.team100.lib.state.ModelSE2;
-import org.team100.lib.util.CoalescingCollection;
+import org.team100.lib.util.CoalescingGrid;
 import org.team100.lib.util.TrailingHistory;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -50,8 +50,8 @@ public class Targets extends CameraReader<Rotation3d> {
     private final DoubleFunction<ModelSE2> m_history;
     /** Accumulation of targets we see; this is really for logging only. */
     private final TrailingHistory<Translation2d> m_allTargets;
-    /** Coalesced targets */
-    private final CoalescingCollection<Translation2d> m_targets;
+    /** Coalesced targets, in a grid so that merging doesn't scan them all. */
+    private final CoalescingGrid m_targets;
     /** Side effect mutates targets. */
     private final SideEffect m_vision;
     private final IntLogger m_log_historySize;
@@ -71,8 +71,8 @@ public class Targets extends CameraReader<Rotation3d> {
         m_log_poseTimestamp = log.doubleLogger(Level.TRACE, "pose timestamp");
         m_history = history;
         m_allTargets = new TrailingHistory<>(HISTORY_DURATION);
-        m_targets = new CoalescingCollection<>(
-                new TrailingHistory<>(HISTORY_DURATION),
+        m_targets = new CoalescingGrid(
+                HISTORY_DURATION,
                 new NearR2(NEARNESS_THRESHOLD),
                 new CentroidR2());
         m_vision = Cache.ofSideEffect(this::update);
@@ -0,0 +1,207 @@
+package org.team100.lib.trajectory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.IntLogger;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+
+/**
+ * Runs the trajectory planner (PathFactory and TrajectoryFactory) on a
+ * background thread, so that fine-grained planning doesn't stall the main loop.
+ *
+ * Each request returns a Plan, which the caller polls once per cycle; while
+ * it's not ready, the caller should do something sensible, e.g. hold position.
+ *
+ * All the planners share one low-priority daemon worker, which exits when it's
+ * idle, so there's nothing to close. Cancelled plans that haven't started are
+ * skipped; cancelled plans that have started run to completion (the planner
+ * doesn't check for interruption), and the result is discarded.
+ *
+ * Logging happens on the caller's thread, in Plan.poll(), since the loggers
+ * aren't thread-safe.
+ *
+ * The constraint snapshot, i.e. the tunable (Mutable) parameters, is taken on
+ * the caller's thread when the plan is submitted, and the worker plans with
+ * that, so it never reads the tunables. A function passed to submit() gets the
+ * snapshot only if it plans with this planner's TrajectoryFactory.
+ *
+ * If the AsyncTrajectoryPlanning experiment is disabled, planning happens on
+ * the caller's thread, and the plan is ready immediately.
+ */
+public class AsyncTrajectoryPlanner {
+    private static final boolean DEBUG = false;
+    /** Idle worker exits after this long. */
+    private static final long KEEP_ALIVE_S = 5;
+    private static final ThreadPoolExecutor EXECUTOR = executor();
+
+    private final TrajectoryPlanner m_planner;
+    private final DoubleLogger m_logLatency;
+    private final IntLogger m_logPending;
+
+    public AsyncTrajectoryPlanner(LoggerFactory parent, TrajectoryPlanner planner) {
+        LoggerFactory log = parent.type(this);
+        m_planner = planner;
+        m_logLatency = log.doubleLogger(Level.COMP, "latency (s)");
+        m_logPending = log.intLogger(Level.TRACE, "pending");
+    }
+
+    /**
+     * Makes a trajectory through the supplied waypoints, starting and ending
+     * motionless. If the planner is a TrajectoryCache that already has it, the
+     * plan is ready immediately.
+     */
+    public Plan restToRest(List<WaypointSE2> waypoints) {
+        if (m_planner instanceof TrajectoryCache cache) {
+            Trajectory100 t = cache.lookup(waypoints);
+            if (t != null) {
+                Plan plan = new Plan();
+                plan.run(() -> t);
+                return plan;
+            }
+        }
+        return submit(() -> m_planner.restToRest(waypoints));
+    }
+
+    /**
+     * Run any trajectory function, e.g. one that uses a TrajectoryPlanner
+     * internally, on the worker, with the constraints of this planner fixed
+     * now, on the caller's thread.
+     */
+    public Plan submit(Supplier<Trajectory100> fn) {
+        Plan plan = new Plan();
+        if (Experiments.instance.enabled(Experiment.AsyncTrajectoryPlanning)) {
+            TrajectoryFactory factory = m_planner.getTrajectoryFactory();
+            TimingConstraint[] constraints = factory.snapshot();
+            EXECUTOR.execute(() -> plan.run(() -> factory.withSnapshot(constraints, fn)));
+        } else {
+            plan.run(fn);
+        }
+        return plan;
+    }
+
+    /** Plans waiting or running, for all the planners. */
+    public static int pending() {
+        return EXECUTOR.getQueue().size() + EXECUTOR.getActiveCount();
+    }
+
+    private static ThreadPoolExecutor executor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, KEEP_ALIVE_S, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "AsyncTrajectoryPlanner");
+                    t.setDaemon(true);
+                    // below the main loop
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The result of planning, eventually.
+     */
+    public class Plan {
+        private final CompletableFuture<Trajectory100> m_future;
+        private final long m_startNs;
+        private volatile long m_endNs;
+        private boolean m_logged;
+
+        private Plan() {
+            m_future = new CompletableFuture<>();
+            m_startNs = System.nanoTime();
+        }
+
+        /** Worker thread, or caller thread if synchronous. */
+        private void run(Supplier<Trajectory100> fn) {
+            if (m_future.isDone()) {
+                // cancelled before it started.
+                return;
+            }
+            try {
+                Trajectory100 result = fn.get();
+                m_endNs = System.nanoTime();
+                m_future.complete(result);
+            } catch (RuntimeException e) {
+                m_endNs = System.nanoTime();
+                m_future.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Call this once per cycle.
+         *
+         * @return the trajectory if it's ready, or null if not. A failed or
+         *         cancelled plan yields an empty trajectory.
+         */
+        public Trajectory100 poll() {
+            m_logPending.log(pending());
+            if (!m_future.isDone())
+                return null;
+            if (!m_logged) {
+                m_logged = true;
+                m_logLatency.log(latencyS());
+                if (DEBUG)
+                    System.out.printf("latency %.3f\n", latencyS());
+            }
+            return join();
+        }
+
+        /**
+         * Wait for the result, for tests and other places where blocking is ok.
+         *
+         * @return the trajectory. A failed or cancelled plan yields an empty
+         *         trajectory.
+         */
+        public Trajectory100 join() {
+            try {
+                return m_future.get();
+            } catch (CancellationException e) {
+                return new Trajectory100();
+            } catch (ExecutionException e) {
+                System.out.println("WARNING: trajectory planning failed");
+                e.getCause().printStackTrace();
+                return new Trajectory100();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Trajectory100();
+            }
+        }
+
+        public boolean isDone() {
+            return m_future.isDone();
+        }
+
+        /** Discard the result. If planning hasn't started, it never will. */
+        public void cancel() {
+            m_future.cancel(false);
+        }
+
+        /** Time from submission to the result, or NaN if not done. */
+        public double latencyS() {
+            if (!m_future.isDone() || m_endNs == 0)
+                return Double.NaN;
+            return 1e-9 * (m_endNs - m_startNs);
+        }
+
+        /** The underlying future, if you want to compose. */
+        public CompletableFuture<Trajectory100> future() {
+            return m_future;
+        }
+    }
+}
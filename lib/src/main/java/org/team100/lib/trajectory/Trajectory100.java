@@ -18,11 +18,14 @@ public class Trajectory100 {
     /** Constraints used for this trajectory, for resampling */
     public final List<TimingConstraint> m_constraints;
     private final double m_duration;
+    /** Timestamps of each point, for binary search. */
+    private final double[] m_times;
 
     public Trajectory100() {
         m_points = new ArrayList<>();
         m_constraints = new ArrayList<>();
         m_duration = 0;
+        m_times = new double[0];
     }
 
     /** First timestamp must be zero. */
@@ -30,6 +33,10 @@ public class Trajectory100 {
         m_points = states;
         m_constraints = constraints;
         m_duration = m_points.get(m_points.size() - 1).getTimeS();
+        m_times = new double[m_points.size()];
+        for (int i = 0; i < m_times.length; ++i) {
+            m_times[i] = m_points.get(i).getTimeS();
+        }
     }
 
     /**
@@ -38,9 +45,8 @@ public class Trajectory100 {
      * @param timeS start is zero.
      */
     public TimedState sample(double timeS) {
-        // This scans the whole trajectory for every sample, but most of the time
-        // is the interpolation; I tried a TreeMap index and it only saved a few
-        // nanoseconds per call.
+        // Most of the time is the interpolation (which resamples the spline), so
+        // if you want to avoid that, and the garbage, use TrajectorySampler.
         if (isEmpty())
             throw new IllegalStateException("can't sample an empty trajectory");
         if (timeS >= m_duration) {
@@ -50,22 +56,36 @@ public class Trajectory100 {
             return getPoint(0);
         }
 
-        for (int i = 1; i < length(); ++i) {
-            final TimedState ceil = getPoint(i);
-            if (ceil.getTimeS() >= timeS) {
-                final TimedState floor = getPoint(i - 1);
-                double span = ceil.getTimeS() - floor.getTimeS();
-                if (Math.abs(span) <= 1e-12) {
-                    return ceil;
-                }
-                double delta_t = timeS - floor.getTimeS();
-                return floor.interpolate(ceil, delta_t);
-            }
+        int i = ceilingIndex(timeS);
+        if (i < 1 || i >= length())
+            throw new IllegalStateException("impossible trajectory: " + toString());
+        final TimedState ceil = getPoint(i);
+        final TimedState floor = getPoint(i - 1);
+        double span = ceil.getTimeS() - floor.getTimeS();
+        if (Math.abs(span) <= 1e-12) {
+            return ceil;
         }
-        throw new IllegalStateException("impossible trajectory: " + toString());
+        double delta_t = timeS - floor.getTimeS();
+        return floor.interpolate(ceil, delta_t);
     }
 
-
+    /**
+     * Index of the first point (after the first one) with time at or after the
+     * given time. Binary search, O(log n).
+     */
+    int ceilingIndex(double timeS) {
+        int lo = 1;
+        int hi = m_times.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_times[mid] >= timeS) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
 
     /** Time is at or beyond the trajectory duration. */
     public boolean isDone(double timeS) {
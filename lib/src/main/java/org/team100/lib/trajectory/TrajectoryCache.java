@@ -0,0 +1,511 @@
+package org.team100.lib.trajectory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.team100.lib.geometry.DirectionSE2;
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.trajectory.path.PathFactory;
+import org.team100.lib.trajectory.path.spline.HolonomicSpline;
+import org.team100.lib.trajectory.timing.TimedState;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+import org.team100.lib.tuning.Mutable;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Memoizes rest-to-rest trajectories, keyed by waypoints. Each cache has its
+ * own planner, so the constraint set is part of the key implicitly: use one
+ * cache per constraint set.
+ *
+ * There are two kinds of entries:
+ *
+ * The "library" is the fixed moves, e.g. mechanism moves between scoring
+ * positions. These are never evicted, and they can be saved to a binary file
+ * (e.g. in the deploy directory) and loaded at startup, so they cost nothing to
+ * plan on the robot. The first waypoint is usually the measured position, so
+ * library entries match any request within the tolerance.
+ *
+ * Everything else is "dynamic," held in an LRU map with limited capacity, and
+ * only matches exactly.
+ *
+ * The file stores the waypoints, and, for each point, the spline parameter,
+ * the timing, and the constraint limits the timing came from. The splines are
+ * cheap to rebuild from the waypoints, so the geometry isn't stored.
+ *
+ * When loading, the current constraints are evaluated at every point of every
+ * entry, which is much cheaper than planning, and an entry whose limits have
+ * changed is ignored, so it gets planned again. The same check happens in
+ * memory, on the next lookup after any Mutable changes, so tuning a constraint
+ * doesn't keep serving trajectories planned with the old value. One entry is also planned
+ * again and compared with the file, which catches changes to the path factory;
+ * if that fails, the whole file is ignored.
+ *
+ * This is safe to use from the AsyncTrajectoryPlanner worker.
+ */
+public class TrajectoryCache extends TrajectoryPlanner {
+    private static final boolean DEBUG = false;
+    /** "T100" */
+    private static final int MAGIC = 0x54313030;
+    private static final int VERSION = 2;
+    /** Resolution of the exact-match key. */
+    private static final double QUANTUM = 1e-6;
+    /** For the stale-file check. */
+    private static final double DURATION_TOLERANCE_S = 1e-6;
+    /** For the stale-entry check, relative. */
+    private static final double LIMIT_TOLERANCE = 1e-6;
+
+    private final String m_name;
+    private final TrajectoryFactory m_trajectoryFactory;
+    private final int m_capacity;
+    private final double m_tolerance;
+
+    /** Fixed moves, in the order they were added. Null value means unplanned. */
+    private final Map<Key, Entry> m_library;
+    /** Access-order LRU. */
+    private final Map<Key, Entry> m_dynamic;
+
+    private int m_hits;
+    private int m_misses;
+    /** Mutable.generation() at the last stale check. */
+    private int m_generation;
+
+    /**
+     * @param name         identifies the constraint set, and is saved in the file
+     * @param capacity     number of dynamic entries
+     * @param tolerance    library entries match requests whose waypoints are this
+     *                     close, in meters and radians
+     */
+    public TrajectoryCache(
+            String name,
+            PathFactory pathFactory,
+            TrajectoryFactory trajectoryFactory,
+            int capacity,
+            double tolerance) {
+        super(pathFactory, trajectoryFactory);
+        m_name = name;
+        m_trajectoryFactory = trajectoryFactory;
+        m_capacity = capacity;
+        m_tolerance = tolerance;
+        m_generation = Mutable.generation();
+        m_library = new LinkedHashMap<>();
+        m_dynamic = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > m_capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached trajectory, if any, or plans a new one, and caches it.
+     */
+    @Override
+    public Trajectory100 restToRest(List<WaypointSE2> waypoints) {
+        Trajectory100 t = lookup(waypoints);
+        if (t != null)
+            return t;
+        t = super.restToRest(waypoints);
+        Entry e = new Entry(waypoints, t, limits(snapshot(), t));
+        Key key = new Key(waypoints);
+        synchronized (this) {
+            m_misses++;
+            if (m_library.containsKey(key)) {
+                m_library.put(key, e);
+            } else if (!t.isEmpty()) {
+                m_dynamic.put(key, e);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * The cached trajectory for these waypoints, or null, without planning.
+     */
+    public synchronized Trajectory100 lookup(List<WaypointSE2> waypoints) {
+        dropStale();
+        Key key = new Key(waypoints);
+        Entry e = m_library.get(key);
+        if (e == null)
+            e = m_dynamic.get(key);
+        if (e == null)
+            e = near(waypoints);
+        if (e == null)
+            return null;
+        m_hits++;
+        return e.trajectory();
+    }
+
+    /**
+     * Add a fixed move to the library. It's planned by precompute() or save(),
+     * or the first time it's requested, unless it's loaded from a file.
+     */
+    public synchronized void add(List<WaypointSE2> waypoints) {
+        Key key = new Key(waypoints);
+        if (m_library.containsKey(key))
+            return;
+        Entry e = m_dynamic.remove(key);
+        m_library.put(key, e);
+    }
+
+    /** Plan all the library entries that haven't been planned or loaded. */
+    public void precompute() {
+        dropStale();
+        for (List<WaypointSE2> waypoints : unplanned()) {
+            restToRest(waypoints);
+        }
+    }
+
+    /** Write all the library entries, planning any that are missing. */
+    public void save(Path path) throws IOException {
+        precompute();
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(m_library.values());
+        }
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(m_name);
+            List<Entry> writable = new ArrayList<>();
+            for (Entry e : entries) {
+                if (e != null && splines(e) != null)
+                    writable.add(e);
+            }
+            out.writeInt(writable.size());
+            for (Entry e : writable) {
+                write(out, e);
+            }
+        }
+    }
+
+    /**
+     * Add the file contents to the library. Ignores missing files, files for
+     * other constraint sets, and stale entries.
+     *
+     * @return number of entries loaded
+     */
+    public int load(Path path) {
+        if (!Files.exists(path))
+            return 0;
+        List<Entry> entries = new ArrayList<>();
+        TimingConstraint[] constraints = snapshot();
+        int stale = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.printf("WARNING: bad trajectory file %s\n", path);
+                return 0;
+            }
+            String name = in.readUTF();
+            if (!name.equals(m_name)) {
+                System.out.printf("WARNING: trajectory file %s is for %s, not %s\n", path, name, m_name);
+                return 0;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; ++i) {
+                Entry e = read(in, constraints);
+                if (e == null)
+                    stale++;
+                else
+                    entries.add(e);
+            }
+        } catch (IOException e) {
+            System.out.printf("WARNING: can't read trajectory file %s\n", path);
+            e.printStackTrace();
+            return 0;
+        }
+        if (stale > 0)
+            System.out.printf("WARNING: %d stale entries in trajectory file %s, ignoring them\n", stale, path);
+        if (entries.isEmpty())
+            return 0;
+        // Plan the first entry, to check the path factory.
+        Entry first = entries.get(0);
+        Trajectory100 check = super.restToRest(first.waypoints());
+        if (check.length() != first.trajectory().length()
+                || Math.abs(check.duration() - first.trajectory().duration()) > DURATION_TOLERANCE_S) {
+            System.out.printf("WARNING: stale trajectory file %s, ignoring it\n", path);
+            return 0;
+        }
+        synchronized (this) {
+            for (Entry e : entries) {
+                // Use the current constraints, for resampling.
+                Trajectory100 t = new Trajectory100(e.trajectory().getPoints(), check.m_constraints);
+                m_library.put(new Key(e.waypoints()), new Entry(e.waypoints(), t, e.limits()));
+            }
+        }
+        if (DEBUG)
+            System.out.printf("loaded %d trajectories from %s\n", entries.size(), path);
+        return entries.size();
+    }
+
+    public synchronized int size() {
+        return m_library.size() + m_dynamic.size();
+    }
+
+    public synchronized int hits() {
+        return m_hits;
+    }
+
+    public synchronized int misses() {
+        return m_misses;
+    }
+
+    ////////////////////////////////////////////////////////
+
+    /**
+     * If any Mutable has changed since the last check, e.g. a constraint was
+     * tuned, drop the entries whose limits have changed. Library entries are
+     * planned again when they're requested.
+     */
+    private synchronized void dropStale() {
+        int generation = Mutable.generation();
+        if (generation == m_generation)
+            return;
+        m_generation = generation;
+        TimingConstraint[] constraints = snapshot();
+        int stale = 0;
+        for (Map.Entry<Key, Entry> e : m_library.entrySet()) {
+            if (e.getValue() != null && stale(e.getValue(), constraints)) {
+                e.setValue(null);
+                stale++;
+            }
+        }
+        int dynamic = m_dynamic.size();
+        m_dynamic.values().removeIf(e -> stale(e, constraints));
+        stale += dynamic - m_dynamic.size();
+        if (DEBUG)
+            System.out.printf("%d stale trajectories in %s\n", stale, m_name);
+    }
+
+    private static boolean stale(Entry e, TimingConstraint[] constraints) {
+        double[] limits = limits(constraints, e.trajectory());
+        for (int i = 0; i < limits.length; ++i) {
+            if (!same(e.limits()[i], limits[i]))
+                return true;
+        }
+        return false;
+    }
+
+    private synchronized List<List<WaypointSE2>> unplanned() {
+        List<List<WaypointSE2>> result = new ArrayList<>();
+        for (Map.Entry<Key, Entry> e : m_library.entrySet()) {
+            if (e.getValue() == null)
+                result.add(e.getKey().waypoints());
+        }
+        return result;
+    }
+
+    /** The library entry within tolerance, if any. */
+    private Entry near(List<WaypointSE2> waypoints) {
+        for (Entry e : m_library.values()) {
+            if (e != null && near(e.waypoints(), waypoints))
+                return e;
+        }
+        return null;
+    }
+
+    private boolean near(List<WaypointSE2> a, List<WaypointSE2> b) {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); ++i) {
+            WaypointSE2 wa = a.get(i);
+            WaypointSE2 wb = b.get(i);
+            Pose2d pa = wa.pose();
+            Pose2d pb = wb.pose();
+            if (pa.getTranslation().getDistance(pb.getTranslation()) > m_tolerance)
+                return false;
+            if (Math.abs(pa.getRotation().minus(pb.getRotation()).getRadians()) > m_tolerance)
+                return false;
+            DirectionSE2 ca = wa.course();
+            DirectionSE2 cb = wb.course();
+            if (Math.abs(ca.x - cb.x) > m_tolerance
+                    || Math.abs(ca.y - cb.y) > m_tolerance
+                    || Math.abs(ca.theta - cb.theta) > m_tolerance)
+                return false;
+            if (Math.abs(wa.scale() - wb.scale()) > m_tolerance)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The distinct splines of the trajectory, in order, or null if they don't
+     * correspond to the waypoints.
+     */
+    private static Map<HolonomicSpline, Integer> splines(Entry e) {
+        Map<HolonomicSpline, Integer> splines = new IdentityHashMap<>();
+        for (TimedState s : e.trajectory().getPoints()) {
+            HolonomicSpline spline = s.point().getSpline();
+            if (spline == null)
+                return null;
+            splines.putIfAbsent(spline, splines.size());
+        }
+        if (splines.size() != e.waypoints().size() - 1)
+            return null;
+        return splines;
+    }
+
+    /** Constraints with their tunables fixed, for one save or load. */
+    private TimingConstraint[] snapshot() {
+        return m_trajectoryFactory.snapshot();
+    }
+
+    /**
+     * The tightest limits at the point and velocity: max velocity, max accel,
+     * and max decel.
+     */
+    private static void limits(
+            TimingConstraint[] constraints, PathPoint p, double velocityM_S, double[] out) {
+        double maxV = Double.POSITIVE_INFINITY;
+        double maxAccel = Double.POSITIVE_INFINITY;
+        double maxDecel = Double.NEGATIVE_INFINITY;
+        for (TimingConstraint c : constraints) {
+            maxV = Math.min(maxV, c.maxV(p));
+            maxAccel = Math.min(maxAccel, c.maxAccel(p, velocityM_S));
+            maxDecel = Math.max(maxDecel, c.maxDecel(p, velocityM_S));
+        }
+        out[0] = maxV;
+        out[1] = maxAccel;
+        out[2] = maxDecel;
+    }
+
+    /** Limits at every point of the trajectory, three per point. */
+    private static double[] limits(TimingConstraint[] constraints, Trajectory100 t) {
+        List<TimedState> points = t.getPoints();
+        double[] result = new double[3 * points.size()];
+        double[] limits = new double[3];
+        for (int i = 0; i < points.size(); ++i) {
+            TimedState s = points.get(i);
+            limits(constraints, s.point(), s.velocityM_S(), limits);
+            System.arraycopy(limits, 0, result, 3 * i, 3);
+        }
+        return result;
+    }
+
+    private static boolean same(double a, double b) {
+        return a == b || Math.abs(a - b) <= LIMIT_TOLERANCE * Math.max(1, Math.abs(a));
+    }
+
+    private static void write(DataOutputStream out, Entry e) throws IOException {
+        out.writeInt(e.waypoints().size());
+        for (WaypointSE2 w : e.waypoints()) {
+            out.writeDouble(w.pose().getX());
+            out.writeDouble(w.pose().getY());
+            out.writeDouble(w.pose().getRotation().getRadians());
+            out.writeDouble(w.course().x);
+            out.writeDouble(w.course().y);
+            out.writeDouble(w.course().theta);
+            out.writeDouble(w.scale());
+        }
+        Map<HolonomicSpline, Integer> splines = splines(e);
+        List<TimedState> points = e.trajectory().getPoints();
+        out.writeInt(points.size());
+        for (int i = 0; i < points.size(); ++i) {
+            TimedState s = points.get(i);
+            out.writeShort(splines.get(s.point().getSpline()));
+            out.writeDouble(s.point().getS());
+            out.writeDouble(s.getTimeS());
+            out.writeDouble(s.velocityM_S());
+            out.writeDouble(s.acceleration());
+            for (int j = 0; j < 3; ++j) {
+                out.writeDouble(e.limits()[3 * i + j]);
+            }
+        }
+    }
+
+    /** @return the entry, or null if the limits have changed */
+    private static Entry read(DataInputStream in, TimingConstraint[] constraints) throws IOException {
+        int n = in.readInt();
+        List<WaypointSE2> waypoints = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            Pose2d pose = new Pose2d(in.readDouble(), in.readDouble(), new Rotation2d(in.readDouble()));
+            DirectionSE2 course = new DirectionSE2(in.readDouble(), in.readDouble(), in.readDouble());
+            waypoints.add(new WaypointSE2(pose, course, in.readDouble()));
+        }
+        List<HolonomicSpline> splines = new ArrayList<>(n - 1);
+        for (int i = 1; i < n; ++i) {
+            splines.add(new HolonomicSpline(waypoints.get(i - 1), waypoints.get(i)));
+        }
+        int m = in.readInt();
+        List<TimedState> points = new ArrayList<>(m);
+        double[] all = new double[3 * m];
+        double[] limits = new double[3];
+        boolean stale = false;
+        for (int i = 0; i < m; ++i) {
+            HolonomicSpline spline = splines.get(in.readShort());
+            PathPoint p = spline.getPathPoint(in.readDouble());
+            TimedState s = new TimedState(p, in.readDouble(), in.readDouble(), in.readDouble());
+            points.add(s);
+            limits(constraints, p, s.velocityM_S(), limits);
+            for (int j = 0; j < 3; ++j) {
+                // keep reading, to get to the next entry.
+                if (!same(in.readDouble(), limits[j]))
+                    stale = true;
+                all[3 * i + j] = limits[j];
+            }
+        }
+        if (stale)
+            return null;
+        return new Entry(waypoints, new Trajectory100(points, List.of()), all);
+    }
+
+    /** @param limits at each point when it was planned, for the stale check */
+    private record Entry(List<WaypointSE2> waypoints, Trajectory100 trajectory, double[] limits) {
+    }
+
+    /** Waypoints, quantized, for hashing. */
+    private static final class Key {
+        private final List<WaypointSE2> m_waypoints;
+        private final long[] m_q;
+
+        Key(List<WaypointSE2> waypoints) {
+            m_waypoints = List.copyOf(waypoints);
+            m_q = new long[7 * waypoints.size()];
+            int i = 0;
+            for (WaypointSE2 w : waypoints) {
+                m_q[i++] = q(w.pose().getX());
+                m_q[i++] = q(w.pose().getY());
+                m_q[i++] = q(w.pose().getRotation().getRadians());
+                m_q[i++] = q(w.course().x);
+                m_q[i++] = q(w.course().y);
+                m_q[i++] = q(w.course().theta);
+                m_q[i++] = q(w.scale());
+            }
+        }
+
+        List<WaypointSE2> waypoints() {
+            return m_waypoints;
+        }
+
+        private static long q(double x) {
+            return Math.round(x / QUANTUM);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key k && Arrays.equals(m_q, k.m_q);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(m_q);
+        }
+    }
+}
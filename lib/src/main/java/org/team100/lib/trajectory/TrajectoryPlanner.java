@@ -1,12 +1,23 @@
 package org.team100.lib.trajectory;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.DirectionSE2;
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.geometry.VelocitySE2;
 import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.state.ModelSE2;
 import org.team100.lib.trajectory.path.Path100;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.trajectory.path.PathFactory;
 import org.team100.lib.trajectory.timing.TrajectoryFactory;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
 /**
  * Creates a trajectory in three steps:
  * 
@@ -15,11 +26,14 @@ import org.team100.lib.trajectory.timing.TrajectoryFactory;
  * within the spline sample tolerance, and the points are close enough together
  * 3. assign timestamps to each step
  * 
- * This used to support moving start and end states but we never used it, so
- * it's gone.
+ * To change the goal in the middle of a trajectory, use replan(), which starts
+ * from the current (moving) state, and reuses as much of the previous
+ * trajectory as it can.
  */
 public class TrajectoryPlanner {
     private static final boolean DEBUG = false;
+    /** Below this speed, the start course points at the first waypoint. */
+    private static final double MIN_SPEED = 0.01;
 
     private final PathFactory m_pathFactory;
     private final TrajectoryFactory m_trajectoryFactory;
@@ -29,6 +43,10 @@ public class TrajectoryPlanner {
         m_trajectoryFactory = trajectoryFactory;
     }
 
+    public TrajectoryFactory getTrajectoryFactory() {
+        return m_trajectoryFactory;
+    }
+
     /**
      * Makes a trajectory through the supplied waypoints, starting and ending
      * motionless.
@@ -37,6 +55,40 @@ public class TrajectoryPlanner {
         return generateTrajectory(waypoints, 0.0, 0.0);
     }
 
+    /**
+     * Makes a trajectory from the current state, which may be moving, through the
+     * supplied waypoints, ending motionless.
+     * 
+     * Splines shared with the previous trajectory (i.e. with the same knots) are
+     * not sampled again, and the schedule of the shared tail is kept where the
+     * new one joins it, so this is much cheaper than planning from scratch when
+     * only the first part changes.
+     * 
+     * @param previous  the trajectory being followed, may be empty
+     * @param state     the current state; the course is the direction of travel
+     * @param waypoints the rest of the path, not including the current state
+     */
+    public Trajectory100 replan(
+            Trajectory100 previous, ModelSE2 state, List<WaypointSE2> waypoints) {
+        try {
+            List<WaypointSE2> all = new ArrayList<>(waypoints.size() + 1);
+            all.add(start(state, waypoints.get(0)));
+            all.addAll(waypoints);
+            List<PathPoint> previousPoints = new ArrayList<>(previous.length());
+            for (int i = 0; i < previous.length(); ++i) {
+                previousPoints.add(previous.getPoint(i).point());
+            }
+            Path100 path = m_pathFactory.fromWaypoints(all, previousPoints);
+            double speed = state.velocity().norm();
+            if (previous.isEmpty())
+                return m_trajectoryFactory.fromPath(path, speed, 0.0);
+            return m_trajectoryFactory.replan(path, speed, previous);
+        } catch (IllegalArgumentException e) {
+            System.out.println("WARNING: Bad trajectory input!!");
+            return new Trajectory100();
+        }
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////
     ///
     /// DANGER ZONE
@@ -50,6 +102,10 @@ public class TrajectoryPlanner {
     public Trajectory100 generateTrajectory(
             List<WaypointSE2> waypoints, double start_vel, double end_vel) {
         try {
+            if (Experiments.instance.enabled(Experiment.PrimitivePaths)) {
+                PathArrays path = m_pathFactory.arraysFromWaypoints(waypoints);
+                return m_trajectoryFactory.fromArrays(path, start_vel, end_vel);
+            }
             // Create a path from splines.
             Path100 path = m_pathFactory.fromWaypoints(waypoints);
             if (DEBUG)
@@ -68,4 +124,18 @@ public class TrajectoryPlanner {
             return new Trajectory100();
         }
     }
+
+    /**
+     * The current state as a waypoint. The course is the direction of travel,
+     * including rotation, or towards the next waypoint if nearly stopped.
+     */
+    static WaypointSE2 start(ModelSE2 state, WaypointSE2 next) {
+        Pose2d pose = state.pose();
+        VelocitySE2 v = state.velocity();
+        if (v.norm() < MIN_SPEED) {
+            Translation2d toNext = next.pose().getTranslation().minus(pose.getTranslation());
+            return new WaypointSE2(pose, DirectionSE2.irrotational(toNext.getAngle()), next.scale());
+        }
+        return new WaypointSE2(pose, new DirectionSE2(v.x(), v.y(), v.theta()), next.scale());
+    }
 }
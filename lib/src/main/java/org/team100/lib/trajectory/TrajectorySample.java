@@ -0,0 +1,81 @@
+package org.team100.lib.trajectory;
+
+import org.team100.lib.state.Control100;
+import org.team100.lib.state.ControlSE2;
+
+/**
+ * Mutable trajectory sample, written by TrajectorySampler.
+ *
+ * The idea is for the caller to keep one of these and reuse it every cycle, so
+ * that sampling produces no garbage.
+ */
+public class TrajectorySample {
+    /** Time we achieve this state. */
+    public double timeS;
+    public double x;
+    public double y;
+    /** Robot heading, radians. */
+    public double heading;
+    /** Cosine of the course, i.e. the direction of travel. */
+    public double courseCos;
+    /** Sine of the course, i.e. the direction of travel. */
+    public double courseSin;
+    /** Change in heading per meter of motion, rad/m. */
+    public double headingRateRad_M;
+    /** Change in course per meter of motion, rad/m. */
+    public double curvatureRad_M;
+    /** Instantaneous pathwise velocity, m/s. */
+    public double velocityM_S;
+    /** Pathwise acceleration, m/s^2. */
+    public double accelM_S_S;
+
+    /** Cartesian velocity, m/s. */
+    public double xv() {
+        return courseCos * velocityM_S;
+    }
+
+    public double yv() {
+        return courseSin * velocityM_S;
+    }
+
+    public double thetav() {
+        return headingRateRad_M * velocityM_S;
+    }
+
+    /** Pathwise plus centripetal. */
+    public double xa() {
+        return courseCos * accelM_S_S - courseSin * centripetal();
+    }
+
+    /** Pathwise plus centripetal. */
+    public double ya() {
+        return courseSin * accelM_S_S + courseCos * centripetal();
+    }
+
+    public double thetaa() {
+        return headingRateRad_M * accelM_S_S;
+    }
+
+    /**
+     * Same as ControlSE2.fromTimedState(), for callers that want the immutable
+     * type. This allocates.
+     */
+    public ControlSE2 control() {
+        return new ControlSE2(
+                new Control100(x, xv(), xa()),
+                new Control100(y, yv(), ya()),
+                new Control100(heading, thetav(), thetaa()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "time %5.3f, x %5.3f, y %5.3f, theta %5.3f, vel %5.3f, acc %5.3f, curvature %5.3f",
+                timeS, x, y, heading, velocityM_S, accelM_S_S, curvatureRad_M);
+    }
+
+    /** centripetal accel = v^2/r = v^2 * curvature */
+    private double centripetal() {
+        return velocityM_S * velocityM_S * curvatureRad_M;
+    }
+}
@@ -0,0 +1,166 @@
+package org.team100.lib.trajectory;
+
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.trajectory.timing.TimedState;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Samples a trajectory without allocating anything.
+ *
+ * The timed points are copied into parallel primitive arrays, and sampling uses
+ * binary search, with a "cursor" hint for the usual case where time increases
+ * monotonically, so the lookup is usually O(1), and O(log n) otherwise.
+ *
+ * The result is written into a caller-supplied TrajectorySample.
+ *
+ * Note this interpolates linearly between points, unlike
+ * Trajectory100.sample(), which resamples the spline. The trajectory points
+ * are close together (see PathFactory), so the difference is small.
+ *
+ * The cursor makes this stateful, so each user should have its own instance.
+ */
+public class TrajectorySampler {
+    private final int m_length;
+    private final double[] m_t;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_heading;
+    private final double[] m_course;
+    private final double[] m_headingRate;
+    private final double[] m_curvature;
+    private final double[] m_velocity;
+    private final double[] m_accel;
+    /** Index of the floor of the most recent sample. */
+    private int m_cursor;
+
+    public TrajectorySampler(Trajectory100 trajectory) {
+        if (trajectory.isEmpty())
+            throw new IllegalArgumentException("can't sample an empty trajectory");
+        m_length = trajectory.length();
+        m_t = new double[m_length];
+        m_x = new double[m_length];
+        m_y = new double[m_length];
+        m_heading = new double[m_length];
+        m_course = new double[m_length];
+        m_headingRate = new double[m_length];
+        m_curvature = new double[m_length];
+        m_velocity = new double[m_length];
+        m_accel = new double[m_length];
+        for (int i = 0; i < m_length; ++i) {
+            TimedState state = trajectory.getPoint(i);
+            PathPoint point = state.point();
+            Pose2d pose = point.waypoint().pose();
+            Rotation2d course = point.waypoint().course().toRotation();
+            m_t[i] = state.getTimeS();
+            m_x[i] = pose.getX();
+            m_y[i] = pose.getY();
+            m_heading[i] = pose.getRotation().getRadians();
+            m_course[i] = course.getRadians();
+            m_headingRate[i] = point.getHeadingRateRad_M();
+            m_curvature[i] = point.getCurvatureRad_M();
+            m_velocity[i] = state.velocityM_S();
+            m_accel[i] = state.acceleration();
+        }
+        m_cursor = 0;
+    }
+
+    public double duration() {
+        return m_t[m_length - 1];
+    }
+
+    public int length() {
+        return m_length;
+    }
+
+    /**
+     * Interpolate the state at the given time, writing it into the result.
+     *
+     * @param timeS  start is zero.
+     * @param result is overwritten
+     * @return the result, for convenience
+     */
+    public TrajectorySample sample(double timeS, TrajectorySample result) {
+        if (timeS >= m_t[m_length - 1]) {
+            m_cursor = m_length - 1;
+            return copy(m_length - 1, result);
+        }
+        if (timeS <= 0) {
+            m_cursor = 0;
+            return copy(0, result);
+        }
+        int i = floorIndex(timeS);
+        m_cursor = i;
+        double span = m_t[i + 1] - m_t[i];
+        if (Math.abs(span) <= 1e-12) {
+            return copy(i + 1, result);
+        }
+        double dt = timeS - m_t[i];
+        double s = dt / span;
+        result.timeS = timeS;
+        result.x = lerp(m_x[i], m_x[i + 1], s);
+        result.y = lerp(m_y[i], m_y[i + 1], s);
+        result.heading = angleLerp(m_heading[i], m_heading[i + 1], s);
+        double course = angleLerp(m_course[i], m_course[i + 1], s);
+        result.courseCos = Math.cos(course);
+        result.courseSin = Math.sin(course);
+        result.headingRateRad_M = lerp(m_headingRate[i], m_headingRate[i + 1], s);
+        result.curvatureRad_M = lerp(m_curvature[i], m_curvature[i + 1], s);
+        // Acceleration is constant through the segment, as in
+        // TimedState.interpolate().
+        result.velocityM_S = m_velocity[i] + m_accel[i] * dt;
+        result.accelM_S_S = m_accel[i];
+        return result;
+    }
+
+    /**
+     * Index of the last point with time strictly before the given time, which
+     * must be within (0, duration). Checks the cursor and its successor first.
+     */
+    int floorIndex(double timeS) {
+        int c = m_cursor;
+        if (c < m_length - 1 && m_t[c] < timeS) {
+            if (timeS <= m_t[c + 1])
+                return c;
+            if (c < m_length - 2 && timeS <= m_t[c + 2])
+                return c + 1;
+        }
+        // Binary search for the first index at or after the time.
+        int lo = 1;
+        int hi = m_length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_t[mid] >= timeS) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo - 1;
+    }
+
+    private TrajectorySample copy(int i, TrajectorySample result) {
+        result.timeS = m_t[i];
+        result.x = m_x[i];
+        result.y = m_y[i];
+        result.heading = m_heading[i];
+        result.courseCos = Math.cos(m_course[i]);
+        result.courseSin = Math.sin(m_course[i]);
+        result.headingRateRad_M = m_headingRate[i];
+        result.curvatureRad_M = m_curvature[i];
+        result.velocityM_S = m_velocity[i];
+        result.accelM_S_S = m_accel[i];
+        return result;
+    }
+
+    private static double lerp(double a, double b, double s) {
+        return a + (b - a) * s;
+    }
+
+    /** Interpolate the short way around. */
+    private static double angleLerp(double a, double b, double s) {
+        return MathUtil.angleModulus(a + MathUtil.angleModulus(b - a) * s);
+    }
+}
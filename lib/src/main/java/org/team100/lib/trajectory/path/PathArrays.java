@@ -0,0 +1,228 @@
+package org.team100.lib.trajectory.path;
+
+import java.util.Arrays;
+
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.trajectory.path.spline.HolonomicSpline;
+
+/**
+ * A 2d holonomic path, like Path100, but with the samples in parallel
+ * primitive arrays, rather than a list of PathPoint, so that making it doesn't
+ * create a pile of garbage.
+ *
+ * The TimingConstraints can read it without making PathPoints; for those that
+ * don't, and for the final trajectory, point() makes them, once per index.
+ *
+ * The course is the SE(2) unit direction; courseCos and courseSin are the
+ * normalized planar part, i.e. DirectionSE2.toRotation().
+ */
+public class PathArrays {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int m_length;
+    private HolonomicSpline[] m_spline;
+    private double[] m_s;
+    private double[] m_x;
+    private double[] m_y;
+    private double[] m_heading;
+    private double[] m_courseX;
+    private double[] m_courseY;
+    private double[] m_courseTheta;
+    private double[] m_headingRate;
+    private double[] m_curvature;
+    /** Cumulative xy distance. */
+    private double[] m_distance;
+    /** Made on demand, maybe by several threads at once. */
+    private volatile PathPoint[] m_points;
+
+    public PathArrays() {
+        m_spline = new HolonomicSpline[INITIAL_CAPACITY];
+        m_s = new double[INITIAL_CAPACITY];
+        m_x = new double[INITIAL_CAPACITY];
+        m_y = new double[INITIAL_CAPACITY];
+        m_heading = new double[INITIAL_CAPACITY];
+        m_courseX = new double[INITIAL_CAPACITY];
+        m_courseY = new double[INITIAL_CAPACITY];
+        m_courseTheta = new double[INITIAL_CAPACITY];
+        m_headingRate = new double[INITIAL_CAPACITY];
+        m_curvature = new double[INITIAL_CAPACITY];
+        m_distance = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Append a sample. The course must be a unit vector.
+     *
+     * @param spline      the source of this point, for resampling
+     * @param s           spline parameter
+     * @param heading     radians
+     * @param headingRate rad/m
+     * @param curvature   rad/m
+     */
+    public void add(
+            HolonomicSpline spline,
+            double s,
+            double x,
+            double y,
+            double heading,
+            double courseX,
+            double courseY,
+            double courseTheta,
+            double headingRate,
+            double curvature) {
+        if (m_length == m_s.length)
+            grow();
+        int i = m_length;
+        m_spline[i] = spline;
+        m_s[i] = s;
+        m_x[i] = x;
+        m_y[i] = y;
+        m_heading[i] = heading;
+        m_courseX[i] = courseX;
+        m_courseY[i] = courseY;
+        m_courseTheta[i] = courseTheta;
+        m_headingRate[i] = headingRate;
+        m_curvature[i] = curvature;
+        m_distance[i] = (i == 0) ? 0 : m_distance[i - 1] + Math.hypot(x - m_x[i - 1], y - m_y[i - 1]);
+        m_points = null;
+        m_length++;
+    }
+
+    /** Remove the last sample. */
+    public void removeLast() {
+        if (m_length > 0) {
+            m_length--;
+            m_spline[m_length] = null;
+            m_points = null;
+        }
+    }
+
+    public boolean isEmpty() {
+        return m_length == 0;
+    }
+
+    public int length() {
+        return m_length;
+    }
+
+    public HolonomicSpline spline(int i) {
+        return m_spline[i];
+    }
+
+    public double s(int i) {
+        return m_s[i];
+    }
+
+    public double x(int i) {
+        return m_x[i];
+    }
+
+    public double y(int i) {
+        return m_y[i];
+    }
+
+    /** Radians. */
+    public double heading(int i) {
+        return m_heading[i];
+    }
+
+    public double courseX(int i) {
+        return m_courseX[i];
+    }
+
+    public double courseY(int i) {
+        return m_courseY[i];
+    }
+
+    public double courseTheta(int i) {
+        return m_courseTheta[i];
+    }
+
+    /** Cosine of the planar course. */
+    public double courseCos(int i) {
+        double h = Math.hypot(m_courseX[i], m_courseY[i]);
+        return (h > 1e-6) ? m_courseX[i] / h : 1;
+    }
+
+    /** Sine of the planar course. */
+    public double courseSin(int i) {
+        double h = Math.hypot(m_courseX[i], m_courseY[i]);
+        return (h > 1e-6) ? m_courseY[i] / h : 0;
+    }
+
+    /** Change in heading per meter, rad/m. */
+    public double headingRate(int i) {
+        return m_headingRate[i];
+    }
+
+    /** Change in course per meter, rad/m. */
+    public double curvature(int i) {
+        return m_curvature[i];
+    }
+
+    /** Cumulative xy distance from the start. */
+    public double distance(int i) {
+        return m_distance[i];
+    }
+
+    /** Total xy distance. Always non-negative. */
+    public double getMaxDistance() {
+        if (m_length == 0)
+            return 0;
+        return m_distance[m_length - 1];
+    }
+
+    /**
+     * The sample as a PathPoint, made from the spline, so that it's exactly
+     * what the PathPoint pipeline would produce. Each one is made once (or
+     * maybe twice, if two threads ask for the same one at the same time).
+     */
+    public PathPoint point(int i) {
+        PathPoint[] points = memo();
+        PathPoint p = points[i];
+        if (p == null) {
+            p = m_spline[i].getPathPoint(m_s[i]);
+            points[i] = p;
+        }
+        return p;
+    }
+
+    private PathPoint[] memo() {
+        PathPoint[] points = m_points;
+        if (points != null)
+            return points;
+        synchronized (this) {
+            if (m_points == null)
+                m_points = new PathPoint[m_length];
+            return m_points;
+        }
+    }
+
+    /** All the samples as PathPoints. */
+    public PathPoint[] points() {
+        PathPoint[] result = new PathPoint[m_length];
+        for (int i = 0; i < m_length; ++i) {
+            result[i] = point(i);
+        }
+        return result;
+    }
+
+    /** For compatibility with the PathPoint pipeline. */
+    public Path100 toPath() {
+        return new Path100(Arrays.asList(points()));
+    }
+
+    private void grow() {
+        int n = 2 * m_s.length;
+        m_spline = Arrays.copyOf(m_spline, n);
+        m_s = Arrays.copyOf(m_s, n);
+        m_x = Arrays.copyOf(m_x, n);
+        m_y = Arrays.copyOf(m_y, n);
+        m_heading = Arrays.copyOf(m_heading, n);
+        m_courseX = Arrays.copyOf(m_courseX, n);
+        m_courseY = Arrays.copyOf(m_courseY, n);
+        m_courseTheta = Arrays.copyOf(m_courseTheta, n);
+        m_headingRate = Arrays.copyOf(m_headingRate, n);
+        m_curvature = Arrays.copyOf(m_curvature, n);
+        m_distance = Arrays.copyOf(m_distance, n);
+    }
+}
@@ -9,6 +9,7 @@ import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.geometry.WaypointSE2;
 import org.team100.lib.trajectory.path.spline.HolonomicSpline;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Twist2d;
@@ -65,6 +66,54 @@ public class PathFactory {
         return fromSplines(splines);
     }
 
+    /**
+     * The same path as fromWaypoints(), but any spline that appears in the
+     * previous samples is not sampled again; its samples are reused.
+     * 
+     * @param previous samples of an earlier path, e.g. the points of the
+     *                 trajectory being replaced.
+     */
+    public Path100 fromWaypoints(List<WaypointSE2> waypoints, List<PathPoint> previous) {
+        List<PathPoint> result = new ArrayList<>();
+        for (int i = 1; i < waypoints.size(); ++i) {
+            WaypointSE2 p0 = waypoints.get(i - 1);
+            WaypointSE2 p1 = waypoints.get(i);
+            List<PathPoint> samples = reusedSamples(p0, p1, previous);
+            if (samples.isEmpty()) {
+                samples = samplesFromSpline(new HolonomicSpline(p0, p1));
+                // the start is the end of the previous spline
+                if (i > 1)
+                    samples.remove(0);
+            } else if (i == 1) {
+                // reused samples never include the start
+                result.add(samples.get(0).getSpline().getPathPoint(0.0));
+            }
+            result.addAll(samples);
+        }
+        return new Path100(result);
+    }
+
+    /**
+     * The same path as fromWaypoints(), in primitive arrays, without making a
+     * PathPoint (and its Pose2d, etc) for every bisection step.
+     */
+    public PathArrays arraysFromWaypoints(List<WaypointSE2> waypoints) {
+        return arraysFromSplines(splinesFromWaypoints(waypoints));
+    }
+
+    public PathArrays arraysFromSplines(List<? extends HolonomicSpline> splines) {
+        PathArrays result = new PathArrays();
+        if (splines.isEmpty())
+            return result;
+        splines.get(0).sample(0.0, result);
+        for (int i = 0; i < splines.size(); i++) {
+            // this adds only the segment endpoints, so the start of each spline,
+            // which is the end of the previous one, isn't included twice.
+            getSegmentArc(splines.get(i), result, 0, 1);
+        }
+        return result;
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////
     ///
     ///
@@ -81,6 +130,26 @@ public class PathFactory {
         return splines;
     }
 
+    /**
+     * The previous samples of the spline with the specified knots, not including
+     * its start, or empty if there isn't one.
+     */
+    private static List<PathPoint> reusedSamples(
+            WaypointSE2 p0, WaypointSE2 p1, List<PathPoint> previous) {
+        List<PathPoint> result = new ArrayList<>();
+        HolonomicSpline spline = null;
+        for (PathPoint p : previous) {
+            HolonomicSpline s = p.getSpline();
+            if (s == null)
+                continue;
+            if (spline == null && s.joins(p0, p1))
+                spline = s;
+            if (s == spline && p.getS() > 0)
+                result.add(p);
+        }
+        return result;
+    }
+
     /**
      * Converts a spline into a list of PathPoint.
      * 
@@ -170,4 +239,93 @@ public class PathFactory {
             rv.add(spline.getPathPoint(s1));
         }
     }
+
+    /**
+     * Same as above, with primitives. The twist arithmetic is Pose2d.log() and
+     * Pose2d.exp(), written out.
+     */
+    private void getSegmentArc(
+            HolonomicSpline spline,
+            PathArrays rv,
+            double s0,
+            double s1) {
+        double shalf = (s0 + s1) / 2;
+        double x0 = spline.x(s0);
+        double y0 = spline.y(s0);
+        double h0 = spline.headingRad(s0);
+        double xhalf = spline.x(shalf);
+        double yhalf = spline.y(shalf);
+        double hhalf = spline.headingRad(shalf);
+        double x1 = spline.x(s1);
+        double y1 = spline.y(s1);
+        double h1 = spline.headingRad(s1);
+
+        double cos0 = Math.cos(h0);
+        double sin0 = Math.sin(h0);
+
+        // twist from p0 to p1, i.e. p0.log(p1)
+        double tx = (x1 - x0) * cos0 + (y1 - y0) * sin0;
+        double ty = -(x1 - x0) * sin0 + (y1 - y0) * cos0;
+        double dtheta = MathUtil.angleModulus(h1 - h0);
+        double halfDtheta = dtheta / 2;
+        double cosMinusOne = Math.cos(dtheta) - 1;
+        double k = (Math.abs(cosMinusOne) < 1e-9)
+                ? 1.0 - 1.0 / 12.0 * dtheta * dtheta
+                : -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+        double twistX = tx * k + ty * halfDtheta;
+        double twistY = -tx * halfDtheta + ty * k;
+
+        // point halfway from p0 to p1, i.e. p0.exp(twist/2)
+        double hx = twistX / 2;
+        double hy = twistY / 2;
+        double htheta = dtheta / 2;
+        double S;
+        double C;
+        if (Math.abs(htheta) < 1e-9) {
+            S = 1.0 - 1.0 / 6.0 * htheta * htheta;
+            C = 0.5 * htheta;
+        } else {
+            S = Math.sin(htheta) / htheta;
+            C = (1 - Math.cos(htheta)) / htheta;
+        }
+        double lx = hx * S - hy * C;
+        double ly = hx * C + hy * S;
+        double px = x0 + lx * cos0 - ly * sin0;
+        double py = y0 + lx * sin0 + ly * cos0;
+        double ph = h0 + htheta;
+
+        // difference between twist and sample, in the sample frame
+        double cosHalf = Math.cos(hhalf);
+        double sinHalf = Math.sin(hhalf);
+        double errorX = (px - xhalf) * cosHalf + (py - yhalf) * sinHalf;
+        double errorY = -(px - xhalf) * sinHalf + (py - yhalf) * cosHalf;
+        double errorTheta = MathUtil.angleModulus(ph - hhalf);
+
+        // also prohibit large changes in direction between points
+        double dx0 = spline.dx(s0);
+        double dy0 = spline.dy(s0);
+        double dt0 = spline.dtheta(s0);
+        double n0 = Math.sqrt(dx0 * dx0 + dy0 * dy0 + dt0 * dt0);
+        double dx1 = spline.dx(s1);
+        double dy1 = spline.dy(s1);
+        double dt1 = spline.dtheta(s1);
+        double n1 = Math.sqrt(dx1 * dx1 + dy1 * dy1 + dt1 * dt1);
+        double cx = dx0 / n0 - dx1 / n1;
+        double cy = dy0 / n0 - dy1 / n1;
+        double ct = dt0 / n0 - dt1 / n1;
+
+        if (Math.abs(errorX) > maxDx
+                || Math.abs(errorY) > maxDy
+                || Math.abs(errorTheta) > maxDTheta
+                || Math.hypot(twistX, twistY) > maxNorm
+                || Math.sqrt(twistX * twistX + twistY * twistY + dtheta * dtheta) > maxNorm
+                || Math.sqrt(cx * cx + cy * cy + ct * ct) > maxNorm) {
+            // add a point in between
+            getSegmentArc(spline, rv, s0, shalf);
+            getSegmentArc(spline, rv, shalf, s1);
+        } else {
+            // midpoint is close enough, so add the endpoint
+            spline.sample(s1, rv);
+        }
+    }
 }
@@ -4,6 +4,7 @@ import org.team100.lib.geometry.DirectionSE2;
 import org.team100.lib.geometry.Metrics;
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.trajectory.path.PathArrays;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -34,6 +35,9 @@ public class HolonomicSpline {
      * starting point in order to correctly handle wrapping.
      */
     private final Rotation2d m_heading0;
+    /** The knots, so that a replan can tell if it's the same spline. */
+    private final WaypointSE2 m_p0;
+    private final WaypointSE2 m_p1;
 
     /**
      * Specify the magic number you want: this scales the derivatives at the
@@ -63,6 +67,8 @@ public class HolonomicSpline {
         double distance = Metrics.translationalDistance(p0.pose(), p1.pose());
         if (distance < 1e-6)
             throw new IllegalArgumentException("splines must cover xy distance");
+        m_p0 = p0;
+        m_p1 = p1;
 
         if (DEBUG)
             System.out.printf("distance %f\n", distance);
@@ -103,6 +109,11 @@ public class HolonomicSpline {
         m_heading = SplineR1.get(0.0, delta, dtheta0, dtheta1, ddtheta0, ddtheta1);
     }
 
+    /** True if this spline has the specified knots, i.e. it's the same spline. */
+    public boolean joins(WaypointSE2 p0, WaypointSE2 p1) {
+        return m_p0.equals(p0) && m_p1.equals(p1);
+    }
+
     @Override
     public String toString() {
         return "HolonomicSpline [m_x=" + m_x
@@ -126,6 +137,35 @@ public class HolonomicSpline {
                 getCurvature(s));
     }
 
+    /**
+     * Appends the sample at s, the same as getPathPoint(s), but without making
+     * any objects.
+     * 
+     * @param s [0,1]
+     */
+    public void sample(double s, PathArrays out) {
+        double dx = dx(s);
+        double dy = dy(s);
+        double dtheta = dtheta(s);
+        double h = Math.sqrt(dx * dx + dy * dy + dtheta * dtheta);
+        if (h < 1e-6)
+            throw new IllegalArgumentException("zero direction is not allowed");
+        out.add(this, s, x(s), y(s), headingRad(s),
+                dx / h, dy / h, dtheta / h,
+                dtheta / h,
+                getCurvature(s));
+    }
+
+    /** Heading at s, radians, the same as getHeading(s).getRadians(). */
+    public double headingRad(double s) {
+        double headingFromZero = m_heading.getPosition(s);
+        double c = Math.cos(headingFromZero);
+        double sin = Math.sin(headingFromZero);
+        double cos0 = m_heading0.getCos();
+        double sin0 = m_heading0.getSin();
+        return Math.atan2(cos0 * sin + sin0 * c, cos0 * c - sin0 * sin);
+    }
+
     ////////////////////////////////////////////////////////////////////////
 
     /**
@@ -157,12 +197,12 @@ public class HolonomicSpline {
     }
 
     /** x at s */
-    double x(double s) {
+    public double x(double s) {
         return m_x.getPosition(s);
     }
 
     /** y at s */
-    double y(double s) {
+    public double y(double s) {
         return m_y.getPosition(s);
     }
 
@@ -173,17 +213,17 @@ public class HolonomicSpline {
     }
 
     /** dx/ds */
-    double dx(double s) {
+    public double dx(double s) {
         return m_x.getVelocity(s);
     }
 
     /** dy/ds */
-    double dy(double s) {
+    public double dy(double s) {
         return m_y.getVelocity(s);
     }
 
     /** dheading/ds */
-    double dtheta(double s) {
+    public double dtheta(double s) {
         return m_heading.getVelocity(s);
     }
 
@@ -1,8 +1,11 @@
 package org.team100.lib.trajectory.timing;
 
+import java.util.function.DoubleSupplier;
+
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.tuning.Mutable;
 
 /**
@@ -10,7 +13,7 @@ import org.team100.lib.tuning.Mutable;
  */
 public class CapsizeAccelerationConstraint implements TimingConstraint {
     private static final boolean DEBUG = false;
-    private final Mutable m_scale;
+    private final DoubleSupplier m_scale;
     private final double m_maxCentripetalAccel;
     private final double m_maxDecel;
 
@@ -40,6 +43,18 @@ public class CapsizeAccelerationConstraint implements TimingConstraint {
         m_maxDecel = -decel;
     }
 
+    private CapsizeAccelerationConstraint(DoubleSupplier scale, double centripetal, double maxDecel) {
+        m_scale = scale;
+        m_maxCentripetalAccel = centripetal;
+        m_maxDecel = maxDecel;
+    }
+
+    @Override
+    public TimingConstraint snapshot() {
+        double scale = m_scale.getAsDouble();
+        return new CapsizeAccelerationConstraint(() -> scale, m_maxCentripetalAccel, m_maxDecel);
+    }
+
     /**
      * The centripetal acceleration as a function of linear speed and radius:
      * a = v^2 / r
@@ -49,7 +64,36 @@ public class CapsizeAccelerationConstraint implements TimingConstraint {
      */
     @Override
     public double maxV(final PathPoint state) {
-        double radius = 1 / Math.abs(state.getCurvatureRad_M());
+        return maxV(state.getCurvatureRad_M());
+    }
+
+    @Override
+    public double maxAccel(PathPoint state, double velocity) {
+        return maxAccel(state.getCurvatureRad_M(), velocity);
+    }
+
+    @Override
+    public double maxDecel(PathPoint state, double velocity) {
+        return maxDecel(state.getCurvatureRad_M(), velocity);
+    }
+
+    @Override
+    public double maxV(PathArrays path, int i) {
+        return maxV(path.curvature(i));
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocity) {
+        return maxAccel(path.curvature(i), velocity);
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return maxDecel(path.curvature(i), velocity);
+    }
+
+    private double maxV(double curvature) {
+        double radius = 1 / Math.abs(curvature);
         // abs is used here to make sure sqrt is happy.
         double maxV = Math.sqrt(Math.abs(m_maxCentripetalAccel * m_scale.getAsDouble() * radius));
         if (DEBUG)
@@ -57,9 +101,8 @@ public class CapsizeAccelerationConstraint implements TimingConstraint {
         return maxV;
     }
 
-    @Override
-    public double maxAccel(PathPoint state, double velocity) {
-        double alongsq = alongSq(state, velocity);
+    private double maxAccel(double curvature, double velocity) {
+        double alongsq = alongSq(curvature, velocity);
         if (alongsq < 0) {
             if (DEBUG)
                 System.out.println("too fast for the curvature, can't speed up");
@@ -71,9 +114,8 @@ public class CapsizeAccelerationConstraint implements TimingConstraint {
         return maxA;
     }
 
-    @Override
-    public double maxDecel(PathPoint state, double velocity) {
-        double alongsq = alongSq(state, velocity);
+    private double maxDecel(double curvature, double velocity) {
+        double alongsq = alongSq(curvature, velocity);
         if (alongsq < 0) {
             if (DEBUG)
                 System.out.println("too fast for the curvature, slowing down is ok");
@@ -96,8 +138,8 @@ public class CapsizeAccelerationConstraint implements TimingConstraint {
      * so
      * along = sqrt(total^2 - v^4/r^2)
      */
-    private double alongSq(PathPoint state, double velocity) {
-        double radius = 1 / Math.abs(state.getCurvatureRad_M());
+    private double alongSq(double curvature, double velocity) {
+        double radius = 1 / Math.abs(curvature);
         double actualCentripetalAccel = velocity * velocity / radius;
         if (DEBUG)
             System.out.printf("radius %f velocity %f actual centripetal accel %f\n",
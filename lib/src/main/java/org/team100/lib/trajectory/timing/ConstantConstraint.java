@@ -1,14 +1,17 @@
 package org.team100.lib.trajectory.timing;
 
+import java.util.function.DoubleSupplier;
+
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.tuning.Mutable;
 
 /** Trivial constraint for testing. */
 public class ConstantConstraint implements TimingConstraint {
-    private final Mutable m_maxVelocity;
-    private final Mutable m_maxAccel;
+    private final DoubleSupplier m_maxVelocity;
+    private final DoubleSupplier m_maxAccel;
 
     public ConstantConstraint(LoggerFactory parent, double maxV, double maxA) {
         LoggerFactory log = parent.type(this);
@@ -16,10 +19,22 @@ public class ConstantConstraint implements TimingConstraint {
         m_maxAccel = new Mutable(log, "maxA", maxA);
     }
 
+    private ConstantConstraint(DoubleSupplier maxV, DoubleSupplier maxA) {
+        m_maxVelocity = maxV;
+        m_maxAccel = maxA;
+    }
+
     public ConstantConstraint(LoggerFactory log, double vScale, double aScale, SwerveKinodynamics limits) {
         this(log, vScale * limits.getMaxDriveVelocityM_S(), aScale * limits.getMaxDriveAccelerationM_S2());
     }
 
+    @Override
+    public TimingConstraint snapshot() {
+        double maxV = m_maxVelocity.getAsDouble();
+        double maxA = m_maxAccel.getAsDouble();
+        return new ConstantConstraint(() -> maxV, () -> maxA);
+    }
+
     @Override
     public double maxV(PathPoint state) {
         return m_maxVelocity.getAsDouble();
@@ -34,4 +49,19 @@ public class ConstantConstraint implements TimingConstraint {
     public double maxDecel(PathPoint state, double velocity) {
         return -m_maxAccel.getAsDouble();
     }
+
+    @Override
+    public double maxV(PathArrays path, int i) {
+        return m_maxVelocity.getAsDouble();
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocityM_S) {
+        return m_maxAccel.getAsDouble();
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocityM_S) {
+        return -m_maxAccel.getAsDouble();
+    }
 }
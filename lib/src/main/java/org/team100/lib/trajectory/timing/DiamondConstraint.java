@@ -1,7 +1,10 @@
 package org.team100.lib.trajectory.timing;
 
+import java.util.function.DoubleSupplier;
+
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.tuning.Mutable;
 
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -14,10 +17,10 @@ import edu.wpi.first.math.geometry.Rotation2d;
  */
 public class DiamondConstraint implements TimingConstraint {
     /** Max velocity ahead */
-    private final Mutable m_maxVelocityX;
+    private final DoubleSupplier m_maxVelocityX;
     /** Max velocity to the side */
-    private final Mutable m_maxVelocityY;
-    private final Mutable m_maxAccel;
+    private final DoubleSupplier m_maxVelocityY;
+    private final DoubleSupplier m_maxAccel;
 
     /**
      * @param parent log
@@ -32,16 +35,57 @@ public class DiamondConstraint implements TimingConstraint {
         m_maxAccel = new Mutable(log, "maxA", maxA);
     }
 
+    private DiamondConstraint(DoubleSupplier maxVX, DoubleSupplier maxVY, DoubleSupplier maxA) {
+        m_maxVelocityX = maxVX;
+        m_maxVelocityY = maxVY;
+        m_maxAccel = maxA;
+    }
+
+    @Override
+    public TimingConstraint snapshot() {
+        double maxVX = m_maxVelocityX.getAsDouble();
+        double maxVY = m_maxVelocityY.getAsDouble();
+        double maxA = m_maxAccel.getAsDouble();
+        return new DiamondConstraint(() -> maxVX, () -> maxVY, () -> maxA);
+    }
+
     @Override
     public double maxV(PathPoint state) {
         Rotation2d course = state.waypoint().course().toRotation();
         Rotation2d heading = state.waypoint().pose().getRotation();
         Rotation2d strafe = course.minus(heading);
+        return maxV(strafe.getCos(), strafe.getSin());
+    }
+
+    @Override
+    public double maxV(PathArrays path, int i) {
+        double cosCourse = path.courseCos(i);
+        double sinCourse = path.courseSin(i);
+        double cosHeading = Math.cos(path.heading(i));
+        double sinHeading = Math.sin(path.heading(i));
+        // course minus heading
+        return maxV(
+                cosCourse * cosHeading + sinCourse * sinHeading,
+                sinCourse * cosHeading - cosCourse * sinHeading);
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocityM_S) {
+        return m_maxAccel.getAsDouble();
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return -m_maxAccel.getAsDouble();
+    }
+
+    /** Cosine and sine of the strafe angle. */
+    private double maxV(double cos, double sin) {
         // a rhombus is a superellipse with exponent 1
         // https://en.wikipedia.org/wiki/Superellipse
         double a = m_maxVelocityX.getAsDouble();
         double b = m_maxVelocityY.getAsDouble();
-        return 1 / (Math.abs(strafe.getCos() / a) + Math.abs(strafe.getSin() / b));
+        return 1 / (Math.abs(cos / a) + Math.abs(sin / b));
     }
 
     @Override
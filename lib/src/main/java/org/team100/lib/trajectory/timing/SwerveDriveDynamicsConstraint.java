@@ -1,11 +1,14 @@
 package org.team100.lib.trajectory.timing;
 
+import java.util.function.DoubleSupplier;
+
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.subsystems.swerve.kinodynamics.limiter.SwerveUtil;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleState100;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStates;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.tuning.Mutable;
 
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -22,8 +25,8 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
 public class SwerveDriveDynamicsConstraint implements TimingConstraint {
     private static final boolean DEBUG = false;
     private final SwerveKinodynamics m_limits;
-    private final Mutable vScale;
-    private final Mutable aScale;
+    private final DoubleSupplier vScale;
+    private final DoubleSupplier aScale;
 
     /** Use the factory. */
     public SwerveDriveDynamicsConstraint(
@@ -37,6 +40,22 @@ public class SwerveDriveDynamicsConstraint implements TimingConstraint {
         this.aScale = new Mutable(log, "aScale", aScale);
     }
 
+    private SwerveDriveDynamicsConstraint(
+            SwerveKinodynamics limits,
+            DoubleSupplier vScale,
+            DoubleSupplier aScale) {
+        m_limits = limits;
+        this.vScale = vScale;
+        this.aScale = aScale;
+    }
+
+    @Override
+    public TimingConstraint snapshot() {
+        double v = vScale.getAsDouble();
+        double a = aScale.getAsDouble();
+        return new SwerveDriveDynamicsConstraint(m_limits, () -> v, () -> a);
+    }
+
     /**
      * Given a target spatial heading rate (rad/m), return the maximum translational
      * speed allowed (m/s) that maintains the target spatial heading rate.
@@ -80,6 +99,26 @@ public class SwerveDriveDynamicsConstraint implements TimingConstraint {
      */
     @Override
     public double maxAccel(PathPoint state, double velocity) {
+        return maxAccel(velocity);
+    }
+
+    @Override
+    public double maxDecel(PathPoint state, double velocity) {
+        // min accel is stronger than max accel
+        return -1.0 * maxA();
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocity) {
+        return maxAccel(velocity);
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return -1.0 * maxA();
+    }
+
+    private double maxAccel(double velocity) {
         if (Double.isNaN(velocity))
             throw new IllegalArgumentException();
         double maxAccel = SwerveUtil.minAccel(m_limits, 1, 1, velocity);
@@ -91,12 +130,6 @@ public class SwerveDriveDynamicsConstraint implements TimingConstraint {
         return maxAccel;
     }
 
-    @Override
-    public double maxDecel(PathPoint state, double velocity) {
-        // min accel is stronger than max accel
-        return -1.0 * maxA();
-    }
-
     private double maxA() {
         return aScale.getAsDouble() * m_limits.getMaxDriveDecelerationM_S2();
     }
@@ -1,6 +1,7 @@
 package org.team100.lib.trajectory.timing;
 
 import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.trajectory.path.PathArrays;
 
 /**
  * Timing constraints govern the assignment of a schedule to a path, creating a
@@ -35,4 +36,39 @@ public interface TimingConstraint {
      * Always negative.
      */
     double maxDecel(PathPoint state, double velocityM_S);
+
+    /**
+     * A copy with any tunable (Mutable) values fixed at their current values, so
+     * that one plan reads Network Tables once, not once per sample, and sees
+     * consistent values even if it runs on another thread.
+     * 
+     * The copy must be safe to call from several threads at once.
+     */
+    default TimingConstraint snapshot() {
+        return this;
+    }
+
+    /**
+     * Maximum allowed pathwise velocity at sample i, m/s. Override this to avoid
+     * making a PathPoint.
+     */
+    default double maxV(PathArrays path, int i) {
+        return maxV(path.point(i));
+    }
+
+    /**
+     * Maximum allowed pathwise acceleration at sample i, m/s^2. Override this to
+     * avoid making a PathPoint.
+     */
+    default double maxAccel(PathArrays path, int i, double velocityM_S) {
+        return maxAccel(path.point(i), velocityM_S);
+    }
+
+    /**
+     * Maximum allowed pathwise deceleration at sample i, m/s^2. Override this to
+     * avoid making a PathPoint.
+     */
+    default double maxDecel(PathArrays path, int i, double velocityM_S) {
+        return maxDecel(path.point(i), velocityM_S);
+    }
 }
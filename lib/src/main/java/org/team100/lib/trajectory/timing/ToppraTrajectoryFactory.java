@@ -0,0 +1,174 @@
+package org.team100.lib.trajectory.timing;
+
+import java.util.List;
+
+/**
+ * Time-optimal path parameterization by reachability analysis, in the style of
+ * TOPP-RA.
+ *
+ * https://arxiv.org/abs/1707.07239
+ *
+ * Use it anywhere you would use a TrajectoryFactory; it takes the same
+ * constraints.
+ *
+ * The state at each sample is x = v^2, and the control for each segment is the
+ * pathwise acceleration u, so that
+ *
+ * x[i+1] = x[i] + 2 u[i] ds[i]
+ *
+ * where u[i] must be within the accel and decel constraints evaluated at the
+ * *start* of the segment, i.e. at sample i, with velocity v[i].
+ *
+ * The backward pass finds the "controllable set" at each sample, i.e. the range
+ * of x from which it's possible to reach the end, obeying all the constraints.
+ * The forward pass then greedily takes the maximum acceleration, staying within
+ * the controllable sets. Because the controllable sets are exact, the decel
+ * constraint is applied at the correct end of each segment, unlike the
+ * TrajectoryFactory backward pass.
+ *
+ * The original paper uses linear programs because its constraints are linear
+ * in (u, x). These constraints are arbitrary functions of velocity, but each
+ * one is a simple interval for u, so the LPs reduce to a one-dimensional search
+ * for the edge of each set. If the constraint doesn't depend on velocity, the
+ * edge is found directly; otherwise it's found by bisection.
+ *
+ * Replanning (replan()) still uses the TrajectoryFactory passes.
+ *
+ * To use it everywhere without changing the factories, enable the
+ * ToppraTiming experiment.
+ */
+public class ToppraTrajectoryFactory extends TrajectoryFactory {
+    private static final boolean DEBUG = false;
+    private static final double EPSILON = 1e-6;
+    /** Maximum bisection steps for the edges of the controllable sets. */
+    private static final int ITERATIONS = 30;
+
+    public ToppraTrajectoryFactory(List<TimingConstraint> constraints) {
+        super(constraints);
+    }
+
+    @Override
+    double[] velocities(
+            Limits samples, double start_vel, double end_vel, double[] distances) {
+        return reachability(samples, start_vel, end_vel, distances);
+    }
+
+    /** The schedule, for TrajectoryFactory with the ToppraTiming experiment. */
+    static double[] reachability(
+            Limits samples, double start_vel, double end_vel, double[] distances) {
+        int n = distances.length;
+        samples.precompute();
+        // Controllable sets, [lo, hi] in x = v^2.
+        double[] lo = new double[n];
+        double[] hi = new double[n];
+        lo[n - 1] = end_vel * end_vel;
+        hi[n - 1] = end_vel * end_vel;
+        for (int i = n - 2; i >= 0; --i) {
+            double ds = distances[i + 1] - distances[i];
+            double maxX = maxX(samples, i);
+            if (ds < EPSILON) {
+                // zero-length arcs have the same state at both ends
+                hi[i] = Math.min(maxX, hi[i + 1]);
+                lo[i] = lo[i + 1];
+            } else {
+                hi[i] = hi(samples, i, ds, maxX, hi[i + 1]);
+                lo[i] = lo(samples, i, ds, lo[i + 1]);
+            }
+            if (lo[i] > hi[i]) {
+                // the end velocity is too high to reach.
+                if (DEBUG)
+                    System.out.printf("empty controllable set at %d [%f %f]\n", i, lo[i], hi[i]);
+                lo[i] = hi[i];
+            }
+        }
+
+        double[] velocities = new double[n];
+        double x = start_vel * start_vel;
+        if (x > hi[0]) {
+            System.out.printf("WARNING: start velocity %f is higher than constrained velocity %f\n",
+                    start_vel, Math.sqrt(hi[0]));
+            x = hi[0];
+        }
+        velocities[0] = Math.sqrt(x);
+        for (int i = 0; i < n - 1; ++i) {
+            double ds = distances[i + 1] - distances[i];
+            double next = x;
+            if (ds >= EPSILON) {
+                double maxAccel = samples.maxAccel(i, velocities[i]);
+                next = x + 2 * maxAccel * ds;
+            }
+            x = Math.max(lo[i + 1], Math.min(hi[i + 1], next));
+            velocities[i + 1] = Math.sqrt(x);
+            if (DEBUG)
+                System.out.printf("i %d v %f [%f %f]\n",
+                        i + 1, velocities[i + 1], Math.sqrt(lo[i + 1]), Math.sqrt(hi[i + 1]));
+        }
+        return velocities;
+    }
+
+    /** Square of the velocity constraint. */
+    private static double maxX(Limits samples, int i) {
+        double maxV = samples.maxVelocity(i);
+        return maxV * maxV;
+    }
+
+    /**
+     * The largest x at sample i from which it's possible to decelerate to
+     * nextHi, i.e. x + 2 * decel(x) * ds <= nextHi.
+     */
+    private static double hi(Limits samples, int i, double ds, double maxX, double nextHi) {
+        if (canSlowTo(samples, i, ds, maxX, nextHi))
+            return maxX;
+        // exact if the decel constraint doesn't depend on velocity.
+        double guess = nextHi - 2 * samples.maxDecel(i, Math.sqrt(nextHi)) * ds;
+        if (guess < maxX
+                && canSlowTo(samples, i, ds, guess, nextHi)
+                && !canSlowTo(samples, i, ds, guess + 2 * EPSILON, nextHi))
+            return guess;
+        double a = 0;
+        double b = maxX;
+        for (int j = 0; j < ITERATIONS && b - a > EPSILON; ++j) {
+            double mid = (a + b) / 2;
+            if (canSlowTo(samples, i, ds, mid, nextHi))
+                a = mid;
+            else
+                b = mid;
+        }
+        return a;
+    }
+
+    private static boolean canSlowTo(Limits samples, int i, double ds, double x, double nextHi) {
+        double maxDecel = samples.maxDecel(i, Math.sqrt(x));
+        return x + 2 * maxDecel * ds <= nextHi + EPSILON;
+    }
+
+    /**
+     * The smallest x at sample i from which it's possible to accelerate to
+     * nextLo, i.e. x + 2 * accel(x) * ds >= nextLo.
+     */
+    private static double lo(Limits samples, int i, double ds, double nextLo) {
+        if (nextLo < EPSILON || canSpeedTo(samples, i, ds, 0, nextLo))
+            return 0;
+        // exact if the accel constraint doesn't depend on velocity.
+        double guess = nextLo - 2 * samples.maxAccel(i, Math.sqrt(nextLo)) * ds;
+        if (guess > 2 * EPSILON
+                && canSpeedTo(samples, i, ds, guess, nextLo)
+                && !canSpeedTo(samples, i, ds, guess - 2 * EPSILON, nextLo))
+            return guess;
+        double a = 0;
+        double b = nextLo;
+        for (int j = 0; j < ITERATIONS && b - a > EPSILON; ++j) {
+            double mid = (a + b) / 2;
+            if (canSpeedTo(samples, i, ds, mid, nextLo))
+                b = mid;
+            else
+                a = mid;
+        }
+        return b;
+    }
+
+    private static boolean canSpeedTo(Limits samples, int i, double ds, double x, double nextLo) {
+        double maxAccel = samples.maxAccel(i, Math.sqrt(x));
+        return x + 2 * maxAccel * ds >= nextLo - EPSILON;
+    }
+}
@@ -2,6 +2,7 @@ package org.team100.lib.trajectory.timing;
 
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.trajectory.path.PathArrays;
 
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
@@ -62,18 +63,43 @@ public class TorqueConstraint implements TimingConstraint {
         return -getA(state);
     }
 
+    @Override
+    public double maxV(PathArrays path, int i) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocityM_S) {
+        return getA(path.x(i), path.y(i), path.courseCos(i), path.courseSin(i));
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return -maxAccel(path, i, velocity);
+    }
+
     private double getA(PathPoint state) {
         WaypointSE2 pose = state.waypoint();
         Rotation2d course = pose.course().toRotation();
         // acceleration unit vector
         Translation2d u = new Translation2d(1.0, course);
         Translation2d r = pose.pose().getTranslation();
-        double cross = r.getX() * u.getY() - r.getY() * u.getX();
-        double a = Math.abs(m_maxTorque / (M * cross));
+        double a = getA(r.getX(), r.getY(), u.getX(), u.getY());
         if (DEBUG) {
             System.out.printf("Torque Constraint a: %6.3f p: %s r: %6.3f course: %6.3f\n",
                     a, pose, r.getNorm(), course.getRadians());
         }
         return a;
     }
+
+    /**
+     * @param rx position
+     * @param ry position
+     * @param ux acceleration unit vector
+     * @param uy acceleration unit vector
+     */
+    private double getA(double rx, double ry, double ux, double uy) {
+        double cross = rx * uy - ry * ux;
+        return Math.abs(m_maxTorque / (M * cross));
+    }
 }
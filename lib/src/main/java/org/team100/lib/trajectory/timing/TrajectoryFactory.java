@@ -1,11 +1,19 @@
 package org.team100.lib.trajectory.timing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.trajectory.Trajectory100;
 import org.team100.lib.trajectory.path.Path100;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.util.Math100;
 
 /**
@@ -19,8 +27,19 @@ public class TrajectoryFactory {
     /** Defaults to make the constraints set the actual. */
     private static final double HIGH_V = 100;
     private static final double HIGH_ACCEL = 1000;
+    /** Paths at least this long evaluate the velocity constraints in parallel. */
+    private static final int PARALLEL_SAMPLES = 1000;
+    /**
+     * Low-priority workers for the parallel evaluation, leaving one core for
+     * the main loop, or null if that leaves less than two, e.g. on the RoboRIO,
+     * where it's sequential. This isn't the common pool, since other things
+     * use that.
+     */
+    private static final ForkJoinPool POOL = pool();
 
     private final List<TimingConstraint> m_constraints;
+    /** Set while planning with a snapshot taken on another thread. */
+    private final ThreadLocal<TimingConstraint[]> m_frozen = new ThreadLocal<>();
 
     public TrajectoryFactory(List<TimingConstraint> constraints) {
         m_constraints = constraints;
@@ -34,6 +53,54 @@ public class TrajectoryFactory {
         return fromSamples(samples, start_vel, end_vel);
     }
 
+    /**
+     * Same as fromPath(), but the constraints read the primitive arrays, so the
+     * only PathPoints made are the ones in the result.
+     */
+    public Trajectory100 fromArrays(PathArrays path, double start_vel, double end_vel) {
+        int n = path.length();
+        double[] distances = new double[n];
+        for (int i = 0; i < n; ++i) {
+            distances[i] = path.distance(i);
+        }
+        double[] velocities = velocities(new ArrayLimits(snapshot(), path), start_vel, end_vel, distances);
+        return trajectory(path.points(), distances, velocities);
+    }
+
+    /**
+     * Times a path that shares its tail with the previous trajectory, i.e. the
+     * same PathPoint instances, starting at the specified velocity.
+     * 
+     * The forward pass stops where it meets the previous velocity profile in the
+     * shared tail, and the rest of the previous profile is kept, so the backward
+     * pass covers only the part in front of that. The result is feasible, and
+     * the same as fromPath() unless the previous tail was acceleration-limited,
+     * in which case it's a little slower.
+     */
+    public Trajectory100 replan(Path100 path, double start_vel, Trajectory100 previous) {
+        PathPoint[] samples = getSamples(path);
+        int n = samples.length;
+        double[] distances = distances(samples);
+        // previous velocities of the shared tail, NaN elsewhere.
+        double[] previousV = new double[n];
+        Arrays.fill(previousV, Double.NaN);
+        for (int i = n - 1, j = previous.length() - 1; i >= 0 && j >= 0; --i, --j) {
+            TimedState p = previous.getPoint(j);
+            if (p.point() != samples[i])
+                break;
+            previousV[i] = p.velocityM_S();
+        }
+        Limits limits = new PointLimits(snapshot(), samples);
+        double velocities[] = new double[n];
+        int merge = forward(limits, start_vel, distances, velocities, previousV);
+        if (merge == n - 1)
+            velocities[n - 1] = previous.getLastPoint().velocityM_S();
+        backward(limits, merge, distances, velocities);
+        if (DEBUG)
+            System.out.printf("replan merged at %d of %d\n", merge, n);
+        return trajectory(samples, distances, velocities);
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////
     ///
     ///
@@ -55,7 +122,11 @@ public class TrajectoryFactory {
             double start_vel,
             double end_vel) {
         double[] distances = distances(samples);
-        double[] velocities = velocities(samples, start_vel, end_vel, distances);
+        double[] velocities = velocities(new PointLimits(snapshot(), samples), start_vel, end_vel, distances);
+        return trajectory(samples, distances, velocities);
+    }
+
+    private Trajectory100 trajectory(PathPoint[] samples, double[] distances, double[] velocities) {
         double[] accels = accels(distances, velocities);
         double[] runningTime = runningTime(distances, velocities, accels);
         List<TimedState> timedStates = timedStates(samples, velocities, accels, runningTime);
@@ -110,13 +181,19 @@ public class TrajectoryFactory {
 
     /**
      * Assigns a velocity to each sample, using velocity, accel, and decel
-     * constraints.
+     * constraints. Subclasses can supply a different scheduler, and so can the
+     * ToppraTiming experiment.
      */
-    private double[] velocities(
-            PathPoint[] samples, double start_vel, double end_vel, double[] distances) {
-        double velocities[] = new double[samples.length];
-        forward(samples, start_vel, distances, velocities);
-        backward(samples, end_vel, distances, velocities);
+    double[] velocities(
+            Limits samples, double start_vel, double end_vel, double[] distances) {
+        if (Experiments.instance.enabled(Experiment.ToppraTiming))
+            return ToppraTrajectoryFactory.reachability(samples, start_vel, end_vel, distances);
+        int n = distances.length;
+        double velocities[] = new double[n];
+        samples.precompute();
+        forward(samples, start_vel, distances, velocities, null);
+        velocities[n - 1] = end_vel;
+        backward(samples, n - 1, distances, velocities);
         if (start_vel > velocities[0]) {
             System.out.printf("WARNING: start velocity %f is higher than constrained velocity %f\n",
                     start_vel, velocities[0]);
@@ -127,10 +204,19 @@ public class TrajectoryFactory {
     /**
      * Computes velocities[i+1] using velocity and acceleration constraints
      * referencing the state at i.
+     * 
+     * If the previous velocities are supplied (NaN where unknown), stops where
+     * the forward velocity reaches them, and copies the rest.
+     * 
+     * @return the index of the last velocity the backward pass should trust
      */
-    private void forward(
-            PathPoint[] samples, double start_vel, double[] distances, double[] velocities) {
-        int n = samples.length;
+    private int forward(
+            Limits samples,
+            double start_vel,
+            double[] distances,
+            double[] velocities,
+            double[] previous) {
+        int n = distances.length;
         velocities[0] = start_vel;
         for (int i = 0; i < n - 1; ++i) {
             if (DEBUG)
@@ -143,15 +229,20 @@ public class TrajectoryFactory {
                 velocities[i + 1] = velocities[i];
                 break;
             }
+            if (previous != null && velocities[i] >= previous[i] - EPSILON) {
+                // from here on, the forward pass can't go any slower than last time.
+                System.arraycopy(previous, i, velocities, i, n - i);
+                return i;
+            }
             // velocity constraint depends only on state
-            double maxVelocity = maxVelocity(samples[i + 1]);
+            double maxVelocity = samples.maxVelocity(i + 1);
             if (DEBUG)
                 System.out.printf("maxV i %d %f\n", i + 1, maxVelocity);
             // start with the maximum velocity
             velocities[i + 1] = maxVelocity;
             // reduce velocity to fit under the acceleration constraint
             double impliedAccel = Math100.accel(velocities[i], velocities[i + 1], arclength);
-            double maxAccel = maxAccel(samples[i], velocities[i]);
+            double maxAccel = samples.maxAccel(i, velocities[i]);
             if (impliedAccel > maxAccel/* + EPSILON */) {
                 velocities[i + 1] = Math100.v1(velocities[i], maxAccel, arclength);
                 if (DEBUG)
@@ -161,6 +252,7 @@ public class TrajectoryFactory {
                 System.out.printf("FWD i %d vi %f vi+1 %f maxA %f impliedA %f\n",
                         i, velocities[i], velocities[i + 1], maxAccel, impliedAccel);
         }
+        return n - 1;
     }
 
     /**
@@ -170,12 +262,12 @@ public class TrajectoryFactory {
      * but walking backwards through the path, only i+1 is available, and the
      * samples should be enough close together, and the velocity should change
      * smoothly smooth enough so it shouldn't matter much in practice.
+     * 
+     * @param last start here, with velocities[last] already set.
      */
     private void backward(
-            PathPoint[] samples, double end_vel, double[] distances, double[] velocities) {
-        int n = samples.length;
-        velocities[n - 1] = end_vel;
-        for (int i = n - 2; i >= 0; --i) {
+            Limits samples, int last, double[] distances, double[] velocities) {
+        for (int i = last - 1; i >= 0; --i) {
             if (DEBUG)
                 System.out.printf("BACK i %d\n", i);
             double arclength = distances[i + 1] - distances[i];
@@ -184,13 +276,13 @@ public class TrajectoryFactory {
                 break;
             }
 
-            double maxVelocity = maxVelocity(samples[i]);
+            double maxVelocity = samples.maxVelocity(i);
             if (DEBUG)
                 System.out.printf("maxV i %d %f\n", i, maxVelocity);
 
             double impliedAccel = Math100.accel(velocities[i], velocities[i + 1], arclength);
             // Apply the decel constraint at the end of the segment since it is feasible.
-            double maxDecel = maxDecel(samples[i], velocities[i + 1]);
+            double maxDecel = samples.maxDecel(i, velocities[i + 1]);
             if (impliedAccel < maxDecel/* - EPSILON */) {
                 velocities[i] = Math100.v0(velocities[i + 1], maxDecel, arclength);
                 if (DEBUG)
@@ -222,39 +314,181 @@ public class TrajectoryFactory {
     }
 
     /**
-     * Returns the lowest (i.e. closest to zero) velocity constraint from the list
-     * of constraints. Always positive or zero.
+     * Constraints with their tunables fixed for one plan. Within
+     * withSnapshot(), this is the supplied snapshot.
      */
-    private double maxVelocity(PathPoint sample) {
-        double minVelocity = HIGH_V;
-        for (TimingConstraint constraint : m_constraints) {
-            minVelocity = Math.min(minVelocity, constraint.maxV(sample));
+    public TimingConstraint[] snapshot() {
+        TimingConstraint[] frozen = m_frozen.get();
+        if (frozen != null)
+            return frozen;
+        TimingConstraint[] result = new TimingConstraint[m_constraints.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = m_constraints.get(i).snapshot();
         }
-        return minVelocity;
+        return result;
     }
 
     /**
-     * Returns the lowest (i.e. closest to zero) acceleration constraint from the
-     * list of constraints. Always positive or zero.
+     * Runs fn, which plans with this factory, using the supplied snapshot
+     * instead of the current constraints. This is for planning on a worker
+     * thread with a snapshot taken on the main thread, so the worker doesn't
+     * read the tunables.
      */
-    private double maxAccel(PathPoint sample, double velocity) {
-        double minAccel = HIGH_ACCEL;
-        for (TimingConstraint constraint : m_constraints) {
-            minAccel = Math.min(minAccel, constraint.maxAccel(sample, velocity));
+    public <T> T withSnapshot(TimingConstraint[] snapshot, Supplier<T> fn) {
+        m_frozen.set(snapshot);
+        try {
+            return fn.get();
+        } finally {
+            m_frozen.remove();
         }
-        return minAccel;
     }
 
     /**
-     * Returns the highest (i.e. closest to zero) deceleration constraint from the
-     * list of constraints. Always negative or zero.
+     * The constraints at each sample, whatever the representation.
+     * 
+     * The velocity constraint depends only on the sample, so it's computed once
+     * per sample, not once per pass, and precompute() does all of them at once,
+     * in parallel for long paths, if there's a pool.
      */
-    private double maxDecel(PathPoint sample, double velocity) {
-        double maxDecel = -HIGH_ACCEL;
-        for (TimingConstraint constraint : m_constraints) {
-            maxDecel = Math.max(maxDecel, constraint.maxDecel(sample, velocity));
+    abstract static class Limits {
+        final TimingConstraint[] m_constraints;
+        private final double[] m_maxV;
+
+        Limits(TimingConstraint[] constraints, int n) {
+            m_constraints = constraints;
+            m_maxV = new double[n];
+            Arrays.fill(m_maxV, Double.NaN);
+        }
+
+        int length() {
+            return m_maxV.length;
+        }
+
+        /** Computes all the velocity constraints. */
+        void precompute() {
+            int n = m_maxV.length;
+            if (n < PARALLEL_SAMPLES || POOL == null) {
+                for (int i = 0; i < n; ++i) {
+                    m_maxV[i] = computeMaxV(i);
+                }
+                return;
+            }
+            // a parallel stream started within the pool runs in the pool.
+            POOL.submit(() -> IntStream.range(0, n).parallel().forEach(i -> m_maxV[i] = computeMaxV(i)))
+                    .join();
+        }
+
+        /**
+         * Returns the lowest (i.e. closest to zero) velocity constraint from the
+         * list of constraints. Always positive or zero.
+         */
+        double maxVelocity(int i) {
+            double maxV = m_maxV[i];
+            if (Double.isNaN(maxV)) {
+                maxV = computeMaxV(i);
+                m_maxV[i] = maxV;
+            }
+            return maxV;
+        }
+
+        abstract double computeMaxV(int i);
+
+        /**
+         * Returns the lowest (i.e. closest to zero) acceleration constraint from the
+         * list of constraints. Always positive or zero.
+         */
+        abstract double maxAccel(int i, double velocity);
+
+        /**
+         * Returns the highest (i.e. closest to zero) deceleration constraint from
+         * the list of constraints. Always negative or zero.
+         */
+        abstract double maxDecel(int i, double velocity);
+    }
+
+    private static class PointLimits extends Limits {
+        private final PathPoint[] m_samples;
+
+        PointLimits(TimingConstraint[] constraints, PathPoint[] samples) {
+            super(constraints, samples.length);
+            m_samples = samples;
+        }
+
+        @Override
+        double computeMaxV(int i) {
+            double minVelocity = HIGH_V;
+            for (TimingConstraint constraint : m_constraints) {
+                minVelocity = Math.min(minVelocity, constraint.maxV(m_samples[i]));
+            }
+            return minVelocity;
+        }
+
+        @Override
+        double maxAccel(int i, double velocity) {
+            double minAccel = HIGH_ACCEL;
+            for (TimingConstraint constraint : m_constraints) {
+                minAccel = Math.min(minAccel, constraint.maxAccel(m_samples[i], velocity));
+            }
+            return minAccel;
         }
-        return maxDecel;
+
+        @Override
+        double maxDecel(int i, double velocity) {
+            double maxDecel = -HIGH_ACCEL;
+            for (TimingConstraint constraint : m_constraints) {
+                maxDecel = Math.max(maxDecel, constraint.maxDecel(m_samples[i], velocity));
+            }
+            return maxDecel;
+        }
+    }
+
+    private static class ArrayLimits extends Limits {
+        private final PathArrays m_path;
+
+        ArrayLimits(TimingConstraint[] constraints, PathArrays path) {
+            super(constraints, path.length());
+            m_path = path;
+        }
+
+        @Override
+        double computeMaxV(int i) {
+            double minVelocity = HIGH_V;
+            for (TimingConstraint constraint : m_constraints) {
+                minVelocity = Math.min(minVelocity, constraint.maxV(m_path, i));
+            }
+            return minVelocity;
+        }
+
+        @Override
+        double maxAccel(int i, double velocity) {
+            double minAccel = HIGH_ACCEL;
+            for (TimingConstraint constraint : m_constraints) {
+                minAccel = Math.min(minAccel, constraint.maxAccel(m_path, i, velocity));
+            }
+            return minAccel;
+        }
+
+        @Override
+        double maxDecel(int i, double velocity) {
+            double maxDecel = -HIGH_ACCEL;
+            for (TimingConstraint constraint : m_constraints) {
+                maxDecel = Math.max(maxDecel, constraint.maxDecel(m_path, i, velocity));
+            }
+            return maxDecel;
+        }
+    }
+
+    private static ForkJoinPool pool() {
+        int n = Runtime.getRuntime().availableProcessors() - 1;
+        if (n < 2)
+            return null;
+        return new ForkJoinPool(n, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("TrajectoryFactory-" + t.getPoolIndex());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }, null, false);
     }
 
     private static double dt(
@@ -1,6 +1,7 @@
 package org.team100.lib.trajectory.timing;
 
 import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.trajectory.path.PathArrays;
 
 import edu.wpi.first.math.geometry.Translation2d;
 
@@ -26,8 +27,27 @@ public class VelocityLimitRegionConstraint implements TimingConstraint {
     @Override
     public double maxV(PathPoint state) {
         final Translation2d translation = state.waypoint().pose().getTranslation();
-        if (translation.getX() <= m_max.getX() && translation.getX() >= m_min.getX() &&
-                translation.getY() <= m_max.getY() && translation.getY() >= m_min.getY()) {
+        return maxV(translation.getX(), translation.getY());
+    }
+
+    @Override
+    public double maxV(PathArrays path, int i) {
+        return maxV(path.x(i), path.y(i));
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocity) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    private double maxV(double x, double y) {
+        if (x <= m_max.getX() && x >= m_min.getX() &&
+                y <= m_max.getY() && y >= m_min.getY()) {
             return m_limit;
         }
         return Double.POSITIVE_INFINITY;
@@ -1,8 +1,11 @@
 package org.team100.lib.trajectory.timing;
 
+import java.util.function.DoubleSupplier;
+
 import org.team100.lib.geometry.PathPoint;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.trajectory.path.PathArrays;
 import org.team100.lib.tuning.Mutable;
 
 /**
@@ -14,8 +17,8 @@ import org.team100.lib.tuning.Mutable;
  * Does not affect maximum acceleration.
  */
 public class YawRateConstraint implements TimingConstraint {
-    private final Mutable m_maxOmegaRad_S;
-    private final Mutable m_maxAlphaRad_S2;
+    private final DoubleSupplier m_maxOmegaRad_S;
+    private final DoubleSupplier m_maxAlphaRad_S2;
 
     public YawRateConstraint(LoggerFactory parent, double maxOmega, double maxAlpha) {
         LoggerFactory log = parent.type(this);
@@ -23,6 +26,11 @@ public class YawRateConstraint implements TimingConstraint {
         m_maxAlphaRad_S2 = new Mutable(log, "maxAlpha", maxAlpha);
     }
 
+    private YawRateConstraint(DoubleSupplier maxOmega, DoubleSupplier maxAlpha) {
+        m_maxOmegaRad_S = maxOmega;
+        m_maxAlphaRad_S2 = maxAlpha;
+    }
+
     /**
      * Use the factory.
      * 
@@ -36,30 +44,54 @@ public class YawRateConstraint implements TimingConstraint {
         this(log, limits.getMaxAngleSpeedRad_S() * scale, limits.getMaxAngleAccelRad_S2() * scale);
     }
 
+    @Override
+    public TimingConstraint snapshot() {
+        double maxOmega = m_maxOmegaRad_S.getAsDouble();
+        double maxAlpha = m_maxAlphaRad_S2.getAsDouble();
+        return new YawRateConstraint(() -> maxOmega, () -> maxAlpha);
+    }
+
     @Override
     public double maxV(PathPoint state) {
-        // Heading rate in rad/m
-        double heading_rate = state.getHeadingRateRad_M();
-        // rad/s / rad/m => m/s.
-        return m_maxOmegaRad_S.getAsDouble() / Math.abs(heading_rate);
+        return maxV(state.getHeadingRateRad_M());
     }
 
     @Override
     public double maxAccel(PathPoint state, double velocity) {
-        // TODO: this is wrong
-        // Heading rate in rad/m
-        double heading_rate = state.getHeadingRateRad_M();
-        // rad/s^2 / rad/m => m/s^2
-        return m_maxAlphaRad_S2.getAsDouble() / Math.abs(heading_rate);
+        return maxAccel(state.getHeadingRateRad_M());
     }
 
     @Override
     public double maxDecel(PathPoint state, double velocity) {
+        return -maxAccel(state.getHeadingRateRad_M());
+    }
+
+    @Override
+    public double maxV(PathArrays path, int i) {
+        return maxV(path.headingRate(i));
+    }
+
+    @Override
+    public double maxAccel(PathArrays path, int i, double velocity) {
+        return maxAccel(path.headingRate(i));
+    }
+
+    @Override
+    public double maxDecel(PathArrays path, int i, double velocity) {
+        return -maxAccel(path.headingRate(i));
+    }
+
+    /** @param heading_rate rad/m */
+    private double maxV(double heading_rate) {
+        // rad/s / rad/m => m/s.
+        return m_maxOmegaRad_S.getAsDouble() / Math.abs(heading_rate);
+    }
+
+    /** @param heading_rate rad/m */
+    private double maxAccel(double heading_rate) {
         // TODO: this is wrong
-        // Heading rate in rad/m
-        double heading_rate = state.getHeadingRateRad_M();
         // rad/s^2 / rad/m => m/s^2
-        return -(m_maxAlphaRad_S2.getAsDouble() / Math.abs(heading_rate));
+        return m_maxAlphaRad_S2.getAsDouble() / Math.abs(heading_rate);
     }
 
 }
\ No newline at end of file
@@ -23,6 +23,8 @@ import edu.wpi.first.networktables.NetworkTableInstance;
 public class Mutable implements DoubleSupplier {
     private static final boolean FATAL = false;
     private static final Map<String, DoubleEntry> ALL_ENTRIES = new HashMap<>();
+    /** Counts changes to any Mutable. */
+    private static volatile int generation = 0;
     private final DoubleEntry m_entry;
     private final DoubleConsumer m_onChange;
     private final DoubleCache m_cache;
@@ -35,7 +37,8 @@ public class Mutable implements DoubleSupplier {
         String name = log.root(leaf);
         m_entry = getEntry(inst, name, defaultValue);
         m_onChange = onChange;
-        m_cache = Cache.ofDouble(this::update);
+        // the callback runs on the main thread, even inside a cache group.
+        m_cache = Cache.inGroup(null, () -> Cache.ofDouble(this::update));
     }
 
     private static DoubleEntry getEntry(NetworkTableInstance inst, String name, double defaultValue) {
@@ -66,6 +69,14 @@ public class Mutable implements DoubleSupplier {
         ALL_ENTRIES.clear();
     }
 
+    /**
+     * Changes whenever any Mutable changes, for things that depend on many of
+     * them, e.g. memoized trajectories, and would rather check than subscribe.
+     */
+    public static int generation() {
+        return generation;
+    }
+
     /** if you don't care to subscribe to changes */
     public Mutable(LoggerFactory log, String leaf, double defaultValue) {
         this(log, leaf, defaultValue, (x) -> {
@@ -82,8 +93,11 @@ public class Mutable implements DoubleSupplier {
     private double update() {
         double[] queue = m_entry.readQueueValues();
         double val = m_entry.get();
-        if (queue.length > 0)
+        if (queue.length > 0) {
+            // only the main thread writes this.
+            generation++;
             m_onChange.accept(val);
+        }
         return val;
     }
 
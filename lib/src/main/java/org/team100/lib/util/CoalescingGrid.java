@@ -0,0 +1,277 @@
+package org.team100.lib.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.team100.lib.geometry.NearR2;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Like CoalescingCollection of Translation2d with a TrailingHistory, but
+ * without scanning everything on every write.
+ *
+ * The entries are in a uniform grid, with cells the size of the NearR2
+ * threshold, so the neighbors of a new entry are all in the 3x3 cells around
+ * it. The grid is a hash table of cells, so it covers any area. The entries
+ * are also in time buckets, each a fraction of the timeout, and expiry drops
+ * whole buckets. So insert, merge, and expiry are all O(1) expected.
+ *
+ * Merging works the same as CoalescingCollection: the new entry, and all the
+ * entries near it, are replaced by their combination, at the new time. A new
+ * entry with no neighbors is kept as is.
+ *
+ * Expiry is relative to the newest time written, never early, and at most one
+ * bucket late. A write older than the timeout is ignored.
+ *
+ * getAll() returns the same immutable snapshot until the next change.
+ *
+ * Not thread-safe.
+ */
+public class CoalescingGrid {
+    /** Time buckets per timeout. */
+    private static final int BUCKETS = 8;
+    private static final int INITIAL_TABLE = 64;
+
+    private static final class Entry {
+        Translation2d value;
+        long bucket;
+        int slot;
+        /** Cell chain, in the hash table slot. */
+        Entry cellPrev;
+        Entry cellNext;
+        /** Time bucket chain, in insertion order. */
+        Entry timePrev;
+        Entry timeNext;
+    }
+
+    private final double m_timeout;
+    private final NearR2 m_near;
+    private final double m_cellSize;
+    private final Function<Collection<Translation2d>, Translation2d> m_combine;
+    private final double m_bucketWidth;
+
+    /** Hash table of grid cells; entries from different cells may share a slot. */
+    private Entry[] m_table = new Entry[INITIAL_TABLE];
+    /** Ring of time buckets, head and tail of each. */
+    private final Entry[] m_bucketHead = new Entry[BUCKETS + 2];
+    private final Entry[] m_bucketTail = new Entry[BUCKETS + 2];
+    /** Oldest bucket that might have entries. */
+    private long m_oldestBucket;
+    private double m_newestTime = Double.NEGATIVE_INFINITY;
+
+    /** Recycled entries. */
+    private Entry m_free;
+    /** For combine(), reused. */
+    private final List<Translation2d> m_neighbors = new ArrayList<>();
+    private int m_size;
+
+    private List<Translation2d> m_snapshot = List.of();
+    private boolean m_dirty;
+
+    /**
+     * @param timeout in seconds
+     * @param near    entries nearer than its threshold are combined
+     * @param combine makes one entry from several
+     */
+    public CoalescingGrid(
+            double timeout,
+            NearR2 near,
+            Function<Collection<Translation2d>, Translation2d> combine) {
+        m_timeout = timeout;
+        m_near = near;
+        m_cellSize = near.threshold();
+        m_combine = combine;
+        m_bucketWidth = timeout / BUCKETS;
+    }
+
+    public void add(double time, Translation2d value) {
+        cleanup(time);
+        if (time < m_newestTime - m_timeout)
+            return;
+        m_neighbors.clear();
+        m_neighbors.add(value);
+        long cx = cell(value.getX());
+        long cy = cell(value.getY());
+        for (long i = cx - 1; i <= cx + 1; ++i) {
+            for (long j = cy - 1; j <= cy + 1; ++j) {
+                collect(i, j, value);
+            }
+        }
+        insert(time, m_neighbors.size() == 1 ? value : m_combine.apply(m_neighbors));
+        m_neighbors.clear();
+    }
+
+    public void addAll(double time, Collection<Translation2d> values) {
+        for (Translation2d v : values) {
+            add(time, v);
+        }
+    }
+
+    /** Immutable, and the same list until the next change. */
+    public List<Translation2d> getAll() {
+        if (m_dirty) {
+            List<Translation2d> all = new ArrayList<>(m_size);
+            for (long b = m_oldestBucket; b <= bucket(m_newestTime); ++b) {
+                for (Entry e = m_bucketHead[ring(b)]; e != null; e = e.timeNext) {
+                    all.add(e.value);
+                }
+            }
+            m_snapshot = Collections.unmodifiableList(all);
+            m_dirty = false;
+        }
+        return m_snapshot;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    /** Remove stale entries, if the time is newer than any written. */
+    public void cleanup(double time) {
+        if (time <= m_newestTime)
+            return;
+        if (m_size == 0) {
+            m_oldestBucket = bucket(time);
+        }
+        m_newestTime = time;
+        // a bucket is stale when its end is before the horizon.
+        long newestStale = bucket(time - m_timeout) - 1;
+        // after a long gap, every bucket in the ring is stale, but only once.
+        long last = Math.min(newestStale, m_oldestBucket + m_bucketHead.length - 1);
+        for (long b = m_oldestBucket; b <= last; ++b) {
+            int r = ring(b);
+            Entry e = m_bucketHead[r];
+            while (e != null) {
+                Entry next = e.timeNext;
+                unlinkCell(e);
+                release(e);
+                e = next;
+            }
+            m_bucketHead[r] = null;
+            m_bucketTail[r] = null;
+        }
+        m_oldestBucket = Math.max(m_oldestBucket, newestStale + 1);
+    }
+
+    //////////////////////////////////////////////
+
+    /** Move the entries in the cell near the value to the neighbor list. */
+    private void collect(long cx, long cy, Translation2d value) {
+        Entry e = m_table[slot(cx, cy)];
+        while (e != null) {
+            Entry next = e.cellNext;
+            if (m_near.test(e.value, value)) {
+                m_neighbors.add(e.value);
+                remove(e);
+            }
+            e = next;
+        }
+    }
+
+    private void insert(double time, Translation2d value) {
+        if (m_size >= m_table.length)
+            grow();
+        Entry e = m_free;
+        if (e == null) {
+            e = new Entry();
+        } else {
+            m_free = e.cellNext;
+        }
+        e.value = value;
+        e.bucket = bucket(time);
+        e.slot = slot(cell(value.getX()), cell(value.getY()));
+        linkCell(e);
+        // time bucket, at the tail
+        int r = ring(e.bucket);
+        e.timePrev = m_bucketTail[r];
+        e.timeNext = null;
+        if (m_bucketTail[r] == null)
+            m_bucketHead[r] = e;
+        else
+            m_bucketTail[r].timeNext = e;
+        m_bucketTail[r] = e;
+        m_oldestBucket = Math.min(m_oldestBucket, e.bucket);
+        m_size++;
+        m_dirty = true;
+    }
+
+    private void remove(Entry e) {
+        unlinkCell(e);
+        int r = ring(e.bucket);
+        if (e.timePrev == null)
+            m_bucketHead[r] = e.timeNext;
+        else
+            e.timePrev.timeNext = e.timeNext;
+        if (e.timeNext == null)
+            m_bucketTail[r] = e.timePrev;
+        else
+            e.timeNext.timePrev = e.timePrev;
+        release(e);
+    }
+
+    private void linkCell(Entry e) {
+        Entry head = m_table[e.slot];
+        e.cellPrev = null;
+        e.cellNext = head;
+        if (head != null)
+            head.cellPrev = e;
+        m_table[e.slot] = e;
+    }
+
+    private void unlinkCell(Entry e) {
+        if (e.cellPrev == null)
+            m_table[e.slot] = e.cellNext;
+        else
+            e.cellPrev.cellNext = e.cellNext;
+        if (e.cellNext != null)
+            e.cellNext.cellPrev = e.cellPrev;
+    }
+
+    /** Recycle the entry; it must already be unlinked. */
+    private void release(Entry e) {
+        e.value = null;
+        e.cellPrev = null;
+        e.timePrev = null;
+        e.timeNext = null;
+        e.cellNext = m_free;
+        m_free = e;
+        m_size--;
+        m_dirty = true;
+    }
+
+    /** Double the table, keeping the load factor at most one. */
+    private void grow() {
+        Entry[] old = m_table;
+        m_table = new Entry[2 * old.length];
+        for (Entry head : old) {
+            Entry e = head;
+            while (e != null) {
+                Entry next = e.cellNext;
+                e.slot = slot(cell(e.value.getX()), cell(e.value.getY()));
+                linkCell(e);
+                e = next;
+            }
+        }
+    }
+
+    private long cell(double x) {
+        return (long) Math.floor(x / m_cellSize);
+    }
+
+    private int slot(long cx, long cy) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32)) & (m_table.length - 1);
+    }
+
+    private long bucket(double time) {
+        return (long) Math.floor(time / m_bucketWidth);
+    }
+
+    private int ring(long bucket) {
+        return (int) Math.floorMod(bucket, (long) m_bucketHead.length);
+    }
+}
@@ -0,0 +1,282 @@
+package org.team100.lib.util;
+
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.Map.Entry;
+
+import edu.wpi.first.math.interpolation.Interpolatable;
+
+/**
+ * Same idea as TimeInterpolatableBuffer100, but using a fixed-capacity sorted
+ * ring buffer, with the timestamps in a primitive array, instead of a skip
+ * list. There's no boxing, no node allocation on put(), and no lock on get().
+ *
+ * The usual case is appending the newest sample, which is O(1). Inserting in
+ * the middle (e.g. a vision update) shifts the newer samples, which is cheap
+ * because the buffer is small. Lookups are binary searches.
+ *
+ * There must be only one writer (i.e. the main loop). Readers of get() may be
+ * on other threads: they use a "seqlock," i.e. they retry if a write happened
+ * while they were reading. The index-based methods are for the writer thread
+ * only.
+ *
+ * If the buffer is full, the oldest sample is evicted, even if it's younger
+ * than the history limit, so choose a capacity that covers the history at the
+ * highest sample rate.
+ *
+ * Like TimeInterpolatableBuffer100, the buffer is never empty.
+ */
+public class TimeInterpolatableRingBuffer100<T extends Interpolatable<T>> {
+    private static final boolean DEBUG = false;
+
+    private final double m_historyS;
+    private final int m_mask;
+    private final double[] m_times;
+    private final Object[] m_values;
+    /** Physical index of the oldest sample. */
+    private int m_head;
+    private int m_size;
+    /** Odd while a write is in progress. */
+    private volatile int m_seq;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public TimeInterpolatableRingBuffer100(int capacity, double historyS, double timeS, T initialValue) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("capacity must be at least two");
+        int c = Integer.highestOneBit(capacity - 1) << 1;
+        m_historyS = historyS;
+        m_mask = c - 1;
+        m_times = new double[c];
+        m_values = new Object[c];
+        m_head = 0;
+        m_size = 1;
+        m_times[0] = timeS;
+        m_values[0] = initialValue;
+    }
+
+    /**
+     * Remove stale entries and add the new one. An entry with the same timestamp
+     * is replaced.
+     */
+    public void put(double timeS, T value) {
+        if (DEBUG) {
+            System.out.printf("put %f %s\n", timeS, value);
+        }
+        beginWrite();
+        try {
+            // evict stale entries, relative to the new one.
+            while (m_size > 0 && timeS - m_times[m_head] >= m_historyS) {
+                evictOldest();
+            }
+            int idx = ceilingIndex(timeS);
+            if (idx < m_size && m_times[phys(idx)] == timeS) {
+                m_values[phys(idx)] = value;
+                return;
+            }
+            if (m_size == m_times.length) {
+                if (idx == 0) {
+                    // older than everything in a full buffer, so useless.
+                    return;
+                }
+                evictOldest();
+                idx--;
+            }
+            // shift newer entries to make room; usually there aren't any.
+            for (int j = m_size; j > idx; --j) {
+                m_times[phys(j)] = m_times[phys(j - 1)];
+                m_values[phys(j)] = m_values[phys(j - 1)];
+            }
+            m_times[phys(idx)] = timeS;
+            m_values[phys(idx)] = value;
+            m_size++;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Remove all entries and add the new one.
+     */
+    public void reset(double timeS, T value) {
+        if (DEBUG) {
+            System.out.printf("reset %f %s\n", timeS, value);
+        }
+        beginWrite();
+        try {
+            for (int i = 0; i < m_values.length; ++i) {
+                m_values[i] = null;
+            }
+            m_head = 0;
+            m_size = 1;
+            m_times[0] = timeS;
+            m_values[0] = value;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Sample the buffer at the given time. Safe to call from any thread.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(double timeSeconds) {
+        double bottomTime;
+        double topTime;
+        T bottom;
+        T top;
+        while (true) {
+            int seq = m_seq;
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int size = m_size;
+            int idx = ceilingIndex(timeSeconds);
+            if (idx >= size) {
+                // off the end, use the newest.
+                bottomTime = m_times[phys(size - 1)];
+                bottom = (T) m_values[phys(size - 1)];
+                top = null;
+                topTime = 0;
+            } else if (idx == 0 || m_times[phys(idx)] == timeSeconds) {
+                // before the beginning, or exact.
+                top = (T) m_values[phys(idx)];
+                topTime = m_times[phys(idx)];
+                bottom = null;
+                bottomTime = 0;
+            } else {
+                bottom = (T) m_values[phys(idx - 1)];
+                bottomTime = m_times[phys(idx - 1)];
+                top = (T) m_values[phys(idx)];
+                topTime = m_times[phys(idx)];
+            }
+            // make sure the reads above happen before the check
+            VarHandle.acquireFence();
+            if (m_seq == seq && (top != null || bottom != null))
+                break;
+        }
+        if (top == null)
+            return bottom;
+        if (bottom == null)
+            return top;
+        double timeFraction = (timeSeconds - bottomTime) / (topTime - bottomTime);
+        if (DEBUG) {
+            System.out.printf("interpolate %f\n", timeFraction);
+        }
+        return bottom.interpolate(top, timeFraction);
+    }
+
+    /** True if the timestamp is older than the history window. */
+    public boolean tooOld(double timestampS) {
+        double oldestAcceptableS = lastKey() - m_historyS;
+        return timestampS < oldestAcceptableS;
+    }
+
+    /**
+     * The entry strictly before the given time, or null if there isn't one. This
+     * allocates; prefer lowerIndex().
+     */
+    public Entry<Double, T> lowerEntry(double t) {
+        int i = lowerIndex(t);
+        if (i < 0)
+            return null;
+        return new AbstractMap.SimpleImmutableEntry<>(timeAt(i), valueAt(i));
+    }
+
+    /**
+     * Index of the newest entry strictly before the given time, or -1 if there
+     * isn't one. Writer thread only; the index is valid until the next write.
+     */
+    public int lowerIndex(double t) {
+        return ceilingIndex(t) - 1;
+    }
+
+    /**
+     * Index of the oldest entry strictly after the given time, or -1 if there
+     * isn't one. Writer thread only; the index is valid until the next write.
+     *
+     * To walk the tail of the buffer while modifying it (e.g. for replay), use
+     * the time of each entry to find the next one, since writes can move things
+     * around.
+     */
+    public int higherIndex(double t) {
+        int idx = ceilingIndex(t);
+        if (idx < m_size && m_times[phys(idx)] == t)
+            idx++;
+        if (idx >= m_size)
+            return -1;
+        return idx;
+    }
+
+    /**
+     * Replace the value of the entry at the index, keeping its time, without the
+     * search in put(). Writer thread only.
+     */
+    public void setAt(int index, T value) {
+        beginWrite();
+        try {
+            m_values[phys(index)] = value;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /** Timestamp of the entry at the index, oldest is zero. Writer thread only. */
+    public double timeAt(int index) {
+        return m_times[phys(index)];
+    }
+
+    /** Value of the entry at the index, oldest is zero. Writer thread only. */
+    @SuppressWarnings("unchecked")
+    public T valueAt(int index) {
+        return (T) m_values[phys(index)];
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    /** Timestamp of the most-recent snapshot. */
+    public double lastKey() {
+        return m_times[phys(m_size - 1)];
+    }
+
+    ///////////////////////////////////////////////////
+
+    /** Logical index of the first entry at or after the time, or size. */
+    private int ceilingIndex(double t) {
+        int lo = 0;
+        int hi = m_size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_times[phys(mid)] >= t) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private int phys(int logical) {
+        return (m_head + logical) & m_mask;
+    }
+
+    private void evictOldest() {
+        m_values[m_head] = null;
+        m_head = (m_head + 1) & m_mask;
+        m_size--;
+    }
+
+    private void beginWrite() {
+        m_seq++;
+        // keep the writes below from happening before the increment
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        m_seq++;
+    }
+}
@@ -2,9 +2,9 @@ package org.team100.lib.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * A collection that evicts old entries.
@@ -12,6 +12,10 @@ import java.util.stream.Collectors;
  * Note eviction happens at *write* time, to avoid the reader needing to know
  * the timestamp, so if you stop writing to this collection, stale entries will
  * hang around. Use cleanup() to evict old entries on demand.
+ * 
+ * The oldest time is remembered, so cleanup() only scans when there's something
+ * to evict, and getAll() returns the same immutable snapshot until the next
+ * change.
  */
 public class TrailingHistory<T> {
     public record ValueRecord<T>(double time, T value) {
@@ -20,6 +24,10 @@ public class TrailingHistory<T> {
     /** Entry timeout in seconds */
     private final double m_timeout;
     private final List<ValueRecord<T>> m_entries;
+    /** No entry is older than this. */
+    private double m_oldest = Double.POSITIVE_INFINITY;
+    private List<T> m_snapshot = List.of();
+    private boolean m_dirty = false;
 
     /**
      * @param timeout in seconds
@@ -33,25 +41,39 @@ public class TrailingHistory<T> {
     public void add(double time, T value) {
         cleanup(time);
         m_entries.add(new ValueRecord<>(time, value));
+        m_oldest = Math.min(m_oldest, time);
+        m_dirty = true;
     }
 
     /** Remove stale entries and add all the values. */
     public void addAll(double time, Collection<T> values) {
         cleanup(time);
-        m_entries.addAll(
-                values.stream()
-                        .map((x) -> new ValueRecord<>(time, x))
-                        .collect(Collectors.toList()));
+        if (values.isEmpty())
+            return;
+        for (T value : values) {
+            m_entries.add(new ValueRecord<>(time, value));
+        }
+        m_oldest = Math.min(m_oldest, time);
+        m_dirty = true;
     }
 
+    /** Immutable, and the same list until the next change. */
     public List<T> getAll() {
-        return m_entries.stream()
-                .map((x) -> x.value)
-                .collect(Collectors.toUnmodifiableList());
+        if (m_dirty) {
+            List<T> all = new ArrayList<>(m_entries.size());
+            for (ValueRecord<T> r : m_entries) {
+                all.add(r.value);
+            }
+            m_snapshot = Collections.unmodifiableList(all);
+            m_dirty = false;
+        }
+        return m_snapshot;
     }
 
     /** Mutating iterator for filtering. */
     public Iterator<ValueRecord<T>> iterator() {
+        // the caller might remove something.
+        m_dirty = true;
         return m_entries.iterator();
     }
 
@@ -62,7 +84,20 @@ public class TrailingHistory<T> {
     /** Remove stale entries. */
     public void cleanup(double time) {
         double horizon = time - m_timeout;
-        m_entries.removeIf(x -> x.time < horizon);
+        if (m_oldest >= horizon)
+            return;
+        int kept = 0;
+        double oldest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < m_entries.size(); ++i) {
+            ValueRecord<T> r = m_entries.get(i);
+            if (r.time < horizon)
+                continue;
+            m_entries.set(kept++, r);
+            oldest = Math.min(oldest, r.time);
+        }
+        m_entries.subList(kept, m_entries.size()).clear();
+        m_oldest = oldest;
+        m_dirty = true;
     }
 
 }
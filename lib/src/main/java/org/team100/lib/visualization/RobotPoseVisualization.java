@@ -25,14 +25,7 @@ public class RobotPoseVisualization implements Runnable {
 
     @Override
     public void run() {
-        m_log_field_robot.log(this::poseArray);
-    }
-
-    private double[] poseArray() {
         Pose2d pose = m_pose.get();
-        return new double[] {
-                pose.getX(),
-                pose.getY(),
-                pose.getRotation().getDegrees() };
+        m_log_field_robot.log(pose.getX(), pose.getY(), pose.getRotation().getDegrees());
     }
 }
@@ -0,0 +1,247 @@
+package org.team100.lib.coherence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.testing.Timeless;
+import org.team100.lib.tuning.Mutable;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Synthetic-latency harness for the parallel cache refresh: each supplier
+ * blocks for a while, like a slow CAN read, so the refresh time is mostly
+ * waiting, which is what the worker pool is for.
+ */
+class CacheParallelTest implements Timeless {
+    private static final boolean DEBUG = false;
+    /** A slow-ish device read. */
+    private static final long LATENCY_NS = 250000;
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @AfterEach
+    void reset() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, false);
+    }
+
+    /** Everything is refreshed exactly once per cycle, either way. */
+    @Test
+    void testCoherent() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        List<DoubleCache> caches = subsystems(4, 4, 0);
+        for (int cycle = 1; cycle < 4; ++cycle) {
+            stepTime();
+            for (DoubleCache c : caches) {
+                assertEquals(cycle, c.getAsDouble());
+            }
+        }
+    }
+
+    /** Dependencies work across groups, and with ungrouped entries. */
+    @Test
+    void testDependencies() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        List<String> order = new ArrayList<>();
+        DoubleCache a = Cache.inGroup("A", () -> Cache.ofDouble(() -> {
+            synchronized (order) {
+                order.add("a");
+            }
+            return 0;
+        }));
+        DoubleCache b = Cache.inGroup("B", () -> Cache.ofDouble(() -> {
+            synchronized (order) {
+                order.add("b");
+            }
+            return 0;
+        }));
+        // this depends on another group, so it's refreshed after the groups.
+        Cache.inGroup("A", () -> Cache.ofSideEffect(() -> {
+            synchronized (order) {
+                order.add("c");
+            }
+        }).dependsOn(a, b));
+        stepTime();
+        assertEquals(3, order.size());
+        assertEquals("c", order.get(2));
+    }
+
+    @Test
+    void testGroupIsScoped() {
+        DoubleCache inside = Cache.inGroup("A", () -> Cache.ofDouble(() -> 0));
+        DoubleCache outside = Cache.ofDouble(() -> 0);
+        assertEquals("A", inside.getGroup());
+        assertNull(outside.getGroup());
+    }
+
+    /** Failures on the workers show up on the main thread. */
+    @Test
+    void testFailure() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        Cache.inGroup("A", () -> Cache.ofDouble(() -> {
+            throw new IllegalArgumentException();
+        }));
+        assertThrows(IllegalArgumentException.class, () -> stepTime());
+        Cache.clear();
+        // still works afterwards
+        DoubleCache c = Cache.inGroup("A", () -> Cache.ofDouble(() -> 1));
+        stepTime();
+        assertEquals(1, c.getAsDouble());
+    }
+
+    /**
+     * Five subsystems, each with eight slow suppliers, plus a few ungrouped
+     * ones, like the robot. With two workers plus the main thread, the refresh
+     * time should be about a third. Wall-clock time depends on the machine, so
+     * this only prints it; the assertions are about behavior.
+     */
+    @Test
+    void testLoopTime() {
+        List<DoubleCache> caches = subsystems(5, 8, LATENCY_NS);
+        for (int i = 0; i < 4; ++i) {
+            Cache.ofDouble(() -> block(LATENCY_NS));
+        }
+        // warm up
+        for (int i = 0; i < 5; ++i) {
+            stepTime();
+        }
+        int cycles = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < cycles; ++i) {
+            stepTime();
+        }
+        double serialS = 1e-9 * (System.nanoTime() - start) / cycles;
+
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        for (int i = 0; i < 5; ++i) {
+            stepTime();
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < cycles; ++i) {
+            stepTime();
+        }
+        double parallelS = 1e-9 * (System.nanoTime() - start) / cycles;
+
+        if (DEBUG)
+            System.out.printf("refresh time (ms) serial %6.3f parallel %6.3f\n",
+                    serialS * 1000, parallelS * 1000);
+        // every refresh, either way, happened exactly once.
+        for (DoubleCache c : caches) {
+            assertEquals(5 + cycles + 5 + cycles, c.getAsDouble());
+        }
+    }
+
+    /** A null group inside another group is ungrouped, so it stays on the main thread. */
+    @Test
+    void testUngroupedInsideGroup() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        Thread main = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        DoubleCache inner = Cache.inGroup("A", () -> {
+            Cache.ofDouble(() -> 0);
+            return Cache.inGroup(null, () -> Cache.ofDouble(() -> {
+                threads.add(Thread.currentThread());
+                return 0;
+            }));
+        });
+        assertNull(inner.getGroup());
+        stepTime();
+        assertEquals(1, threads.size());
+        assertSame(main, threads.get(0));
+    }
+
+    /**
+     * Grouped suppliers that read an ungrouped value find it fresh, because it's
+     * refreshed first, on the main thread, once.
+     */
+    @Test
+    void testUngroupedFirst() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        Thread main = Thread.currentThread();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        DoubleCache shared = Cache.ofDouble(() -> {
+            threads.add(Thread.currentThread());
+            return 1;
+        });
+        DoubleCache a = Cache.inGroup("A", () -> Cache.ofDouble(() -> shared.getAsDouble() + 1));
+        DoubleCache b = Cache.inGroup("B", () -> Cache.ofDouble(() -> shared.getAsDouble() + 2));
+        for (int cycle = 1; cycle < 4; ++cycle) {
+            stepTime();
+            assertEquals(2, a.getAsDouble());
+            assertEquals(3, b.getAsDouble());
+            assertEquals(cycle, threads.size());
+        }
+        for (Thread t : threads) {
+            assertSame(main, t);
+        }
+    }
+
+    /**
+     * Grouped suppliers in two groups read a Mutable, and its change callback
+     * runs once, on the main thread.
+     */
+    @Test
+    void testGroupedReadsMutable() {
+        Experiments.instance.testOverride(Experiment.ParallelCacheRefresh, true);
+        Thread main = Thread.currentThread();
+        List<Thread> changes = Collections.synchronizedList(new ArrayList<>());
+        String leaf = "testGroupedReadsMutable";
+        Mutable m = Cache.inGroup("A",
+                () -> new Mutable(log, leaf, 1, x -> changes.add(Thread.currentThread())));
+        DoubleCache a = Cache.inGroup("A", () -> Cache.ofDouble(() -> m.getAsDouble() + 1));
+        DoubleCache b = Cache.inGroup("B", () -> Cache.ofDouble(() -> m.getAsDouble() + 2));
+        stepTime();
+        assertEquals(2, a.getAsDouble());
+        assertEquals(3, b.getAsDouble());
+        assertEquals(0, changes.size());
+        try (DoublePublisher p = NetworkTableInstance.getDefault()
+                .getDoubleTopic(log.root(leaf)).publish()) {
+            p.set(5);
+            stepTime();
+        }
+        assertEquals(6, a.getAsDouble());
+        assertEquals(7, b.getAsDouble());
+        assertEquals(1, changes.size());
+        assertSame(main, changes.get(0));
+    }
+
+    ////////////////////////////////////////////
+
+    /** Each supplier counts its calls, after the latency. */
+    private static List<DoubleCache> subsystems(int n, int perSubsystem, long latencyNs) {
+        List<DoubleCache> caches = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            Cache.inGroup("subsystem " + i, () -> {
+                for (int j = 0; j < perSubsystem; ++j) {
+                    int[] count = new int[1];
+                    caches.add(Cache.ofDouble(() -> {
+                        block(latencyNs);
+                        return ++count[0];
+                    }));
+                }
+                return null;
+            });
+        }
+        return caches;
+    }
+
+    private static double block(long ns) {
+        if (ns > 0)
+            LockSupport.parkNanos(ns);
+        return 0;
+    }
+}
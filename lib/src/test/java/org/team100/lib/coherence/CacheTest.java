@@ -0,0 +1,151 @@
+package org.team100.lib.coherence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.testing.Timeless;
+
+class CacheTest implements Timeless {
+    private static final boolean DEBUG = false;
+
+    @Test
+    void testEpoch() {
+        int[] count = new int[1];
+        ObjectCache<Integer> cache = Cache.of(() -> ++count[0]);
+        assertEquals(1, cache.get().intValue());
+        // same epoch, same value
+        assertEquals(1, cache.get().intValue());
+        stepTime();
+        assertEquals(2, cache.get().intValue());
+        assertEquals(2, cache.get().intValue());
+        // refresh without Takt update also starts an epoch
+        Cache.refresh();
+        assertEquals(3, cache.get().intValue());
+        // Takt update without refresh does too
+        Takt.update();
+        assertEquals(4, cache.get().intValue());
+        Cache.refresh();
+        assertEquals(4, cache.get().intValue());
+        assertEquals(4, count[0]);
+    }
+
+    @Test
+    void testSetAndReset() {
+        double[] x = new double[1];
+        ObjectCache<Double> cache = Cache.of(() -> x[0]);
+        DoubleCache d = Cache.ofDouble(() -> x[0]);
+        assertEquals(0, cache.get().doubleValue());
+        assertEquals(0, d.getAsDouble());
+        x[0] = 1;
+        cache.set(5.0);
+        assertEquals(5, cache.get().doubleValue());
+        assertEquals(0, d.getAsDouble());
+        cache.reset();
+        d.reset();
+        assertEquals(1, cache.get().doubleValue());
+        assertEquals(1, d.getAsDouble());
+        x[0] = 2;
+        stepTime();
+        assertEquals(2, cache.get().doubleValue());
+        assertEquals(2, d.getAsDouble());
+    }
+
+    @Test
+    void testSideEffect() {
+        int[] count = new int[1];
+        SideEffect effect = Cache.ofSideEffect(() -> count[0]++);
+        stepTime();
+        assertEquals(1, count[0]);
+        effect.run();
+        assertEquals(1, count[0]);
+        stepTime();
+        assertEquals(2, count[0]);
+    }
+
+    /** Dependencies are refreshed first, even if they're registered later. */
+    @Test
+    void testDependencies() {
+        List<String> order = new ArrayList<>();
+        SideEffect c = Cache.ofSideEffect(() -> order.add("c"));
+        ObjectCache<String> a = Cache.of(() -> {
+            order.add("a");
+            return "a";
+        });
+        DoubleCache b = Cache.ofDouble(() -> {
+            order.add("b");
+            return 0;
+        });
+        a.dependsOn(b);
+        b.dependsOn(c);
+        stepTime();
+        assertEquals(List.of("c", "b", "a"), order);
+        order.clear();
+        // without dependencies, objects come first
+        Cache.clear();
+        Cache.ofSideEffect(() -> order.add("c"));
+        Cache.ofDouble(() -> {
+            order.add("b");
+            return 0;
+        });
+        Cache.of(() -> {
+            order.add("a");
+            return "a";
+        });
+        stepTime();
+        assertEquals(List.of("a", "b", "c"), order);
+    }
+
+    @Test
+    void testCycle() {
+        ObjectCache<String> a = Cache.of(() -> "a");
+        ObjectCache<String> b = Cache.of(() -> "b");
+        a.dependsOn(b);
+        b.dependsOn(a);
+        assertThrows(IllegalStateException.class, () -> Cache.refresh());
+        Cache.clear();
+    }
+
+    @Test
+    void testUpdateTime() {
+        ObjectCache<String> cache = Cache.of(() -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            return "a";
+        });
+        stepTime();
+        assertEquals("CacheTest", cache.getName());
+        double t = cache.getUpdateTimeS();
+        if (DEBUG)
+            System.out.printf("update time %f\n", t);
+        assertTrue(t >= 0.002);
+    }
+
+    /**
+     * The old synchronized get() was about 20 ns; the epoch check should be a few.
+     *
+     * There's no need to run this all the time.
+     */
+    @Test
+    void testPerformance() {
+        ObjectCache<String> cache = Cache.of(() -> "a");
+        DoubleCache d = Cache.ofDouble(() -> 1.0);
+        stepTime();
+        int reps = 1000000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reps; ++i) {
+            cache.get();
+            d.getAsDouble();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (DEBUG)
+            System.out.printf("per get (ns) %f\n", (double) elapsed / (2 * reps));
+    }
+}
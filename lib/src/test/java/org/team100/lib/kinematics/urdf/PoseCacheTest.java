@@ -0,0 +1,61 @@
+package org.team100.lib.kinematics.urdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.numbers.N1;
+
+public class PoseCacheTest {
+    @Test
+    void testNearest() {
+        PoseCache<N1> cache = new PoseCache<>(0.1, 10);
+        assertNull(cache.nearest(Pose3d.kZero));
+        cache.put(new Pose3d(0, 0, 0, Rotation3d.kZero), VecBuilder.fill(1));
+        cache.put(new Pose3d(0.12, 0, 0, Rotation3d.kZero), VecBuilder.fill(2));
+        // far away
+        assertNull(cache.nearest(new Pose3d(1, 0, 0, Rotation3d.kZero)));
+        // adjacent cells are searched
+        Vector<N1> q = cache.nearest(new Pose3d(0.04, 0, 0, Rotation3d.kZero));
+        assertEquals(1, q.get(0), 1e-9);
+        q = cache.nearest(new Pose3d(0.08, 0, 0, Rotation3d.kZero));
+        assertEquals(2, q.get(0), 1e-9);
+    }
+
+    @Test
+    void testReplace() {
+        PoseCache<N1> cache = new PoseCache<>(0.1, 10);
+        Vector<N1> q = VecBuilder.fill(1);
+        cache.put(new Pose3d(0.01, 0, 0, Rotation3d.kZero), q);
+        // it's a copy
+        q.set(0, 0, 3);
+        assertEquals(1, cache.nearest(Pose3d.kZero).get(0), 1e-9);
+        // same cell, replaces
+        cache.put(new Pose3d(0.02, 0, 0, Rotation3d.kZero), VecBuilder.fill(2));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.nearest(Pose3d.kZero).get(0), 1e-9);
+    }
+
+    @Test
+    void testEviction() {
+        PoseCache<N1> cache = new PoseCache<>(0.1, 2);
+        cache.put(new Pose3d(0, 0, 0, Rotation3d.kZero), VecBuilder.fill(1));
+        cache.put(new Pose3d(1, 0, 0, Rotation3d.kZero), VecBuilder.fill(2));
+        cache.put(new Pose3d(2, 0, 0, Rotation3d.kZero), VecBuilder.fill(3));
+        assertEquals(2, cache.size());
+        assertNull(cache.nearest(Pose3d.kZero));
+    }
+
+    @Test
+    void testNegative() {
+        PoseCache<N1> cache = new PoseCache<>(0.1, 10);
+        cache.put(new Pose3d(-0.05, -0.05, -0.05, Rotation3d.kZero), VecBuilder.fill(1));
+        assertEquals(1, cache.nearest(new Pose3d(-0.01, -0.01, -0.01, Rotation3d.kZero)).get(0), 1e-9);
+        assertNull(cache.nearest(new Pose3d(0.3, 0.3, 0.3, Rotation3d.kZero)));
+    }
+}
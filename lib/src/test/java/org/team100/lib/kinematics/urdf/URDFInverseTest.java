@@ -0,0 +1,59 @@
+package org.team100.lib.kinematics.urdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.subsystems.lynxmotion_arm.LynxArmConfig;
+
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.numbers.N5;
+
+public class URDFInverseTest {
+    private static final boolean DEBUG = false;
+
+    /** The goal moves a little each cycle, like teleop. */
+    @Test
+    void testWarmStart() {
+        URDFAL5D m = URDFAL5D.make();
+        URDFInverse<N5> ik = new URDFInverse<>(m, "center_point", 1);
+        Vector<N5> initial = new LynxArmConfig(0, -1.5, 1.5, 1.0, 0).toVec();
+        for (int i = 0; i < 50; ++i) {
+            // sweep the swing and the boom
+            double t = 0.01 * i;
+            Vector<N5> expected = new LynxArmConfig(t, -1.5 + t, 1.5, 1.0, 0).toVec();
+            Pose3d goal = m.forward(m.qMap(expected)).get("center_point");
+            Map<String, Double> q = ik.inverse(initial, goal);
+            Pose3d actual = m.forward(q).get("center_point");
+            assertEquals(0, actual.getTranslation().getDistance(goal.getTranslation()), 2e-3);
+            if (DEBUG)
+                System.out.printf("%d seed %s iterations %d restarts %d\n",
+                        i, ik.seed(), ik.iterations(), ik.restarts());
+            if (i > 0) {
+                // a small step from the previous solution
+                assertEquals(URDFInverse.Seed.PREVIOUS, ik.seed());
+                assertEquals(0, ik.restarts());
+                assertTrue(ik.iterations() <= 3);
+            }
+        }
+        // the cache has a cell for each bit of the path
+        assertTrue(ik.cacheSize() > 1);
+        ik.reset();
+        assertEquals(0, ik.cacheSize());
+    }
+
+    /** The first solve starts from the initial configuration. */
+    @Test
+    void testInitial() {
+        URDFAL5D m = URDFAL5D.make();
+        URDFInverse<N5> ik = new URDFInverse<>(m, "center_point", 1);
+        Vector<N5> a = new LynxArmConfig(0, -1.5, 1.5, 1.0, 0).toVec();
+        Pose3d goal = m.forward(m.qMap(a)).get("center_point");
+        ik.inverse(a, goal);
+        assertEquals(URDFInverse.Seed.INITIAL, ik.seed());
+        assertEquals(1, ik.cacheSize());
+    }
+}
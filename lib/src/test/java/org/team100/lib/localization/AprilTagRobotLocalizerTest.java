@@ -9,8 +9,11 @@ import java.util.List;
 import java.util.Optional;
 import java.util.function.DoubleFunction;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.team100.lib.coherence.Takt;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.TestLoggerFactory;
 import org.team100.lib.logging.primitive.TestPrimitiveLogger;
@@ -35,6 +38,11 @@ class AprilTagRobotLocalizerTest implements Timeless {
     private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
     private static final LoggerFactory fieldLogger = new TestLoggerFactory(new TestPrimitiveLogger());
 
+    @AfterEach
+    void reset() {
+        Experiments.instance.testOverride(Experiment.MultiTagVision, false);
+    }
+
     @Test
     void testEndToEnd() throws IOException, InterruptedException {
         AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
@@ -158,6 +166,78 @@ class AprilTagRobotLocalizerTest implements Timeless {
         assertEquals(0, result.getRotation().getRadians(), DELTA); // facing along x
     }
 
+    /** The raw-bytes path gives the same answer as the Blip24 path. */
+    @Test
+    void testEstimateRobotPoseRaw() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        final List<Pose2d> poseEstimate = new ArrayList<Pose2d>();
+        DoubleFunction<ModelSE2> history = t -> new ModelSE2();
+        VisionUpdater visionUpdater = new VisionUpdater() {
+            @Override
+            public void put(double t, Pose2d p, double[] sd1, double[] sd2) {
+                poseEstimate.add(p);
+            }
+        };
+        AprilTagRobotLocalizer localizer = new AprilTagRobotLocalizer(
+                logger, fieldLogger, layout, history, visionUpdater);
+
+        Blip24 blip = new Blip24(7, new Transform3d(new Translation3d(0, 0, 1), new Rotation3d()));
+        // tag 99 doesn't exist, so it's skipped
+        Blip24 bogus = new Blip24(99, new Transform3d(new Translation3d(0, 0, 1), new Rotation3d()));
+        Blip24Reader reader = new Blip24Reader();
+        assertTrue(reader.read(Blip24ReaderTest.pack(new Blip24[] { bogus, blip })));
+
+        Transform3d cameraOffset = new Transform3d();
+        Optional<Alliance> alliance = Optional.of(Alliance.Red);
+        localizer.estimateRobotPose(cameraOffset, reader, Takt.get(), alliance);
+        localizer.estimateRobotPose(cameraOffset, reader, Takt.get(), alliance);
+        assertEquals(1, poseEstimate.size());
+
+        Pose2d result = poseEstimate.get(0);
+        assertEquals(2.657, result.getX(), DELTA);
+        assertEquals(4.026, result.getY(), DELTA);
+        assertEquals(0, result.getRotation().getRadians(), DELTA);
+    }
+
+    /** With MultiTagVision, the tags in a frame make one measurement. */
+    @Test
+    void testMultiTag() throws IOException {
+        Experiments.instance.testOverride(Experiment.MultiTagVision, true);
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        final List<Pose2d> poseEstimate = new ArrayList<Pose2d>();
+        DoubleFunction<ModelSE2> history = t -> new ModelSE2();
+        VisionUpdater visionUpdater = new VisionUpdater() {
+            @Override
+            public void put(double t, Pose2d p, double[] sd1, double[] sd2) {
+                poseEstimate.add(p);
+            }
+        };
+        AprilTagRobotLocalizer localizer = new AprilTagRobotLocalizer(
+                logger, fieldLogger, layout, history, visionUpdater);
+
+        // the same tag, seen twice, a little different each time.
+        final Blip24[] blips = new Blip24[] {
+                new Blip24(7, new Transform3d(new Translation3d(0, 0, 0.99), new Rotation3d())),
+                new Blip24(7, new Transform3d(new Translation3d(0, 0, 1.01), new Rotation3d())) };
+
+        Transform3d cameraOffset = new Transform3d();
+        Optional<Alliance> alliance = Optional.of(Alliance.Red);
+        localizer.estimateRobotPose(cameraOffset, blips, Takt.get(), alliance);
+        // nothing until the frame is done
+        assertEquals(0, poseEstimate.size());
+        localizer.flushFrame();
+        // first fix is just remembered
+        assertEquals(0, poseEstimate.size());
+        localizer.estimateRobotPose(cameraOffset, blips, Takt.get(), alliance);
+        localizer.flushFrame();
+        // one measurement for two tags
+        assertEquals(1, poseEstimate.size());
+        Pose2d result = poseEstimate.get(0);
+        assertEquals(2.657, result.getX(), DELTA);
+        assertEquals(4.026, result.getY(), DELTA);
+        assertEquals(0, result.getRotation().getRadians(), DELTA);
+    }
+
     @Test
     void testEstimateRobotPose2() throws IOException {
         // robot is panned right 45, translation is ignored.
@@ -0,0 +1,72 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+class Blip24ReaderTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testSize() {
+        assertEquals(Blip24.struct.getSize(), Blip24Reader.SIZE);
+    }
+
+    @Test
+    void testRead() {
+        Blip24[] blips = new Blip24[] {
+                new Blip24(3, new Transform3d(
+                        new Translation3d(0.1, 0.2, 2.0),
+                        new Rotation3d(0.1, 0.2, 0.3))),
+                new Blip24(17, new Transform3d(
+                        new Translation3d(-0.5, 0.3, 1.5),
+                        new Rotation3d(-0.2, 0.1, 1.0))) };
+        Blip24Reader reader = new Blip24Reader();
+        assertTrue(reader.read(pack(blips)));
+        assertEquals(2, reader.count());
+        for (int i = 0; i < blips.length; ++i) {
+            Blip24 blip = blips[i];
+            assertEquals(blip.getId(), reader.id(i));
+            assertEquals(blip.getRawPose().getX(), reader.x(i), DELTA);
+            assertEquals(blip.getRawPose().getY(), reader.y(i), DELTA);
+            assertEquals(blip.getRawPose().getZ(), reader.z(i), DELTA);
+            // same as the old path
+            Transform3d expected = blip.blipToTransform();
+            Transform3d actual = reader.transform(i);
+            assertEquals(expected.getX(), actual.getX(), DELTA);
+            assertEquals(expected.getY(), actual.getY(), DELTA);
+            assertEquals(expected.getZ(), actual.getZ(), DELTA);
+            assertEquals(expected.getRotation().getX(), actual.getRotation().getX(), DELTA);
+            assertEquals(expected.getRotation().getY(), actual.getRotation().getY(), DELTA);
+            assertEquals(expected.getRotation().getZ(), actual.getRotation().getZ(), DELTA);
+            // and the object version matches too
+            assertEquals(blip.getRawPose(), reader.blip(i).getRawPose());
+        }
+    }
+
+    @Test
+    void testBadLength() {
+        Blip24Reader reader = new Blip24Reader();
+        assertFalse(reader.read(new byte[Blip24Reader.SIZE + 1]));
+        assertEquals(0, reader.count());
+    }
+
+    /** Pack the way NT does. */
+    static byte[] pack(Blip24[] blips) {
+        ByteBuffer bb = ByteBuffer.allocate(blips.length * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (Blip24 blip : blips) {
+            Blip24.struct.pack(bb, blip);
+        }
+        return bb.array();
+    }
+}
@@ -0,0 +1,122 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CovarianceSE2Test {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testPropagateStill() {
+        CovarianceSE2 p = CovarianceSE2.diagonal(0.1, 0.1, 0.1);
+        // not moving, so only the gyro drift
+        CovarianceSE2 p2 = p.propagate(0, 0, 1);
+        assertEquals(0.01, p2.xx, DELTA);
+        assertEquals(0.01, p2.yy, DELTA);
+        assertEquals(0.01 + 0.002 * 0.002, p2.tt, DELTA);
+    }
+
+    @Test
+    void testPropagateMoving() {
+        CovarianceSE2 p = CovarianceSE2.diagonal(0, 0, 0.1);
+        // moving along x, heading error makes y error
+        CovarianceSE2 p2 = p.propagate(1, 0, 0);
+        // distance error
+        assertEquals(0.02 * 0.02, p2.xx, DELTA);
+        // heading error
+        assertEquals(0.02 * 0.02 + 0.01, p2.yy, DELTA);
+        // correlated with heading
+        assertEquals(0.01, p2.yt, DELTA);
+        assertEquals(0, p2.xt, DELTA);
+        // again: y error grows with the square of distance
+        CovarianceSE2 p3 = p2.propagate(1, 0, 0);
+        assertEquals(2 * 0.02 * 0.02 + 0.04, p3.yy, DELTA);
+    }
+
+    /** With a diagonal covariance, the update is the scalar Kalman update. */
+    @Test
+    void testUpdateScalar() {
+        CovarianceSE2 p = CovarianceSE2.diagonal(0.1, 0.2, 0.1);
+        double[] gain = new double[4];
+        CovarianceSE2 p2 = p.update(0.01, 0.01, gain);
+        // equal variances, half gain
+        assertEquals(0.5, gain[0], DELTA);
+        assertEquals(0, gain[1], DELTA);
+        assertEquals(0, gain[2], DELTA);
+        assertEquals(0.04 / 0.05, gain[3], DELTA);
+        assertEquals(0.005, p2.xx, DELTA);
+        assertEquals(0.04 * 0.01 / 0.05, p2.yy, DELTA);
+        // heading is unobserved
+        assertEquals(0.01, p2.tt, DELTA);
+    }
+
+    /**
+     * The heading isn't corrected, so its variance doesn't shrink, but its
+     * correlation with position does, and the result is still a covariance.
+     */
+    @Test
+    void testUpdateCorrelated() {
+        CovarianceSE2 p = CovarianceSE2.diagonal(0, 0, 0.1).propagate(1, 0, 0);
+        double[] gain = new double[4];
+        CovarianceSE2 p2 = p.update(0.0001, 0.0001, gain);
+        assertEquals(p.tt, p2.tt, DELTA);
+        assertTrue(p2.yt < p.yt);
+        assertTrue(p2.positionSigma() < p.positionSigma());
+        // positive semidefinite: the yt block determinant
+        assertTrue(p2.yy * p2.tt - p2.yt * p2.yt >= 0);
+    }
+
+    /**
+     * With the optimal gain, the Joseph form matches the simple one, P - K S
+     * K^T, in the position block.
+     */
+    @Test
+    void testUpdateJoseph() {
+        CovarianceSE2 p = new CovarianceSE2(0.02, 0.005, 0.001, 0.03, 0.002, 0.01);
+        double rx = 0.01;
+        double ry = 0.02;
+        double[] gain = new double[4];
+        CovarianceSE2 p2 = p.update(rx, ry, gain);
+        // S = P + R, K S = P, so P - K S K^T = P - K P.
+        assertEquals(p.xx - (gain[0] * p.xx + gain[1] * p.xy), p2.xx, DELTA);
+        assertEquals(p.xy - (gain[0] * p.xy + gain[1] * p.yy), p2.xy, DELTA);
+        assertEquals(p.yy - (gain[2] * p.xy + gain[3] * p.yy), p2.yy, DELTA);
+        assertEquals(p.xt - (gain[0] * p.xt + gain[1] * p.yt), p2.xt, DELTA);
+        assertEquals(p.yt - (gain[2] * p.xt + gain[3] * p.yt), p2.yt, DELTA);
+        assertEquals(p.tt, p2.tt, DELTA);
+    }
+
+    /** A zero-variance measurement, over and over, doesn't make NaN. */
+    @Test
+    void testUpdateZeroVariance() {
+        CovarianceSE2 p = CovarianceSE2.INITIAL;
+        double[] gain = new double[4];
+        for (int i = 0; i < 1000; ++i) {
+            // standing still
+            p = p.propagate(0, 0, 0.02).update(0, 0, gain);
+            for (double k : gain) {
+                assertTrue(Double.isFinite(k));
+            }
+        }
+        assertTrue(Double.isFinite(p.tt));
+        assertTrue(p.xx > 0);
+        assertTrue(p.yy > 0);
+        assertTrue(gain[0] > 0);
+        assertTrue(gain[0] < 1);
+        assertTrue(p.positionSigma() > 0);
+    }
+
+    @Test
+    void testPositionSigma() {
+        assertEquals(0.2, CovarianceSE2.diagonal(0.1, 0.2, 0.1).positionSigma(), DELTA);
+    }
+
+    @Test
+    void testInterpolate() {
+        CovarianceSE2 a = CovarianceSE2.diagonal(0.1, 0.1, 0.1);
+        CovarianceSE2 b = CovarianceSE2.diagonal(0.3, 0.3, 0.3);
+        assertEquals(0.05, a.interpolate(b, 0.5).xx, DELTA);
+    }
+}
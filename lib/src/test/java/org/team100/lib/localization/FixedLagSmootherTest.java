@@ -0,0 +1,242 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.config.Camera;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.sensor.gyro.MockGyro;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModulePosition100;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModulePositions;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+class FixedLagSmootherTest implements Timeless {
+    private static final boolean DEBUG = false;
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+    private static final List<Camera> CAMERAS = List.of(
+            Camera.SWERVE_LEFT,
+            Camera.SWERVE_RIGHT,
+            Camera.FUNNEL,
+            Camera.CORAL_LEFT,
+            Camera.CORAL_RIGHT);
+    private static final int TAG_COUNT = 22;
+    /** Camera latency, sec. */
+    private static final double DELAY = 0.075;
+    /** Driving speed, m/s. */
+    private static final double SPEED = 1.0;
+    /** The odometry reads long. */
+    private static final double ODOMETRY_SCALE = 1.1;
+    /** Range error, as a fraction of range. */
+    private static final double RANGE_NOISE = 0.03;
+    /** Approaching the blue reef, tag 18, head on. */
+    private static final Pose2d START = new Pose2d(1.0, 4.0259, Rotation2d.kZero);
+
+    private enum Mode {
+        ODOMETRY, NUDGE, SMOOTH
+    }
+
+    private SwerveModulePositions m_positions;
+    private int m_measurements;
+
+    /** With consistent odometry and measurement, nothing moves. */
+    @Test
+    void testConsistent() {
+        SwerveHistory history = drive(5);
+        FixedLagSmoother smoother = new FixedLagSmoother(history, history.kinematics());
+        assertTrue(smoother.add(0.05, new Pose2d(0.25, 0, Rotation2d.kZero), new double[] { 0.05, 0.05 }));
+        assertEquals(1, smoother.size());
+        // the five odometry entries, the initial one, and the measurement
+        assertEquals(7, smoother.solve());
+        assertEquals(0.25, history.apply(0.05).pose().getX(), 1e-6);
+        assertEquals(0.5, history.apply(0.1).pose().getX(), 1e-6);
+        assertEquals(0, history.apply(0.1).pose().getY(), 1e-6);
+    }
+
+    /**
+     * One far-off measurement, with a big sigma, moves the estimate a little,
+     * and solving again and again, as the robot does every cycle, doesn't move it
+     * any more, because the prior doesn't count the measurement again.
+     */
+    @Test
+    void testOutlier() {
+        SwerveHistory history = drive(5);
+        FixedLagSmoother smoother = new FixedLagSmoother(history, history.kinematics());
+        // half a meter off, with ten times the sigma of the prior
+        assertTrue(smoother.add(0.05, new Pose2d(0.75, 0, Rotation2d.kZero), new double[] { 0.5, 0.5 }));
+        smoother.solve();
+        // about 1%
+        double pull = history.apply(0.1).pose().getX() - 0.5;
+        assertEquals(0.005, pull, 0.001);
+        InterpolationRecord solved = history.getRecord(0.1);
+        for (int i = 0; i < 100; ++i) {
+            smoother.solve();
+        }
+        assertEquals(pull, history.apply(0.1).pose().getX() - 0.5, 1e-6);
+        // nothing moved, so nothing was written
+        assertSame(solved, history.getRecord(0.1));
+    }
+
+    /** A zero sigma is floored, so the solution is finite. */
+    @Test
+    void testZeroSigma() {
+        SwerveHistory history = drive(5);
+        FixedLagSmoother smoother = new FixedLagSmoother(history, history.kinematics());
+        assertTrue(smoother.add(0.05, new Pose2d(0.25, 0, Rotation2d.kZero), new double[] { 0, 0 }));
+        smoother.solve();
+        assertTrue(Double.isFinite(history.apply(0.1).pose().getX()));
+        assertEquals(0.5, history.apply(0.1).pose().getX(), 1e-6);
+    }
+
+    @Test
+    void testTooOld() {
+        SwerveHistory history = drive(20);
+        FixedLagSmoother smoother = new FixedLagSmoother(history, history.kinematics());
+        assertFalse(smoother.add(0.01, Pose2d.kZero, new double[] { 0.05, 0.05 }));
+        assertEquals(0, smoother.size());
+        // nothing to do
+        assertEquals(0, smoother.solve());
+    }
+
+    /**
+     * Drive towards the reef with long odometry, with the tag sightings the
+     * simulated detector would produce for the five cameras, with range noise,
+     * through the localizer, as on the robot, so the measurements and their
+     * sigmas come from the real measurement model. The smoother should be much
+     * better than odometry alone. With DEBUG, this also prints the nudging
+     * error, just to look at.
+     */
+    @Test
+    void testSimulatedTags() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        double odometry = run(Mode.ODOMETRY, layout);
+        double smooth = run(Mode.SMOOTH, layout);
+        assertTrue(m_measurements > 0);
+        if (DEBUG) {
+            double nudge = run(Mode.NUDGE, layout);
+            System.out.printf("measurements %d RMS error odometry %6.4f nudge %6.4f smooth %6.4f\n",
+                    m_measurements, odometry, nudge, smooth);
+        }
+        assertTrue(smooth < odometry / 2, String.format("%f %f", smooth, odometry));
+        assertTrue(smooth < 0.05, String.format("%f", smooth));
+    }
+
+    /** @return RMS position error of the current estimate, after the first half second. */
+    private double run(Mode mode, AprilTagFieldLayoutWithCorrectOrientation layout) {
+        Experiments.instance.testOverride(Experiment.FixedLagSmoothing, mode == Mode.SMOOTH);
+        try {
+            SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
+            m_positions = positions(0);
+            SwerveHistory history = new SwerveHistory(
+                    logger, kinodynamics, Rotation2d.kZero, m_positions, START, 0);
+            OdometryUpdater ou = new OdometryUpdater(kinodynamics, new MockGyro(), history, () -> m_positions);
+            ou.reset(START, 0);
+            NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
+            AprilTagRobotLocalizer localizer = new AprilTagRobotLocalizer(
+                    logger, logger, layout, history, vu);
+            Random random = new Random(0);
+            m_measurements = 0;
+            double sumSq = 0;
+            int count = 0;
+            for (int i = 1; i <= 75; ++i) {
+                double t = 0.02 * i;
+                m_positions = positions(ODOMETRY_SCALE * SPEED * t);
+                ou.update(t);
+                double timestampS = t - DELAY;
+                if (mode != Mode.ODOMETRY && timestampS > 0) {
+                    // as in CameraReader.update()
+                    vu.beginBatch();
+                    for (Camera camera : CAMERAS) {
+                        Blip24[] blips = sightings(layout, camera, truth(timestampS), random);
+                        m_measurements += blips.length;
+                        localizer.estimateRobotPose(
+                                camera.getOffset(), blips, timestampS, Optional.of(Alliance.Blue));
+                    }
+                    localizer.flushFrame();
+                    vu.endBatch();
+                }
+                if (t > 0.5) {
+                    Pose2d estimate = history.apply(t).pose();
+                    Pose2d truth = truth(t);
+                    double error = estimate.getTranslation().getDistance(truth.getTranslation());
+                    sumSq += error * error;
+                    count++;
+                }
+            }
+            return Math.sqrt(sumSq / count);
+        } finally {
+            Experiments.instance.testOverride(Experiment.FixedLagSmoothing, false);
+        }
+    }
+
+    /**
+     * The tags the camera can see, as the simulated detector would report them,
+     * with range error proportional to range, see Uncertainty.
+     */
+    private static Blip24[] sightings(
+            AprilTagFieldLayoutWithCorrectOrientation layout,
+            Camera camera,
+            Pose2d robot,
+            Random random) {
+        Pose3d cameraPose = new Pose3d(robot).plus(camera.getOffset());
+        List<Blip24> blips = new ArrayList<>();
+        for (int id = 1; id <= TAG_COUNT; ++id) {
+            Optional<Pose3d> tagPose = layout.getTagPose(Alliance.Blue, id);
+            if (tagPose.isEmpty())
+                continue;
+            Transform3d tagInCamera = SimulatedTagDetector.tagInCamera(cameraPose, tagPose.get());
+            if (!SimulatedTagDetector.visible(tagInCamera))
+                continue;
+            double scale = 1 + RANGE_NOISE * random.nextGaussian();
+            Transform3d noisy = new Transform3d(
+                    tagInCamera.getTranslation().times(scale),
+                    tagInCamera.getRotation());
+            blips.add(Blip24.fromXForward(id, noisy));
+        }
+        return blips.toArray(new Blip24[0]);
+    }
+
+    /** Drive straight ahead at 5 m/s, odometry only, for the given number of 20 ms steps. */
+    private SwerveHistory drive(int steps) {
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
+        m_positions = positions(0);
+        SwerveHistory history = new SwerveHistory(
+                logger, kinodynamics, Rotation2d.kZero, m_positions, Pose2d.kZero, 0);
+        OdometryUpdater ou = new OdometryUpdater(kinodynamics, new MockGyro(), history, () -> m_positions);
+        ou.reset(Pose2d.kZero, 0);
+        for (int i = 1; i <= steps; ++i) {
+            m_positions = positions(0.1 * i);
+            ou.update(0.02 * i);
+        }
+        return history;
+    }
+
+    private static Pose2d truth(double t) {
+        return new Pose2d(START.getX() + SPEED * t, START.getY(), START.getRotation());
+    }
+
+    private static SwerveModulePositions positions(double distanceM) {
+        SwerveModulePosition100 p = new SwerveModulePosition100(distanceM, Optional.of(Rotation2d.kZero));
+        return new SwerveModulePositions(p, p, p, p);
+    }
+}
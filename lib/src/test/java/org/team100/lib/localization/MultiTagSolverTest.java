@@ -0,0 +1,146 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+
+class MultiTagSolverTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testEmpty() {
+        MultiTagSolver solver = new MultiTagSolver();
+        assertTrue(solver.isEmpty());
+        assertFalse(solver.solve());
+    }
+
+    @Test
+    void testOne() {
+        MultiTagSolver solver = new MultiTagSolver();
+        solver.add(1, new Rotation2d(1), new Pose2d(1, 2, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        assertTrue(solver.solve());
+        assertEquals(1, solver.count());
+        assertEquals(1, solver.pose().getX(), DELTA);
+        assertEquals(2, solver.pose().getY(), DELTA);
+        // gyro rotation
+        assertEquals(1, solver.pose().getRotation().getRadians(), DELTA);
+        assertEquals(0.1, solver.sigmaX(), DELTA);
+        assertEquals(0.1, solver.sigmaY(), DELTA);
+        assertEquals(0.1, solver.bestSigmaX(), DELTA);
+        assertEquals(0.1, solver.bestSigmaY(), DELTA);
+    }
+
+    @Test
+    void testWeighted() {
+        MultiTagSolver solver = new MultiTagSolver();
+        // the near tag counts four times as much
+        solver.add(1, new Rotation2d(), new Pose2d(0, 0, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        solver.add(1, new Rotation2d(), new Pose2d(0.1, 0, new Rotation2d()), 0.2, 0.2, Pose3d.kZero);
+        assertTrue(solver.solve());
+        assertEquals(2, solver.count());
+        assertEquals(0.02, solver.pose().getX(), DELTA);
+        assertEquals(0, solver.pose().getY(), DELTA);
+        // better than either one
+        assertEquals(Math.sqrt(1 / (100.0 + 25.0)), solver.sigmaX(), DELTA);
+        assertEquals(Math.sqrt(1 / (100.0 + 25.0)), solver.sigmaY(), DELTA);
+        assertEquals(0, solver.covXY(), DELTA);
+        solver.clear();
+        assertTrue(solver.isEmpty());
+    }
+
+    /** One tag on a diagonal line of sight correlates x and y. */
+    @Test
+    void testDiagonal() {
+        MultiTagSolver solver = new MultiTagSolver();
+        solver.add(1, new Rotation2d(), new Pose2d(0, 0, new Rotation2d()), 0.2, 0.1,
+                new Pose3d(1, 1, 0, new Rotation3d()));
+        assertTrue(solver.solve());
+        // (rr + ll) / 2
+        assertEquals(0.025, solver.covXX(), DELTA);
+        assertEquals(0.025, solver.covYY(), DELTA);
+        // (rr - ll) / 2
+        assertEquals(0.015, solver.covXY(), DELTA);
+        // the diagonal bound is the worse sigma
+        assertEquals(0.2, solver.sigmaX(), DELTA);
+        assertEquals(0.2, solver.sigmaY(), DELTA);
+    }
+
+    /**
+     * Two tags, each good across the line of sight and bad along it, at right
+     * angles, so each one fixes the axis the other can't.
+     */
+    @Test
+    void testAnisotropic() {
+        MultiTagSolver solver = new MultiTagSolver();
+        // tag to the east: y is good, x is bad.
+        solver.add(1, new Rotation2d(), new Pose2d(0.1, 0, new Rotation2d()), 0.2, 0.02,
+                new Pose3d(5, 0, 0, new Rotation3d()));
+        // tag to the north: x is good, y is bad.
+        solver.add(1, new Rotation2d(), new Pose2d(0, 0.1, new Rotation2d()), 0.2, 0.02,
+                new Pose3d(0, 5, 0, new Rotation3d()));
+        assertTrue(solver.solve());
+        assertEquals(2, solver.count());
+        // each axis comes mostly from the tag that sees it well.
+        double info = 1 / 0.04 + 1 / 0.0004;
+        assertEquals(2.5 / info, solver.pose().getX(), DELTA);
+        assertEquals(2.5 / info, solver.pose().getY(), DELTA);
+        assertEquals(1 / info, solver.covXX(), DELTA);
+        assertEquals(0, solver.covXY(), DELTA);
+        assertEquals(1 / info, solver.covYY(), DELTA);
+        // a little better than the best single tag on each axis.
+        assertEquals(0.02, solver.bestSigmaX(), DELTA);
+        assertEquals(0.02, solver.bestSigmaY(), DELTA);
+        assertEquals(Math.sqrt(1 / info), solver.sigmaX(), DELTA);
+        assertEquals(Math.sqrt(1 / info), solver.sigmaY(), DELTA);
+    }
+
+    @Test
+    void testOutlier() {
+        MultiTagSolver solver = new MultiTagSolver();
+        solver.add(1, new Rotation2d(), new Pose2d(0, 0, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        solver.add(1, new Rotation2d(), new Pose2d(0.01, 0, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        solver.add(1, new Rotation2d(), new Pose2d(-0.01, 0, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        // way off
+        solver.add(1, new Rotation2d(), new Pose2d(2, 0, new Rotation2d()), 0.1, 0.1, Pose3d.kZero);
+        assertTrue(solver.solve());
+        assertEquals(3, solver.count());
+        assertFalse(solver.used(3));
+        assertEquals(0, solver.pose().getX(), DELTA);
+    }
+
+    /** Averaging noisy tags is more accurate than using them one at a time. */
+    @Test
+    void testNoise() {
+        Random random = new Random(0);
+        MultiTagSolver solver = new MultiTagSolver();
+        double singleError = 0;
+        double fusedError = 0;
+        final int frames = 100;
+        final int tags = 4;
+        for (int f = 0; f < frames; ++f) {
+            for (int t = 0; t < tags; ++t) {
+                double sigma = 0.05;
+                double x = sigma * random.nextGaussian();
+                double y = sigma * random.nextGaussian();
+                singleError += Math.hypot(x, y);
+                solver.add(f, new Rotation2d(), new Pose2d(x, y, new Rotation2d()), sigma, sigma, Pose3d.kZero);
+            }
+            solver.solve();
+            fusedError += solver.pose().getTranslation().getNorm();
+            solver.clear();
+        }
+        singleError /= frames * tags;
+        fusedError /= frames;
+        // about half, i.e. 1/sqrt(4)
+        assertTrue(fusedError < 0.6 * singleError);
+    }
+}
@@ -0,0 +1,162 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PoseGraphTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testEmpty() {
+        PoseGraph graph = new PoseGraph(10, 10);
+        assertEquals(0, graph.solve(2), DELTA);
+        assertEquals(0, graph.size());
+    }
+
+    /** With consistent factors, nothing moves. */
+    @Test
+    void testConsistent() {
+        PoseGraph graph = new PoseGraph(10, 10);
+        for (int i = 0; i < 5; ++i) {
+            graph.addNode(0.1 * i, 0, 0);
+        }
+        for (int i = 0; i < 4; ++i) {
+            graph.setOdometry(i, 0.1, 0, 0);
+        }
+        graph.addPosition(4, 0.4, 0, 0.05);
+        assertEquals(0, graph.error(), DELTA);
+        graph.solve(2);
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(0.1 * i, graph.x(i), DELTA);
+            assertEquals(0, graph.y(i), DELTA);
+            assertEquals(0, graph.theta(i), DELTA);
+        }
+    }
+
+    /** A zero sigma is floored, so the solution is finite. */
+    @Test
+    void testZeroSigma() {
+        PoseGraph graph = new PoseGraph(10, 10);
+        for (int i = 0; i < 5; ++i) {
+            graph.addNode(0.1 * i, 0, 0);
+        }
+        for (int i = 0; i < 4; ++i) {
+            graph.setOdometry(i, 0.1, 0, 0);
+        }
+        graph.setPrior(0, 0, 0);
+        graph.addPosition(4, 0.5, 0, 0);
+        graph.solve(2);
+        assertTrue(Double.isFinite(graph.error()));
+        for (int i = 0; i < 5; ++i) {
+            assertTrue(Double.isFinite(graph.x(i)));
+        }
+        // both ends held tight, so the odometry gives.
+        assertEquals(0, graph.x(0), 0.01);
+        assertEquals(0.5, graph.x(4), 0.01);
+    }
+
+    /** The prior can be elsewhere, and looser, than the first node. */
+    @Test
+    void testSetPrior() {
+        PoseGraph graph = new PoseGraph(10, 10);
+        for (int i = 0; i < 5; ++i) {
+            graph.addNode(0.1 * i, 0, 0);
+        }
+        for (int i = 0; i < 4; ++i) {
+            graph.setOdometry(i, 0.1, 0, 0);
+        }
+        graph.setPrior(0.2, 0, 0.05);
+        graph.solve(2);
+        // with nothing else, the chain follows the prior.
+        assertEquals(0.2, graph.x(0), 1e-6);
+        assertEquals(0.6, graph.x(4), 1e-6);
+        assertEquals(0, graph.error(), 1e-6);
+    }
+
+    /**
+     * Odometry reads long, and the measurement at the end pulls the chain back,
+     * more at the end than at the start, which is held by the prior.
+     */
+    @Test
+    void testPull() {
+        PoseGraph graph = new PoseGraph(20, 10);
+        int n = 11;
+        for (int i = 0; i < n; ++i) {
+            // poses from odometry, 10% long
+            graph.addNode(0.11 * i, 0, 0);
+        }
+        for (int i = 0; i < n - 1; ++i) {
+            graph.setOdometry(i, 0.11, 0, 0);
+        }
+        graph.addPosition(n - 1, 1.0, 0, 0.01);
+        double before = graph.error();
+        graph.solve(2);
+        double after = graph.error();
+        if (DEBUG) {
+            for (int i = 0; i < n; ++i)
+                System.out.printf("%d %8.5f %8.5f %8.5f\n", i, graph.x(i), graph.y(i), graph.theta(i));
+        }
+        assertTrue(after < before);
+        // the end moves a lot, the start moves less
+        assertTrue(Math.abs(graph.x(n - 1) - 1.0) < 0.02);
+        assertTrue(Math.abs(graph.x(0)) < 0.1);
+        // steps are evenly stretched, so the poses stay in order
+        for (int i = 0; i < n - 1; ++i) {
+            assertTrue(graph.x(i + 1) > graph.x(i));
+        }
+        assertEquals(0, graph.y(n - 1), 1e-6);
+    }
+
+    /**
+     * At the solution, the gradient is zero, checked numerically, on a curved
+     * path, so the rotation Jacobians count.
+     */
+    @Test
+    void testOptimal() {
+        PoseGraph graph = new PoseGraph(20, 10);
+        int n = 8;
+        double x = 0;
+        double y = 0;
+        double theta = 0;
+        for (int i = 0; i < n; ++i) {
+            graph.addNode(x, y, theta);
+            double dx = 0.1;
+            double dy = 0.02;
+            double dtheta = 0.1;
+            if (i < n - 1)
+                graph.setOdometry(i, dx, dy, dtheta);
+            // a little off from the odometry
+            x += 1.05 * (dx * Math.cos(theta) - dy * Math.sin(theta));
+            y += 1.05 * (dx * Math.sin(theta) + dy * Math.cos(theta));
+            theta += dtheta;
+        }
+        graph.addPosition(3, 0.3, 0.1, 0.02);
+        graph.addPosition(n - 1, 0.6, 0.3, 0.02);
+        graph.solve(5);
+        double e0 = graph.error();
+        double h = 1e-6;
+        for (int i = 0; i < n; ++i) {
+            for (int k = 0; k < 3; ++k) {
+                double plus = perturbed(graph, i, k, h);
+                double minus = perturbed(graph, i, k, -h);
+                double gradient = (plus - minus) / (2 * h);
+                // relative to the size of the error
+                assertEquals(0, gradient / Math.max(1, e0), 1e-2,
+                        String.format("node %d var %d", i, k));
+            }
+        }
+    }
+
+    /** Error with one variable moved by h. */
+    private static double perturbed(PoseGraph graph, int node, int var, double h) {
+        double[] saved = { graph.x(node), graph.y(node), graph.theta(node) };
+        graph.set(node, saved[0] + (var == 0 ? h : 0), saved[1] + (var == 1 ? h : 0),
+                saved[2] + (var == 2 ? h : 0));
+        double e = graph.error();
+        graph.set(node, saved[0], saved[1], saved[2]);
+        return e;
+    }
+}
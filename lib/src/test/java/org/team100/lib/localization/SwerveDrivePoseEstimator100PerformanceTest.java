@@ -70,7 +70,7 @@ public class SwerveDrivePoseEstimator100PerformanceTest {
         positions = p(0);
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         // fill the buffer with odometry
         double t = 0.0;
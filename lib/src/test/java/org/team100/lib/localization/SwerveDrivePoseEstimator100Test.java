@@ -9,8 +9,11 @@ import java.util.Random;
 import java.util.TreeMap;
 import java.util.function.Function;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.VelocitySE2;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.TestLoggerFactory;
@@ -68,6 +71,12 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         DataLogManager.stop();
     }
 
+    @AfterEach
+    void reset() {
+        Experiments.instance.testOverride(Experiment.BatchVisionReplay, false);
+        Experiments.instance.testOverride(Experiment.KalmanVision, false);
+    }
+
     @Test
     void testGyroOffset() {
         SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
@@ -115,7 +124,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
         positions = positionZero;
         ou.update(0.0);
         verify(0.000, history.apply(0.00));
@@ -142,6 +151,101 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         verifyVelocity(5.000, history.apply(0.02));
     }
 
+    /**
+     * Batched updates, given out of order, should produce the same history as
+     * unbatched updates in timestamp order, with a lot less replaying.
+     */
+    @Test
+    void testBatch() {
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
+        double[] stateStdDevs = new double[] { 0.1, 0.1, 0.1 };
+        double[] visionStdDevs = new double[] { 0.5, 0.5, Double.MAX_VALUE };
+
+        SwerveHistory sequential = new SwerveHistory(
+                logger, kinodynamics, Rotation2d.kZero, positionZero, Pose2d.kZero, 0);
+        OdometryUpdater sequentialOu = new OdometryUpdater(
+                kinodynamics, new MockGyro(), sequential, () -> positions);
+        positions = positionZero;
+        sequentialOu.reset(Pose2d.kZero, 0);
+        NudgingVisionUpdater sequentialVu = new NudgingVisionUpdater(logger, sequential, sequentialOu);
+
+        SwerveHistory batched = new SwerveHistory(
+                logger, kinodynamics, Rotation2d.kZero, positionZero, Pose2d.kZero, 0);
+        OdometryUpdater batchedOu = new OdometryUpdater(
+                kinodynamics, new MockGyro(), batched, () -> positions);
+        batchedOu.reset(Pose2d.kZero, 0);
+        NudgingVisionUpdater batchedVu = new NudgingVisionUpdater(logger, batched, batchedOu);
+
+        for (int i = 1; i <= 5; ++i) {
+            SwerveModulePosition100 p = new SwerveModulePosition100(0.1 * i, Optional.of(Rotation2d.kZero));
+            positions = new SwerveModulePositions(p, p, p, p);
+            sequentialOu.update(0.02 * i);
+            batchedOu.update(0.02 * i);
+        }
+
+        sequentialVu.put(0.01, new Pose2d(0.5, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        sequentialVu.put(0.03, new Pose2d(0.6, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        sequentialVu.put(0.06, new Pose2d(0.7, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+
+        Experiments.instance.testOverride(Experiment.BatchVisionReplay, true);
+        batchedVu.beginBatch();
+        batchedVu.put(0.06, new Pose2d(0.7, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        batchedVu.put(0.01, new Pose2d(0.5, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        batchedVu.put(0.03, new Pose2d(0.6, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        // nothing happens yet
+        verify(0.5, batched.apply(0.1));
+        batchedVu.endBatch();
+
+        assertEquals(sequential.size(), batched.size());
+        for (double t = 0; t <= 0.1; t += 0.01) {
+            assertEquals(sequential.apply(t).pose().getX(), batched.apply(t).pose().getX(), 1e-9);
+        }
+        // the vision pulled it forward
+        assertTrue(batched.apply(0.1).pose().getX() > 0.5);
+    }
+
+    /**
+     * With KalmanVision, the covariance grows with odometry, and vision shrinks
+     * it, so the second of two identical measurements moves the estimate less.
+     */
+    @Test
+    void testKalman() {
+        Experiments.instance.testOverride(Experiment.KalmanVision, true);
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
+        double[] stateStdDevs = new double[] { 0.1, 0.1, 0.1 };
+        double[] visionStdDevs = new double[] { 0.05, 0.05, Double.MAX_VALUE };
+        SwerveHistory history = new SwerveHistory(
+                logger, kinodynamics, Rotation2d.kZero, positionZero, Pose2d.kZero, 0);
+        OdometryUpdater ou = new OdometryUpdater(kinodynamics, new MockGyro(), history, () -> positions);
+        positions = positionZero;
+        ou.reset(Pose2d.kZero, 0);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
+        for (int i = 1; i <= 5; ++i) {
+            SwerveModulePosition100 p = new SwerveModulePosition100(0.1 * i, Optional.of(Rotation2d.kZero));
+            positions = new SwerveModulePositions(p, p, p, p);
+            ou.update(0.02 * i);
+        }
+        verify(0.5, history.apply(0.1));
+        // uncertainty grows with distance
+        double sigma0 = history.getRecord(0).m_covariance.positionSigma();
+        double sigma1 = history.getRecord(0.1).m_covariance.positionSigma();
+        assertTrue(sigma1 > sigma0);
+
+        // the state is much less certain than the measurement, so most of the way
+        vu.put(0.06, new Pose2d(0.4, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        double x1 = history.apply(0.1).pose().getX();
+        assertTrue(x1 > 0.57, String.format("%f", x1));
+        // replay carries the smaller covariance forward
+        double sigma2 = history.getRecord(0.1).m_covariance.positionSigma();
+        assertTrue(sigma2 < sigma1);
+
+        // now the state is about as certain as the measurement
+        vu.put(0.06, new Pose2d(0.45, 0, Rotation2d.kZero), stateStdDevs, visionStdDevs);
+        double x2 = history.apply(0.1).pose().getX();
+        assertTrue(x2 > x1);
+        assertTrue(x2 - x1 < 0.04, String.format("%f", x2 - x1));
+    }
+
     @Test
     void odo2() {
         SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest(logger);
@@ -160,7 +264,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
         positions = positionZero;
         ou.update(0.0);
         verify(0.000, history.apply(0.00));
@@ -205,7 +309,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
         positions = positionZero;
         ou.update(0.0);
         verify(0.000, history.apply(0.00));
@@ -255,7 +359,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
 
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         // initial pose = 0
         verify(0, history.apply(0.00));
@@ -375,7 +479,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         // initial pose = 0
         verify(0.000, history.apply(0.00));
@@ -497,7 +601,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         verify(0.000, history.apply(0.00));
         verify(0.000, history.apply(0.02));
@@ -555,7 +659,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
 
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         verify(0.000, history.apply(0.00));
         verify(0.000, history.apply(0.02));
@@ -613,7 +717,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
 
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         verify(0.000, history.apply(0.00));
         verify(0.000, history.apply(0.02));
@@ -673,7 +777,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
         positions = positionZero;
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, history, ou);
 
         verify(0.000, history.apply(0.00));
         verify(0.000, history.apply(0.02));
@@ -776,7 +880,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
                 Rotation2d.kZero,
                 new Pose2d(),
                 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(estimator, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, estimator, ou);
 
         trajectory = TrajectoryGenerator.generateTrajectory(
                 List.of(
@@ -928,7 +1032,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
         OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, estimator, () -> positions);
         positions = new SwerveModulePositions(fl, fr, bl, br);
         ou.reset(new Pose2d(1, 2, Rotation2d.fromDegrees(270)), 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(estimator, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, estimator, ou);
 
         ou.update(0);
 
@@ -977,7 +1081,7 @@ class SwerveDrivePoseEstimator100Test implements Timeless {
                 new SwerveModulePosition100(),
                 new SwerveModulePosition100());
         ou.reset(Pose2d.kZero, 0);
-        NudgingVisionUpdater vu = new NudgingVisionUpdater(estimator, ou);
+        NudgingVisionUpdater vu = new NudgingVisionUpdater(logger, estimator, ou);
 
         double time = 0;
 
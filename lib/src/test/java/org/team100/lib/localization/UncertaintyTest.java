@@ -3,6 +3,8 @@ package org.team100.lib.localization;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 
 import edu.wpi.first.math.geometry.Twist2d;
 
@@ -19,6 +21,20 @@ public class UncertaintyTest {
         assertEquals(Double.MAX_VALUE, visionStdDev[2], DELTA);
     }
 
+    /** Kalman uses the range to the tag, not the jump from the last fix. */
+    @Test
+    void testMeasurementNoise() {
+        assertEquals(Uncertainty.visionMeasurementStdDevs(0)[0],
+                Uncertainty.visionStdDevs(0, 2)[0], 1e-9);
+        Experiments.instance.testOverride(Experiment.KalmanVision, true);
+        try {
+            assertEquals(Uncertainty.tagStdDev(2), Uncertainty.visionStdDevs(0, 2)[0], 1e-9);
+            assertEquals(Uncertainty.tagStdDev(2), Uncertainty.visionStdDevs(0, 2)[1], 1e-9);
+        } finally {
+            Experiments.instance.testOverride(Experiment.KalmanVision, false);
+        }
+    }
+
     @Test
     void testStateStdDevs() {
         // these are the "antijitter" values.
@@ -0,0 +1,81 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class WindowPriorTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testAdvance() {
+        WindowPrior p = new WindowPrior(10);
+        p.reset(0, 1, 2, 0.01);
+        p.chainStart();
+        assertTrue(p.chainAdd(0.1, 0.1, 0, 0.001));
+        assertTrue(p.chainAdd(0.2, 0, 0.1, 0.001));
+        // earlier does nothing
+        assertTrue(p.advance(-1));
+        assertEquals(1, p.x(), DELTA);
+        // halfway along the first step
+        assertTrue(p.advance(0.05));
+        assertEquals(1.05, p.x(), DELTA);
+        assertEquals(2, p.y(), DELTA);
+        assertEquals(0.0105, p.variance(), DELTA);
+        // the rest of the first, and half the second
+        assertTrue(p.advance(0.15));
+        assertEquals(1.1, p.x(), DELTA);
+        assertEquals(2.05, p.y(), DELTA);
+        assertEquals(0.0115, p.variance(), DELTA);
+        // past the end
+        assertFalse(p.advance(1));
+        assertEquals(0.2, p.timeS(), DELTA);
+        assertEquals(1.1, p.x(), DELTA);
+        assertEquals(2.1, p.y(), DELTA);
+        assertEquals(0.012, p.variance(), DELTA);
+    }
+
+    @Test
+    void testFold() {
+        WindowPrior p = new WindowPrior(10);
+        p.reset(0, 0, 0, 0.01);
+        // same variance, halfway
+        p.fold(1, 2, 0.01);
+        assertEquals(0.5, p.x(), DELTA);
+        assertEquals(1, p.y(), DELTA);
+        assertEquals(0.005, p.variance(), DELTA);
+    }
+
+    /**
+     * A measurement folded once moves the prior part way, and moving along the
+     * chain, again and again, as each solve does, doesn't move it any more.
+     */
+    @Test
+    void testOnce() {
+        WindowPrior p = new WindowPrior(10);
+        p.reset(0, 0, 0, 0.0025);
+        p.chainStart();
+        p.chainAdd(0.1, 0, 0, 0.000001);
+        p.advance(0.1);
+        p.fold(0.5, 0, 0.25);
+        double x = p.x();
+        assertEquals(0.5 * 0.002501 / (0.002501 + 0.25), x, DELTA);
+        for (int i = 0; i < 100; ++i) {
+            p.chainStart();
+            p.chainAdd(0.1 + 0.01 * (i + 1), 0, 0, 0);
+            p.advance(0.1 + 0.01 * (i + 1));
+        }
+        assertEquals(x, p.x(), DELTA);
+    }
+
+    @Test
+    void testFull() {
+        WindowPrior p = new WindowPrior(2);
+        p.reset(0, 0, 0, 0.01);
+        p.chainStart();
+        assertTrue(p.chainAdd(0.1, 0.1, 0, 0));
+        assertFalse(p.chainAdd(0.2, 0.1, 0, 0));
+    }
+}
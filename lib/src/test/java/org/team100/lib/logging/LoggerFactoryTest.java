@@ -0,0 +1,103 @@
+package org.team100.lib.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.geometry.VelocitySE2;
+import org.team100.lib.logging.LoggerFactory.DoubleArrayLogger;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.Pose2dLogger;
+import org.team100.lib.logging.LoggerFactory.VelocitySE2Logger;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.testing.Timeless;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class LoggerFactoryTest implements Timeless {
+    private static final boolean DEBUG = false;
+    private static final int WARMUP = 20000;
+    private static final int CALLS = 10000;
+
+    /** The level supplier is asked once per cycle, not once per call. */
+    @Test
+    void testLevelCache() {
+        int[] count = new int[1];
+        LoggerFactory log = new LoggerFactory(() -> {
+            count[0]++;
+            return Level.DEBUG;
+        }, "test", new TestPrimitiveLogger());
+        DoubleLogger a = log.doubleLogger(Level.DEBUG, "a");
+        // children share the cache
+        DoubleLogger b = log.name("child").doubleLogger(Level.TRACE, "b");
+        for (int i = 0; i < 10; ++i) {
+            a.log(i);
+            b.log(i);
+        }
+        assertEquals(1, count[0]);
+        stepTime();
+        a.log(1);
+        b.log(1);
+        assertEquals(2, count[0]);
+    }
+
+    /**
+     * The value forms don't allocate anything, whether they're filtered out or
+     * not, once the JIT has done its thing.
+     */
+    @Test
+    void testZeroAllocation() {
+        assumeTrue(threads().isThreadAllocatedMemorySupported());
+        threads().setThreadAllocatedMemoryEnabled(true);
+
+        LoggerFactory log = new LoggerFactory(
+                () -> Level.DEBUG, "test", new TestPrimitiveLogger());
+        DoubleLogger enabled = log.doubleLogger(Level.DEBUG, "enabled");
+        DoubleLogger disabled = log.doubleLogger(Level.TRACE, "disabled");
+        Pose2dLogger pose = log.pose2dLogger(Level.DEBUG, "pose");
+        VelocitySE2Logger velocity = log.VelocitySE2Logger(Level.DEBUG, "velocity");
+        DoubleArrayLogger array = log.doubleArrayLogger(Level.DEBUG, "array");
+        Pose2d p = new Pose2d(1, 2, Rotation2d.kCCW_Pi_2);
+        VelocitySE2 v = new VelocitySE2(1, 2, 3);
+
+        Runnable work = () -> {
+            enabled.log(1.0);
+            disabled.log(2.0);
+            pose.log(p);
+            velocity.log(v);
+            array.log(p.getX(), p.getY(), p.getRotation().getDegrees());
+        };
+        Runnable nothing = () -> {
+        };
+        allocated(work, WARMUP);
+        allocated(nothing, WARMUP);
+        // the measurement itself might allocate, so subtract that.
+        long baseline = allocated(nothing, CALLS);
+        long bytes = allocated(work, CALLS) - baseline;
+        if (DEBUG)
+            System.out.printf("baseline %d bytes %d\n", baseline, bytes);
+        assertEquals(0, bytes);
+    }
+
+    ////////////////////////////////////////////
+
+    private static ThreadMXBean threads() {
+        return (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /** Bytes allocated by this thread running r n times. */
+    private static long allocated(Runnable r, int n) {
+        ThreadMXBean threads = threads();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < n; ++i) {
+            r.run();
+        }
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+}
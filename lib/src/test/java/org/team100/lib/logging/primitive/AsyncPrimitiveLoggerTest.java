@@ -0,0 +1,267 @@
+package org.team100.lib.logging.primitive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveBooleanLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveDoubleArrayLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveDoubleLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveIntLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveLongLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveStringLogger;
+
+class AsyncPrimitiveLoggerTest {
+    private static final boolean DEBUG = false;
+
+    /** Everything arrives, in order, on the drain thread. */
+    @Test
+    void testOrder() {
+        Recorder recorder = new Recorder();
+        List<String> flushes = new ArrayList<>();
+        AsyncPrimitiveLogger logger = new AsyncPrimitiveLogger(
+                recorder, () -> flushes.add(Thread.currentThread().getName()), 16, 16);
+        PrimitiveBooleanLogger b = logger.booleanLogger("b");
+        PrimitiveDoubleLogger d = logger.doubleLogger("d");
+        PrimitiveIntLogger i = logger.intLogger("i");
+        PrimitiveDoubleArrayLogger a = logger.doubleArrayLogger("a");
+        PrimitiveLongLogger l = logger.longLogger("l");
+        PrimitiveStringLogger s = logger.stringLogger("s");
+        // the drain thread creates the delegate's loggers.
+        logger.drain();
+        assertEquals(6, logger.keyCount());
+        assertEquals(List.of("AsyncPrimitiveLogger"), recorder.creators());
+        b.log(true);
+        d.log(1.5);
+        i.log(2);
+        double[] array = new double[] { 3, 4 };
+        a.log(array);
+        // the caller can reuse the array.
+        array[0] = 5;
+        l.log(6);
+        s.log("foo");
+        logger.periodic();
+        logger.close();
+        assertEquals(
+                List.of("b true", "d 1.5", "i 2", "a [3.0, 4.0]", "l 6", "s foo"),
+                recorder.values);
+        assertEquals(List.of("AsyncPrimitiveLogger"), flushes);
+        assertEquals(0, logger.depth());
+        assertEquals(0, logger.dropped());
+        assertTrue(logger.latencyS() > 0);
+    }
+
+    /** If the drain thread is stuck, the ring fills, and values are dropped. */
+    @Test
+    void testDrop() throws InterruptedException {
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder() {
+            @Override
+            void add(String s) {
+                stuck.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.add(s);
+            }
+        };
+        AsyncPrimitiveLogger logger = new AsyncPrimitiveLogger(recorder, null, 4, 4);
+        PrimitiveDoubleLogger d = logger.doubleLogger("d");
+        PrimitiveDoubleArrayLogger a = logger.doubleArrayLogger("a");
+        d.log(0);
+        // the first value is taken, so the slot isn't free yet.
+        stuck.await();
+        for (int i = 1; i < 10; ++i) {
+            d.log(i);
+        }
+        assertEquals(4, logger.depth());
+        assertEquals(6, logger.dropped());
+        release.countDown();
+        logger.drain();
+        // arrays can overflow their own ring.
+        a.log(new double[] { 1, 2, 3, 4, 5 });
+        assertEquals(7, logger.dropped());
+        logger.close();
+        assertEquals(List.of("d 0.0", "d 1.0", "d 2.0", "d 3.0"), recorder.values);
+    }
+
+    /**
+     * The delegate isn't thread-safe, but loggers can be created while it's
+     * flushing, since it's all on the drain thread.
+     */
+    @Test
+    void testCreateWhileFlushing() {
+        List<Integer> flushed = new ArrayList<>();
+        Recorder recorder = new Recorder();
+        // like UdpPrimitiveLogger.periodic(), which iterates its loggers.
+        Runnable flush = () -> {
+            int n = 0;
+            for (String c : recorder.creators) {
+                n += c.length();
+            }
+            flushed.add(n);
+        };
+        AsyncPrimitiveLogger logger = new AsyncPrimitiveLogger(recorder, flush, 1 << 12, 16);
+        for (int i = 0; i < 1000; ++i) {
+            logger.doubleLogger("d" + i).log(i);
+            logger.periodic();
+        }
+        logger.close();
+        assertEquals(1000, flushed.size());
+        assertEquals(1000, recorder.values.size());
+        assertEquals(1000, logger.keyCount());
+        assertEquals(0, logger.dropped());
+    }
+
+    /** Several threads can log at once. */
+    @Test
+    void testManyThreads() throws InterruptedException {
+        Recorder recorder = new Recorder();
+        AsyncPrimitiveLogger logger = new AsyncPrimitiveLogger(recorder, null, 1 << 16, 16);
+        int threads = 4;
+        int values = 1000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t) {
+            String name = "t" + t;
+            workers.add(new Thread(() -> {
+                PrimitiveIntLogger i = logger.intLogger(name);
+                for (int v = 0; v < values; ++v) {
+                    i.log(v);
+                }
+            }));
+        }
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        logger.close();
+        assertEquals(0, logger.dropped());
+        assertEquals(threads * values, recorder.values.size());
+        // each thread's values are in order.
+        for (int t = 0; t < threads; ++t) {
+            String prefix = "t" + t + " ";
+            int expected = 0;
+            for (String v : recorder.values) {
+                if (v.startsWith(prefix))
+                    assertEquals(prefix + expected++, v);
+            }
+            assertEquals(values, expected);
+        }
+    }
+
+    /** The loop thread only pays for the copy into the ring. */
+    @Test
+    void testLoopTime() {
+        int keys = 5000;
+        int cycles = 50;
+        // a slow-ish delegate, like NT.
+        PrimitiveLogger slow = new TestPrimitiveLogger() {
+            @Override
+            public PrimitiveDoubleLogger doubleLogger(String label) {
+                super.doubleLogger(label);
+                return x -> Math.sqrt(Math.log(x + 1) + Math.exp(-x));
+            }
+        };
+        AsyncPrimitiveLogger async = new AsyncPrimitiveLogger(slow, null);
+        double syncS = loopTime(slow, keys, cycles, () -> {
+        });
+        double asyncS = loopTime(async, keys, cycles, async::periodic);
+        async.close();
+        if (DEBUG)
+            System.out.printf("loop time (ms) sync %.3f async %.3f latency %.3f dropped %d\n",
+                    1000 * syncS, 1000 * asyncS, 1000 * async.latencyS(), async.dropped());
+    }
+
+    ////////////////////////////////////////////
+
+    private static double loopTime(PrimitiveLogger p, int keys, int cycles, Runnable periodic) {
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "async", p);
+        DoubleLogger[] loggers = new DoubleLogger[keys];
+        for (int j = 0; j < keys; ++j) {
+            loggers[j] = log.doubleLogger(Level.TRACE, "key" + j);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < cycles; ++i) {
+            final double val = i;
+            for (DoubleLogger logger : loggers) {
+                logger.log(() -> val);
+            }
+            periodic.run();
+        }
+        return 1e-9 * (System.nanoTime() - start) / cycles;
+    }
+
+    /** Records values as strings, and the threads that created the loggers. */
+    private static class Recorder extends TestPrimitiveLogger {
+        final List<String> values = new ArrayList<>();
+        /** Not thread-safe, on purpose. */
+        final List<String> creators = new ArrayList<>();
+
+        void add(String s) {
+            values.add(s);
+        }
+
+        List<String> creators() {
+            return creators.stream().distinct().toList();
+        }
+
+        private void created() {
+            creators.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public PrimitiveBooleanLogger booleanLogger(String label) {
+            super.booleanLogger(label);
+            created();
+            return x -> add(label + " " + x);
+        }
+
+        @Override
+        public PrimitiveDoubleLogger doubleLogger(String label) {
+            super.doubleLogger(label);
+            created();
+            return x -> add(label + " " + x);
+        }
+
+        @Override
+        public PrimitiveIntLogger intLogger(String label) {
+            super.intLogger(label);
+            created();
+            return x -> add(label + " " + x);
+        }
+
+        @Override
+        public PrimitiveDoubleArrayLogger doubleArrayLogger(String label) {
+            super.doubleArrayLogger(label);
+            created();
+            return x -> add(label + " " + Arrays.toString(x));
+        }
+
+        @Override
+        public PrimitiveLongLogger longLogger(String label) {
+            super.longLogger(label);
+            created();
+            return x -> add(label + " " + x);
+        }
+
+        @Override
+        public PrimitiveStringLogger stringLogger(String label) {
+            super.stringLogger(label);
+            created();
+            return x -> add(label + " " + x);
+        }
+    }
+}
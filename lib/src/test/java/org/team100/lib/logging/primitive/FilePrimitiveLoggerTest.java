@@ -0,0 +1,209 @@
+package org.team100.lib.logging.primitive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.team100.lib.logging.primitive.PrimitiveLogger.PrimitiveDoubleLogger;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import edu.wpi.first.wpilibj.DriverStation.MatchType;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+
+class FilePrimitiveLoggerTest implements Timeless {
+    private static final boolean DEBUG = false;
+    private static final long SIZE = FilePrimitiveLogger.HEADER_SIZE + 100000;
+
+    @TempDir
+    Path dir;
+
+    /** Everything survives the trip through the converter. */
+    @Test
+    void testRoundTrip() throws IOException {
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, SIZE);
+        logger.booleanLogger("boolean").log(true);
+        logger.doubleLogger("double").log(1.5);
+        logger.intLogger("int").log(3);
+        logger.doubleArrayLogger("array").log(new double[] { 1, 2 });
+        logger.longLogger("long").log(4);
+        logger.stringLogger("string").log("foo");
+        stepTime();
+        logger.doubleLogger("double").log(2.5);
+        assertEquals(6, logger.keyCount());
+        logger.close();
+
+        Path out = dir.resolve("out.wpilog");
+        assertEquals(7, FileLogConverter.convert(logger.path(), out));
+
+        DataLogReader reader = new DataLogReader(out.toString());
+        assertTrue(reader.isValid());
+        Map<Integer, String> names = new HashMap<>();
+        int count = 0;
+        long firstDoubleUs = -1;
+        for (DataLogRecord r : reader) {
+            if (r.isStart()) {
+                names.put(r.getStartData().entry, r.getStartData().name);
+                continue;
+            }
+            count++;
+            switch (names.get(r.getEntry())) {
+                case "boolean" -> assertTrue(r.getBoolean());
+                case "int" -> assertEquals(3, r.getInteger());
+                case "array" -> assertArrayEquals(new double[] { 1, 2 }, r.getDoubleArray());
+                case "long" -> assertEquals(4, r.getInteger());
+                case "string" -> assertEquals("foo", r.getString());
+                case "double" -> {
+                    // the second one is one cycle later
+                    if (firstDoubleUs < 0) {
+                        firstDoubleUs = r.getTimestamp();
+                        assertEquals(1.5, r.getDouble());
+                    } else {
+                        assertEquals(20000, r.getTimestamp() - firstDoubleUs, 1);
+                        assertEquals(2.5, r.getDouble());
+                    }
+                }
+                default -> throw new IllegalStateException();
+            }
+        }
+        assertEquals(7, count);
+    }
+
+    /** When the file is full, the spare takes over. */
+    @Test
+    void testRollover() throws IOException {
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, FilePrimitiveLogger.HEADER_SIZE + 100);
+        // wait for the spare
+        logger.sync();
+        PrimitiveDoubleLogger d = logger.doubleLogger("double");
+        Path first = logger.path();
+        for (int i = 0; i < 10; ++i) {
+            d.log(i);
+        }
+        // each record is 19 bytes, so five fit in each file.
+        Path second = logger.path();
+        assertNotEquals(first, second);
+        assertEquals(95, logger.used());
+        assertEquals(0, logger.dropped());
+        logger.close();
+        assertFalse(Files.exists(dir.resolve(FilePrimitiveLogger.SPARE_NAME)));
+        assertEquals(5, FileLogConverter.convert(first, dir.resolve("first.wpilog")));
+        assertEquals(5, FileLogConverter.convert(second, dir.resolve("second.wpilog")));
+    }
+
+    /** Without enough space on the disk, there's no file, and nothing breaks. */
+    @Test
+    void testNoSpace() {
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, SIZE, Long.MAX_VALUE / 2);
+        assertEquals(0, logger.size());
+        PrimitiveDoubleLogger d = logger.doubleLogger("double");
+        d.log(1);
+        assertEquals(0, logger.used());
+        assertEquals(1, logger.dropped());
+        logger.close();
+    }
+
+    /** The file fits in the space on the disk. */
+    @Test
+    void testSize() throws IOException {
+        long usable = Files.getFileStore(dir).getUsableSpace();
+        long reserve = usable - FilePrimitiveLogger.HEADER_SIZE - 50000;
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, SIZE, reserve);
+        // other things may be using the disk too, so this is approximate.
+        assertTrue(logger.size() < SIZE);
+        logger.close();
+    }
+
+    /** A new match gets a new file, which includes the existing keys. */
+    @Test
+    void testRotate() throws IOException {
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, SIZE);
+        logger.sync();
+        PrimitiveDoubleLogger d = logger.doubleLogger("double");
+        d.log(1);
+        Path first = logger.path();
+
+        DriverStationSim.setFmsAttached(true);
+        DriverStationSim.setMatchType(MatchType.Qualification);
+        DriverStationSim.setMatchNumber(12);
+        DriverStationSim.notifyNewData();
+        logger.periodic();
+        Path second = logger.path();
+        assertNotEquals(first, second);
+        assertTrue(second.getFileName().toString().contains("Qualification12"));
+        // same match, same file
+        logger.periodic();
+        assertEquals(second, logger.path());
+
+        d.log(2);
+        logger.close();
+        DriverStationSim.resetData();
+        // the first file was trimmed
+        assertTrue(Files.size(first) < SIZE);
+        assertEquals(1, FileLogConverter.convert(first, dir.resolve("first.wpilog")));
+        assertEquals(1, FileLogConverter.convert(second, dir.resolve("second.wpilog")));
+    }
+
+    /** To make room, the oldest log files are deleted, and only as many as needed. */
+    @Test
+    void testDeleteOldest() throws IOException {
+        long old = 4 << 20;
+        Path[] files = new Path[3];
+        for (int i = 0; i < files.length; ++i) {
+            files[i] = dir.resolve("T100_old_" + i + ".blog");
+            // real bytes, so they use the disk.
+            Files.write(files[i], new byte[(int) old]);
+            Files.setLastModifiedTime(files[i], FileTime.fromMillis(1000000L * (i + 1)));
+        }
+        Path other = dir.resolve("other.wpilog");
+        Files.write(other, new byte[10]);
+        Files.setLastModifiedTime(other, FileTime.fromMillis(0));
+        // a full-size file doesn't quite fit.
+        long usable = Files.getFileStore(dir).getUsableSpace();
+        long reserve = usable - SIZE + old / 2;
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, SIZE, reserve);
+        logger.sync();
+        assertEquals(SIZE, logger.size());
+        assertFalse(Files.exists(files[0]));
+        assertTrue(Files.exists(files[1]));
+        assertTrue(Files.exists(files[2]));
+        // other files are left alone.
+        assertTrue(Files.exists(other));
+        logger.close();
+    }
+
+    /** Writing is just a memory copy, so it should be fast. */
+    @Test
+    void testSpeed() {
+        FilePrimitiveLogger logger = new FilePrimitiveLogger(dir, FilePrimitiveLogger.HEADER_SIZE + 20000000);
+        int keys = 5000;
+        int cycles = 100;
+        PrimitiveDoubleLogger[] loggers = new PrimitiveDoubleLogger[keys];
+        for (int i = 0; i < keys; ++i) {
+            loggers[i] = logger.doubleLogger("key" + i);
+        }
+        long start = System.nanoTime();
+        for (int c = 0; c < cycles; ++c) {
+            for (PrimitiveDoubleLogger l : loggers) {
+                l.log(c);
+            }
+        }
+        double s = 1e-9 * (System.nanoTime() - start);
+        assertEquals(0, logger.dropped());
+        logger.close();
+        if (DEBUG)
+            System.out.printf("time per cycle (ms) %.3f\n", 1000 * s / cycles);
+    }
+}
@@ -0,0 +1,139 @@
+package org.team100.lib.logging.primitive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.primitive.UdpPrimitiveProtocol.ProtocolException;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+
+/**
+ * Sends real packets through the loopback interface, and decodes them, to
+ * measure end-to-end throughput, and compares the loop time with NT.
+ */
+class UdpLoopbackTest {
+    private static final boolean DEBUG = false;
+    /** About what the robot has, with TRACE enabled. */
+    private static final int KEYS = 5000;
+    private static final int CYCLES = 50;
+
+    /** Everything we send is received, on loopback anyway. */
+    @Test
+    void testThroughput() throws IOException, ProtocolException {
+        try (DatagramChannel receiver = receiver()) {
+            int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+            UdpSender dataSink = new UdpSender(InetAddress.getLoopbackAddress(), port);
+            UdpPrimitiveLogger udpLogger = new UdpPrimitiveLogger(dataSink, new DummySender());
+            DoubleLogger[] loggers = loggers(udpLogger);
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(UdpSender.MTU);
+            int received = 0;
+            long sendNs = 0;
+            for (int i = 0; i < CYCLES; ++i) {
+                final double val = i;
+                long start = System.nanoTime();
+                for (DoubleLogger logger : loggers) {
+                    logger.log(() -> val);
+                }
+                udpLogger.flush();
+                sendNs += System.nanoTime() - start;
+                // Drain after each flush, so the socket buffer doesn't overflow.
+                received += drain(receiver, buf, val);
+            }
+            assertEquals(KEYS * CYCLES, received);
+            if (DEBUG) {
+                double sendS = sendNs * 1e-9;
+                System.out.printf("packets %d keys %d\n", dataSink.getCounter(), received);
+                System.out.printf("send time per cycle (ms) %.3f\n", 1000 * sendS / CYCLES);
+                System.out.printf("keys per second %.0f\n", received / sendS);
+            }
+        }
+    }
+
+    /**
+     * Loop time for the same load, using NT and UDP. The NT publisher is where
+     * the time goes; the UDP logger just saves the value, and the flush is fast.
+     *
+     * There's no need to run this all the time.
+     */
+    @Test
+    void testCompareWithNT() throws IOException {
+        try (DatagramChannel receiver = receiver()) {
+            int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+            UdpPrimitiveLogger udpLogger = new UdpPrimitiveLogger(
+                    new UdpSender(InetAddress.getLoopbackAddress(), port), new DummySender());
+            double udpS = loopTime(loggers(udpLogger), udpLogger::flush);
+
+            NTPrimitiveLogger ntLogger = new NTPrimitiveLogger();
+            try {
+                double ntS = loopTime(loggers(ntLogger), () -> {
+                });
+                if (DEBUG)
+                    System.out.printf("loop time (ms) NT %.3f UDP %.3f\n", 1000 * ntS, 1000 * udpS);
+            } finally {
+                DataLogManager.stop();
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////
+
+    private static DatagramChannel receiver() throws IOException {
+        DatagramChannel receiver = DatagramChannel.open();
+        receiver.setOption(StandardSocketOptions.SO_RCVBUF, 1000000);
+        receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        receiver.configureBlocking(false);
+        return receiver;
+    }
+
+    private static DoubleLogger[] loggers(PrimitiveLogger primitiveLogger) {
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "loopback", primitiveLogger);
+        DoubleLogger[] loggers = new DoubleLogger[KEYS];
+        for (int j = 0; j < KEYS; ++j) {
+            loggers[j] = log.doubleLogger(Level.TRACE, "key" + j);
+        }
+        return loggers;
+    }
+
+    /** Average seconds per cycle. */
+    private static double loopTime(DoubleLogger[] loggers, Runnable flush) {
+        long start = System.nanoTime();
+        for (int i = 0; i < CYCLES; ++i) {
+            final double val = i;
+            for (DoubleLogger logger : loggers) {
+                logger.log(() -> val);
+            }
+            flush.run();
+        }
+        return 1e-9 * (System.nanoTime() - start) / CYCLES;
+    }
+
+    /** Decode everything waiting, checking the values, return the key count. */
+    private static int drain(DatagramChannel receiver, ByteBuffer buf, double expected)
+            throws IOException, ProtocolException {
+        int count = 0;
+        while (true) {
+            buf.clear();
+            if (receiver.receive(buf) == null)
+                return count;
+            buf.flip();
+            buf.getLong(); // timestamp
+            while (buf.hasRemaining()) {
+                UdpPrimitiveProtocol.decodeKey(buf);
+                assertEquals(UdpType.DOUBLE, UdpPrimitiveProtocol.decodeType(buf));
+                assertEquals(expected, UdpPrimitiveProtocol.decodeDouble(buf));
+                count++;
+            }
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.nio.ByteBuffer;
 import org.junit.jupiter.api.Test;
 import org.team100.lib.logging.primitive.UdpPrimitiveProtocol.ProtocolException;
 
-class UdpPrimitiveProtocol2Test {
+class UdpPrimitiveProtocolTest {
 
     //////////////////////////////
     //
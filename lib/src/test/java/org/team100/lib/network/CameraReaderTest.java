@@ -0,0 +1,101 @@
+package org.team100.lib.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.config.Camera;
+import org.team100.lib.localization.Blip24;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.util.struct.StructBuffer;
+
+class CameraReaderTest implements Timeless {
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+    private static final byte[] VALUE = new byte[] { 1 };
+
+    /** Records the offset of each value it gets. */
+    private static class Recorder extends CameraReader<Blip24> {
+        final List<Transform3d> offsets = new ArrayList<>();
+
+        Recorder() {
+            super(log, "vision", "blips", StructBuffer.create(Blip24.struct));
+        }
+
+        @Override
+        protected boolean perRawValue(Transform3d cameraOffset, double valueTimestamp, byte[] valueBytes) {
+            offsets.add(cameraOffset);
+            return true;
+        }
+
+        @Override
+        protected void perValue(Transform3d cameraOffset, double valueTimestamp, Blip24[] value) {
+        }
+    }
+
+    /** Each topic is indexed once, by handle, and weird topics are ignored. */
+    @Test
+    void testTopics() {
+        Recorder reader = new Recorder();
+        reader.update(
+                new int[] { 1, 2, 3, 1, 4, 5 },
+                new String[] {
+                        "vision/test4/0/blips",
+                        "vision/weird",
+                        "vision/test5/0/other",
+                        // the name is only parsed the first time
+                        "ignored",
+                        "vision/nosuchcamera/0/blips",
+                        "vision/test5/0/blips" },
+                new byte[][] { VALUE, VALUE, VALUE, VALUE, VALUE, new byte[0] },
+                new long[] { 1000000, 1000000, 1000000, 1020000, 1020000, 1020000 });
+        assertEquals(5, reader.topicCount());
+        // the weird topics, and the empty value, are skipped.
+        assertEquals(3, reader.offsets.size());
+        assertSame(Camera.TEST4.getOffset(), reader.offsets.get(0));
+        assertSame(Camera.TEST4.getOffset(), reader.offsets.get(1));
+        // an unknown camera is at the robot origin.
+        assertSame(Camera.UNKNOWN.getOffset(), reader.offsets.get(2));
+
+        // the same topics again, with the same handles, don't add anything.
+        reader.update(
+                new int[] { 2, 5 },
+                new String[] { "vision/weird", "vision/test5/0/blips" },
+                new byte[][] { VALUE, VALUE },
+                new long[] { 1040000, 1040000 });
+        assertEquals(5, reader.topicCount());
+        assertEquals(4, reader.offsets.size());
+        assertSame(Camera.TEST5.getOffset(), reader.offsets.get(3));
+    }
+
+    /** The index grows past its initial size. */
+    @Test
+    void testManyTopics() {
+        Recorder reader = new Recorder();
+        int n = 20;
+        int[] topics = new int[n];
+        String[] names = new String[n];
+        byte[][] values = new byte[n][];
+        long[] times = new long[n];
+        for (int i = 0; i < n; ++i) {
+            topics[i] = 0x01000000 + i;
+            names[i] = "vision/test" + (4 + i % 3) + "/" + i + "/blips";
+            values[i] = VALUE;
+            times[i] = 1000000;
+        }
+        reader.update(topics, names, values, times);
+        reader.update(topics, names, values, times);
+        assertEquals(n, reader.topicCount());
+        assertEquals(2 * n, reader.offsets.size());
+        for (int i = 0; i < 2 * n; ++i) {
+            assertSame(Camera.get("test" + (4 + i % n % 3)).getOffset(), reader.offsets.get(i));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.team100.lib.optimization;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.function.Function;
 
@@ -693,4 +694,83 @@ public class NewtonsMethodTest {
 
         }
     }
+
+    /** The workspace solver with a numerical Jacobian matches solve2(). */
+    @Test
+    void testSolveInPlace() {
+        NewtonsMethod<N2, N2> s = new NewtonsMethod<>(
+                Nat.N2(), Nat.N2(), rrError(), RR_MIN, RR_MAX, 1e-3, 10, 1);
+        Vector<N2> expected = s.solve2(VecBuilder.fill(0, Math.PI / 2), 5, true);
+        Vector<N2> x = VecBuilder.fill(0, Math.PI / 2);
+        assertTrue(s.solveInPlace(x, 5, true));
+        assertEquals(expected.get(0), x.get(0), 1e-6);
+        assertEquals(expected.get(1), x.get(1), 1e-6);
+        assertEquals(0, s.lastRestarts());
+    }
+
+    @Test
+    void testAnalyticJacobian() {
+        NewtonsMethod.Jacobian<N2, N2> jacobian = (q, j) -> {
+            double s0 = Math.sin(q.get(0));
+            double c0 = Math.cos(q.get(0));
+            double s01 = Math.sin(q.get(0) + q.get(1));
+            double c01 = Math.cos(q.get(0) + q.get(1));
+            j.set(0, 0, -s0 - s01);
+            j.set(0, 1, -s01);
+            j.set(1, 0, c0 + c01);
+            j.set(1, 1, c01);
+        };
+        NewtonsMethod<N2, N2> s = new NewtonsMethod<>(
+                Nat.N2(), Nat.N2(), rrError(), jacobian, false, RR_MIN, RR_MAX, 1e-3, 10, 1);
+        Vector<N2> x = VecBuilder.fill(0, Math.PI / 2);
+        assertTrue(s.solveInPlace(x, 5, true));
+        assertEquals(0.524, x.get(0), 1e-3);
+        assertEquals(2.094, x.get(1), 1e-3);
+        // solve2 uses it too
+        x = s.solve2(VecBuilder.fill(0, Math.PI / 2), 5, true);
+        assertEquals(0.524, x.get(0), 1e-3);
+        assertEquals(2.094, x.get(1), 1e-3);
+    }
+
+    @Test
+    void testBroyden() {
+        NewtonsMethod<N2, N2> s = new NewtonsMethod<>(
+                Nat.N2(), Nat.N2(), rrError(), null, true, RR_MIN, RR_MAX, 1e-3, 10, 1);
+        Vector<N2> x = VecBuilder.fill(0, Math.PI / 2);
+        assertTrue(s.solveInPlace(x, 5, true));
+        assertEquals(0.524, x.get(0), 1e-3);
+        assertEquals(2.094, x.get(1), 1e-3);
+        if (DEBUG)
+            System.out.printf("iterations %d restarts %d\n", s.lastIterations(), s.lastRestarts());
+    }
+
+    /** Overdetermined, so the step is least-squares. */
+    @Test
+    void testBroydenLynx() {
+        URDFAL5D m = URDFAL5D.make();
+        LynxArmConfig expected = new LynxArmConfig(0.1, -1.5, 1.5, 1.0, 0.1);
+        Pose3d goal = m.forward(m.qMap(expected.toVec())).get("center_point");
+        Function<Vector<N5>, Vector<N6>> err = q -> GeometryUtil.toVec(
+                goal.log(m.forward(m.qMap(q)).get("center_point")));
+        NewtonsMethod<N5, N6> solver = new NewtonsMethod<>(
+                Nat.N5(), Nat.N6(), err, null, true,
+                m.minQ(Nat.N5()), m.maxQ(Nat.N5()),
+                1e-3, 8, 1);
+        Vector<N5> q = new LynxArmConfig(0, -1.4, 1.4, 1.1, 0).toVec();
+        assertTrue(solver.solveInPlace(q, 3, true));
+        assertTrue(err.apply(q).maxAbs() < 1e-3);
+        if (DEBUG)
+            System.out.printf("iterations %d restarts %d q %s\n",
+                    solver.lastIterations(), solver.lastRestarts(), StrUtil.vecStr(q));
+    }
+
+    private static final Vector<N2> RR_MIN = VecBuilder.fill(-Math.PI, -Math.PI);
+    private static final Vector<N2> RR_MAX = VecBuilder.fill(Math.PI, Math.PI);
+
+    /** RR arm, reaching for (0, 1). */
+    private static Function<Vector<N2>, Vector<N2>> rrError() {
+        return q -> VecBuilder.fill(
+                Math.cos(q.get(0)) + Math.cos(q.get(0) + q.get(1)),
+                Math.sin(q.get(0)) + Math.sin(q.get(0) + q.get(1)) - 1);
+    }
 }
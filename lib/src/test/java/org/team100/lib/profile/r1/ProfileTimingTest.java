@@ -0,0 +1,129 @@
+package org.team100.lib.profile.r1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.state.Control100;
+import org.team100.lib.state.Model100;
+
+class ProfileTimingTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 0.001;
+    private final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    /** The closed form matches a fine-grained simulation. */
+    @Test
+    void testTrapezoid() {
+        TrapezoidIncrementalProfile p = new TrapezoidIncrementalProfile(logger, 1, 1, 0.01);
+        double[][] cases = {
+                // x0, v0, xg, vg
+                { 0, 0, 2, 0 },
+                { 0, 1, 0, 0 },
+                { 0, 0, 0.5, 0 },
+                { 0, 2, 1, 0 },
+                { 0, -1, 1, 0 },
+                { 1, 0, 0, 0 },
+                { 0, 0.5, 3, 0.5 },
+                { 0, 0.5, -3, -0.2 },
+                { 0, -1, -4, -0.5 } };
+        for (double[] c : cases) {
+            Control100 i = new Control100(c[0], c[1]);
+            Model100 g = new Model100(c[2], c[3]);
+            double eta = p.eta(0.1, i, g);
+            double sim = p.simulateForETA(0.001, i, g);
+            if (DEBUG)
+                System.out.printf("%s %s eta %.4f sim %.4f\n", i, g, eta, sim);
+            // the simulation stops a little early, within 0.01 of the goal.
+            assertEquals(sim, eta, 0.02);
+        }
+        assertEquals(3.0, p.eta(0.1, new Control100(0, 0), new Model100(2, 0)), DELTA);
+        assertEquals(1 + Math.sqrt(2), p.eta(0.1, new Control100(0, 1), new Model100(0, 0)), DELTA);
+        assertEquals(0, p.eta(0.1, new Control100(0, 0), new Model100(0, 0)), DELTA);
+    }
+
+    @Test
+    void testTrapezoidScale() {
+        TrapezoidIncrementalProfile p = new TrapezoidIncrementalProfile(logger, 1, 1, 0.01);
+        // rest-to-rest triangle
+        Control100 i = new Control100(0, 0);
+        Model100 g = new Model100(1, 0);
+        double s = p.scaleForETA(0.1, i, g, 4, DELTA);
+        assertEquals(0.25, s, DELTA);
+        assertEquals(4, p.scale(s).eta(0.1, i, g), DELTA);
+        // rest-to-rest with cruise: 1 s to accel, 1 s to cruise, 1 s to decel
+        g = new Model100(2, 0);
+        assertEquals(1, p.scaleForETA(0.1, i, g, 3, DELTA), DELTA);
+        assertEquals(0.5, p.scaleForETA(0.1, i, g, 4, DELTA), DELTA);
+        // moving, by bisection
+        i = new Control100(0, 1);
+        g = new Model100(0, 0);
+        s = p.scaleForETA(0.1, i, g, 3, DELTA);
+        assertEquals((1 + Math.sqrt(2)) / 3, s, DELTA);
+        assertEquals(3, p.scale(s).eta(0.1, i, g), DELTA);
+        // never faster, never more than 100x slower
+        assertEquals(1, p.scaleForETA(0.1, i, g, 1, DELTA), DELTA);
+        assertEquals(0.01, p.scaleForETA(0.1, i, g, 1000, DELTA), DELTA);
+    }
+
+    /**
+     * The exponential closed form, compared with brute-force integration of the
+     * same model.
+     */
+    @Test
+    void testExponential() {
+        // pure exponential, one meter
+        assertEquals(2.170, ProfileTiming.exponential(0, 0, 1, 0, 1, 1, 1, 1), DELTA);
+        // current limited
+        assertEquals(3.006, ProfileTiming.exponential(0, 0, 3, 0, 2, 1, 2, 2), DELTA);
+        // symmetric
+        assertEquals(3.006, ProfileTiming.exponential(0, 0, -3, 0, 2, 1, 2, 2), DELTA);
+        // braking first takes longer
+        assertTrue(ProfileTiming.exponential(0, -1, 3, 0, 2, 1, 2, 2) > 3.006);
+        // a long way is mostly cruising
+        assertEquals(50.139, ProfileTiming.exponential(0, 0, 50, 0, 1, 10, 10, 10), DELTA);
+        // overshoot isn't handled
+        assertTrue(Double.isNaN(ProfileTiming.exponential(0, 1, 0.1, 0, 2, 1, 2, 2)));
+    }
+
+    /** The complete profile ETA matches actually running the profile. */
+    @Test
+    void testComplete() {
+        CompleteProfile p = new CompleteProfile(logger, 2, 6, 10, 40, 50, 50, 0.001);
+        double[][] cases = {
+                // x0, v0, xg
+                { 0, 0, 1 },
+                { 0, 0, 0.1 },
+                { 0, 0, -2 },
+                { 0, 0.5, 2 },
+                { 0, 0, 5 } };
+        for (double[] c : cases) {
+            Control100 i = new Control100(c[0], c[1]);
+            Model100 g = new Model100(c[2], 0);
+            double eta = p.eta(0.1, i, g);
+            double run = run(p, i, g);
+            if (DEBUG)
+                System.out.printf("%s %s eta %.4f run %.4f\n", i, g, eta, run);
+            // the run stops a little early, within 0.01 of the goal.
+            assertEquals(run, eta, 0.05);
+        }
+    }
+
+    /**
+     * Unlike simulateForETA(), this keeps the acceleration from step to step, so
+     * the jerk limit works.
+     */
+    private static double run(IncrementalProfile p, Control100 i, Model100 g) {
+        double dt = 0.001;
+        double t = 0;
+        Control100 c = i;
+        while (!c.model().near(g, 0.01)) {
+            c = p.calculate(dt, c, g);
+            t += dt;
+        }
+        return t;
+    }
+}
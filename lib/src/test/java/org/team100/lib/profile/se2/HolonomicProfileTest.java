@@ -28,14 +28,17 @@ class HolonomicProfileTest implements Timeless {
         ModelSE2 g = new ModelSE2(
                 new Pose2d(0, 2, Rotation2d.kZero), new VelocitySE2(0, 0, 0));
         hp.solve(i, g);
-        // scale factors
-        assertEquals(0.8125, hp.sx, DELTA);
+        // scale factors: x brakes for 1/s, and comes back for sqrt(2)/s.
+        assertEquals((1 + Math.sqrt(2)) / 3, hp.sx, DELTA);
         assertEquals(1.0, hp.sy, DELTA);
         assertEquals(1.0, hp.stheta, DELTA);
         // now ETA's are the same
-        assertEquals(3.0, hp.ppx.simulateForETA(0.1, i.x().control(), g.x()), DELTA);
-        assertEquals(3.0, hp.ppy.simulateForETA(0.1, i.y().control(), g.y()), DELTA);
-        assertEquals(0, hp.pptheta.simulateForETA(0.1, i.theta().control(), g.theta()), DELTA);
+        assertEquals(3.0, hp.ppx.eta(0.1, i.x().control(), g.x()), DELTA);
+        assertEquals(3.0, hp.ppy.eta(0.1, i.y().control(), g.y()), DELTA);
+        assertEquals(0, hp.pptheta.eta(0.1, i.theta().control(), g.theta()), DELTA);
+        // the simulation agrees, roughly
+        assertEquals(3.0, hp.ppx.simulateForETA(0.1, i.x().control(), g.x()), 0.1);
+        assertEquals(3.0, hp.ppy.simulateForETA(0.1, i.y().control(), g.y()), 0.1);
     }
 
     /**
@@ -89,6 +92,11 @@ class HolonomicProfileTest implements Timeless {
     }
 
     /**
+     * With closed-form ETAs, this is a few microseconds; see
+     * HolonomicProfileBenchmark for the comparison with simulation.
+     * 
+     * Older notes:
+     * 
      * On my desktop, the solve() method takes about 1 microsecond, so it seems
      * ok to not worry about how long it takes.
      * 
@@ -177,7 +177,7 @@ public class DriveWithTrajectoryTest implements Timeless {
         OdometryUpdater odometryUpdater = new OdometryUpdater(swerveKinodynamics, gyro, history, collection::positions);
         odometryUpdater.reset(Pose2d.kZero, 0);
 
-        NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(history, odometryUpdater);
+        NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(logger, history, odometryUpdater);
 
         AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
 
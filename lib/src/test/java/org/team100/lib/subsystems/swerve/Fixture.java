@@ -65,7 +65,7 @@ public class Fixture {
         odometryUpdater = new OdometryUpdater(swerveKinodynamics, gyro, history, collection::positions);
         odometryUpdater.reset(Pose2d.kZero, 0);
 
-        final NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(history, odometryUpdater);
+        final NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(logger, history, odometryUpdater);
 
         final AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
 
@@ -2,10 +2,13 @@ package org.team100.lib.subsystems.swerve.kinodynamics;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Optional;
+import java.util.Random;
 
+import org.ejml.simple.SimpleMatrix;
 import org.junit.jupiter.api.Test;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleDelta;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleDeltas;
@@ -13,6 +16,7 @@ import org.team100.lib.subsystems.swerve.module.state.SwerveModulePosition100;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleState100;
 import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStates;
+import org.team100.lib.subsystems.swerve.module.state.SwerveModuleStatesBuffer;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -399,6 +403,113 @@ class SwerveDriveKinematics100Test {
         assertEquals(0, twist.dtheta, DELTA);
     }
 
+    /** The scalar products match the matrix products they replaced. */
+    @Test
+    void testMatrixEquivalence() {
+        SwerveDriveKinematics100 k = new SwerveDriveKinematics100(
+                new Translation2d(0.3, 0.25),
+                new Translation2d(0.3, -0.25),
+                new Translation2d(-0.2, 0.25),
+                new Translation2d(-0.2, -0.25));
+        SwerveModuleStatesBuffer buffer = new SwerveModuleStatesBuffer();
+        double[] speeds = new double[3];
+        Random random = new Random(0);
+        for (int j = 0; j < 1000; ++j) {
+            Twist2d twist = new Twist2d(
+                    random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            // sometimes stopped
+            if (j % 10 == 0)
+                twist = new Twist2d();
+            DiscreteSpeed speed = new DiscreteSpeed(twist, 0.02);
+
+            // inverse
+            SimpleMatrix v = k.m_inverseKinematics.mult(new SimpleMatrix(new double[] {
+                    twist.dx / 0.02, twist.dy / 0.02, twist.dtheta / 0.02 }));
+            SwerveModuleStates states = k.toSwerveModuleStates(speed);
+            k.toSwerveModuleStates(speed, buffer);
+            SwerveModuleState100[] all = states.all();
+            for (int i = 0; i < 4; ++i) {
+                SwerveModuleState100 expected = SwerveModuleState100.fromSpeed(
+                        v.get(2 * i, 0), v.get(2 * i + 1, 0));
+                assertState(expected, all[i]);
+                assertState(expected, buffer.state(i));
+                assertEquals(expected.speedMetersPerSecond(), buffer.speed(i), EPSILON);
+            }
+
+            // forward
+            SimpleMatrix c = k.m_forwardKinematics.mult(states2Vector(all));
+            ChassisSpeeds chassis = k.toChassisSpeeds(states);
+            assertEquals(c.get(0, 0), chassis.vxMetersPerSecond, EPSILON);
+            assertEquals(c.get(1, 0), chassis.vyMetersPerSecond, EPSILON);
+            assertEquals(c.get(2, 0), chassis.omegaRadiansPerSecond, EPSILON);
+            k.toChassisSpeeds(buffer, speeds);
+            assertEquals(c.get(0, 0), speeds[0], EPSILON);
+            assertEquals(c.get(1, 0), speeds[1], EPSILON);
+            assertEquals(c.get(2, 0), speeds[2], EPSILON);
+
+            // deltas
+            SimpleMatrix d = k.m_inverseKinematics.mult(new SimpleMatrix(new double[] {
+                    twist.dx, twist.dy, twist.dtheta }));
+            SwerveModuleDeltas deltas = k.toSwerveModuleDelta(twist);
+            SwerveModuleDelta[] allDeltas = deltas.all();
+            for (int i = 0; i < 4; ++i) {
+                SwerveModuleDelta expected = new SwerveModuleDelta(d.get(2 * i, 0), d.get(2 * i + 1, 0));
+                assertEquals(expected.distanceMeters, allDeltas[i].distanceMeters, EPSILON);
+                assertEquals(expected.wrappedAngle.isPresent(), allDeltas[i].wrappedAngle.isPresent());
+            }
+            Twist2d t = k.toTwist2d(deltas);
+            assertEquals(twist.dx, t.dx, 1e-6);
+            assertEquals(twist.dy, t.dy, 1e-6);
+            assertEquals(twist.dtheta, t.dtheta, 1e-6);
+        }
+    }
+
+    /** Measurements can have negative speed. */
+    @Test
+    void testBufferFromStates() {
+        SwerveDriveKinematics100 k = new SwerveDriveKinematics100(
+                new Translation2d(0.5, 0.5),
+                new Translation2d(0.5, -0.5),
+                new Translation2d(-0.5, 0.5),
+                new Translation2d(-0.5, -0.5));
+        SwerveModuleState100 reverse = new SwerveModuleState100(-1, Optional.of(Rotation2d.kCCW_Pi_2));
+        SwerveModuleStates states = new SwerveModuleStates(
+                reverse, reverse, reverse, new SwerveModuleState100());
+        SwerveModuleStatesBuffer buffer = new SwerveModuleStatesBuffer();
+        buffer.set(states);
+        assertEquals(-1, buffer.speed(0), DELTA);
+        assertEquals(-1, buffer.vy(0), DELTA);
+        assertFalse(buffer.hasAngle(3));
+        assertEquals(1, buffer.maxSpeed(), DELTA);
+        assertState(reverse, buffer.state(0));
+        double[] speeds = new double[3];
+        k.toChassisSpeeds(buffer, speeds);
+        ChassisSpeeds expected = k.toChassisSpeeds(states);
+        assertEquals(expected.vxMetersPerSecond, speeds[0], EPSILON);
+        assertEquals(expected.vyMetersPerSecond, speeds[1], EPSILON);
+        assertEquals(expected.omegaRadiansPerSecond, speeds[2], EPSILON);
+    }
+
+    private static void assertState(SwerveModuleState100 expected, SwerveModuleState100 actual) {
+        assertEquals(expected.speedMetersPerSecond(), actual.speedMetersPerSecond(), EPSILON);
+        assertEquals(expected.angle().isPresent(), actual.angle().isPresent());
+        if (expected.angle().isPresent())
+            assertEquals(expected.angle().get().getRadians(), actual.angle().get().getRadians(), EPSILON);
+    }
+
+    /** The old matrix version of the forward input. */
+    private static SimpleMatrix states2Vector(SwerveModuleState100[] states) {
+        SimpleMatrix m = new SimpleMatrix(states.length * 2, 1);
+        for (int i = 0; i < states.length; i++) {
+            SwerveModuleState100 module = states[i];
+            if (Math.abs(module.speedMetersPerSecond()) < 1e-6 || module.angle().isEmpty())
+                continue;
+            m.set(i * 2, 0, module.speedMetersPerSecond() * module.angle().get().getCos());
+            m.set(i * 2 + 1, 0, module.speedMetersPerSecond() * module.angle().get().getSin());
+        }
+        return m;
+    }
+
     ////////////////////////////////////////
     //
     // tests below are from WPILib
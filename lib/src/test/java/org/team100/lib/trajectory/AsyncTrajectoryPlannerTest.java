@@ -0,0 +1,127 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.trajectory.AsyncTrajectoryPlanner.Plan;
+import org.team100.lib.trajectory.path.PathFactory;
+import org.team100.lib.trajectory.timing.ConstantConstraint;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+import org.team100.lib.trajectory.timing.YawRateConstraint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class AsyncTrajectoryPlannerTest {
+    private static final boolean DEBUG = false;
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    private final TrajectoryPlanner planner = new TrajectoryPlanner(
+            new PathFactory(),
+            new TrajectoryFactory(List.of(
+                    new ConstantConstraint(log, 2, 2),
+                    new YawRateConstraint(log, 1, 1))));
+    private final AsyncTrajectoryPlanner async = new AsyncTrajectoryPlanner(log, planner);
+    private final List<WaypointSE2> waypoints = List.of(
+            WaypointSE2.irrotational(new Pose2d(), 0, 1.2),
+            WaypointSE2.irrotational(
+                    new Pose2d(1, 2, new Rotation2d(Math.PI / 2)), Math.PI / 2, 1.2));
+
+    @AfterEach
+    void reset() {
+        Experiments.instance.testOverride(Experiment.AsyncTrajectoryPlanning, false);
+    }
+
+    /** With the experiment off, the plan is ready immediately. */
+    @Test
+    void testSynchronous() {
+        Plan plan = async.restToRest(waypoints);
+        assertTrue(plan.isDone());
+        Trajectory100 t = plan.poll();
+        assertNotNull(t);
+        assertFalse(t.isEmpty());
+    }
+
+    @Test
+    void testAsync() {
+        Experiments.instance.testOverride(Experiment.AsyncTrajectoryPlanning, true);
+        Plan plan = async.restToRest(waypoints);
+        Trajectory100 t = plan.join();
+        assertFalse(t.isEmpty());
+        assertTrue(plan.latencyS() > 0);
+        if (DEBUG)
+            System.out.printf("latency %.3f\n", plan.latencyS());
+        // same as the synchronous result
+        assertEquals(planner.restToRest(waypoints).length(), t.length());
+    }
+
+    /** The worker plans with a snapshot taken on the caller's thread. */
+    @Test
+    void testSnapshotOnCaller() {
+        Experiments.instance.testOverride(Experiment.AsyncTrajectoryPlanning, true);
+        List<Thread> snapshots = new ArrayList<>();
+        TimingConstraint constraint = new ConstantConstraint(log, 2, 2) {
+            @Override
+            public TimingConstraint snapshot() {
+                snapshots.add(Thread.currentThread());
+                return super.snapshot();
+            }
+        };
+        TrajectoryPlanner p = new TrajectoryPlanner(
+                new PathFactory(), new TrajectoryFactory(List.of(constraint)));
+        AsyncTrajectoryPlanner a = new AsyncTrajectoryPlanner(log, p);
+        Trajectory100 t = a.restToRest(waypoints).join();
+        assertFalse(t.isEmpty());
+        assertEquals(List.of(Thread.currentThread()), snapshots);
+    }
+
+    /** A plan cancelled while waiting is never run. */
+    @Test
+    void testCancel() throws InterruptedException {
+        Experiments.instance.testOverride(Experiment.AsyncTrajectoryPlanning, true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // occupy the worker
+        Plan first = async.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return planner.restToRest(waypoints);
+        });
+        started.await();
+        AtomicBoolean ran = new AtomicBoolean();
+        Plan second = async.submit(() -> {
+            ran.set(true);
+            return planner.restToRest(waypoints);
+        });
+        assertNull(second.poll());
+        second.cancel();
+        release.countDown();
+        assertFalse(first.join().isEmpty());
+        // the cancelled plan yields an empty trajectory
+        assertTrue(second.poll().isEmpty());
+        // wait for the worker to get past the cancelled plan
+        async.submit(() -> new Trajectory100()).join();
+        assertFalse(ran.get());
+    }
+}
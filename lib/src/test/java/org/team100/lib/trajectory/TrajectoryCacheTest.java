@@ -0,0 +1,239 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.team100.lib.coherence.Cache;
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.trajectory.path.PathFactory;
+import org.team100.lib.trajectory.timing.ConstantConstraint;
+import org.team100.lib.trajectory.timing.TimedState;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+import org.team100.lib.trajectory.timing.YawRateConstraint;
+import org.team100.lib.tuning.Mutable;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+class TrajectoryCacheTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 1e-9;
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @TempDir
+    Path dir;
+
+    private final TrajectoryFactory trajectoryFactory = new TrajectoryFactory(List.of(
+            new ConstantConstraint(log, 2, 2),
+            new YawRateConstraint(log, 1, 1)));
+
+    private TrajectoryCache cache(String name) {
+        return new TrajectoryCache(name, new PathFactory(), trajectoryFactory, 2, 0.01);
+    }
+
+    private static List<WaypointSE2> move(double x) {
+        return List.of(
+                WaypointSE2.irrotational(new Pose2d(x, 0, Rotation2d.kZero), 0, 1.2),
+                WaypointSE2.irrotational(new Pose2d(1, 2, new Rotation2d(Math.PI / 2)), Math.PI / 2, 1.2));
+    }
+
+    @Test
+    void testMemo() {
+        TrajectoryCache cache = cache("test");
+        Trajectory100 t = cache.restToRest(move(0));
+        assertSame(t, cache.restToRest(move(0)));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        // dynamic entries match exactly
+        assertNull(cache.lookup(move(0.001)));
+    }
+
+    @Test
+    void testLRU() {
+        TrajectoryCache cache = cache("test");
+        cache.restToRest(move(0));
+        cache.restToRest(move(0.1));
+        // touch the first one
+        cache.restToRest(move(0));
+        // evicts the second one
+        cache.restToRest(move(0.2));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.lookup(move(0)));
+        assertNull(cache.lookup(move(0.1)));
+        assertNotNull(cache.lookup(move(0.2)));
+    }
+
+    @Test
+    void testLibrary() {
+        TrajectoryCache cache = cache("test");
+        cache.add(move(0));
+        // not planned yet
+        assertNull(cache.lookup(move(0)));
+        cache.precompute();
+        Trajectory100 t = cache.lookup(move(0));
+        assertNotNull(t);
+        // nearby starts use the library
+        assertSame(t, cache.lookup(move(0.005)));
+        assertNull(cache.lookup(move(0.05)));
+        // library entries are never evicted
+        cache.restToRest(move(0.1));
+        cache.restToRest(move(0.2));
+        cache.restToRest(move(0.3));
+        assertSame(t, cache.lookup(move(0)));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        TrajectoryCache cache = cache("test");
+        cache.add(move(0));
+        cache.add(move(0.5));
+        Path path = dir.resolve("trajectories").resolve("test.bin");
+        cache.save(path);
+        if (DEBUG)
+            System.out.printf("%d bytes\n", Files.size(path));
+
+        TrajectoryCache loaded = cache("test");
+        assertEquals(2, loaded.load(path));
+        for (List<WaypointSE2> move : List.of(move(0), move(0.5))) {
+            Trajectory100 expected = cache.lookup(move);
+            Trajectory100 actual = loaded.lookup(move);
+            assertEquals(expected.length(), actual.length());
+            assertEquals(expected.duration(), actual.duration(), DELTA);
+            for (int i = 0; i < expected.length(); ++i) {
+                TimedState e = expected.getPoint(i);
+                TimedState a = actual.getPoint(i);
+                assertEquals(e.getTimeS(), a.getTimeS(), DELTA);
+                assertEquals(e.velocityM_S(), a.velocityM_S(), DELTA);
+                assertEquals(e.point().waypoint().pose().getX(), a.point().waypoint().pose().getX(), DELTA);
+                assertEquals(e.point().waypoint().pose().getY(), a.point().waypoint().pose().getY(), DELTA);
+            }
+            // sampling resamples the rebuilt splines
+            double mid = expected.duration() / 2;
+            assertEquals(
+                    expected.sample(mid).point().waypoint().pose().getX(),
+                    actual.sample(mid).point().waypoint().pose().getX(), DELTA);
+        }
+    }
+
+    @Test
+    void testWrongName() throws IOException {
+        TrajectoryCache cache = cache("test");
+        cache.add(move(0));
+        Path path = dir.resolve("test.bin");
+        cache.save(path);
+        assertEquals(0, cache("other").load(path));
+        assertEquals(0, cache("test").load(dir.resolve("missing.bin")));
+    }
+
+    @Test
+    void testStale() throws IOException {
+        TrajectoryCache cache = cache("test");
+        cache.add(move(0));
+        Path path = dir.resolve("test.bin");
+        cache.save(path);
+        // same name, different constraints
+        TrajectoryCache slower = new TrajectoryCache("test", new PathFactory(),
+                new TrajectoryFactory(List.of(new ConstantConstraint(log, 1, 1))), 2, 0.01);
+        assertEquals(0, slower.load(path));
+    }
+
+    /** Tuning a constraint drops the entries it changes. */
+    @Test
+    void testTuned() {
+        String leaf = "testTuned";
+        Mutable slow = new Mutable(log, leaf, 10);
+        // limits move(0) near its start, but not move(0.5).
+        TimingConstraint tunable = new TimingConstraint() {
+            @Override
+            public double maxV(PathPoint state) {
+                return state.waypoint().pose().getX() < 0.25 ? slow.getAsDouble() : Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public double maxAccel(PathPoint state, double velocityM_S) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public double maxDecel(PathPoint state, double velocityM_S) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        };
+        TrajectoryCache cache = new TrajectoryCache("test", new PathFactory(),
+                new TrajectoryFactory(List.of(
+                        new ConstantConstraint(log, 2, 2),
+                        new YawRateConstraint(log, 1, 1),
+                        tunable)),
+                2, 0.01);
+        cache.add(move(0));
+        Trajectory100 library = cache.restToRest(move(0));
+        Trajectory100 dynamic = cache.restToRest(move(0.5));
+        assertSame(library, cache.lookup(move(0)));
+        assertSame(dynamic, cache.lookup(move(0.5)));
+        try (DoublePublisher p = NetworkTableInstance.getDefault()
+                .getDoubleTopic(log.root(leaf)).publish()) {
+            p.set(0.5);
+            Cache.refresh();
+        }
+        assertEquals(0.5, slow.getAsDouble());
+        // the library entry is planned again, with the new value.
+        assertNull(cache.lookup(move(0)));
+        Trajectory100 tuned = cache.restToRest(move(0));
+        assertTrue(tuned.duration() > library.duration());
+        // the other one didn't change.
+        assertSame(dynamic, cache.lookup(move(0.5)));
+    }
+
+    /** Every entry is checked, not just the first one. */
+    @Test
+    void testStaleEntry() throws IOException {
+        TrajectoryCache cache = cache("test");
+        cache.add(move(0.5));
+        cache.add(move(0));
+        Path path = dir.resolve("test.bin");
+        cache.save(path);
+        // slow near the start of move(0), but not anywhere on move(0.5).
+        TimingConstraint slowStart = new TimingConstraint() {
+            @Override
+            public double maxV(PathPoint state) {
+                return state.waypoint().pose().getX() < 0.25 ? 0.5 : Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public double maxAccel(PathPoint state, double velocityM_S) {
+                return Double.POSITIVE_INFINITY;
+            }
+
+            @Override
+            public double maxDecel(PathPoint state, double velocityM_S) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        };
+        TrajectoryCache changed = new TrajectoryCache("test", new PathFactory(),
+                new TrajectoryFactory(List.of(
+                        new ConstantConstraint(log, 2, 2),
+                        new YawRateConstraint(log, 1, 1),
+                        slowStart)),
+                2, 0.01);
+        assertEquals(1, changed.load(path));
+        assertNotNull(changed.lookup(move(0.5)));
+        assertNull(changed.lookup(move(0)));
+    }
+}
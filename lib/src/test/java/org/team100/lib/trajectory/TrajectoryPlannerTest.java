@@ -1,6 +1,7 @@
 package org.team100.lib.trajectory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
@@ -332,4 +333,44 @@ class TrajectoryPlannerTest implements Timeless {
 
     }
 
+    /**
+     * Replanning from the middle of the first leg reuses the second leg, and
+     * starts at the current speed.
+     */
+    @Test
+    void testReplan() {
+        WaypointSE2 a = WaypointSE2.irrotational(new Pose2d(0, 0, Rotation2d.kZero), 0, 1.2);
+        WaypointSE2 b = WaypointSE2.irrotational(new Pose2d(2, 0, Rotation2d.kZero), 0, 1.2);
+        WaypointSE2 c = WaypointSE2.irrotational(new Pose2d(4, 1, Rotation2d.kZero), 0, 1.2);
+        TrajectoryPlanner planner = new TrajectoryPlanner(
+                new PathFactory(),
+                new TrajectoryFactory(List.of(new ConstantConstraint(logger, 2, 2))));
+        Trajectory100 previous = planner.restToRest(List.of(a, b, c));
+        double t = 1.0;
+        ModelSE2 state = ModelSE2.fromTimedState(previous.sample(t));
+        Trajectory100 replanned = planner.replan(previous, state, List.of(b, c));
+        assertEquals(state.velocity().norm(), replanned.getPoint(0).velocityM_S(), 1e-6);
+        assertEquals(0, replanned.getLastPoint().velocityM_S(), 1e-6);
+        // the second leg is the same samples
+        assertSame(previous.getLastPoint().point(), replanned.getLastPoint().point());
+        // and it takes about as long as the rest of the previous one
+        assertEquals(previous.duration() - t, replanned.duration(), 0.05);
+        if (DEBUG)
+            System.out.printf("previous %d replanned %d\n", previous.length(), replanned.length());
+    }
+
+    /** With nothing to reuse, replanning from rest is just planning. */
+    @Test
+    void testReplanFromRest() {
+        WaypointSE2 b = WaypointSE2.irrotational(new Pose2d(2, 0, Rotation2d.kZero), 0, 1.2);
+        TrajectoryPlanner planner = new TrajectoryPlanner(
+                new PathFactory(),
+                new TrajectoryFactory(List.of(new ConstantConstraint(logger, 2, 2))));
+        Trajectory100 replanned = planner.replan(
+                new Trajectory100(), new ModelSE2(new Pose2d()), List.of(b));
+        Trajectory100 planned = planner.restToRest(List.of(
+                WaypointSE2.irrotational(new Pose2d(), 0, 1.2), b));
+        assertEquals(planned.length(), replanned.length());
+        assertEquals(planned.duration(), replanned.duration(), 1e-6);
+    }
 }
@@ -0,0 +1,187 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.geometry.DirectionSE2;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.state.ControlSE2;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.testing.Timeless;
+import org.team100.lib.trajectory.path.PathFactory;
+import org.team100.lib.trajectory.path.spline.HolonomicSpline;
+import org.team100.lib.trajectory.timing.TimedState;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TimingConstraintFactory;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+class TrajectorySamplerTest implements Timeless {
+    private static final double DELTA = 0.001;
+    private static final boolean DEBUG = false;
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @Test
+    void testEndpoints() {
+        Trajectory100 trajectory = curve();
+        TrajectorySampler sampler = new TrajectorySampler(trajectory);
+        TrajectorySample sample = new TrajectorySample();
+        sampler.sample(-1, sample);
+        assertEquals(0, sample.timeS, DELTA);
+        assertEquals(0, sample.x, DELTA);
+        assertEquals(0, sample.y, DELTA);
+        sampler.sample(100, sample);
+        assertEquals(trajectory.duration(), sample.timeS, DELTA);
+        assertEquals(10, sample.x, DELTA);
+        assertEquals(10, sample.y, DELTA);
+        assertEquals(0, sample.velocityM_S, DELTA);
+    }
+
+    /** The linear interpolation should be very close to the spline resampling. */
+    @Test
+    void testMatchesTrajectory() {
+        Trajectory100 trajectory = curve();
+        TrajectorySampler sampler = new TrajectorySampler(trajectory);
+        TrajectorySample sample = new TrajectorySample();
+        for (double t = 0; t < trajectory.duration() + 0.1; t += 0.02) {
+            ControlSE2 expected = ControlSE2.fromTimedState(trajectory.sample(t));
+            ControlSE2 actual = sampler.sample(t, sample).control();
+            assertEquals(expected.x().x(), actual.x().x(), 0.01);
+            assertEquals(expected.y().x(), actual.y().x(), 0.01);
+            assertEquals(expected.theta().x(), actual.theta().x(), 0.01);
+            assertEquals(expected.x().v(), actual.x().v(), 0.05);
+            assertEquals(expected.y().v(), actual.y().v(), 0.05);
+        }
+    }
+
+    /** Going backwards doesn't use the cursor, but it should still work. */
+    @Test
+    void testBackwards() {
+        Trajectory100 trajectory = curve();
+        TrajectorySampler sampler = new TrajectorySampler(trajectory);
+        TrajectorySample forward = new TrajectorySample();
+        TrajectorySample backward = new TrajectorySample();
+        TrajectorySampler sampler2 = new TrajectorySampler(trajectory);
+        sampler2.sample(trajectory.duration(), backward);
+        for (double t = trajectory.duration(); t > 0; t -= 0.07) {
+            sampler.sample(t, forward);
+            // jump around
+            sampler2.sample(0.5 * t, backward);
+            sampler2.sample(t, backward);
+            assertEquals(forward.x, backward.x, 1e-9);
+            assertEquals(forward.y, backward.y, 1e-9);
+        }
+    }
+
+    /**
+     * Compares the list scan that Trajectory100.sample() used to do, the binary
+     * search it does now, and the sampler, for trajectories of different sizes.
+     *
+     * The interpolation dominates in Trajectory100.sample(), so the sampler is
+     * much faster, and the cursor makes it independent of length.
+     *
+     * There's no need to run this all the time
+     */
+    @Test
+    void testPerformance() {
+        int reps = 100;
+        for (int n : new int[] { 100, 1000, 10000 }) {
+            Trajectory100 trajectory = synthetic(n);
+            TrajectorySampler sampler = new TrajectorySampler(trajectory);
+            TrajectorySample sample = new TrajectorySample();
+            double duration = trajectory.duration();
+            int times = (int) (duration / 0.02);
+
+            long start = System.nanoTime();
+            for (int rep = 0; rep < reps; ++rep) {
+                for (int t = 0; t < times; ++t) {
+                    scan(trajectory, 0.02 * t);
+                }
+            }
+            long scanNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int rep = 0; rep < reps; ++rep) {
+                for (int t = 0; t < times; ++t) {
+                    trajectory.sample(0.02 * t);
+                }
+            }
+            long sampleNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int rep = 0; rep < reps; ++rep) {
+                for (int t = 0; t < times; ++t) {
+                    sampler.sample(0.02 * t, sample);
+                }
+            }
+            long samplerNs = System.nanoTime() - start;
+
+            if (DEBUG)
+                System.out.printf("points %5d per sample (ns) scan %8.1f binary %8.1f sampler %8.1f\n",
+                        n,
+                        (double) scanNs / (reps * times),
+                        (double) sampleNs / (reps * times),
+                        (double) samplerNs / (reps * times));
+        }
+    }
+
+    ////////////////////////////////////////////////////////
+
+    /** The linear scan that Trajectory100.sample() used before the index. */
+    private static TimedState scan(Trajectory100 trajectory, double timeS) {
+        if (timeS >= trajectory.duration())
+            return trajectory.getLastPoint();
+        if (timeS <= 0)
+            return trajectory.getPoint(0);
+        for (int i = 1; i < trajectory.length(); ++i) {
+            final TimedState ceil = trajectory.getPoint(i);
+            if (ceil.getTimeS() >= timeS) {
+                final TimedState floor = trajectory.getPoint(i - 1);
+                return floor.interpolate(ceil, timeS - floor.getTimeS());
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /** Real trajectory, S-shaped. */
+    private static Trajectory100 curve() {
+        List<WaypointSE2> waypoints = List.of(
+                new WaypointSE2(new Pose2d(new Translation2d(), Rotation2d.kZero),
+                        new DirectionSE2(1, 0, 0), 1),
+                new WaypointSE2(new Pose2d(new Translation2d(10, 10), Rotation2d.kCCW_Pi_2),
+                        new DirectionSE2(1, 0, 0), 1));
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3(logger);
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        TrajectoryPlanner planner = new TrajectoryPlanner(
+                new PathFactory(), new TrajectoryFactory(constraints));
+        return planner.restToRest(waypoints);
+    }
+
+    /**
+     * Evenly spaced points on one spline, at constant velocity, so the size can be
+     * whatever we want.
+     */
+    private static Trajectory100 synthetic(int n) {
+        WaypointSE2 p0 = new WaypointSE2(new Pose2d(new Translation2d(), Rotation2d.kZero),
+                new DirectionSE2(1, 0, 0), 1);
+        WaypointSE2 p1 = new WaypointSE2(new Pose2d(new Translation2d(10, 10), Rotation2d.kCCW_Pi_2),
+                new DirectionSE2(0, 1, 0), 1);
+        HolonomicSpline spline = new HolonomicSpline(p0, p1);
+        List<TimedState> states = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            // one point per 10 ms.
+            states.add(new TimedState(spline.getPathPoint((double) i / (n - 1)), 0.01 * i, 1, 0));
+        }
+        return new Trajectory100(states, new ArrayList<>());
+    }
+}
@@ -0,0 +1,75 @@
+package org.team100.lib.trajectory.path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.geometry.PathPoint;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.timing.CapsizeAccelerationConstraint;
+import org.team100.lib.trajectory.timing.ConstantConstraint;
+import org.team100.lib.trajectory.timing.TimedState;
+import org.team100.lib.trajectory.timing.TrajectoryFactory;
+import org.team100.lib.trajectory.timing.YawRateConstraint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class PathArraysTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 1e-6;
+    private static final LoggerFactory log = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    private final List<WaypointSE2> waypoints = List.of(
+            WaypointSE2.irrotational(new Pose2d(0, 0, Rotation2d.kZero), 0, 1.2),
+            WaypointSE2.irrotational(new Pose2d(1, 1, new Rotation2d(1)), Math.PI / 2, 1.2),
+            WaypointSE2.irrotational(new Pose2d(0, 2, new Rotation2d(2)), Math.PI, 1.2));
+
+    /** The arrays have the same samples as the PathPoint pipeline. */
+    @Test
+    void testSamples() {
+        PathFactory pathFactory = new PathFactory();
+        Path100 path = pathFactory.fromWaypoints(waypoints);
+        PathArrays arrays = pathFactory.arraysFromWaypoints(waypoints);
+        if (DEBUG)
+            System.out.printf("%d samples\n", arrays.length());
+        assertEquals(path.length(), arrays.length());
+        for (int i = 0; i < path.length(); ++i) {
+            PathPoint p = path.getPoint(i);
+            assertEquals(p.waypoint().pose().getX(), arrays.x(i), DELTA);
+            assertEquals(p.waypoint().pose().getY(), arrays.y(i), DELTA);
+            assertEquals(p.waypoint().pose().getRotation().getRadians(), arrays.heading(i), DELTA);
+            assertEquals(p.getHeadingRateRad_M(), arrays.headingRate(i), DELTA);
+            assertEquals(p.getCurvatureRad_M(), arrays.curvature(i), DELTA);
+            assertEquals(p.waypoint().course().toRotation().getCos(), arrays.courseCos(i), DELTA);
+            assertEquals(p.waypoint().course().toRotation().getSin(), arrays.courseSin(i), DELTA);
+        }
+        assertEquals(path.getMaxDistance(), arrays.getMaxDistance(), DELTA);
+    }
+
+    /** Timing the arrays gives the same trajectory as timing the path. */
+    @Test
+    void testTiming() {
+        TrajectoryFactory trajectoryFactory = new TrajectoryFactory(List.of(
+                new ConstantConstraint(log, 2, 2),
+                new YawRateConstraint(log, 1, 1),
+                new CapsizeAccelerationConstraint(log, 1, 1)));
+        PathFactory pathFactory = new PathFactory();
+        Trajectory100 expected = trajectoryFactory.fromPath(pathFactory.fromWaypoints(waypoints), 0, 0);
+        Trajectory100 actual = trajectoryFactory.fromArrays(pathFactory.arraysFromWaypoints(waypoints), 0, 0);
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.duration(), actual.duration(), DELTA);
+        for (int i = 0; i < expected.length(); ++i) {
+            TimedState e = expected.getPoint(i);
+            TimedState a = actual.getPoint(i);
+            assertEquals(e.getTimeS(), a.getTimeS(), DELTA);
+            assertEquals(e.velocityM_S(), a.velocityM_S(), DELTA);
+            assertEquals(e.acceleration(), a.acceleration(), DELTA);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.team100.lib.trajectory.timing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.WaypointSE2;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.subsystems.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.testing.Timeless;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.path.Path100;
+import org.team100.lib.trajectory.path.PathFactory;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+public class ToppraTrajectoryFactoryTest implements Timeless {
+    private static final boolean DEBUG = false;
+    /** Tolerance for the constraint checks, m/s^2. */
+    private static final double TOLERANCE = 1e-3;
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    /** An S-curve with rotation, like an auto path. */
+    private static final List<WaypointSE2> SWERVE = List.of(
+            WaypointSE2.irrotational(new Pose2d(0, 0, new Rotation2d()), 0, 1.2),
+            WaypointSE2.irrotational(new Pose2d(2, 1, new Rotation2d(1)), Math.PI / 4, 1.2),
+            WaypointSE2.irrotational(new Pose2d(4, 0, new Rotation2d(2)), -Math.PI / 4, 1.2),
+            WaypointSE2.irrotational(new Pose2d(6, 1, new Rotation2d(2)), 0, 1.2));
+
+    /** A swing around the shoulder, like the elevator-arm-wrist mechanism. */
+    private static final List<WaypointSE2> MECH = List.of(
+            WaypointSE2.irrotational(new Pose2d(1, 0, new Rotation2d()), Math.PI / 2, 1.2),
+            WaypointSE2.irrotational(new Pose2d(0, 1.5, new Rotation2d(1)), Math.PI, 1.2));
+
+    @AfterEach
+    void reset() {
+        Experiments.instance.testOverride(Experiment.ToppraTiming, false);
+    }
+
+    @Test
+    void testSwerve() {
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forRealisticTest(logger);
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).allGood(logger);
+        compare("swerve", SWERVE, constraints);
+    }
+
+    @Test
+    void testTorque() {
+        List<TimingConstraint> constraints = List.of(
+                new ConstantConstraint(logger, 2, 10),
+                new TorqueConstraint(20));
+        compare("torque", MECH, constraints);
+    }
+
+    @Test
+    void testStartAndEndVelocity() {
+        List<TimingConstraint> constraints = List.of(new ConstantConstraint(logger, 2, 2));
+        Path100 path = new PathFactory().fromWaypoints(SWERVE);
+        Trajectory100 t = new ToppraTrajectoryFactory(constraints).fromPath(path, 1, 0.5);
+        assertEquals(1, t.getPoint(0).velocityM_S(), 1e-6);
+        assertEquals(0.5, t.getLastPoint().velocityM_S(), 1e-6);
+        checkFeasible(t, constraints);
+    }
+
+    /** The experiment makes the plain factory use reachability analysis. */
+    @Test
+    void testExperiment() {
+        List<TimingConstraint> constraints = List.of(
+                new ConstantConstraint(logger, 2, 10),
+                new TorqueConstraint(20));
+        Path100 path = new PathFactory().fromWaypoints(MECH);
+        Trajectory100 expected = new ToppraTrajectoryFactory(constraints).fromPath(path, 0, 0);
+        TrajectoryFactory factory = new TrajectoryFactory(constraints);
+        Experiments.instance.testOverride(Experiment.ToppraTiming, true);
+        Trajectory100 t = factory.fromPath(path, 0, 0);
+        assertEquals(expected.length(), t.length());
+        assertEquals(expected.duration(), t.duration(), 1e-9);
+    }
+
+    /**
+     * Checks the new schedule and compares it to the old one. Set DEBUG to see
+     * the duration of each. For the compute time, see TrajectoryFactoryBenchmark.
+     */
+    private void compare(String name, List<WaypointSE2> waypoints, List<TimingConstraint> constraints) {
+        Path100 path = new PathFactory().fromWaypoints(waypoints);
+        Trajectory100 oldT = new TrajectoryFactory(constraints).fromPath(path, 0, 0);
+        Trajectory100 newT = new ToppraTrajectoryFactory(constraints).fromPath(path, 0, 0);
+        if (DEBUG) {
+            System.out.printf("%s samples %d\n", name, path.length());
+            System.out.printf("  old duration %6.3f s\n", oldT.duration());
+            System.out.printf("  new duration %6.3f s\n", newT.duration());
+        }
+        assertEquals(oldT.length(), newT.length());
+        assertEquals(0, newT.getPoint(0).velocityM_S(), 1e-6);
+        assertEquals(0, newT.getLastPoint().velocityM_S(), 1e-6);
+        // about the same
+        assertEquals(oldT.duration(), newT.duration(), 0.1 * oldT.duration());
+        checkFeasible(newT, constraints);
+    }
+
+    /** Each segment obeys the constraints at its start. */
+    private static void checkFeasible(Trajectory100 t, List<TimingConstraint> constraints) {
+        for (int i = 0; i < t.length() - 1; ++i) {
+            TimedState state = t.getPoint(i);
+            double v = state.velocityM_S();
+            double a = state.acceleration();
+            for (TimingConstraint c : constraints) {
+                assertTrue(v <= c.maxV(state.point()) + 1e-6,
+                        String.format("%d v %f", i, v));
+                assertTrue(a <= c.maxAccel(state.point(), v) + TOLERANCE,
+                        String.format("%d a %f max %f", i, a, c.maxAccel(state.point(), v)));
+                assertTrue(a >= c.maxDecel(state.point(), v) - TOLERANCE,
+                        String.format("%d a %f min %f", i, a, c.maxDecel(state.point(), v)));
+            }
+        }
+    }
+}
@@ -283,4 +283,39 @@ public class TrajectoryFactoryTest {
 
     }
 
+    /**
+     * Long paths evaluate the velocity constraints in parallel. For the timing,
+     * see TrajectoryFactoryBenchmark.
+     */
+    @Test
+    void testLongPath() {
+        List<WaypointSE2> waypoints = List.of(
+                WaypointSE2.irrotational(new Pose2d(0, 0, new Rotation2d()), 0, 1.2),
+                WaypointSE2.irrotational(new Pose2d(8, 4, new Rotation2d(1)), Math.PI / 2, 1.2));
+        PathFactory pathFactory = new PathFactory(0.005, 0.001, 0.001, 0.01);
+        Path100 path = pathFactory.fromWaypoints(waypoints);
+        assertTrue(path.length() > 1000);
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forRealisticTest(logger);
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).allGood(logger);
+        TrajectoryFactory factory = new TrajectoryFactory(constraints);
+        Trajectory100 t = factory.fromPath(path, 0, 0);
+        assertEquals(path.length(), t.length());
+        for (int i = 0; i < t.length(); ++i) {
+            TimedState state = t.getPoint(i);
+            for (TimingConstraint constraint : constraints) {
+                assertTrue(state.velocityM_S() <= constraint.maxV(state.point()) + 1e-6);
+            }
+        }
+    }
+
+    /** The snapshot has the current values. */
+    @Test
+    void testSnapshot() {
+        ConstantConstraint c = new ConstantConstraint(logger, 2, 3);
+        TimingConstraint snapshot = c.snapshot();
+        PathPoint state = WAYPOINTS.get(0);
+        assertEquals(2, snapshot.maxV(state), DELTA);
+        assertEquals(3, snapshot.maxAccel(state, 0), DELTA);
+        assertEquals(-3, snapshot.maxDecel(state, 0), DELTA);
+    }
 }
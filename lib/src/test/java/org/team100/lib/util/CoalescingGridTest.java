@@ -0,0 +1,164 @@
+package org.team100.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.geometry.CentroidR2;
+import org.team100.lib.geometry.NearR2;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class CoalescingGridTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testMerge() {
+        CoalescingGrid c = new CoalescingGrid(1, new NearR2(0.15), new CentroidR2());
+        c.add(0, new Translation2d(1, 1));
+        assertEquals(1, c.size());
+        // near
+        c.add(0, new Translation2d(1.1, 1));
+        assertEquals(1, c.size());
+        assertEquals(1.05, c.getAll().get(0).getX(), DELTA);
+        // not near
+        c.add(0, new Translation2d(1.3, 1));
+        assertEquals(2, c.size());
+        // near both, in other cells, so all three become one.
+        c.add(0, new Translation2d(1.175, 1));
+        assertEquals(1, c.size());
+        assertEquals((1.05 + 1.3 + 1.175) / 3, c.getAll().get(0).getX(), DELTA);
+    }
+
+    @Test
+    void testSnapshot() {
+        CoalescingGrid c = new CoalescingGrid(1, new NearR2(0.15), new CentroidR2());
+        assertTrue(c.getAll().isEmpty());
+        c.add(0, new Translation2d(1, 1));
+        List<Translation2d> a = c.getAll();
+        // same list until the next change
+        assertSame(a, c.getAll());
+        c.add(0, new Translation2d(2, 2));
+        List<Translation2d> b = c.getAll();
+        assertNotSame(a, b);
+        assertEquals(1, a.size());
+        assertEquals(2, b.size());
+    }
+
+    @Test
+    void testExpiry() {
+        CoalescingGrid c = new CoalescingGrid(1, new NearR2(0.15), new CentroidR2());
+        c.add(0, new Translation2d(1, 1));
+        c.add(0.5, new Translation2d(2, 2));
+        assertEquals(2, c.size());
+        // not early
+        c.add(1.0, new Translation2d(3, 3));
+        assertEquals(3, c.size());
+        // at most one bucket late
+        c.add(1.2, new Translation2d(4, 4));
+        assertEquals(3, c.size());
+        // a merge renews the time
+        c.add(1.4, new Translation2d(2, 2));
+        c.add(2.0, new Translation2d(5, 5));
+        assertEquals(4, c.size());
+        // after a long gap, everything goes
+        c.add(100, new Translation2d(6, 6));
+        assertEquals(1, c.size());
+        assertEquals(6, c.getAll().get(0).getX(), DELTA);
+    }
+
+    @Test
+    void testStale() {
+        CoalescingGrid c = new CoalescingGrid(1, new NearR2(0.15), new CentroidR2());
+        c.add(5, new Translation2d(1, 1));
+        // out of order is fine
+        c.add(4.5, new Translation2d(2, 2));
+        assertEquals(2, c.size());
+        // older than the timeout is ignored
+        c.add(3, new Translation2d(3, 3));
+        assertEquals(2, c.size());
+    }
+
+    /** Same answer as the brute-force version, without expiry. */
+    @Test
+    void testSameAsBruteForce() {
+        Random random = new Random(0);
+        CoalescingGrid grid = new CoalescingGrid(100, new NearR2(0.15), new CentroidR2());
+        CoalescingCollection<Translation2d> brute = new CoalescingCollection<>(
+                new TrailingHistory<>(100), new NearR2(0.15), new CentroidR2());
+        for (int i = 0; i < 2000; ++i) {
+            Translation2d t = new Translation2d(5 * random.nextDouble(), 5 * random.nextDouble());
+            grid.add(0.01 * i, t);
+            brute.add(0.01 * i, t);
+        }
+        assertEquals(brute.size(), grid.size());
+        for (Translation2d g : grid.getAll()) {
+            boolean found = false;
+            for (Translation2d b : brute.getAll()) {
+                if (g.getDistance(b) < 1e-6) {
+                    found = true;
+                    break;
+                }
+            }
+            assertTrue(found);
+        }
+    }
+
+    /**
+     * Five thousand sights per second, for ten seconds, at 50 Hz, of twenty
+     * objects, with noise, and some clutter. The objects stay found, and the
+     * size stays about the same.
+     */
+    @Test
+    void testStress() {
+        Random random = new Random(0);
+        final int objects = 20;
+        final int sightsPerCycle = 100;
+        Translation2d[] truth = new Translation2d[objects];
+        for (int i = 0; i < objects; ++i) {
+            truth[i] = new Translation2d(16 * random.nextDouble(), 8 * random.nextDouble());
+        }
+        CoalescingGrid c = new CoalescingGrid(1, new NearR2(0.15), new CentroidR2());
+        long startNs = System.nanoTime();
+        int maxSize = 0;
+        int k = 0;
+        for (int cycle = 0; cycle < 500; ++cycle) {
+            double time = 0.02 * cycle;
+            for (int s = 0; s < sightsPerCycle; ++s) {
+                if (s % 10 == 0) {
+                    // clutter
+                    c.add(time, new Translation2d(16 * random.nextDouble(), 8 * random.nextDouble()));
+                } else {
+                    Translation2d t = truth[k++ % objects];
+                    c.add(time, new Translation2d(
+                            t.getX() + 0.03 * random.nextGaussian(),
+                            t.getY() + 0.03 * random.nextGaussian()));
+                }
+            }
+            maxSize = Math.max(maxSize, c.size());
+        }
+        double elapsedS = (System.nanoTime() - startNs) / 1e9;
+        if (DEBUG) {
+            System.out.printf("sights %d size %d max %d ET (s) %6.3f\n",
+                    500 * sightsPerCycle, c.size(), maxSize, elapsedS);
+        }
+        for (Translation2d t : truth) {
+            boolean found = false;
+            for (Translation2d g : c.getAll()) {
+                if (g.getDistance(t) < 0.1) {
+                    found = true;
+                    break;
+                }
+            }
+            assertTrue(found, t.toString());
+        }
+        // the objects, a few splits, and a second of clutter
+        assertTrue(maxSize < objects * 3 + 500, String.format("%d", maxSize));
+    }
+}
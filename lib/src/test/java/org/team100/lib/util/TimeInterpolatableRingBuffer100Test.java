@@ -0,0 +1,113 @@
+package org.team100.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.util.TimeInterpolatableBuffer100Test.Item;
+
+class TimeInterpolatableRingBuffer100Test {
+    private static final double DELTA = 0.001;
+
+    /** It interpolates proportionally. */
+    @Test
+    void testSimple() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(8, 10, 0, new Item(0));
+        assertEquals(0, b.get(0).value, DELTA);
+        b.put(1, new Item(10));
+        assertEquals(5, b.get(0.5).value, DELTA);
+        assertEquals(7.5, b.get(0.75).value, DELTA);
+    }
+
+    /** For off-the-end requests, it returns the end item. */
+    @Test
+    void testOffTheEnd() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(8, 10, 0, new Item(0));
+        assertEquals(0, b.get(1).value, DELTA);
+        b.put(1, new Item(10));
+        assertEquals(10, b.get(1.5).value, DELTA);
+        assertEquals(0, b.get(-1).value, DELTA);
+    }
+
+    /** Old entries are evicted relative to the new one. */
+    @Test
+    void testHistory() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(8, 1, 0, new Item(0));
+        b.put(0.5, new Item(5));
+        assertEquals(2, b.size());
+        b.put(1.0, new Item(10));
+        // the zero entry is exactly one second old
+        assertEquals(2, b.size());
+        assertEquals(0.5, b.timeAt(0), DELTA);
+        assertTrue(b.tooOld(-0.1));
+        assertFalse(b.tooOld(0.1));
+    }
+
+    /** Inserting in the middle keeps it sorted; same time replaces. */
+    @Test
+    void testInsert() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(8, 10, 0, new Item(0));
+        b.put(2, new Item(20));
+        b.put(1, new Item(11));
+        assertEquals(3, b.size());
+        assertEquals(11, b.get(1).value, DELTA);
+        b.put(1, new Item(10));
+        assertEquals(3, b.size());
+        assertEquals(10, b.get(1).value, DELTA);
+        assertEquals(2, b.lastKey(), DELTA);
+        assertEquals(0, b.lowerIndex(0.5));
+        assertEquals(1, b.lowerIndex(2));
+        assertEquals(-1, b.lowerIndex(0));
+        assertEquals(1, b.lowerEntry(1.5).getKey(), DELTA);
+        assertNull(b.lowerEntry(0));
+        assertEquals(2, b.higherIndex(1));
+        assertEquals(-1, b.higherIndex(2));
+    }
+
+    /** Wraps around the end of the arrays, and evicts when full. */
+    @Test
+    void testWrap() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(4, 100, 0, new Item(0));
+        for (int i = 1; i < 10; ++i) {
+            b.put(i, new Item(10 * i));
+        }
+        assertEquals(4, b.size());
+        assertEquals(6, b.timeAt(0), DELTA);
+        assertEquals(9, b.lastKey(), DELTA);
+        assertEquals(75, b.get(7.5).value, DELTA);
+        // insert in the middle of a full buffer evicts the oldest
+        b.put(8.5, new Item(0));
+        assertEquals(4, b.size());
+        assertEquals(7, b.timeAt(0), DELTA);
+        assertEquals(8.5, b.timeAt(2), DELTA);
+        // older than everything in a full buffer is ignored
+        b.put(1, new Item(0));
+        assertEquals(7, b.timeAt(0), DELTA);
+    }
+
+    /** Replacing by index keeps the time, even after wrapping. */
+    @Test
+    void testSetAt() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(4, 100, 0, new Item(0));
+        for (int i = 1; i < 6; ++i) {
+            b.put(i, new Item(10 * i));
+        }
+        b.setAt(1, new Item(0));
+        assertEquals(4, b.size());
+        assertEquals(3, b.timeAt(1), DELTA);
+        assertEquals(0, b.get(3).value, DELTA);
+        assertEquals(20, b.get(2).value, DELTA);
+        assertEquals(40, b.get(4).value, DELTA);
+    }
+
+    @Test
+    void testReset() {
+        TimeInterpolatableRingBuffer100<Item> b = new TimeInterpolatableRingBuffer100<>(4, 100, 0, new Item(0));
+        b.put(1, new Item(10));
+        b.reset(5, new Item(50));
+        assertEquals(1, b.size());
+        assertEquals(50, b.get(0).value, DELTA);
+    }
+}
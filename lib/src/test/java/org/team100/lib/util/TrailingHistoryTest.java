@@ -1,6 +1,8 @@
 package org.team100.lib.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,4 +55,21 @@ public class TrailingHistoryTest {
         h.add(0, "zero");
         check(h, "two", "zero");
     }
+
+    @Test
+    void testSnapshot() {
+        TrailingHistory<String> h = new TrailingHistory<>(1);
+        h.add(0, "zero");
+        List<String> a = h.getAll();
+        // same list until the next change
+        assertSame(a, h.getAll());
+        // nothing to evict
+        h.cleanup(0.5);
+        assertSame(a, h.getAll());
+        h.cleanup(2);
+        List<String> b = h.getAll();
+        assertNotSame(a, b);
+        assertEquals(1, a.size());
+        assertEquals(0, b.size());
+    }
 }